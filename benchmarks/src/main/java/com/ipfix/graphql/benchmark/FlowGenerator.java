@@ -0,0 +1,243 @@
+package com.ipfix.graphql.benchmark;
+
+import com.ipfix.graphql.model.CertEnterpriseInfo;
+import com.ipfix.graphql.model.DpiInfo;
+import com.ipfix.graphql.model.IpfixRecord;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic synthetic flows shaped like enterprise edge traffic. Clients and servers are drawn from
+ * Zipf distributions, so a few hosts carry most flows; services are weighted by typical traffic share and
+ * fix protocol, server port and application; client ports are ephemeral; byte counts are log-normal per
+ * service; one flow in ten is IPv6. HTTPS, HTTP and DNS flows carry the matching DPI host names, and
+ * timestamps advance with exponential gaps at the configured rate.
+ */
+public final class FlowGenerator {
+    
+    private static final Service[] SERVICES = {
+            new Service("https", 6, 443, 45, 9.0, 1.8, 1100),
+            new Service("dns", 17, 53, 15, 4.8, 0.5, 110),
+            new Service("http", 6, 80, 8, 8.5, 1.9, 900),
+            new Service("smb", 6, 445, 5, 10.0, 2.2, 1200),
+            new Service("quic", 17, 443, 5, 9.5, 1.7, 1200),
+            new Service("ssh", 6, 22, 3, 8.0, 2.0, 300),
+            new Service("http-alt", 6, 8080, 3, 8.0, 1.8, 800),
+            new Service("ntp", 17, 123, 3, 4.5, 0.1, 90),
+            new Service("rdp", 6, 3389, 2, 10.5, 1.5, 700),
+            new Service("smtp", 6, 25, 2, 9.0, 1.5, 1000),
+            new Service("imaps", 6, 993, 2, 8.5, 1.5, 800),
+            new Service("ldap", 6, 389, 2, 7.0, 1.0, 400),
+            new Service("sip", 17, 5060, 2, 6.5, 0.8, 500),
+            new Service("openvpn", 17, 1194, 2, 11.0, 2.0, 1100),
+            new Service("icmp", 1, 0, 1, 5.0, 0.7, 84),
+    };
+    private static final String[] DOMAINS = {
+            "example.com", "api.example.com", "cdn.example.net", "mail.example.org", "login.example.com",
+            "static.example.net", "updates.example.org", "video.example.com", "telemetry.example.net",
+            "files.example.org", "search.example.com", "ads.example.net", "chat.example.com", "maps.example.org",
+            "news.example.com", "shop.example.net"
+    };
+    private static final int CLIENT_HOSTS = 20_000;
+    private static final int SERVER_HOSTS = 4_000;
+    
+    private final SplittableRandom random;
+    private final double[] serviceWeights;
+    private final double[] clientWeights = zipf(CLIENT_HOSTS, 1.05);
+    private final double[] serverWeights = zipf(SERVER_HOSTS, 1.2);
+    private final double[] domainWeights = zipf(DOMAINS.length, 1.0);
+    private final double meanGapNanos;
+    private long timeNanos;
+    
+    /**
+     * @param start timestamp of the first flow
+     * @param flowsPerSecond average rate the timestamps advance at
+     */
+    public FlowGenerator(long seed, Instant start, double flowsPerSecond) {
+        this.random = new SplittableRandom(seed);
+        this.meanGapNanos = 1e9 / flowsPerSecond;
+        this.timeNanos = start.getEpochSecond() * 1_000_000_000L + start.getNano();
+        double[] weights = new double[SERVICES.length];
+        for (int i = 0; i < SERVICES.length; i++) {
+            weights[i] = SERVICES[i].share();
+        }
+        this.serviceWeights = cumulative(weights);
+    }
+    
+    public List<IpfixRecord> next(int count) {
+        List<IpfixRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(next());
+        }
+        return records;
+    }
+    
+    /**
+     * Next flow, timestamped but without an ID
+     */
+    public IpfixRecord next() {
+        timeNanos += (long) (-Math.log(1 - random.nextDouble()) * meanGapNanos);
+        Service service = SERVICES[pick(serviceWeights)];
+        int client = pick(clientWeights);
+        int server = pick(serverWeights);
+        boolean ipv6 = random.nextInt(10) == 0;
+        long octets = Math.max(40, (long) Math.exp(service.logMean() + service.logDeviation() * gaussian()));
+        long packets = Math.max(1, octets / service.packetSize());
+        long startMillis = timeNanos / 1_000_000 - random.nextInt(30_000);
+        
+        IpfixRecord.IpfixRecordBuilder record = IpfixRecord.builder()
+                .timestamp(Instant.ofEpochSecond(0, timeNanos))
+                .protocolIdentifier(service.protocol())
+                .sourceTransportPort(service.protocol() == 1 ? 0 : 49152 + random.nextInt(16384))
+                .destinationTransportPort(service.port())
+                .octetDeltaCount(octets)
+                .packetDeltaCount(packets)
+                .deltaFlowCount(1L)
+                .tcpControlBits(service.protocol() == 6 ? 0x1B : null)
+                .ingressInterface(1 + client % 4)
+                .egressInterface(10)
+                .flowStartMilliseconds(Instant.ofEpochMilli(startMillis))
+                .flowEndMilliseconds(Instant.ofEpochMilli(startMillis + random.nextInt(30_000)))
+                .applicationName(service.name())
+                .observationDomainId(1)
+                .exporterIPv4Address("192.0.2.1")
+                .certInfo(CertEnterpriseInfo.builder().silkAppLabel(service.port()).build());
+        if (ipv6) {
+            record.sourceIPv6Address("2001:db8:" + Integer.toHexString(client >>> 8) + "::"
+                            + Integer.toHexString(client & 0xFF))
+                    .destinationIPv6Address("2001:db8:ffff::" + Integer.toHexString(server));
+        } else {
+            record.sourceIPv4Address(clientIPv4(client))
+                    .sourceIPv4PrefixLength(24)
+                    .destinationIPv4Address(serverIPv4(server));
+        }
+        String domain = DOMAINS[pick(domainWeights)];
+        switch (service.name()) {
+            case "https" -> record.dpiInfo(DpiInfo.builder().sslServerName(domain).sslVersion(0x0304).build());
+            case "http" -> record.dpiInfo(DpiInfo.builder().httpRequestMethod("GET").httpRequestHost(domain)
+                    .httpRequestTarget("/").httpStatusCode(200).build());
+            case "dns" -> record.dpiInfo(DpiInfo.builder().dnsQueryName(domain).dnsQueryType(1).dnsResponseCode(0)
+                    .build());
+            default -> {
+            }
+        }
+        return record.build();
+    }
+    
+    /**
+     * Mutation input carrying the same elements as {@link #next()}, as graphql-java hands {@code IpfixRecordInput}
+     * arguments to data fetchers: a map of the fields the client sent
+     */
+    public Map<String, Object> nextInput() {
+        IpfixRecord record = next();
+        Map<String, Object> input = new LinkedHashMap<>();
+        put(input, "octetDeltaCount", record.getOctetDeltaCount());
+        put(input, "packetDeltaCount", record.getPacketDeltaCount());
+        put(input, "deltaFlowCount", record.getDeltaFlowCount());
+        put(input, "protocolIdentifier", record.getProtocolIdentifier());
+        put(input, "tcpControlBits", record.getTcpControlBits());
+        put(input, "sourceTransportPort", record.getSourceTransportPort());
+        put(input, "sourceIPv4Address", record.getSourceIPv4Address());
+        put(input, "sourceIPv4PrefixLength", record.getSourceIPv4PrefixLength());
+        put(input, "destinationTransportPort", record.getDestinationTransportPort());
+        put(input, "destinationIPv4Address", record.getDestinationIPv4Address());
+        put(input, "sourceIPv6Address", record.getSourceIPv6Address());
+        put(input, "destinationIPv6Address", record.getDestinationIPv6Address());
+        put(input, "ingressInterface", record.getIngressInterface());
+        put(input, "egressInterface", record.getEgressInterface());
+        put(input, "flowStartMilliseconds", record.getFlowStartMilliseconds());
+        put(input, "flowEndMilliseconds", record.getFlowEndMilliseconds());
+        put(input, "applicationName", record.getApplicationName());
+        put(input, "observationDomainId", record.getObservationDomainId());
+        put(input, "exporterIPv4Address", record.getExporterIPv4Address());
+        put(input, "certInfo", Map.of("silkAppLabel", record.getCertInfo().getSilkAppLabel()));
+        put(input, "dpiInfo", dpiInput(record.getDpiInfo()));
+        return input;
+    }
+    
+    /**
+     * Timestamp the next flow will be close to
+     */
+    public Instant now() {
+        return Instant.ofEpochSecond(0, timeNanos);
+    }
+    
+    /**
+     * Source address of the {@code rank}-th busiest IPv4 client
+     */
+    public static String clientIPv4(int rank) {
+        return "10." + (rank >>> 16 & 0xFF) + "." + (rank >>> 8 & 0xFF) + "." + (rank & 0xFF);
+    }
+    
+    // Servers spread over public-looking /16s, a stable address per rank
+    private static String serverIPv4(int server) {
+        long mixed = (server + 1) * 0x9E3779B97F4A7C15L;
+        int first = 23 + (int) ((mixed >>> 56) & 0xFF) % 180;
+        return first + "." + ((mixed >>> 48) & 0xFF) + "." + ((mixed >>> 40) & 0xFF) + "." + (1 + server % 254);
+    }
+    
+    private static Map<String, Object> dpiInput(DpiInfo dpi) {
+        if (dpi == null) {
+            return null;
+        }
+        Map<String, Object> input = new LinkedHashMap<>();
+        put(input, "httpRequestMethod", dpi.getHttpRequestMethod());
+        put(input, "httpRequestHost", dpi.getHttpRequestHost());
+        put(input, "httpRequestTarget", dpi.getHttpRequestTarget());
+        put(input, "httpStatusCode", dpi.getHttpStatusCode());
+        put(input, "sslServerName", dpi.getSslServerName());
+        put(input, "sslVersion", dpi.getSslVersion());
+        put(input, "dnsQueryName", dpi.getDnsQueryName());
+        put(input, "dnsQueryType", dpi.getDnsQueryType());
+        put(input, "dnsResponseCode", dpi.getDnsResponseCode());
+        return input;
+    }
+    
+    private static void put(Map<String, Object> input, String field, Object value) {
+        if (value != null) {
+            input.put(field, value);
+        }
+    }
+    
+    private int pick(double[] cumulative) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index < 0 ? -index - 1 : index, cumulative.length - 1);
+    }
+    
+    private double gaussian() {
+        // Box-Muller; one value per call is enough here
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+    
+    private static double[] zipf(int size, double exponent) {
+        double[] weights = new double[size];
+        for (int i = 0; i < size; i++) {
+            weights[i] = 1 / Math.pow(i + 1, exponent);
+        }
+        return cumulative(weights);
+    }
+    
+    private static double[] cumulative(double[] weights) {
+        double total = Arrays.stream(weights).sum();
+        double[] cumulative = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i];
+            cumulative[i] = sum / total;
+        }
+        return cumulative;
+    }
+    
+    /**
+     * Service with its share of flows and log-normal byte count parameters
+     */
+    private record Service(String name, int protocol, int port, int share, double logMean, double logDeviation,
+                           int packetSize) {
+    }
+}
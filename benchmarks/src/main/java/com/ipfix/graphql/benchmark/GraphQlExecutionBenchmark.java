@@ -0,0 +1,142 @@
+package com.ipfix.graphql.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ipfix.graphql.config.GraphQLConfig;
+import com.ipfix.graphql.config.IpfixQueryProperties;
+import com.ipfix.graphql.config.IpfixSubscriptionProperties;
+import com.ipfix.graphql.ingest.IngestMetrics;
+import com.ipfix.graphql.ingest.IpfixIngestService;
+import com.ipfix.graphql.ingest.LiveFlowPublisher;
+import com.ipfix.graphql.repository.IpfixRecordRepository;
+import com.ipfix.graphql.repository.IpfixRecordStore;
+import com.ipfix.graphql.resolver.GraphQLExceptionHandler;
+import com.ipfix.graphql.resolver.IpfixMutationResolver;
+import com.ipfix.graphql.resolver.IpfixQueryResolver;
+import com.ipfix.graphql.resolver.IpfixSubscriptionResolver;
+import com.ipfix.graphql.resolver.StructuredListResolver;
+import com.ipfix.graphql.resolver.QueryMetricsInstrumentation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.graphql.ExecutionGraphQlResponse;
+import org.springframework.graphql.data.method.annotation.support.AnnotatedControllerConfigurer;
+import org.springframework.graphql.execution.DefaultExecutionGraphQlService;
+import org.springframework.graphql.execution.GraphQlSource;
+import org.springframework.graphql.support.DefaultExecutionGraphQlRequest;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole GraphQL requests, from document to serialized JSON response, through the application's schema,
+ * scalars, controllers, exception handling and query metrics, without the HTTP transport. The store is
+ * preloaded with generated flows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphQlExecutionBenchmark {
+    
+    private static final String RECORD_FIELDS = "id timestamp sourceIPv4Address destinationIPv4Address "
+            + "sourceTransportPort destinationTransportPort protocolIdentifier octetDeltaCount packetDeltaCount "
+            + "applicationName dpiInfo { sslServerName httpRequestHost dnsQueryName }";
+    private static final String RECORD_BY_ID = "query($id: String!) { ipfixRecord(id: $id) { " + RECORD_FIELDS + " } }";
+    private static final String CONNECTION_PAGE = "{ ipfixRecordsConnection(first: 100) { edges { cursor node { "
+            + RECORD_FIELDS + " } } pageInfo { hasNextPage endCursor } } }";
+    private static final String TOP_FLOWS = "{ topFlows(groupBy: SOURCE_IP, metric: BYTES, limit: 10) "
+            + "{ key bytes packets flows } }";
+    
+    @Param({"100000"})
+    int records;
+    
+    private AnnotationConfigApplicationContext context;
+    private DefaultExecutionGraphQlService service;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private String recordId;
+    private long request;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        IpfixRecordRepository store = new IpfixRecordRepository();
+        FlowGenerator generator = new FlowGenerator(42, Instant.parse("2024-01-01T00:00:00Z"), 1000);
+        for (int loaded = 0; loaded < records; loaded += 10_000) {
+            store.saveAll(generator.next(Math.min(10_000, records - loaded)));
+        }
+        recordId = store.findAll(1, records / 2).get(0).getId();
+        
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(IpfixRecordStore.class, () -> store);
+        context.registerBean(IpfixSubscriptionProperties.class);
+        context.registerBean(IpfixQueryProperties.class);
+        context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+        context.registerBean(LiveFlowPublisher.class);
+        context.registerBean(IngestMetrics.class);
+        context.registerBean(IpfixIngestService.class);
+        context.registerBean(IpfixQueryResolver.class);
+        context.registerBean(IpfixMutationResolver.class);
+        context.registerBean(IpfixSubscriptionResolver.class);
+        context.registerBean(StructuredListResolver.class);
+        context.registerBean(GraphQLExceptionHandler.class);
+        context.refresh();
+        
+        AnnotatedControllerConfigurer controllers = new AnnotatedControllerConfigurer();
+        controllers.setApplicationContext(context);
+        controllers.afterPropertiesSet();
+        GraphQlSource source = GraphQlSource.schemaResourceBuilder()
+                .schemaResources(new ClassPathResource("graphql/schema.graphqls"))
+                .configureRuntimeWiring(new GraphQLConfig().runtimeWiringConfigurer())
+                .configureRuntimeWiring(controllers)
+                .exceptionResolvers(List.of(controllers.getExceptionResolver()))
+                .instrumentation(List.of(new QueryMetricsInstrumentation(context.getBean(MeterRegistry.class))))
+                .build();
+        service = new DefaultExecutionGraphQlService(source);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    public byte[] recordById() throws Exception {
+        return execute(RECORD_BY_ID, recordId);
+    }
+    
+    @Benchmark
+    public byte[] connectionPage() throws Exception {
+        return execute(CONNECTION_PAGE, null);
+    }
+    
+    @Benchmark
+    public byte[] topFlows() throws Exception {
+        return execute(TOP_FLOWS, null);
+    }
+    
+    private byte[] execute(String document, String id) throws Exception {
+        ExecutionGraphQlResponse response = service.execute(new DefaultExecutionGraphQlRequest(document, null,
+                id != null ? Map.of("id", id) : null, null, Long.toString(request++), null)).block();
+        if (!response.getErrors().isEmpty()) {
+            throw new IllegalStateException(response.getErrors().toString());
+        }
+        return mapper.writeValueAsBytes(response.toMap());
+    }
+}
@@ -0,0 +1,129 @@
+package com.ipfix.graphql.benchmark;
+
+import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.repository.IpfixRecordRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-record saves, address and time range lookups and offset pagination against an in-memory repository
+ * preloaded with generated flows. Ten million records need a heap of about 16 GB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IpfixRecordRepositoryBenchmark {
+    
+    static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+    // One hour of traffic whatever the record count, so range queries see the density grow with it
+    static final double WINDOW_SECONDS = 3600;
+    private static final int LOOKUPS = 1024;
+    
+    @Param({"1000000", "10000000"})
+    int records;
+    
+    IpfixRecordRepository repository;
+    private String[] sourceIps;
+    private Instant[] rangeStarts;
+    private int lookup;
+    
+    @Setup(Level.Trial)
+    public void load() {
+        repository = new IpfixRecordRepository();
+        FlowGenerator generator = new FlowGenerator(42, START, records / WINDOW_SECONDS);
+        for (int loaded = 0; loaded < records; loaded += 10_000) {
+            repository.saveAll(generator.next(Math.min(10_000, records - loaded)));
+        }
+        // Busiest clients first, the way a dashboard drills into top talkers
+        sourceIps = new String[LOOKUPS];
+        rangeStarts = new Instant[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            sourceIps[i] = FlowGenerator.clientIPv4(i % 256);
+            rangeStarts[i] = START.plusMillis((long) (WINDOW_SECONDS * 1000 * i / LOOKUPS));
+        }
+    }
+    
+    @Benchmark
+    public List<IpfixRecord> findBySourceIp() {
+        return repository.findBySourceIp(sourceIps[lookup++ & (LOOKUPS - 1)]);
+    }
+    
+    /**
+     * One second of traffic
+     */
+    @Benchmark
+    public List<IpfixRecord> findByTimeRange() {
+        Instant start = rangeStarts[lookup++ & (LOOKUPS - 1)];
+        return repository.findByTimeRange(start, start.plusSeconds(1));
+    }
+    
+    @Benchmark
+    public List<IpfixRecord> findAllFirstPage() {
+        return repository.findAll(100, 0);
+    }
+    
+    @Benchmark
+    public List<IpfixRecord> findAllDeepPage() {
+        return repository.findAll(100, records / 2);
+    }
+    
+    /**
+     * Time per {@link FreshRecords#BATCH} saves of new records; the store is trimmed back after each iteration
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, batchSize = FreshRecords.BATCH)
+    @Measurement(iterations = 10, batchSize = FreshRecords.BATCH)
+    public IpfixRecord save(FreshRecords fresh) {
+        return repository.save(fresh.next());
+    }
+    
+    /**
+     * New flows for the save benchmark, generated outside the measured time
+     */
+    @State(Scope.Benchmark)
+    public static class FreshRecords {
+        
+        static final int BATCH = 100_000;
+        
+        private final FlowGenerator generator = new FlowGenerator(7, START.plusSeconds((long) WINDOW_SECONDS), 1000);
+        private List<IpfixRecord> batch;
+        private int next;
+        
+        @Setup(Level.Iteration)
+        public void generate() {
+            batch = generator.next(BATCH);
+            next = 0;
+        }
+        
+        @TearDown(Level.Iteration)
+        public void remove(IpfixRecordRepositoryBenchmark benchmark) {
+            for (int i = 0; i < next; i++) {
+                benchmark.repository.deleteById(batch.get(i).getId());
+            }
+        }
+        
+        IpfixRecord next() {
+            return batch.get(next++);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.ipfix.graphql.benchmark;
+
+import com.ipfix.graphql.config.IpfixSubscriptionProperties;
+import com.ipfix.graphql.ingest.IngestMetrics;
+import com.ipfix.graphql.ingest.IngestPipeline;
+import com.ipfix.graphql.ingest.IpfixIngestService;
+import com.ipfix.graphql.ingest.LiveFlowPublisher;
+import com.ipfix.graphql.model.IngestSummary;
+import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.repository.IpAddresses;
+import com.ipfix.graphql.repository.IpfixRecordRepository;
+import com.ipfix.graphql.repository.RecordIds;
+import com.ipfix.graphql.resolver.IpfixMutationResolver;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.DataFetchingEnvironmentImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cost per record of the batch ingest mutation from its coerced argument values to the store call: input
+ * binding, ID assignment, address validation, live publication and ingest metrics. The store stops there, so index
+ * maintenance, covered by {@link IpfixRecordRepositoryBenchmark}, stays out of the figure.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(MutationConversionBenchmark.BATCH)
+public class MutationConversionBenchmark {
+    
+    static final int BATCH = 1000;
+    
+    private IpfixMutationResolver resolver;
+    private DataFetchingEnvironment environment;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        IpfixRecordRepository store = new IpfixRecordRepository() {
+            @Override
+            public List<IpfixRecord> saveAll(List<IpfixRecord> batch) {
+                RecordIds.assign(batch);
+                batch.forEach(IpAddresses::requireValid);
+                return batch;
+            }
+        };
+        IpfixIngestService ingestService = new IpfixIngestService(store,
+                new LiveFlowPublisher(new IpfixSubscriptionProperties()), new IngestMetrics(new SimpleMeterRegistry()),
+                new StaticListableBeanFactory().getBeanProvider(IngestPipeline.class));
+        resolver = new IpfixMutationResolver(store, ingestService);
+        FlowGenerator generator = new FlowGenerator(42, Instant.parse("2024-01-01T00:00:00Z"), 1000);
+        List<Map<String, Object>> inputs = Stream.generate(generator::nextInput).limit(BATCH).toList();
+        environment = DataFetchingEnvironmentImpl.newDataFetchingEnvironment()
+                .arguments(Map.of("inputs", inputs))
+                .build();
+    }
+    
+    @Benchmark
+    public IngestSummary ingestIpfixRecords() {
+        return resolver.ingestIpfixRecords(environment).join();
+    }
+}
@@ -0,0 +1,102 @@
+package com.ipfix.graphql.benchmark;
+
+import com.ipfix.graphql.config.GraphQLConfig;
+import graphql.GraphQLContext;
+import graphql.execution.CoercedVariables;
+import graphql.language.IntValue;
+import graphql.language.StringValue;
+import graphql.schema.Coercing;
+import graphql.schema.GraphQLScalarType;
+import graphql.schema.idl.RuntimeWiring;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coercion of the custom scalars registered by {@link GraphQLConfig}: result serialization, variable values and
+ * query literals
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScalarBenchmark {
+    
+    private final GraphQLContext graphQLContext = GraphQLContext.getDefault();
+    private final Instant instant = Instant.parse("2024-01-01T12:34:56.789123456Z");
+    private final String instantText = instant.toString();
+    private final StringValue instantLiteral = StringValue.of(instantText);
+    private final Long octets = 1_234_567_890_123L;
+    private final IntValue octetsLiteral = new IntValue(BigInteger.valueOf(octets));
+    private final Map<String, Object> json = Map.of("sslServerName", "example.com", "sslVersion", 0x0304);
+    private Coercing<?, ?> instantScalar;
+    private Coercing<?, ?> longScalar;
+    private Coercing<?, ?> jsonScalar;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        RuntimeWiring.Builder wiring = RuntimeWiring.newRuntimeWiring();
+        new GraphQLConfig().runtimeWiringConfigurer().configure(wiring);
+        Map<String, GraphQLScalarType> scalars = wiring.build().getScalars();
+        instantScalar = scalars.get("Instant").getCoercing();
+        longScalar = scalars.get("Long").getCoercing();
+        jsonScalar = scalars.get("JSON").getCoercing();
+    }
+    
+    @Benchmark
+    public Object instantSerialize() {
+        return instantScalar.serialize(instant, graphQLContext, Locale.ROOT);
+    }
+    
+    @Benchmark
+    public Object instantParseValue() {
+        return instantScalar.parseValue(instantText, graphQLContext, Locale.ROOT);
+    }
+    
+    @Benchmark
+    public Object instantParseLiteral() {
+        return instantScalar.parseLiteral(instantLiteral, CoercedVariables.emptyVariables(), graphQLContext,
+                Locale.ROOT);
+    }
+    
+    @Benchmark
+    public Object longSerialize() {
+        return longScalar.serialize(octets, graphQLContext, Locale.ROOT);
+    }
+    
+    @Benchmark
+    public Object longParseValue() {
+        return longScalar.parseValue(octets, graphQLContext, Locale.ROOT);
+    }
+    
+    @Benchmark
+    public Object longParseLiteral() {
+        return longScalar.parseLiteral(octetsLiteral, CoercedVariables.emptyVariables(), graphQLContext, Locale.ROOT);
+    }
+    
+    @Benchmark
+    public Object jsonSerialize() {
+        return jsonScalar.serialize(json, graphQLContext, Locale.ROOT);
+    }
+    
+    @Benchmark
+    public Object jsonParseValue() {
+        return jsonScalar.parseValue(json, graphQLContext, Locale.ROOT);
+    }
+}
@@ -2,11 +2,13 @@ package com.ipfix.graphql;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
 
 /**
- * Main application class for IPFIX GraphQL API
+ * Main application class for IPFIX GraphQL API. MongoDB auto-configuration is off: the client is only
+ * created for {@code ipfix.storage.layout=mongodb}, by {@link com.ipfix.graphql.config.MongoStoreConfig}.
  */
-@SpringBootApplication
+@SpringBootApplication(exclude = MongoAutoConfiguration.class)
 public class IpfixGraphQLApplication {
 
     public static void main(String[] args) {
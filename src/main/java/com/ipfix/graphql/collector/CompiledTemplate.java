@@ -0,0 +1,208 @@
+package com.ipfix.graphql.collector;
+
+import com.ipfix.graphql.model.IpfixRecord;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A template compiled once into flat arrays of field lengths, offsets and decoders.
+ * When every field has a fixed length the offsets are precomputed and records are
+ * decoded with absolute reads only; otherwise the offsets are resolved per record.
+ */
+public final class CompiledTemplate {
+
+    private final Template template;
+    private final int[] lengths;
+    private final int[] offsets;
+    private final FieldDecoder[] decoders;
+    private final FieldDecoder[] entryDecoders;
+    private final ValueReader[] entryReaders;
+    private final String[] names;
+    private final int fixedRecordLength;
+    private final int minimumRecordLength;
+    private final Map<String, String> definition;
+
+    private CompiledTemplate(Template template, Function<InformationElement, FieldDecoder> structuredDecoders) {
+        List<FieldSpecifier> fields = template.fields();
+        int count = fields.size();
+        this.template = template;
+        this.lengths = new int[count];
+        this.offsets = new int[count];
+        this.decoders = new FieldDecoder[count];
+        this.entryDecoders = new FieldDecoder[count];
+        this.entryReaders = new ValueReader[count];
+        this.names = new String[count];
+
+        Map<String, String> definition = new LinkedHashMap<>();
+        int offset = 0;
+        boolean fixed = true;
+        for (int i = 0; i < count; i++) {
+            FieldSpecifier field = fields.get(i);
+            InformationElement ie = field.informationElement();
+            lengths[i] = field.length();
+            offsets[i] = fixed ? offset : -1;
+            if (field.isVariableLength()) {
+                fixed = false;
+            } else {
+                offset += field.length();
+            }
+            names[i] = InformationElement.nameOf(field.enterpriseNumber(), field.elementId());
+            entryReaders[i] = FieldDecoders.entryReader(ie, field.length());
+            if (ie != null) {
+                decoders[i] = ie.isStructured()
+                        ? structuredDecoders.apply(ie)
+                        : FieldDecoders.forElement(ie, field.length());
+                if (!ie.isStructured() && ie.getEnterpriseNumber() == InformationElement.CERT_ENTERPRISE) {
+                    // YAF nests DPI and enterprise elements in sub-template lists
+                    entryDecoders[i] = decoders[i];
+                }
+            }
+            definition.put(names[i], ie != null ? ie.getDataType().getName() : IpfixDataType.OCTET_ARRAY.getName());
+        }
+        if (fixed && offset == 0) {
+            // Records would take no bytes, so a data set would never be exhausted
+            throw new IpfixDecodingException("Template " + template.templateId() + " has zero record length");
+        }
+        this.fixedRecordLength = fixed ? offset : -1;
+        this.minimumRecordLength = Math.max(1, template.minimumRecordLength());
+        this.definition = Collections.unmodifiableMap(definition);
+    }
+
+    /**
+     * Compiles a template; structured data fields (RFC 6313) get their decoders from {@code structuredDecoders}
+     *
+     * @throws IpfixDecodingException if the template's fields are all fixed-length and add up to zero octets
+     */
+    public static CompiledTemplate compile(Template template,
+                                           Function<InformationElement, FieldDecoder> structuredDecoders) {
+        return new CompiledTemplate(template, structuredDecoders);
+    }
+
+    public Template getTemplate() {
+        return template;
+    }
+
+    public int getTemplateId() {
+        return template.templateId();
+    }
+
+    public boolean isOptionsTemplate() {
+        return template.isOptionsTemplate();
+    }
+
+    public int getMinimumRecordLength() {
+        return minimumRecordLength;
+    }
+
+    /**
+     * Record length when all fields are fixed-length, -1 otherwise
+     */
+    public int getFixedRecordLength() {
+        return fixedRecordLength;
+    }
+
+    /**
+     * Field names and data types, shared by every sub-template list decoded with this template
+     */
+    public Map<String, String> getDefinition() {
+        return definition;
+    }
+
+    /**
+     * Decodes the record starting at {@code position} into {@code record}
+     *
+     * @return position of the next record
+     */
+    public int decodeRecord(ByteBuffer buf, int position, IpfixRecord record) {
+        if (fixedRecordLength >= 0) {
+            checkBounds(buf, position, fixedRecordLength);
+            for (int i = 0; i < decoders.length; i++) {
+                FieldDecoder decoder = decoders[i];
+                if (decoder != null) {
+                    decoder.decode(buf, position + offsets[i], lengths[i], record);
+                }
+            }
+            return position + fixedRecordLength;
+        }
+        int cursor = position;
+        for (int i = 0; i < decoders.length; i++) {
+            int length = lengths[i];
+            if (length == FieldSpecifier.VARIABLE_LENGTH) {
+                length = buf.get(cursor++) & 0xFF;
+                if (length == 255) {
+                    length = buf.getShort(cursor) & 0xFFFF;
+                    cursor += 2;
+                }
+            }
+            checkBounds(buf, cursor, length);
+            FieldDecoder decoder = decoders[i];
+            if (decoder != null) {
+                decoder.decode(buf, cursor, length, record);
+            }
+            cursor += length;
+        }
+        return cursor;
+    }
+
+    /**
+     * Decodes a sub-template list entry into named values; CERT elements are also applied to {@code record}
+     *
+     * @return position of the next entry
+     */
+    public int decodeEntry(ByteBuffer buf, int position, IpfixRecord record, Map<String, Object> entry) {
+        int cursor = position;
+        for (int i = 0; i < entryReaders.length; i++) {
+            int length = lengths[i];
+            if (length == FieldSpecifier.VARIABLE_LENGTH) {
+                length = buf.get(cursor++) & 0xFF;
+                if (length == 255) {
+                    length = buf.getShort(cursor) & 0xFFFF;
+                    cursor += 2;
+                }
+            }
+            checkBounds(buf, cursor, length);
+            entry.put(names[i], entryReaders[i].read(buf, cursor, length));
+            if (entryDecoders[i] != null) {
+                entryDecoders[i].decode(buf, cursor, length, record);
+            }
+            cursor += length;
+        }
+        return cursor;
+    }
+
+    /**
+     * Skips a record without decoding it, used for options template data
+     *
+     * @return position of the next record
+     */
+    public int skipRecord(ByteBuffer buf, int position) {
+        if (fixedRecordLength >= 0) {
+            checkBounds(buf, position, fixedRecordLength);
+            return position + fixedRecordLength;
+        }
+        int cursor = position;
+        for (int length : lengths) {
+            if (length == FieldSpecifier.VARIABLE_LENGTH) {
+                length = buf.get(cursor++) & 0xFF;
+                if (length == 255) {
+                    length = buf.getShort(cursor) & 0xFFFF;
+                    cursor += 2;
+                }
+            }
+            cursor += length;
+        }
+        checkBounds(buf, position, cursor - position);
+        return cursor;
+    }
+
+    private static void checkBounds(ByteBuffer buf, int position, int length) {
+        if (position + length > buf.limit()) {
+            throw new IpfixDecodingException("Record overruns set: " + length + " bytes at " + position);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.ipfix.graphql.collector;
+
+import com.ipfix.graphql.model.IpfixRecord;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes one template field at an absolute buffer offset straight into a record
+ */
+@FunctionalInterface
+public interface FieldDecoder {
+
+    void decode(ByteBuffer buf, int offset, int length, IpfixRecord record);
+}
@@ -0,0 +1,142 @@
+package com.ipfix.graphql.collector;
+
+import com.ipfix.graphql.repository.IpAddresses;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HexFormat;
+
+/**
+ * Factory of length-specialised {@link ValueReader}s and {@link FieldDecoder}s.
+ * The type and length dispatch happens once, when a template is compiled,
+ * instead of once per decoded field.
+ */
+public final class FieldDecoders {
+
+    private FieldDecoders() {
+    }
+
+    /**
+     * Decoder writing a non-structured element into the record it maps to
+     */
+    public static FieldDecoder forElement(InformationElement ie, int length) {
+        ValueReader reader = reader(ie.getDataType(), length);
+        return (buf, offset, fieldLength, record) -> ie.apply(record, reader.read(buf, offset, fieldLength));
+    }
+
+    /**
+     * Reader returning values suitable for sub-template list entries and basic list values:
+     * numbers, strings and ISO-8601 timestamps, with octet arrays rendered as hex
+     */
+    public static ValueReader entryReader(InformationElement ie, int length) {
+        if (ie == null || ie.isStructured()) {
+            return FieldDecoders::readHex;
+        }
+        ValueReader reader = reader(ie.getDataType(), length);
+        switch (ie.getDataType()) {
+            case OCTET_ARRAY:
+                return FieldDecoders::readHex;
+            case DATE_TIME_SECONDS:
+            case DATE_TIME_MILLISECONDS:
+            case DATE_TIME_MICROSECONDS:
+            case DATE_TIME_NANOSECONDS:
+                return (buf, offset, fieldLength) -> reader.read(buf, offset, fieldLength).toString();
+            default:
+                return reader;
+        }
+    }
+
+    public static ValueReader reader(IpfixDataType type, int length) {
+        switch (type) {
+            case UNSIGNED8:
+            case UNSIGNED16:
+            case UNSIGNED32:
+            case UNSIGNED64:
+                return unsignedReader(length);
+            case SIGNED8:
+            case SIGNED16:
+            case SIGNED32:
+            case SIGNED64:
+                return signedReader(length);
+            case STRING:
+                return FieldDecoders::readString;
+            case IPV4_ADDRESS:
+                return length == 4
+                        ? (buf, offset, l) -> IpAddresses.formatIPv4(buf.getInt(offset))
+                        : FieldDecoders::readAddress;
+            case IPV6_ADDRESS:
+                // RFC 5952 text even for IPv4-mapped addresses, which InetAddress would render as IPv4
+                return length == 16
+                        ? (buf, offset, l) -> IpAddresses.formatIPv6(buf.getLong(offset), buf.getLong(offset + 8))
+                        : FieldDecoders::readAddress;
+            case DATE_TIME_MILLISECONDS:
+                return length == 8
+                        ? (buf, offset, l) -> Instant.ofEpochMilli(buf.getLong(offset))
+                        : (buf, offset, l) -> Instant.ofEpochMilli(readUnsigned(buf, offset, l));
+            case DATE_TIME_SECONDS:
+                return (buf, offset, l) -> Instant.ofEpochSecond(readUnsigned(buf, offset, l));
+            default:
+                // Rare types keep the generic relative decoder
+                return (buf, offset, l) -> type.decode(buf.slice(offset, l), l);
+        }
+    }
+
+    private static ValueReader unsignedReader(int length) {
+        switch (length) {
+            case 1: return (buf, offset, l) -> (long) (buf.get(offset) & 0xFF);
+            case 2: return (buf, offset, l) -> (long) (buf.getShort(offset) & 0xFFFF);
+            case 4: return (buf, offset, l) -> buf.getInt(offset) & 0xFFFFFFFFL;
+            case 8: return (buf, offset, l) -> buf.getLong(offset);
+            default: return (buf, offset, l) -> readUnsigned(buf, offset, l);
+        }
+    }
+
+    private static ValueReader signedReader(int length) {
+        switch (length) {
+            case 1: return (buf, offset, l) -> (long) buf.get(offset);
+            case 2: return (buf, offset, l) -> (long) buf.getShort(offset);
+            case 4: return (buf, offset, l) -> (long) buf.getInt(offset);
+            case 8: return (buf, offset, l) -> buf.getLong(offset);
+            default: return (buf, offset, l) -> {
+                int shift = 64 - l * 8;
+                return (readUnsigned(buf, offset, l) << shift) >> shift;
+            };
+        }
+    }
+
+    static long readUnsigned(ByteBuffer buf, int offset, int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = (value << 8) | (buf.get(offset + i) & 0xFF);
+        }
+        return value;
+    }
+
+    private static Object readString(ByteBuffer buf, int offset, int length) {
+        if (buf.hasArray()) {
+            return new String(buf.array(), buf.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        buf.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Object readHex(ByteBuffer buf, int offset, int length) {
+        byte[] bytes = new byte[length];
+        buf.get(offset, bytes);
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    private static Object readAddress(ByteBuffer buf, int offset, int length) {
+        byte[] bytes = new byte[length];
+        buf.get(offset, bytes);
+        try {
+            return InetAddress.getByAddress(bytes).getHostAddress();
+        } catch (UnknownHostException e) {
+            throw new IpfixDecodingException("Invalid address length " + length, e);
+        }
+    }
+}
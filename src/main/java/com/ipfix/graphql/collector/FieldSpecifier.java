@@ -0,0 +1,21 @@
+package com.ipfix.graphql.collector;
+
+/**
+ * Field specifier of a template record (RFC 7011 section 3.2)
+ *
+ * @param elementId        information element identifier without the enterprise bit
+ * @param length           field length in octets, or {@link #VARIABLE_LENGTH}
+ * @param enterpriseNumber private enterprise number, 0 for IANA elements
+ */
+public record FieldSpecifier(int elementId, int length, long enterpriseNumber) {
+
+    public static final int VARIABLE_LENGTH = 65535;
+
+    public boolean isVariableLength() {
+        return length == VARIABLE_LENGTH;
+    }
+
+    public InformationElement informationElement() {
+        return InformationElement.lookup(enterpriseNumber, elementId);
+    }
+}
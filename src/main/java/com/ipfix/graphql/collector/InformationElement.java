@@ -0,0 +1,224 @@
+package com.ipfix.graphql.collector;
+
+import com.ipfix.graphql.model.BidirectionalFlowInfo;
+import com.ipfix.graphql.model.CertEnterpriseInfo;
+import com.ipfix.graphql.model.DpiInfo;
+import com.ipfix.graphql.model.IpfixRecord;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Information elements understood by the binary decoder and the {@link IpfixRecord} field each one fills.
+ * IANA elements use enterprise number 0, reverse elements the RFC 5103 enterprise number 29305
+ * and YAF / CERT NetSA elements (including YAF DPI) the CERT enterprise number 6871.
+ */
+public enum InformationElement {
+
+    // Standard IANA IPFIX Info Elements
+    OCTET_DELTA_COUNT(0, 1, "octetDeltaCount", IpfixDataType.UNSIGNED64, (r, v) -> r.setOctetDeltaCount(asLong(v))),
+    PACKET_DELTA_COUNT(0, 2, "packetDeltaCount", IpfixDataType.UNSIGNED64, (r, v) -> r.setPacketDeltaCount(asLong(v))),
+    DELTA_FLOW_COUNT(0, 3, "deltaFlowCount", IpfixDataType.UNSIGNED64, (r, v) -> r.setDeltaFlowCount(asLong(v))),
+    PROTOCOL_IDENTIFIER(0, 4, "protocolIdentifier", IpfixDataType.UNSIGNED8, (r, v) -> r.setProtocolIdentifier(asInt(v))),
+    IP_CLASS_OF_SERVICE(0, 5, "ipClassOfService", IpfixDataType.UNSIGNED8, (r, v) -> r.setIpClassOfService(asInt(v))),
+    TCP_CONTROL_BITS(0, 6, "tcpControlBits", IpfixDataType.UNSIGNED16, (r, v) -> r.setTcpControlBits(asInt(v))),
+    SOURCE_TRANSPORT_PORT(0, 7, "sourceTransportPort", IpfixDataType.UNSIGNED16, (r, v) -> r.setSourceTransportPort(asInt(v))),
+    SOURCE_IPV4_ADDRESS(0, 8, "sourceIPv4Address", IpfixDataType.IPV4_ADDRESS, (r, v) -> r.setSourceIPv4Address((String) v)),
+    SOURCE_IPV4_PREFIX_LENGTH(0, 9, "sourceIPv4PrefixLength", IpfixDataType.UNSIGNED8, (r, v) -> r.setSourceIPv4PrefixLength(asInt(v))),
+    INGRESS_INTERFACE(0, 10, "ingressInterface", IpfixDataType.UNSIGNED32, (r, v) -> r.setIngressInterface(asInt(v))),
+    DESTINATION_TRANSPORT_PORT(0, 11, "destinationTransportPort", IpfixDataType.UNSIGNED16, (r, v) -> r.setDestinationTransportPort(asInt(v))),
+    DESTINATION_IPV4_ADDRESS(0, 12, "destinationIPv4Address", IpfixDataType.IPV4_ADDRESS, (r, v) -> r.setDestinationIPv4Address((String) v)),
+    DESTINATION_IPV4_PREFIX_LENGTH(0, 13, "destinationIPv4PrefixLength", IpfixDataType.UNSIGNED8, (r, v) -> r.setDestinationIPv4PrefixLength(asInt(v))),
+    EGRESS_INTERFACE(0, 14, "egressInterface", IpfixDataType.UNSIGNED32, (r, v) -> r.setEgressInterface(asInt(v))),
+    IP_NEXT_HOP_IPV4_ADDRESS(0, 15, "ipNextHopIPv4Address", IpfixDataType.IPV4_ADDRESS, (r, v) -> r.setIpNextHopIPv4Address((String) v)),
+    FLOW_END_SYS_UP_TIME(0, 21, "flowEndSysUpTime", IpfixDataType.UNSIGNED32, (r, v) -> r.setFlowEndSysUpTime(asLong(v))),
+    FLOW_START_SYS_UP_TIME(0, 22, "flowStartSysUpTime", IpfixDataType.UNSIGNED32, (r, v) -> r.setFlowStartSysUpTime(asLong(v))),
+    SOURCE_IPV6_ADDRESS(0, 27, "sourceIPv6Address", IpfixDataType.IPV6_ADDRESS, (r, v) -> r.setSourceIPv6Address((String) v)),
+    DESTINATION_IPV6_ADDRESS(0, 28, "destinationIPv6Address", IpfixDataType.IPV6_ADDRESS, (r, v) -> r.setDestinationIPv6Address((String) v)),
+    SOURCE_IPV6_PREFIX_LENGTH(0, 29, "sourceIPv6PrefixLength", IpfixDataType.UNSIGNED8, (r, v) -> r.setSourceIPv6PrefixLength(asInt(v))),
+    DESTINATION_IPV6_PREFIX_LENGTH(0, 30, "destinationIPv6PrefixLength", IpfixDataType.UNSIGNED8, (r, v) -> r.setDestinationIPv6PrefixLength(asInt(v))),
+    SOURCE_MAC_ADDRESS(0, 56, "sourceMacAddress", IpfixDataType.MAC_ADDRESS, (r, v) -> cert(r).setSourceMacAddress((String) v)),
+    VLAN_ID(0, 58, "vlanId", IpfixDataType.UNSIGNED16, (r, v) -> cert(r).setVlanId(asInt(v))),
+    FLOW_DIRECTION(0, 61, "flowDirection", IpfixDataType.UNSIGNED8, (r, v) -> biflow(r).setFlowDirection(asInt(v))),
+    MPLS_TOP_LABEL_STACK_SECTION(0, 70, "mplsTopLabelStackSection", IpfixDataType.UNSIGNED32, (r, v) -> r.setMplsTopLabelStackSection(asInt(v))),
+    MPLS_LABEL_STACK_SECTION2(0, 71, "mplsLabelStackSection2", IpfixDataType.UNSIGNED32, (r, v) -> r.setMplsLabelStackSection2(asInt(v))),
+    MPLS_LABEL_STACK_SECTION3(0, 72, "mplsLabelStackSection3", IpfixDataType.UNSIGNED32, (r, v) -> r.setMplsLabelStackSection3(asInt(v))),
+    DESTINATION_MAC_ADDRESS(0, 80, "destinationMacAddress", IpfixDataType.MAC_ADDRESS, (r, v) -> cert(r).setDestinationMacAddress((String) v)),
+    APPLICATION_DESCRIPTION(0, 94, "applicationDescription", IpfixDataType.STRING, (r, v) -> r.setApplicationDescription((String) v)),
+    APPLICATION_ID(0, 95, "applicationId", IpfixDataType.UNSIGNED32, (r, v) -> r.setApplicationId(asInt(v))),
+    APPLICATION_NAME(0, 96, "applicationName", IpfixDataType.STRING, (r, v) -> r.setApplicationName((String) v)),
+    EXPORTER_IPV4_ADDRESS(0, 130, "exporterIPv4Address", IpfixDataType.IPV4_ADDRESS, (r, v) -> r.setExporterIPv4Address((String) v)),
+    EXPORTER_IPV6_ADDRESS(0, 131, "exporterIPv6Address", IpfixDataType.IPV6_ADDRESS, (r, v) -> r.setExporterIPv6Address((String) v)),
+    FLOW_END_REASON(0, 136, "flowEndReason", IpfixDataType.UNSIGNED8, (r, v) -> biflow(r).setFlowEndReason(String.valueOf(v))),
+    OBSERVATION_DOMAIN_ID(0, 149, "observationDomainId", IpfixDataType.UNSIGNED32, (r, v) -> r.setObservationDomainId(asInt(v))),
+    FLOW_START_MILLISECONDS(0, 152, "flowStartMilliseconds", IpfixDataType.DATE_TIME_MILLISECONDS, (r, v) -> r.setFlowStartMilliseconds((Instant) v)),
+    FLOW_END_MILLISECONDS(0, 153, "flowEndMilliseconds", IpfixDataType.DATE_TIME_MILLISECONDS, (r, v) -> r.setFlowEndMilliseconds((Instant) v)),
+    FLOW_DURATION_MILLISECONDS(0, 161, "flowDurationMilliseconds", IpfixDataType.UNSIGNED32, (r, v) -> biflow(r).setFlowDurationMilliseconds(asLong(v))),
+    FLOW_DURATION_MICROSECONDS(0, 162, "flowDurationMicroseconds", IpfixDataType.UNSIGNED32, (r, v) -> biflow(r).setFlowDurationMicroseconds(asLong(v))),
+    MINIMUM_IP_TOTAL_LENGTH(0, 25, "minimumIpTotalLength", IpfixDataType.UNSIGNED64, (r, v) -> biflow(r).setMinimumIpTotalLength(asLong(v))),
+    MAXIMUM_IP_TOTAL_LENGTH(0, 26, "maximumIpTotalLength", IpfixDataType.UNSIGNED64, (r, v) -> biflow(r).setMaximumIpTotalLength(asLong(v))),
+    MINIMUM_TTL(0, 52, "minimumTTL", IpfixDataType.UNSIGNED8, (r, v) -> biflow(r).setMinimumTTL(asInt(v))),
+    MAXIMUM_TTL(0, 53, "maximumTTL", IpfixDataType.UNSIGNED8, (r, v) -> biflow(r).setMaximumTTL(asInt(v))),
+    BIFLOW_DIRECTION(0, 239, "biflowDirection", IpfixDataType.UNSIGNED8, (r, v) -> biflow(r).setBiflowDirection(String.valueOf(v))),
+
+    // Data structures (RFC 6313), decoded by the message decoder itself
+    BASIC_LIST(0, 291, "basicList", IpfixDataType.BASIC_LIST, null),
+    SUB_TEMPLATE_LIST(0, 292, "subTemplateList", IpfixDataType.SUB_TEMPLATE_LIST, null),
+    SUB_TEMPLATE_MULTI_LIST(0, 293, "subTemplateMultiList", IpfixDataType.SUB_TEMPLATE_MULTI_LIST, null),
+
+    // Reverse Information Elements (RFC 5103)
+    REVERSE_OCTET_DELTA_COUNT(29305, 1, "reverseOctetDeltaCount", IpfixDataType.UNSIGNED64, (r, v) -> biflow(r).setReverseOctetDeltaCount(asLong(v))),
+    REVERSE_PACKET_DELTA_COUNT(29305, 2, "reversePacketDeltaCount", IpfixDataType.UNSIGNED64, (r, v) -> biflow(r).setReversePacketDeltaCount(asLong(v))),
+    REVERSE_TCP_CONTROL_BITS(29305, 6, "reverseTcpControlBits", IpfixDataType.UNSIGNED16, (r, v) -> biflow(r).setReverseTcpControlBits(asInt(v))),
+    REVERSE_MINIMUM_IP_TOTAL_LENGTH(29305, 25, "reverseMinimumIpTotalLength", IpfixDataType.UNSIGNED64, (r, v) -> biflow(r).setReverseMinimumIpTotalLength(asLong(v))),
+    REVERSE_MAXIMUM_IP_TOTAL_LENGTH(29305, 26, "reverseMaximumIpTotalLength", IpfixDataType.UNSIGNED64, (r, v) -> biflow(r).setReverseMaximumIpTotalLength(asLong(v))),
+    REVERSE_MINIMUM_TTL(29305, 52, "reverseMinimumTTL", IpfixDataType.UNSIGNED8, (r, v) -> biflow(r).setReverseMinimumTTL(asInt(v))),
+    REVERSE_MAXIMUM_TTL(29305, 53, "reverseMaximumTTL", IpfixDataType.UNSIGNED8, (r, v) -> biflow(r).setReverseMaximumTTL(asInt(v))),
+    REVERSE_VLAN_ID(29305, 58, "reverseVlanId", IpfixDataType.UNSIGNED16, (r, v) -> cert(r).setReverseVlanId(asInt(v))),
+    REVERSE_FLOW_START_MILLISECONDS(29305, 152, "reverseFlowStartMilliseconds", IpfixDataType.DATE_TIME_MILLISECONDS, (r, v) -> biflow(r).setReverseFlowStartMilliseconds((Instant) v)),
+    REVERSE_FLOW_END_MILLISECONDS(29305, 153, "reverseFlowEndMilliseconds", IpfixDataType.DATE_TIME_MILLISECONDS, (r, v) -> biflow(r).setReverseFlowEndMilliseconds((Instant) v)),
+
+    // CERT NetSA / YAF elements
+    INITIAL_TCP_FLAGS(6871, 14, "initialTCPFlags", IpfixDataType.UNSIGNED8, (r, v) -> cert(r).setInitialTCPFlags(String.valueOf(v))),
+    UNION_TCP_FLAGS(6871, 15, "unionTCPFlags", IpfixDataType.UNSIGNED8, (r, v) -> cert(r).setUnionTCPFlags(String.valueOf(v))),
+    PAYLOAD(6871, 18, "payload", IpfixDataType.OCTET_ARRAY, (r, v) -> {
+        cert(r).setPayloadContent(HexFormat.of().formatHex((byte[]) v));
+        cert(r).setPayloadLength(((byte[]) v).length);
+    }),
+    REVERSE_FLOW_DELTA_MILLISECONDS(6871, 21, "reverseFlowDeltaMilliseconds", IpfixDataType.UNSIGNED32, (r, v) -> cert(r).setReverseFlowDeltaMilliseconds(asLong(v))),
+    SILK_APP_LABEL(6871, 33, "silkAppLabel", IpfixDataType.UNSIGNED16, (r, v) -> cert(r).setSilkAppLabel(asInt(v))),
+    PAYLOAD_ENTROPY(6871, 35, "payloadEntropy", IpfixDataType.UNSIGNED8, (r, v) -> cert(r).setPayloadEntropy(String.valueOf(v))),
+    OS_NAME(6871, 36, "osName", IpfixDataType.STRING, (r, v) -> cert(r).setOsName((String) v)),
+    OS_VERSION(6871, 37, "osVersion", IpfixDataType.STRING, (r, v) -> cert(r).setOsVersion((String) v)),
+    FLOW_ATTRIBUTES(6871, 40, "flowAttributes", IpfixDataType.UNSIGNED16, (r, v) -> cert(r).setFlowAttributes(String.valueOf(v))),
+    FLOW_KEY_HASH(6871, 106, "flowKeyHash", IpfixDataType.UNSIGNED32, (r, v) -> cert(r).setFlowKeyHash(asInt(v))),
+    OS_FINGERPRINT(6871, 107, "osFingerPrint", IpfixDataType.STRING, (r, v) -> cert(r).setOsFingerprint((String) v)),
+    REVERSE_PAYLOAD(6871, 18 | 0x4000, "reversePayload", IpfixDataType.OCTET_ARRAY, (r, v) -> {
+        cert(r).setReversePayloadContent(HexFormat.of().formatHex((byte[]) v));
+        cert(r).setReversePayloadLength(((byte[]) v).length);
+    }),
+
+    // YAF Deep Packet Inspection elements
+    HTTP_USER_AGENT(6871, 111, "httpUserAgent", IpfixDataType.STRING, (r, v) -> dpi(r).setHttpUserAgent((String) v)),
+    HTTP_GET(6871, 112, "httpGet", IpfixDataType.STRING, (r, v) -> dpi(r).setHttpRequestTarget((String) v)),
+    HTTP_HOST(6871, 117, "httpHost", IpfixDataType.STRING, (r, v) -> dpi(r).setHttpRequestHost((String) v)),
+    HTTP_RESPONSE(6871, 123, "httpResponse", IpfixDataType.STRING, (r, v) -> dpi(r).setHttpStatusCode(parseStatusCode((String) v))),
+    DNS_QR_TYPE(6871, 175, "dnsQRType", IpfixDataType.UNSIGNED16, (r, v) -> dpi(r).setDnsQueryType(asInt(v))),
+    DNS_NX_DOMAIN(6871, 177, "dnsNXDomain", IpfixDataType.UNSIGNED8, (r, v) -> dpi(r).setDnsResponseCode(asInt(v))),
+    DNS_Q_NAME(6871, 179, "dnsQName", IpfixDataType.STRING, (r, v) -> dpi(r).setDnsQueryName((String) v)),
+    SSL_CIPHER(6871, 185, "sslCipher", IpfixDataType.UNSIGNED32, (r, v) -> dpi(r).setSslCipherSuite(String.valueOf(v))),
+    SSL_CLIENT_VERSION(6871, 186, "sslClientVersion", IpfixDataType.UNSIGNED8, (r, v) -> dpi(r).setSslVersion(asInt(v))),
+    SSL_SERVER_NAME(6871, 294, "sslServerName", IpfixDataType.STRING, (r, v) -> dpi(r).setSslServerName((String) v));
+
+    public static final long IANA_ENTERPRISE = 0L;
+    public static final long REVERSE_ENTERPRISE = 29305L;
+    public static final long CERT_ENTERPRISE = 6871L;
+
+    private static final Map<Long, InformationElement> BY_KEY = new HashMap<>();
+
+    static {
+        for (InformationElement ie : values()) {
+            BY_KEY.put(key(ie.enterpriseNumber, ie.elementId), ie);
+        }
+    }
+
+    private final long enterpriseNumber;
+    private final int elementId;
+    private final String elementName;
+    private final IpfixDataType dataType;
+    private final BiConsumer<IpfixRecord, Object> target;
+
+    InformationElement(long enterpriseNumber, int elementId, String elementName,
+                       IpfixDataType dataType, BiConsumer<IpfixRecord, Object> target) {
+        this.enterpriseNumber = enterpriseNumber;
+        this.elementId = elementId;
+        this.elementName = elementName;
+        this.dataType = dataType;
+        this.target = target;
+    }
+
+    public static InformationElement lookup(long enterpriseNumber, int elementId) {
+        return BY_KEY.get(key(enterpriseNumber, elementId));
+    }
+
+    /**
+     * Name used for elements that are not in this table, e.g. in sub-template list entries
+     */
+    public static String nameOf(long enterpriseNumber, int elementId) {
+        InformationElement ie = lookup(enterpriseNumber, elementId);
+        if (ie != null) {
+            return ie.elementName;
+        }
+        return enterpriseNumber == 0 ? "ie" + elementId : "ie" + enterpriseNumber + "/" + elementId;
+    }
+
+    public long getEnterpriseNumber() {
+        return enterpriseNumber;
+    }
+
+    public int getElementId() {
+        return elementId;
+    }
+
+    public String getElementName() {
+        return elementName;
+    }
+
+    public IpfixDataType getDataType() {
+        return dataType;
+    }
+
+    public boolean isStructured() {
+        return target == null;
+    }
+
+    public void apply(IpfixRecord record, Object value) {
+        if (target != null && value != null) {
+            target.accept(record, value);
+        }
+    }
+
+    private static long key(long enterpriseNumber, int elementId) {
+        return (enterpriseNumber << 16) | (elementId & 0xFFFF);
+    }
+
+    private static Long asLong(Object value) {
+        return ((Number) value).longValue();
+    }
+
+    private static Integer asInt(Object value) {
+        return ((Number) value).intValue();
+    }
+
+    private static Integer parseStatusCode(String response) {
+        int end = 0;
+        while (end < response.length() && Character.isDigit(response.charAt(end))) {
+            end++;
+        }
+        return end == 0 ? null : Integer.valueOf(response.substring(0, end));
+    }
+
+    private static DpiInfo dpi(IpfixRecord record) {
+        if (record.getDpiInfo() == null) {
+            record.setDpiInfo(new DpiInfo());
+        }
+        return record.getDpiInfo();
+    }
+
+    private static BidirectionalFlowInfo biflow(IpfixRecord record) {
+        if (record.getBidirectionalFlowInfo() == null) {
+            record.setBidirectionalFlowInfo(new BidirectionalFlowInfo());
+        }
+        return record.getBidirectionalFlowInfo();
+    }
+
+    private static CertEnterpriseInfo cert(IpfixRecord record) {
+        if (record.getCertInfo() == null) {
+            record.setCertInfo(new CertEnterpriseInfo());
+        }
+        return record.getCertInfo();
+    }
+}
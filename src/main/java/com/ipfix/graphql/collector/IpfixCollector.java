@@ -0,0 +1,256 @@
+package com.ipfix.graphql.collector;
+
+import com.ipfix.graphql.config.IpfixCollectorProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * NIO based IPFIX collector listening on UDP and TCP (RFC 7011 section 10).
+ * A single selector thread receives messages, decodes them and writes the
+ * resulting records to the repository in batches.
+ */
+@Slf4j
+public class IpfixCollector implements SmartLifecycle {
+
+    private static final int MAX_MESSAGE_LENGTH = 65535;
+    private static final long SELECT_TIMEOUT_MILLIS = 50;
+
+    private final IpfixCollectorProperties properties;
+    private final IpfixMessageDecoder decoder;
+    private final IpfixRecordBatchWriter writer;
+
+    private volatile boolean running;
+    private Thread selectorThread;
+    private Selector selector;
+    private DatagramChannel udpChannel;
+    private ServerSocketChannel tcpChannel;
+
+    private volatile long receivedMessages;
+    private volatile long decodedRecords;
+    private volatile long malformedMessages;
+
+    public IpfixCollector(IpfixCollectorProperties properties, IpfixMessageDecoder decoder,
+                          IpfixRecordBatchWriter writer) {
+        this.properties = properties;
+        this.decoder = decoder;
+        this.writer = writer;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        try {
+            selector = Selector.open();
+            InetSocketAddress address = new InetSocketAddress(properties.getBindAddress(), properties.getPort());
+            if (properties.isUdpEnabled()) {
+                udpChannel = DatagramChannel.open();
+                udpChannel.setOption(StandardSocketOptions.SO_RCVBUF, properties.getReceiveBufferSize());
+                udpChannel.bind(address);
+                udpChannel.configureBlocking(false);
+                udpChannel.register(selector, SelectionKey.OP_READ);
+            }
+            if (properties.isTcpEnabled()) {
+                tcpChannel = ServerSocketChannel.open();
+                tcpChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                tcpChannel.bind(address);
+                tcpChannel.configureBlocking(false);
+                tcpChannel.register(selector, SelectionKey.OP_ACCEPT);
+            }
+        } catch (IOException e) {
+            closeQuietly();
+            throw new IllegalStateException("Cannot bind IPFIX collector to port " + properties.getPort(), e);
+        }
+        running = true;
+        selectorThread = new Thread(this::run, "ipfix-collector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        log.info("IPFIX collector listening on {} (udp port {}, tcp port {})",
+                properties.getBindAddress(), getUdpPort(), getTcpPort());
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeQuietly();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getUdpPort() {
+        return localPort(udpChannel == null ? null : udpChannel.socket().getLocalSocketAddress());
+    }
+
+    public int getTcpPort() {
+        return localPort(tcpChannel == null ? null : tcpChannel.socket().getLocalSocketAddress());
+    }
+
+    public long getReceivedMessages() {
+        return receivedMessages;
+    }
+
+    public long getDecodedRecords() {
+        return decodedRecords;
+    }
+
+    public long getMalformedMessages() {
+        return malformedMessages;
+    }
+
+    /**
+     * Decoded records the ingest pipeline had no room for
+     */
+    public long getDroppedRecords() {
+        return writer.getDroppedRecords();
+    }
+
+    private void run() {
+        ByteBuffer datagram = ByteBuffer.allocate(MAX_MESSAGE_LENGTH);
+        while (running) {
+            try {
+                selector.select(SELECT_TIMEOUT_MILLIS);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.channel() == udpChannel) {
+                        receiveDatagrams(datagram);
+                    } else {
+                        readStream(key);
+                    }
+                }
+                writer.flushIfDue();
+            } catch (IOException | RuntimeException e) {
+                log.warn("IPFIX collector loop error", e);
+            }
+        }
+        writer.flush();
+    }
+
+    private void receiveDatagrams(ByteBuffer datagram) throws IOException {
+        SocketAddress source;
+        while ((source = udpChannel.receive(datagram.clear())) != null) {
+            datagram.flip();
+            decode(datagram, hostOf(source));
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = tcpChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ,
+                    new TcpSession(hostOf(channel.getRemoteAddress()), ByteBuffer.allocate(2 * MAX_MESSAGE_LENGTH)));
+        }
+    }
+
+    /**
+     * Reads from a TCP exporter and decodes every complete message in the stream buffer
+     */
+    private void readStream(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        TcpSession session = (TcpSession) key.attachment();
+        ByteBuffer buffer = session.buffer();
+        int read;
+        try {
+            read = channel.read(buffer);
+        } catch (IOException e) {
+            read = -1;
+        }
+        buffer.flip();
+        while (buffer.remaining() >= 4) {
+            int length = buffer.getShort(buffer.position() + 2) & 0xFFFF;
+            if (length < IpfixMessageDecoder.MESSAGE_HEADER_LENGTH) {
+                log.warn("Closing IPFIX session from {}: invalid message length {}", session.exporter(), length);
+                malformedMessages++;
+                key.cancel();
+                channel.close();
+                return;
+            }
+            if (buffer.remaining() < length) {
+                break;
+            }
+            decode(buffer.slice(buffer.position(), length), session.exporter());
+            buffer.position(buffer.position() + length);
+        }
+        buffer.compact();
+        if (read < 0) {
+            key.cancel();
+            channel.close();
+        }
+    }
+
+    private void decode(ByteBuffer message, String exporter) {
+        receivedMessages++;
+        try {
+            decodedRecords += decoder.decode(message, exporter, writer);
+        } catch (IpfixDecodingException e) {
+            malformedMessages++;
+            log.debug("Dropping malformed IPFIX message from {}: {}", exporter, e.getMessage());
+        }
+    }
+
+    private void closeQuietly() {
+        if (selector != null) {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key.channel());
+            }
+        }
+        closeQuietly(udpChannel);
+        closeQuietly(tcpChannel);
+        closeQuietly(selector);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            log.debug("Error closing collector channel", e);
+        }
+    }
+
+    private static String hostOf(SocketAddress address) {
+        return ((InetSocketAddress) address).getAddress().getHostAddress();
+    }
+
+    private static int localPort(SocketAddress address) {
+        return address == null ? -1 : ((InetSocketAddress) address).getPort();
+    }
+
+    private record TcpSession(String exporter, ByteBuffer buffer) {
+    }
+}
@@ -0,0 +1,168 @@
+package com.ipfix.graphql.collector;
+
+import com.ipfix.graphql.repository.IpAddresses;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * IPFIX abstract data types (RFC 7011 section 6.1) and their wire decoding.
+ * Unsigned and signed integers honour reduced-size encoding (RFC 7011 section 6.2).
+ */
+public enum IpfixDataType {
+
+    UNSIGNED8, UNSIGNED16, UNSIGNED32, UNSIGNED64,
+    SIGNED8, SIGNED16, SIGNED32, SIGNED64,
+    FLOAT32, FLOAT64,
+    BOOLEAN,
+    MAC_ADDRESS,
+    OCTET_ARRAY,
+    STRING,
+    DATE_TIME_SECONDS,
+    DATE_TIME_MILLISECONDS,
+    DATE_TIME_MICROSECONDS,
+    DATE_TIME_NANOSECONDS,
+    IPV4_ADDRESS,
+    IPV6_ADDRESS,
+    BASIC_LIST,
+    SUB_TEMPLATE_LIST,
+    SUB_TEMPLATE_MULTI_LIST;
+
+    /** Seconds between the NTP epoch (1900) and the Unix epoch (1970) */
+    private static final long NTP_EPOCH_OFFSET = 2_208_988_800L;
+
+    /**
+     * Registry name of the type, e.g. {@code ipv4Address} or {@code dateTimeMilliseconds}
+     */
+    public String getName() {
+        StringBuilder sb = new StringBuilder();
+        for (String part : name().split("_")) {
+            if (sb.length() == 0) {
+                sb.append(part.toLowerCase());
+            } else {
+                sb.append(part.charAt(0)).append(part.substring(1).toLowerCase());
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Decodes a value of this type occupying {@code length} bytes at the buffer position.
+     * Structured data types are handled by the message decoder and are returned as raw bytes here.
+     */
+    public Object decode(ByteBuffer buf, int length) {
+        switch (this) {
+            case UNSIGNED8:
+            case UNSIGNED16:
+            case UNSIGNED32:
+            case UNSIGNED64:
+                return readUnsigned(buf, length);
+            case SIGNED8:
+            case SIGNED16:
+            case SIGNED32:
+            case SIGNED64:
+                return readSigned(buf, length);
+            case FLOAT32:
+            case FLOAT64:
+                return length == 4 ? (double) buf.getFloat() : buf.getDouble();
+            case BOOLEAN:
+                return buf.get() == 1;
+            case MAC_ADDRESS:
+                return readMacAddress(buf, length);
+            case STRING:
+                return readString(buf, length);
+            case DATE_TIME_SECONDS:
+                return Instant.ofEpochSecond(readUnsigned(buf, length));
+            case DATE_TIME_MILLISECONDS:
+                return Instant.ofEpochMilli(readUnsigned(buf, length));
+            case DATE_TIME_MICROSECONDS:
+            case DATE_TIME_NANOSECONDS:
+                return readNtpTimestamp(buf, this == DATE_TIME_MICROSECONDS);
+            case IPV4_ADDRESS:
+            case IPV6_ADDRESS:
+                return readAddress(buf, length);
+            default:
+                return readOctets(buf, length);
+        }
+    }
+
+    public static long readUnsigned(ByteBuffer buf, int length) {
+        switch (length) {
+            case 1: return buf.get() & 0xFFL;
+            case 2: return buf.getShort() & 0xFFFFL;
+            case 4: return buf.getInt() & 0xFFFFFFFFL;
+            case 8: return buf.getLong();
+            default:
+                long value = 0;
+                for (int i = 0; i < length; i++) {
+                    value = (value << 8) | (buf.get() & 0xFF);
+                }
+                return value;
+        }
+    }
+
+    public static long readSigned(ByteBuffer buf, int length) {
+        switch (length) {
+            case 1: return buf.get();
+            case 2: return buf.getShort();
+            case 4: return buf.getInt();
+            case 8: return buf.getLong();
+            default:
+                long value = readUnsigned(buf, length);
+                int shift = 64 - length * 8;
+                return (value << shift) >> shift;
+        }
+    }
+
+    public static String readString(ByteBuffer buf, int length) {
+        if (buf.hasArray()) {
+            String value = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+            buf.position(buf.position() + length);
+            return value;
+        }
+        return new String(readOctets(buf, length), StandardCharsets.UTF_8);
+    }
+
+    public static byte[] readOctets(ByteBuffer buf, int length) {
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return bytes;
+    }
+
+    public static String readAddress(ByteBuffer buf, int length) {
+        if (length == 16) {
+            return IpAddresses.formatIPv6(buf.getLong(), buf.getLong());
+        }
+        try {
+            return InetAddress.getByAddress(readOctets(buf, length)).getHostAddress();
+        } catch (UnknownHostException e) {
+            throw new IpfixDecodingException("Invalid address length " + length, e);
+        }
+    }
+
+    public static String readMacAddress(ByteBuffer buf, int length) {
+        StringBuilder sb = new StringBuilder(length * 3);
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                sb.append(':');
+            }
+            int b = buf.get() & 0xFF;
+            sb.append(Character.forDigit(b >> 4, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static Instant readNtpTimestamp(ByteBuffer buf, boolean microseconds) {
+        long seconds = (buf.getInt() & 0xFFFFFFFFL) - NTP_EPOCH_OFFSET;
+        long fraction = buf.getInt() & 0xFFFFFFFFL;
+        if (microseconds) {
+            // RFC 7011 section 6.1.9: the 11 lowest bits of the fraction are ignored
+            fraction &= 0xFFFFF800L;
+        }
+        long nanos = (fraction * 1_000_000_000L) >>> 32;
+        return Instant.ofEpochSecond(seconds, nanos);
+    }
+}
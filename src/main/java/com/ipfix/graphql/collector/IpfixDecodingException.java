@@ -0,0 +1,15 @@
+package com.ipfix.graphql.collector;
+
+/**
+ * Thrown when an IPFIX message, set or record cannot be decoded
+ */
+public class IpfixDecodingException extends RuntimeException {
+
+    public IpfixDecodingException(String message) {
+        super(message);
+    }
+
+    public IpfixDecodingException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
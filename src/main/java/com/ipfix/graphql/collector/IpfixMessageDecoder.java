@@ -0,0 +1,318 @@
+package com.ipfix.graphql.collector;
+
+import com.ipfix.graphql.model.BasicListElement;
+import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.model.SubTemplateListElement;
+import com.ipfix.graphql.model.SubTemplateMultiListElement;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Decodes IPFIX messages (RFC 7011) into {@link IpfixRecord}s.
+ * Templates are compiled into the {@link TemplateRegistry} when announced;
+ * data sets whose template has not been seen yet are counted and skipped,
+ * options template data is skipped without decoding.
+ */
+public class IpfixMessageDecoder {
+
+    public static final int VERSION = 10;
+    public static final int MESSAGE_HEADER_LENGTH = 16;
+    public static final int SET_HEADER_LENGTH = 4;
+    public static final int TEMPLATE_SET_ID = 2;
+    public static final int OPTIONS_TEMPLATE_SET_ID = 3;
+    public static final int MIN_DATA_SET_ID = 256;
+
+    private static final String[] SEMANTICS = {"noneOf", "exactlyOneOf", "oneOrMoreOf", "allOf", "ordered"};
+
+    public static final int DEFAULT_MAX_TEMPLATES = 4096;
+
+    private final TemplateRegistry registry;
+
+    private long skippedDataSets;
+
+    public IpfixMessageDecoder() {
+        this(new TemplateRegistry(DEFAULT_MAX_TEMPLATES));
+    }
+
+    public IpfixMessageDecoder(TemplateRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Decodes one complete IPFIX message starting at the buffer position and advances past it.
+     *
+     * @param message         buffer holding at least one whole message
+     * @param exporterAddress transport source of the message, used to scope templates
+     * @param sink            receives every decoded flow record
+     * @return number of flow records decoded
+     */
+    public int decode(ByteBuffer message, String exporterAddress, Consumer<IpfixRecord> sink) {
+        int start = message.position();
+        if (message.remaining() < MESSAGE_HEADER_LENGTH) {
+            throw new IpfixDecodingException("Truncated message header: " + message.remaining() + " bytes");
+        }
+        int version = message.getShort() & 0xFFFF;
+        if (version != VERSION) {
+            throw new IpfixDecodingException("Unsupported IPFIX version " + version);
+        }
+        int length = message.getShort() & 0xFFFF;
+        if (length < MESSAGE_HEADER_LENGTH || start + length > message.limit()) {
+            throw new IpfixDecodingException("Invalid message length " + length);
+        }
+        message.getInt(); // export time
+        message.getInt(); // sequence number
+        long domainId = message.getInt() & 0xFFFFFFFFL;
+        int end = start + length;
+
+        int decoded = 0;
+        try {
+            decoded = decodeSets(message, end, exporterAddress, domainId, sink);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IpfixDecodingException("Truncated set in message from " + exporterAddress, e);
+        }
+        message.position(end);
+        return decoded;
+    }
+
+    public TemplateRegistry getRegistry() {
+        return registry;
+    }
+
+    public int getTemplateCount() {
+        return registry.size();
+    }
+
+    public long getSkippedDataSets() {
+        return skippedDataSets;
+    }
+
+    private int decodeSets(ByteBuffer message, int end, String exporterAddress, long domainId,
+                           Consumer<IpfixRecord> sink) {
+        int decoded = 0;
+        while (end - message.position() >= SET_HEADER_LENGTH) {
+            int setId = message.getShort() & 0xFFFF;
+            int setLength = message.getShort() & 0xFFFF;
+            int setEnd = message.position() - SET_HEADER_LENGTH + setLength;
+            if (setLength < SET_HEADER_LENGTH || setEnd > end) {
+                throw new IpfixDecodingException("Invalid set length " + setLength + " for set " + setId);
+            }
+            ByteBuffer set = message.slice(message.position(), setEnd - message.position());
+            if (setId == TEMPLATE_SET_ID) {
+                decodeTemplateSet(set, exporterAddress, domainId, false);
+            } else if (setId == OPTIONS_TEMPLATE_SET_ID) {
+                decodeTemplateSet(set, exporterAddress, domainId, true);
+            } else if (setId >= MIN_DATA_SET_ID) {
+                decoded += decodeDataSet(set, setId, exporterAddress, domainId, sink);
+            }
+            message.position(setEnd);
+        }
+        return decoded;
+    }
+
+    private void decodeTemplateSet(ByteBuffer set, String exporter, long domainId, boolean options) {
+        while (set.remaining() >= SET_HEADER_LENGTH) {
+            int templateId = set.getShort() & 0xFFFF;
+            int fieldCount = set.getShort() & 0xFFFF;
+            if (fieldCount == 0) {
+                if (templateId == TEMPLATE_SET_ID || templateId == OPTIONS_TEMPLATE_SET_ID) {
+                    // All (options) templates of this observation domain are withdrawn
+                    registry.withdrawAll(exporter, domainId, options);
+                } else {
+                    registry.withdraw(new TemplateKey(exporter, domainId, templateId));
+                }
+                continue;
+            }
+            int scopeFieldCount = options ? set.getShort() & 0xFFFF : 0;
+            List<FieldSpecifier> fields = new ArrayList<>(fieldCount);
+            for (int i = 0; i < fieldCount; i++) {
+                int elementId = set.getShort() & 0xFFFF;
+                int fieldLength = set.getShort() & 0xFFFF;
+                long enterpriseNumber = 0;
+                if ((elementId & 0x8000) != 0) {
+                    elementId &= 0x7FFF;
+                    enterpriseNumber = set.getInt() & 0xFFFFFFFFL;
+                }
+                fields.add(new FieldSpecifier(elementId, fieldLength, enterpriseNumber));
+            }
+            registry.register(new TemplateKey(exporter, domainId, templateId),
+                    new Template(templateId, List.copyOf(fields), scopeFieldCount),
+                    ie -> structuredDecoder(ie, exporter, domainId));
+        }
+    }
+
+    private int decodeDataSet(ByteBuffer set, int templateId, String exporter, long domainId,
+                              Consumer<IpfixRecord> sink) {
+        CompiledTemplate template = registry.get(new TemplateKey(exporter, domainId, templateId));
+        if (template == null) {
+            skippedDataSets++;
+            return 0;
+        }
+        int position = set.position();
+        int limit = set.limit();
+        int minimumLength = template.getMinimumRecordLength();
+        if (template.isOptionsTemplate()) {
+            while (limit - position >= minimumLength) {
+                position = advance(position, template.skipRecord(set, position), templateId);
+            }
+            return 0;
+        }
+        boolean ipv6Exporter = exporter.indexOf(':') >= 0;
+        int decoded = 0;
+        while (limit - position >= minimumLength) {
+            IpfixRecord record = new IpfixRecord();
+            position = advance(position, template.decodeRecord(set, position, record), templateId);
+            if (record.getObservationDomainId() == null) {
+                record.setObservationDomainId((int) domainId);
+            }
+            if (record.getExporterIPv4Address() == null && record.getExporterIPv6Address() == null) {
+                if (ipv6Exporter) {
+                    record.setExporterIPv6Address(exporter);
+                } else {
+                    record.setExporterIPv4Address(exporter);
+                }
+            }
+            sink.accept(record);
+            decoded++;
+        }
+        return decoded;
+    }
+
+    /**
+     * Decoder for an RFC 6313 structured data field, scoped to the exporter whose
+     * templates the nested lists refer to
+     */
+    private FieldDecoder structuredDecoder(InformationElement ie, String exporter, long domainId) {
+        switch (ie.getDataType()) {
+            case BASIC_LIST:
+                return (buf, offset, length, record) -> addTo(record.getBasicLists(), record::setBasicLists,
+                        decodeBasicList(buf.slice(offset, length)));
+            case SUB_TEMPLATE_LIST:
+                return (buf, offset, length, record) -> addTo(record.getSubTemplateLists(), record::setSubTemplateLists,
+                        decodeSubTemplateList(buf.slice(offset, length), record, exporter, domainId));
+            default:
+                return (buf, offset, length, record) -> addTo(record.getSubTemplateMultiLists(),
+                        record::setSubTemplateMultiLists,
+                        decodeSubTemplateMultiList(buf.slice(offset, length), record, exporter, domainId));
+        }
+    }
+
+    private BasicListElement decodeBasicList(ByteBuffer buf) {
+        String semantic = semanticName(buf.get() & 0xFF);
+        int elementId = buf.getShort() & 0xFFFF;
+        int elementLength = buf.getShort() & 0xFFFF;
+        long enterpriseNumber = 0;
+        if ((elementId & 0x8000) != 0) {
+            elementId &= 0x7FFF;
+            enterpriseNumber = buf.getInt() & 0xFFFFFFFFL;
+        }
+        if (elementLength == 0) {
+            // Values would take no bytes, so the list would never be exhausted
+            throw new IpfixDecodingException("basicList of element " + elementId + " has zero element length");
+        }
+        InformationElement ie = InformationElement.lookup(enterpriseNumber, elementId);
+        ValueReader reader = FieldDecoders.entryReader(ie, elementLength);
+        List<String> values = new ArrayList<>();
+        while (buf.hasRemaining()) {
+            int length = elementLength == FieldSpecifier.VARIABLE_LENGTH ? readVariableLength(buf) : elementLength;
+            if (length > buf.remaining()) {
+                throw new IpfixDecodingException("basicList value overruns list: " + length);
+            }
+            values.add(String.valueOf(reader.read(buf, buf.position(), length)));
+            buf.position(buf.position() + length);
+        }
+        return BasicListElement.builder()
+                .informationElementId(elementId)
+                .informationElementName(InformationElement.nameOf(enterpriseNumber, elementId))
+                .semantic(semantic)
+                .values(values)
+                .dataType(ie != null ? ie.getDataType().getName() : IpfixDataType.OCTET_ARRAY.getName())
+                .build();
+    }
+
+    private SubTemplateListElement decodeSubTemplateList(ByteBuffer buf, IpfixRecord record,
+                                                        String exporter, long domainId) {
+        String semantic = semanticName(buf.get() & 0xFF);
+        int templateId = buf.getShort() & 0xFFFF;
+        return decodeSubTemplateEntries(buf, templateId, semantic, record, exporter, domainId);
+    }
+
+    private SubTemplateMultiListElement decodeSubTemplateMultiList(ByteBuffer buf, IpfixRecord record,
+                                                                  String exporter, long domainId) {
+        String semantic = semanticName(buf.get() & 0xFF);
+        List<SubTemplateListElement> lists = new ArrayList<>();
+        while (buf.remaining() >= SET_HEADER_LENGTH) {
+            int templateId = buf.getShort() & 0xFFFF;
+            int length = buf.getShort() & 0xFFFF;
+            int end = buf.position() - SET_HEADER_LENGTH + length;
+            if (length < SET_HEADER_LENGTH || end > buf.limit()) {
+                throw new IpfixDecodingException("Invalid subTemplateMultiList entry length " + length);
+            }
+            lists.add(decodeSubTemplateEntries(buf.slice(buf.position(), end - buf.position()),
+                    templateId, semantic, record, exporter, domainId));
+            buf.position(end);
+        }
+        return SubTemplateMultiListElement.builder()
+                .semantic(semantic)
+                .subTemplateLists(lists)
+                .build();
+    }
+
+    private SubTemplateListElement decodeSubTemplateEntries(ByteBuffer buf, int templateId, String semantic,
+                                                           IpfixRecord record, String exporter, long domainId) {
+        CompiledTemplate template = registry.get(new TemplateKey(exporter, domainId, templateId));
+        List<Map<String, Object>> entries = new ArrayList<>();
+        Map<String, String> definition = Map.of();
+        if (template != null) {
+            definition = template.getDefinition();
+            int position = buf.position();
+            int minimumLength = template.getMinimumRecordLength();
+            while (buf.limit() - position >= minimumLength) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                position = advance(position, template.decodeEntry(buf, position, record, entry), templateId);
+                entries.add(entry);
+            }
+        }
+        return SubTemplateListElement.builder()
+                .templateId(templateId)
+                .semantic(semantic)
+                .entries(entries)
+                .templateDefinition(definition)
+                .build();
+    }
+
+    /**
+     * Guards the record and list entry loops: a record that consumed no bytes would be decoded again forever
+     */
+    private static int advance(int position, int next, int templateId) {
+        if (next <= position) {
+            throw new IpfixDecodingException("Record of template " + templateId + " consumed no bytes at " + position);
+        }
+        return next;
+    }
+
+    private static int readVariableLength(ByteBuffer buf) {
+        int length = buf.get() & 0xFF;
+        if (length == 255) {
+            length = buf.getShort() & 0xFFFF;
+        }
+        return length;
+    }
+
+    private static String semanticName(int semantic) {
+        return semantic < SEMANTICS.length ? SEMANTICS[semantic] : "undefined";
+    }
+
+    private static <T> void addTo(List<T> current, Consumer<List<T>> setter, T element) {
+        if (current == null) {
+            current = new ArrayList<>();
+            setter.accept(current);
+        }
+        current.add(element);
+    }
+}
@@ -0,0 +1,69 @@
+package com.ipfix.graphql.collector;
+
+import com.ipfix.graphql.model.IpfixRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Buffers decoded records and hands them to the ingest path in batches, counting the records
+ * it refuses. Not thread-safe: owned by the collector's selector thread.
+ */
+public class IpfixRecordBatchWriter implements Consumer<IpfixRecord> {
+    
+    // Writes a batch and returns how many of its records were dropped
+    private final ToIntFunction<List<IpfixRecord>> sink;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    
+    private List<IpfixRecord> batch;
+    private long lastFlushNanos = System.nanoTime();
+    private long writtenRecords;
+    private long droppedRecords;
+    
+    public IpfixRecordBatchWriter(ToIntFunction<List<IpfixRecord>> sink, int batchSize, long flushIntervalMillis) {
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushIntervalMillis * 1_000_000L;
+        this.batch = new ArrayList<>(batchSize);
+    }
+    
+    @Override
+    public void accept(IpfixRecord record) {
+        batch.add(record);
+        if (batch.size() >= batchSize) {
+            flush();
+        }
+    }
+    
+    /**
+     * Flushes a partially filled batch once the flush interval has elapsed
+     */
+    public void flushIfDue() {
+        if (!batch.isEmpty() && System.nanoTime() - lastFlushNanos >= flushIntervalNanos) {
+            flush();
+        }
+    }
+    
+    public void flush() {
+        lastFlushNanos = System.nanoTime();
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<IpfixRecord> records = batch;
+        batch = new ArrayList<>(batchSize);
+        int dropped = sink.applyAsInt(records);
+        writtenRecords += records.size() - dropped;
+        droppedRecords += dropped;
+    }
+    
+    public long getWrittenRecords() {
+        return writtenRecords;
+    }
+    
+    public long getDroppedRecords() {
+        return droppedRecords;
+    }
+}
@@ -0,0 +1,28 @@
+package com.ipfix.graphql.collector;
+
+import java.util.List;
+
+/**
+ * Template or options template announced by an exporter
+ *
+ * @param templateId      template identifier (256 and above)
+ * @param fields          field specifiers in record order
+ * @param scopeFieldCount number of scope fields, 0 for a plain template
+ */
+public record Template(int templateId, List<FieldSpecifier> fields, int scopeFieldCount) {
+
+    public boolean isOptionsTemplate() {
+        return scopeFieldCount > 0;
+    }
+
+    /**
+     * Smallest possible encoded record length, counting one length octet per variable-length field
+     */
+    public int minimumRecordLength() {
+        int length = 0;
+        for (FieldSpecifier field : fields) {
+            length += field.isVariableLength() ? 1 : field.length();
+        }
+        return length;
+    }
+}
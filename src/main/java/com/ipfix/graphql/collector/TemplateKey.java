@@ -0,0 +1,8 @@
+package com.ipfix.graphql.collector;
+
+/**
+ * Scope of a template: templates are only valid for the exporter and observation
+ * domain that announced them (RFC 7011 section 8)
+ */
+public record TemplateKey(String exporter, long domainId, int templateId) {
+}
@@ -0,0 +1,97 @@
+package com.ipfix.graphql.collector;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of compiled templates keyed by (exporter, observation domain, template ID).
+ * A template is compiled when first announced; refreshes carrying an identical definition
+ * keep the compiled form, redefinitions replace it. The least recently used template is
+ * evicted once {@code maxTemplates} is exceeded.
+ */
+public class TemplateRegistry {
+
+    private final int maxTemplates;
+    private final Map<TemplateKey, CompiledTemplate> templates;
+
+    private long compiledTemplates;
+    private long refreshedTemplates;
+    private long withdrawnTemplates;
+    private long evictedTemplates;
+
+    public TemplateRegistry(int maxTemplates) {
+        this.maxTemplates = maxTemplates;
+        this.templates = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TemplateKey, CompiledTemplate> eldest) {
+                if (size() > TemplateRegistry.this.maxTemplates) {
+                    evictedTemplates++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Registers a (re)announced template, compiling it unless an identical definition is cached
+     */
+    public synchronized CompiledTemplate register(TemplateKey key, Template template,
+                                                  Function<InformationElement, FieldDecoder> structuredDecoders) {
+        CompiledTemplate current = templates.get(key);
+        if (current != null && current.getTemplate().equals(template)) {
+            refreshedTemplates++;
+            return current;
+        }
+        CompiledTemplate compiled = CompiledTemplate.compile(template, structuredDecoders);
+        templates.put(key, compiled);
+        compiledTemplates++;
+        return compiled;
+    }
+
+    public synchronized CompiledTemplate get(TemplateKey key) {
+        return templates.get(key);
+    }
+
+    public synchronized void withdraw(TemplateKey key) {
+        if (templates.remove(key) != null) {
+            withdrawnTemplates++;
+        }
+    }
+
+    /**
+     * Withdraws every template, or every options template, of an observation domain
+     */
+    public synchronized void withdrawAll(String exporter, long domainId, boolean optionsTemplates) {
+        templates.entrySet().removeIf(entry -> {
+            TemplateKey key = entry.getKey();
+            boolean matches = key.exporter().equals(exporter) && key.domainId() == domainId
+                    && entry.getValue().isOptionsTemplate() == optionsTemplates;
+            if (matches) {
+                withdrawnTemplates++;
+            }
+            return matches;
+        });
+    }
+
+    public synchronized int size() {
+        return templates.size();
+    }
+
+    public synchronized long getCompiledTemplates() {
+        return compiledTemplates;
+    }
+
+    public synchronized long getRefreshedTemplates() {
+        return refreshedTemplates;
+    }
+
+    public synchronized long getWithdrawnTemplates() {
+        return withdrawnTemplates;
+    }
+
+    public synchronized long getEvictedTemplates() {
+        return evictedTemplates;
+    }
+}
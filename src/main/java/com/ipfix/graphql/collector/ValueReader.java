@@ -0,0 +1,12 @@
+package com.ipfix.graphql.collector;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads one field value at an absolute buffer offset, specialised for a data type and field length
+ */
+@FunctionalInterface
+public interface ValueReader {
+
+    Object read(ByteBuffer buf, int offset, int length);
+}
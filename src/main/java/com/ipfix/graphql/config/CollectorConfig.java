@@ -0,0 +1,28 @@
+package com.ipfix.graphql.config;
+
+import com.ipfix.graphql.collector.IpfixCollector;
+import com.ipfix.graphql.collector.IpfixMessageDecoder;
+import com.ipfix.graphql.collector.IpfixRecordBatchWriter;
+import com.ipfix.graphql.collector.TemplateRegistry;
+import com.ipfix.graphql.ingest.IpfixIngestService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Wiring of the binary IPFIX collector, enabled with {@code ipfix.collector.enabled=true}
+ */
+@Configuration
+@EnableConfigurationProperties(IpfixCollectorProperties.class)
+@ConditionalOnProperty(prefix = "ipfix.collector", name = "enabled", havingValue = "true")
+public class CollectorConfig {
+    
+    @Bean
+    public IpfixCollector ipfixCollector(IpfixCollectorProperties properties, IpfixIngestService ingestService) {
+        IpfixRecordBatchWriter writer = new IpfixRecordBatchWriter(
+                ingestService::offer, properties.getBatchSize(), properties.getFlushIntervalMillis());
+        IpfixMessageDecoder decoder = new IpfixMessageDecoder(new TemplateRegistry(properties.getMaxTemplates()));
+        return new IpfixCollector(properties, decoder, writer);
+    }
+}
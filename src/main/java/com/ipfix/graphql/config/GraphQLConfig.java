@@ -1,17 +1,34 @@
 package com.ipfix.graphql.config;
 
+import graphql.language.ArrayValue;
+import graphql.language.BooleanValue;
+import graphql.language.EnumValue;
+import graphql.language.FloatValue;
+import graphql.language.IntValue;
+import graphql.language.NullValue;
+import graphql.language.ObjectField;
+import graphql.language.ObjectValue;
 import graphql.language.StringValue;
+import graphql.language.Value;
+import graphql.language.VariableReference;
 import graphql.schema.*;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.graphql.execution.RuntimeWiringConfigurer;
 
+import java.math.BigInteger;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
- * GraphQL configuration for custom scalar types
+ * GraphQL configuration for custom scalar types, live subscriptions and query limits
  */
 @Configuration
+@EnableConfigurationProperties({IpfixSubscriptionProperties.class, IpfixQueryProperties.class})
 public class GraphQLConfig {
     
     @Bean
@@ -66,17 +83,89 @@ public class GraphQLConfig {
                     
                     @Override
                     public Object parseValue(Object input) throws CoercingParseValueException {
-                        return input;
+                        return jsonValue(input);
                     }
                     
                     @Override
                     public Object parseLiteral(Object input) throws CoercingParseLiteralException {
-                        return input;
+                        return parseLiteral(input, Map.of());
+                    }
+                    
+                    @Override
+                    public Object parseLiteral(Object input, Map<String, Object> variables)
+                            throws CoercingParseLiteralException {
+                        return jsonLiteral(input, variables);
                     }
                 })
                 .build();
     }
     
+    /**
+     * JSON input with integers as Long, the type the collector decodes them to, so values of one element
+     * have one type whichever way they were ingested and pack into one column
+     */
+    private static Object jsonValue(Object input) {
+        if (input instanceof Integer || input instanceof Short || input instanceof Byte) {
+            return ((Number) input).longValue();
+        }
+        if (input instanceof Map<?, ?> entries) {
+            Map<Object, Object> values = new LinkedHashMap<>();
+            entries.forEach((key, value) -> values.put(key, jsonValue(value)));
+            return values;
+        }
+        if (input instanceof List<?> elements) {
+            List<Object> values = new ArrayList<>(elements.size());
+            for (Object element : elements) {
+                values.add(jsonValue(element));
+            }
+            return values;
+        }
+        return input;
+    }
+    
+    /**
+     * JSON input written inline in a query: the literal's value, shaped as {@link #jsonValue} shapes variables
+     */
+    private static Object jsonLiteral(Object input, Map<String, Object> variables) {
+        if (input instanceof ObjectValue object) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (ObjectField field : object.getObjectFields()) {
+                values.put(field.getName(), jsonLiteral(field.getValue(), variables));
+            }
+            return values;
+        }
+        if (input instanceof ArrayValue array) {
+            List<Object> values = new ArrayList<>(array.getValues().size());
+            for (Value<?> element : array.getValues()) {
+                values.add(jsonLiteral(element, variables));
+            }
+            return values;
+        }
+        if (input instanceof IntValue number) {
+            BigInteger value = number.getValue();
+            return value.bitLength() < 64 ? (Object) value.longValue() : value;
+        }
+        if (input instanceof FloatValue number) {
+            return number.getValue().doubleValue();
+        }
+        if (input instanceof StringValue text) {
+            return text.getValue();
+        }
+        if (input instanceof BooleanValue flag) {
+            return flag.isValue();
+        }
+        if (input instanceof EnumValue name) {
+            return name.getName();
+        }
+        if (input instanceof VariableReference reference) {
+            return jsonValue(variables.get(reference.getName()));
+        }
+        if (input instanceof NullValue) {
+            return null;
+        }
+        throw new CoercingParseLiteralException("Unexpected JSON literal: " + input);
+    }
+    
     private GraphQLScalarType longScalar() {
         return GraphQLScalarType.newScalar()
                 .name("Long")
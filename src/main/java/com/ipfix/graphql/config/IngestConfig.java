@@ -0,0 +1,25 @@
+package com.ipfix.graphql.config;
+
+import com.ipfix.graphql.ingest.IngestMetrics;
+import com.ipfix.graphql.ingest.IngestPipeline;
+import com.ipfix.graphql.ingest.LiveFlowPublisher;
+import com.ipfix.graphql.repository.IpfixRecordStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Wiring of the sharded ingest pipeline, on unless {@code ipfix.ingest.enabled=false}
+ */
+@Configuration
+@EnableConfigurationProperties(IpfixIngestProperties.class)
+public class IngestConfig {
+    
+    @Bean
+    @ConditionalOnProperty(prefix = "ipfix.ingest", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public IngestPipeline ingestPipeline(IpfixIngestProperties properties, IpfixRecordStore store,
+                                         LiveFlowPublisher publisher, IngestMetrics metrics) {
+        return new IngestPipeline(properties, store, publisher, metrics);
+    }
+}
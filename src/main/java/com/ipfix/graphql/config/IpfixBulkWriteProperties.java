@@ -0,0 +1,30 @@
+package com.ipfix.graphql.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Bulk write settings of the remote stores ({@code ipfix.storage.bulk.*}): saved records are buffered into
+ * batches sent in the background, with a bounded number of requests in flight and retries on failure
+ */
+@Data
+@ConfigurationProperties(prefix = "ipfix.storage.bulk")
+public class IpfixBulkWriteProperties {
+
+    // Records per bulk request
+    private int batchSize = 1000;
+
+    // Longest time a partial batch waits before it is sent
+    private Duration flushInterval = Duration.ofMillis(200);
+
+    // Bulk requests sent concurrently; saving blocks while this many are outstanding
+    private int maxInFlight = 4;
+
+    // Attempts after the first before a batch is dropped
+    private int maxRetries = 5;
+
+    // Pause before the first retry, doubled on each further one
+    private Duration retryBackoff = Duration.ofMillis(100);
+}
@@ -0,0 +1,34 @@
+package com.ipfix.graphql.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the binary IPFIX collector ({@code ipfix.collector.*})
+ */
+@Data
+@ConfigurationProperties(prefix = "ipfix.collector")
+public class IpfixCollectorProperties {
+
+    private boolean enabled = false;
+
+    private String bindAddress = "0.0.0.0";
+
+    // IANA registered port for IPFIX over UDP, TCP and SCTP
+    private int port = 4739;
+
+    private boolean udpEnabled = true;
+
+    private boolean tcpEnabled = true;
+
+    private int receiveBufferSize = 4 * 1024 * 1024;
+
+    // Compiled templates kept across all exporters before the least recently used is evicted
+    private int maxTemplates = 4096;
+
+    // Records handed to the repository per write
+    private int batchSize = 1000;
+
+    // Maximum time a partial batch waits before being written
+    private long flushIntervalMillis = 200;
+}
@@ -0,0 +1,30 @@
+package com.ipfix.graphql.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the sharded ingest pipeline ({@code ipfix.ingest.*}): records are routed by flow key to one of
+ * several shards, each with a bounded ring buffer and a worker thread that stores and publishes them
+ */
+@Data
+@ConfigurationProperties(prefix = "ipfix.ingest")
+public class IpfixIngestProperties {
+
+    // When false every ingest stores and publishes on the calling thread
+    private boolean enabled = true;
+
+    // Shard workers; 0 uses one per available processor
+    private int shards = 0;
+
+    // Records each shard buffers before ingest is refused, rounded up to a power of two
+    private int ringCapacity = 65536;
+
+    // Most records a shard hands to the store in one write
+    private int batchSize = 1000;
+
+    // Longest time an idle shard sleeps before looking at its ring again
+    private Duration idleWait = Duration.ofMillis(1);
+}
@@ -0,0 +1,18 @@
+package com.ipfix.graphql.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * MongoDB store settings ({@code ipfix.mongodb.*}), used with {@code ipfix.storage.layout=mongodb}
+ */
+@Data
+@ConfigurationProperties(prefix = "ipfix.mongodb")
+public class IpfixMongoProperties {
+
+    private String uri = "mongodb://localhost:27017";
+
+    private String database = "ipfix";
+
+    private String collection = "flows";
+}
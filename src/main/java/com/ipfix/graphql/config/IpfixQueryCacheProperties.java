@@ -0,0 +1,27 @@
+package com.ipfix.graphql.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Query result cache settings ({@code ipfix.query.cache.*}): results of repeated record and aggregation
+ * queries are kept until a write that could change them, their time to live or eviction
+ */
+@Data
+@ConfigurationProperties(prefix = "ipfix.query.cache")
+public class IpfixQueryCacheProperties {
+
+    private boolean enabled = true;
+
+    // Records all cached results may hold together, each result counting one more; larger results are not cached
+    private long maxRecords = 100_000;
+
+    // Lifetime of results whose time window is still open
+    private Duration ttl = Duration.ofSeconds(30);
+
+    // Lifetime of results whose time window had ended when read; bounds how long changes made around the cache,
+    // such as tier moves, go unseen in them
+    private Duration endedTtl = Duration.ofMinutes(10);
+}
@@ -0,0 +1,21 @@
+package com.ipfix.graphql.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Limits on expensive queries ({@code ipfix.query.*}). With virtual threads the servlet pool no longer caps
+ * how many requests run at once, so scans over the store are bounded here instead.
+ */
+@Data
+@ConfigurationProperties(prefix = "ipfix.query")
+public class IpfixQueryProperties {
+
+    // Aggregations and time range scans running at once; 0 uses twice the available processors
+    private int maxConcurrentScans = 0;
+
+    // Longest time a scan waits for its turn before the query fails with UNAVAILABLE
+    private Duration scanWaitTimeout = Duration.ofSeconds(10);
+}
@@ -0,0 +1,40 @@
+package com.ipfix.graphql.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Retention and tiering settings ({@code ipfix.retention.*}): records leave the in-memory hot tier
+ * for on-disk segments once they are older than {@code hotRetention} or the hot tier holds more than
+ * {@code maxHotRecords}, and segments are deleted by age or total size
+ */
+@Data
+@ConfigurationProperties(prefix = "ipfix.retention")
+public class IpfixRetentionProperties {
+
+    private boolean enabled = false;
+
+    // Directory holding the sealed segment files
+    private String directory = "data/segments";
+
+    // Age after which records are moved out of memory
+    private Duration hotRetention = Duration.ofHours(1);
+
+    // Records kept in memory before the oldest time windows are moved early
+    private long maxHotRecords = 1_000_000;
+
+    // Time span covered by one segment; windows are aligned to multiples of it
+    private Duration segmentWindow = Duration.ofMinutes(5);
+
+    // Age after which segments are deleted
+    private Duration segmentRetention = Duration.ofDays(7);
+
+    // Total segment size above which the oldest segments are deleted
+    private DataSize maxSegmentBytes = DataSize.ofGigabytes(10);
+
+    // Pause between two runs of the tier mover
+    private long checkIntervalMillis = 1000;
+}
@@ -0,0 +1,23 @@
+package com.ipfix.graphql.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Solr store settings ({@code ipfix.solr.*}), used with {@code ipfix.storage.layout=solr}. The collection
+ * must be created from the {@code solr/configsets/ipfix} configset shipped in the application resources.
+ */
+@Data
+@ConfigurationProperties(prefix = "ipfix.solr")
+public class IpfixSolrProperties {
+
+    // Base URL of the Solr node
+    private String url = "http://localhost:8983/solr";
+
+    private String collection = "ipfix";
+
+    // Longest time before written records become visible to queries
+    private Duration commitWithin = Duration.ofSeconds(1);
+}
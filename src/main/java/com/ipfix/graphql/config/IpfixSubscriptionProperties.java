@@ -0,0 +1,19 @@
+package com.ipfix.graphql.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import reactor.core.publisher.BufferOverflowStrategy;
+
+/**
+ * Settings of live flow subscriptions ({@code ipfix.subscriptions.*})
+ */
+@Data
+@ConfigurationProperties(prefix = "ipfix.subscriptions")
+public class IpfixSubscriptionProperties {
+
+    // Records buffered per subscriber while its connection is slower than ingest
+    private int bufferSize = 1024;
+
+    // What a full buffer does with the next record: DROP_OLDEST keeps the newest flows on screen
+    private BufferOverflowStrategy overflow = BufferOverflowStrategy.DROP_OLDEST;
+}
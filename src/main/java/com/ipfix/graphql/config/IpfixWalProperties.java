@@ -0,0 +1,51 @@
+package com.ipfix.graphql.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Write-ahead log settings ({@code ipfix.wal.*}): every change to the in-memory store is appended to a log
+ * by a background writer, snapshots bound how much log a restart has to replay
+ */
+@Data
+@ConfigurationProperties(prefix = "ipfix.wal")
+public class IpfixWalProperties {
+
+    private boolean enabled = false;
+
+    // Directory holding the log files and snapshots
+    private String directory = "data/wal";
+
+    // When written log data is forced to disk
+    private FsyncPolicy fsync = FsyncPolicy.INTERVAL;
+
+    // Longest time written data stays unforced with the INTERVAL policy
+    private Duration fsyncInterval = Duration.ofSeconds(1);
+
+    // Changes waiting for the writer; appending to a full queue blocks the caller
+    private int queueCapacity = 8192;
+
+    // Most changes written and forced together in one group commit
+    private int maxBatchEntries = 1024;
+
+    // Size at which the writer starts a new log file
+    private DataSize logFileSize = DataSize.ofMegabytes(64);
+
+    // A snapshot is taken once this much log was written since the last one...
+    private DataSize snapshotLogSize = DataSize.ofMegabytes(512);
+
+    // ...or this much time has passed with any log written
+    private Duration snapshotInterval = Duration.ofMinutes(10);
+
+    public enum FsyncPolicy {
+        // Force after every group commit; nothing acknowledged by the log is lost on power failure
+        COMMIT,
+        // Force at most once per fsync-interval; a power failure loses at most that much
+        INTERVAL,
+        // Leave it to the operating system; a process crash loses nothing, a power failure may
+        NONE
+    }
+}
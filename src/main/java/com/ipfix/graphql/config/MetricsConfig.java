@@ -0,0 +1,98 @@
+package com.ipfix.graphql.config;
+
+import com.ipfix.graphql.collector.IpfixCollector;
+import com.ipfix.graphql.ingest.IngestPipeline;
+import com.ipfix.graphql.repository.CachingIpfixRecordStore;
+import com.ipfix.graphql.repository.FlowStrings;
+import com.ipfix.graphql.repository.IpfixRecordStore;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Meters read from state the store, the query cache, the ingest pipeline and the collector keep anyway, so
+ * they cost nothing until scraped. Ingest and query timings are recorded by {@code IngestMetrics} and
+ * {@code QueryMetricsInstrumentation}; everything is exported at {@code /actuator/prometheus}.
+ */
+@Configuration
+public class MetricsConfig {
+    
+    @Bean
+    public MeterBinder storeMetrics(IpfixRecordStore store) {
+        return registry -> {
+            Gauge.builder("ipfix.store.records", store, IpfixRecordStore::count)
+                    .description("Records stored")
+                    .register(registry);
+            Gauge.builder("ipfix.store.heap.estimated", store, IpfixRecordStore::estimatedHeapBytes)
+                    .description("Estimated heap held by stored records and their indexes")
+                    .baseUnit("bytes")
+                    .register(registry);
+            FunctionCounter.builder("ipfix.store.queries", store, IpfixRecordStore::indexedQueries)
+                    .description("Store queries answered through an index or by scanning records")
+                    .tag("access", "index")
+                    .register(registry);
+            FunctionCounter.builder("ipfix.store.queries", store, IpfixRecordStore::scannedQueries)
+                    .description("Store queries answered through an index or by scanning records")
+                    .tag("access", "scan")
+                    .register(registry);
+            Gauge.builder("ipfix.store.strings.shared", FlowStrings::size)
+                    .description("Distinct strings records share through the flow string dictionary")
+                    .register(registry);
+        };
+    }
+    
+    @Bean
+    public MeterBinder queryCacheMetrics(IpfixRecordStore store) {
+        return registry -> {
+            if (!(store instanceof CachingIpfixRecordStore cache)) {
+                return;
+            }
+            FunctionCounter.builder("ipfix.query.cache.requests", cache, c -> c.cacheStats().hitCount())
+                    .description("Cacheable store queries answered from the query cache or by the store")
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("ipfix.query.cache.requests", cache, c -> c.cacheStats().missCount())
+                    .description("Cacheable store queries answered from the query cache or by the store")
+                    .tag("result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("ipfix.query.cache.evictions", cache, c -> c.cacheStats().evictionCount())
+                    .description("Cached results evicted for size or expired")
+                    .register(registry);
+            FunctionCounter.builder("ipfix.query.cache.invalidations", cache,
+                            CachingIpfixRecordStore::invalidatedResults)
+                    .description("Cached results dropped because a write or record expiry could change them")
+                    .register(registry);
+            Gauge.builder("ipfix.query.cache.results", cache, CachingIpfixRecordStore::cachedResults)
+                    .description("Results in the query cache")
+                    .register(registry);
+            Gauge.builder("ipfix.query.cache.records", cache, CachingIpfixRecordStore::cachedRecords)
+                    .description("Records held by cached results, each result counting one more")
+                    .register(registry);
+        };
+    }
+    
+    @Bean
+    public MeterBinder ingestQueueMetrics(ObjectProvider<IngestPipeline> pipeline,
+                                          ObjectProvider<IpfixCollector> collector) {
+        return registry -> {
+            pipeline.ifAvailable(ingest -> {
+                Gauge.builder("ipfix.ingest.queued", ingest, IngestPipeline::getQueuedRecords)
+                        .description("Records waiting in the ingest shard rings")
+                        .register(registry);
+                FunctionCounter.builder("ipfix.ingest.dropped", ingest, IngestPipeline::getDroppedRecords)
+                        .description("Collected records dropped because their shard was full")
+                        .register(registry);
+                FunctionCounter.builder("ipfix.ingest.rejected", ingest, IngestPipeline::getRejectedRecords)
+                        .description("Records of mutations refused because a shard was full")
+                        .register(registry);
+            });
+            collector.ifAvailable(listener -> FunctionCounter
+                    .builder("ipfix.collector.dropped", listener, IpfixCollector::getDroppedRecords)
+                    .description("Records the collector dropped")
+                    .register(registry));
+        };
+    }
+}
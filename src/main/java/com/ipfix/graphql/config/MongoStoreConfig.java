@@ -0,0 +1,33 @@
+package com.ipfix.graphql.config;
+
+import com.ipfix.graphql.repository.IpfixRecordStore;
+import com.ipfix.graphql.repository.MongoIpfixRecordStore;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Wiring of the MongoDB store, selected with {@code ipfix.storage.layout=mongodb}
+ */
+@Configuration
+@EnableConfigurationProperties({IpfixMongoProperties.class, IpfixBulkWriteProperties.class})
+@ConditionalOnProperty(prefix = "ipfix.storage", name = "layout", havingValue = "mongodb")
+public class MongoStoreConfig {
+    
+    @Bean
+    public MongoClient mongoClient(IpfixMongoProperties properties) {
+        return MongoClients.create(properties.getUri());
+    }
+    
+    @Bean
+    @Qualifier(IpfixRecordStore.HOT_TIER)
+    public MongoIpfixRecordStore mongoIpfixRecordStore(MongoClient mongoClient, IpfixMongoProperties properties,
+                                                       IpfixBulkWriteProperties bulk) {
+        return new MongoIpfixRecordStore(
+                mongoClient.getDatabase(properties.getDatabase()).getCollection(properties.getCollection()), bulk);
+    }
+}
@@ -0,0 +1,57 @@
+package com.ipfix.graphql.config;
+
+import com.ipfix.graphql.repository.CachingIpfixRecordStore;
+import com.ipfix.graphql.repository.IpfixRecordStore;
+import com.ipfix.graphql.repository.TieredIpfixRecordStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+/**
+ * Wiring of the query result cache, on unless {@code ipfix.query.cache.enabled=false}: the store that queries
+ * and writers are given (the tiered store, or else the layout store) is wrapped in a
+ * {@link CachingIpfixRecordStore} where it is created. The hot tier behind a tiered store is left as it is,
+ * since only the tier mover writes it directly. Wrapping runs after the write-ahead log's, so the cache sits
+ * in front of the journaled store.
+ */
+@Configuration
+@EnableConfigurationProperties(IpfixQueryCacheProperties.class)
+@ConditionalOnProperty(prefix = "ipfix.query.cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class QueryCacheConfig {
+    
+    @Bean
+    public static CachingPostProcessor cachingStorePostProcessor(Environment environment,
+                                                                ObjectProvider<IpfixQueryCacheProperties> properties) {
+        boolean tiered = environment.getProperty("ipfix.retention.enabled", Boolean.class, false);
+        return new CachingPostProcessor(tiered, properties);
+    }
+    
+    static final class CachingPostProcessor implements BeanPostProcessor, Ordered {
+        
+        private final boolean tiered;
+        private final ObjectProvider<IpfixQueryCacheProperties> properties;
+        
+        CachingPostProcessor(boolean tiered, ObjectProvider<IpfixQueryCacheProperties> properties) {
+            this.tiered = tiered;
+            this.properties = properties;
+        }
+        
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof IpfixRecordStore store && (bean instanceof TieredIpfixRecordStore || !tiered)) {
+                return new CachingIpfixRecordStore(store, properties.getObject());
+            }
+            return bean;
+        }
+        
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE;
+        }
+    }
+}
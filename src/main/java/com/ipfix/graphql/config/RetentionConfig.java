@@ -0,0 +1,44 @@
+package com.ipfix.graphql.config;
+
+import com.ipfix.graphql.repository.IpfixRecordStore;
+import com.ipfix.graphql.repository.SegmentTier;
+import com.ipfix.graphql.repository.TierMover;
+import com.ipfix.graphql.repository.TieredIpfixRecordStore;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.nio.file.Path;
+
+/**
+ * Wiring of the storage tiers, enabled with {@code ipfix.retention.enabled=true}: the layout store
+ * becomes the hot tier behind a primary {@link TieredIpfixRecordStore}
+ */
+@Configuration
+@EnableScheduling
+@EnableConfigurationProperties(IpfixRetentionProperties.class)
+@ConditionalOnProperty(prefix = "ipfix.retention", name = "enabled", havingValue = "true")
+public class RetentionConfig {
+    
+    @Bean
+    public SegmentTier segmentTier(IpfixRetentionProperties properties) {
+        return new SegmentTier(Path.of(properties.getDirectory()));
+    }
+    
+    @Bean
+    @Primary
+    public TieredIpfixRecordStore tieredIpfixRecordStore(@Qualifier(IpfixRecordStore.HOT_TIER) IpfixRecordStore hot,
+                                                         SegmentTier segmentTier) {
+        return new TieredIpfixRecordStore(hot, segmentTier);
+    }
+    
+    @Bean
+    public TierMover tierMover(@Qualifier(IpfixRecordStore.HOT_TIER) IpfixRecordStore hot, SegmentTier segmentTier,
+                               IpfixRetentionProperties properties) {
+        return new TierMover(hot, segmentTier, properties);
+    }
+}
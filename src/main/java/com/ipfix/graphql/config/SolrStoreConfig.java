@@ -0,0 +1,32 @@
+package com.ipfix.graphql.config;
+
+import com.ipfix.graphql.repository.IpfixRecordStore;
+import com.ipfix.graphql.repository.SolrIpfixRecordStore;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.impl.Http2SolrClient;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Wiring of the Solr store, selected with {@code ipfix.storage.layout=solr}
+ */
+@Configuration
+@EnableConfigurationProperties({IpfixSolrProperties.class, IpfixBulkWriteProperties.class})
+@ConditionalOnProperty(prefix = "ipfix.storage", name = "layout", havingValue = "solr")
+public class SolrStoreConfig {
+    
+    @Bean
+    public SolrClient solrClient(IpfixSolrProperties properties) {
+        return new Http2SolrClient.Builder(properties.getUrl()).build();
+    }
+    
+    @Bean
+    @Qualifier(IpfixRecordStore.HOT_TIER)
+    public SolrIpfixRecordStore solrIpfixRecordStore(SolrClient solrClient, IpfixSolrProperties properties,
+                                                     IpfixBulkWriteProperties bulk) {
+        return new SolrIpfixRecordStore(solrClient, properties, bulk);
+    }
+}
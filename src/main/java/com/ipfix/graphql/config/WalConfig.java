@@ -0,0 +1,61 @@
+package com.ipfix.graphql.config;
+
+import com.ipfix.graphql.repository.IpfixRecordStore;
+import com.ipfix.graphql.repository.JournaledIpfixRecordStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Wiring of the write-ahead log, enabled with {@code ipfix.wal.enabled=true}: the layout store is wrapped in
+ * a {@link JournaledIpfixRecordStore} where it is created, so every writer (ingest, the tier mover, the
+ * mutations) goes through the log
+ */
+@Configuration
+@EnableConfigurationProperties(IpfixWalProperties.class)
+@ConditionalOnProperty(prefix = "ipfix.wal", name = "enabled", havingValue = "true")
+public class WalConfig {
+    
+    @Bean
+    public static JournalingPostProcessor journaledStorePostProcessor(ObjectProvider<IpfixWalProperties> properties) {
+        return new JournalingPostProcessor(properties);
+    }
+    
+    /**
+     * Runs first, while the hot tier bean is still its annotated class; the query cache wraps the result.
+     * Declared as the bean type, since Spring orders post-processors by the type their definition declares.
+     */
+    static final class JournalingPostProcessor implements BeanPostProcessor, Ordered {
+        
+        private final ObjectProvider<IpfixWalProperties> properties;
+        
+        JournalingPostProcessor(ObjectProvider<IpfixWalProperties> properties) {
+            this.properties = properties;
+        }
+        
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof IpfixRecordStore store && isHotTier(bean)) {
+                return new JournaledIpfixRecordStore(store, properties.getObject());
+            }
+            return bean;
+        }
+        
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+    
+    private static boolean isHotTier(Object bean) {
+        Qualifier qualifier = AnnotationUtils.findAnnotation(ClassUtils.getUserClass(bean), Qualifier.class);
+        return qualifier != null && IpfixRecordStore.HOT_TIER.equals(qualifier.value());
+    }
+}
@@ -0,0 +1,28 @@
+package com.ipfix.graphql.ingest;
+
+import com.ipfix.graphql.model.FlowFilter;
+import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.repository.FlowQuery;
+
+import java.util.function.Predicate;
+
+/**
+ * A compiled {@link FlowFilter}. Filters that select the same records compare equal (CIDR blocks are
+ * normalized), so their subscribers share one stream. Null components match everything.
+ */
+public record FlowMatcher(FlowQuery query) implements Predicate<IpfixRecord> {
+    
+    public static final FlowMatcher ALL = new FlowMatcher(FlowQuery.ALL);
+    
+    /**
+     * @throws IllegalArgumentException when a CIDR block, element name or operand is invalid
+     */
+    public static FlowMatcher of(FlowFilter filter) {
+        return filter == null ? ALL : new FlowMatcher(FlowQuery.compile(filter));
+    }
+    
+    @Override
+    public boolean test(IpfixRecord record) {
+        return query.test(record);
+    }
+}
@@ -0,0 +1,44 @@
+package com.ipfix.graphql.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingest meters, registered once so recording is a striped counter or histogram update without lookups
+ * or allocation: {@code ipfix.ingest.records} stored, {@code ipfix.ingest.write} time to store and publish
+ * one chunk, and {@code ipfix.ingest.latency} from a mutation's submit until its whole batch is stored
+ */
+@Component
+public class IngestMetrics {
+    
+    private final Counter records;
+    private final Timer write;
+    private final Timer latency;
+    
+    public IngestMetrics(MeterRegistry registry) {
+        this.records = Counter.builder("ipfix.ingest.records")
+                .description("Records stored")
+                .register(registry);
+        this.write = Timer.builder("ipfix.ingest.write")
+                .description("Time to store and publish one chunk of records")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.latency = Timer.builder("ipfix.ingest.latency")
+                .description("Time from submitting a batch until all of it is stored")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+    
+    void written(int count, long startNanos) {
+        records.increment(count);
+        write.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    void stored(long submitNanos) {
+        latency.record(System.nanoTime() - submitNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,388 @@
+package com.ipfix.graphql.ingest;
+
+import com.ipfix.graphql.config.IpfixIngestProperties;
+import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.repository.IpAddresses;
+import com.ipfix.graphql.repository.IpfixRecordStore;
+import com.ipfix.graphql.repository.RecordIds;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Staged ingest: the calling thread decodes and validates records and routes each by its flow key (addresses,
+ * ports and protocol) to a shard; the shard's worker thread assigns missing IDs and timestamps, writes the
+ * records to the store, which indexes them, and publishes them to live subscriptions. Records of one flow
+ * always take the same shard and are stored in arrival order.
+ * <p>
+ * Each shard buffers records in a bounded {@link SpscRingBuffer}. Producers of a shard take a short lock
+ * among themselves so the ring keeps a single producer; the worker side never locks. A full ring is the
+ * backpressure signal: {@link #submit} refuses the whole batch with an {@link IngestRejectedException},
+ * {@link #offer} keeps what fits and reports the rest as dropped.
+ */
+@Slf4j
+public class IngestPipeline implements SmartLifecycle {
+    
+    private final IpfixRecordStore store;
+    private final LiveFlowPublisher publisher;
+    private final IngestMetrics metrics;
+    private final int batchSize;
+    private final long idleWaitNanos;
+    private final Shard[] shards;
+    private final AtomicLong droppedRecords = new AtomicLong();
+    private final AtomicLong rejectedRecords = new AtomicLong();
+    
+    private volatile boolean running;
+    
+    public IngestPipeline(IpfixIngestProperties properties, IpfixRecordStore store, LiveFlowPublisher publisher,
+                          IngestMetrics metrics) {
+        if (properties.getBatchSize() < 1) {
+            throw new IllegalArgumentException("ipfix.ingest.batch-size must be positive");
+        }
+        this.store = store;
+        this.publisher = publisher;
+        this.metrics = metrics;
+        this.batchSize = properties.getBatchSize();
+        this.idleWaitNanos = Math.max(1, properties.getIdleWait().toNanos());
+        int count = properties.getShards() > 0 ? properties.getShards() : Runtime.getRuntime().availableProcessors();
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(i, properties.getRingCapacity());
+        }
+    }
+    
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (Shard shard : shards) {
+            shard.start();
+        }
+        log.info("Ingest pipeline started with {} shards of {} records", shards.length, shards[0].ring.capacity());
+    }
+    
+    /**
+     * Refuses further records, then waits for the shards to store everything already queued
+     */
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        for (Shard shard : shards) {
+            shard.producerLock.lock();
+        }
+        running = false;
+        for (Shard shard : shards) {
+            shard.producerLock.unlock();
+            LockSupport.unpark(shard.thread);
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * Starts before and stops after the web server and the collector, so neither loses records it accepted
+     */
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 4096;
+    }
+    
+    /**
+     * Queues a batch as a whole
+     *
+     * @return completes with the batch, IDs and timestamps assigned, once every record is stored,
+     * or exceptionally with the store's error
+     * @throws IllegalArgumentException when a record holds an invalid address
+     * @throws IngestRejectedException when a shard the batch routes to is full or the pipeline is stopped
+     */
+    public CompletableFuture<List<IpfixRecord>> submit(List<IpfixRecord> batch) {
+        long submitted = System.nanoTime();
+        List<IpfixRecord>[] routed = route(batch);
+        List<CompletableFuture<Void>> stored = new ArrayList<>();
+        int locked = 0;
+        try {
+            for (; locked < shards.length; locked++) {
+                if (routed[locked] != null) {
+                    shards[locked].producerLock.lock();
+                }
+            }
+            if (!running) {
+                throw reject(batch, "Ingest pipeline is stopped");
+            }
+            for (int i = 0; i < shards.length; i++) {
+                if (routed[i] != null && shards[i].ring.remainingCapacity() < routed[i].size()) {
+                    throw reject(batch, "Ingest queue is full, retry later");
+                }
+            }
+            for (int i = 0; i < shards.length; i++) {
+                if (routed[i] != null) {
+                    stored.add(shards[i].append(routed[i]));
+                }
+            }
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                if (routed[i] != null) {
+                    shards[i].producerLock.unlock();
+                }
+            }
+        }
+        // Completed off the shard threads so callers' continuations do not hold up the next write
+        return CompletableFuture.allOf(stored.toArray(CompletableFuture[]::new)).thenApplyAsync(done -> {
+            metrics.stored(submitted);
+            return batch;
+        });
+    }
+    
+    /**
+     * Queues as many records of a batch as the shards have room for, without waiting for them to be stored
+     *
+     * @return records dropped because their shard was full or the pipeline is stopped
+     * @throws IllegalArgumentException when a record holds an invalid address
+     */
+    public int offer(List<IpfixRecord> batch) {
+        List<IpfixRecord>[] routed = route(batch);
+        int dropped = 0;
+        for (int i = 0; i < shards.length; i++) {
+            if (routed[i] != null) {
+                dropped += routed[i].size() - shards[i].offer(routed[i]);
+            }
+        }
+        if (dropped > 0) {
+            droppedRecords.addAndGet(dropped);
+        }
+        return dropped;
+    }
+    
+    public int getShardCount() {
+        return shards.length;
+    }
+    
+    /**
+     * Records waiting in the shard rings
+     */
+    public long getQueuedRecords() {
+        long queued = 0;
+        for (Shard shard : shards) {
+            queued += shard.ring.size();
+        }
+        return queued;
+    }
+    
+    /**
+     * Records {@link #offer} could not queue
+     */
+    public long getDroppedRecords() {
+        return droppedRecords.get();
+    }
+    
+    /**
+     * Records of batches {@link #submit} refused
+     */
+    public long getRejectedRecords() {
+        return rejectedRecords.get();
+    }
+    
+    private IngestRejectedException reject(List<IpfixRecord> batch, String message) {
+        rejectedRecords.addAndGet(batch.size());
+        return new IngestRejectedException(message);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private List<IpfixRecord>[] route(List<IpfixRecord> batch) {
+        List<IpfixRecord>[] routed = new List[shards.length];
+        for (IpfixRecord record : batch) {
+            IpAddresses.requireValid(record);
+            int shard = shardOf(record, shards.length);
+            if (routed[shard] == null) {
+                routed[shard] = new ArrayList<>();
+            }
+            routed[shard].add(record);
+        }
+        return routed;
+    }
+    
+    /**
+     * Shard of a record's flow key
+     */
+    static int shardOf(IpfixRecord record, int shardCount) {
+        int hash = hash(record.getSourceIPv4Address() != null
+                ? record.getSourceIPv4Address() : record.getSourceIPv6Address());
+        hash = 31 * hash + hash(record.getDestinationIPv4Address() != null
+                ? record.getDestinationIPv4Address() : record.getDestinationIPv6Address());
+        hash = 31 * hash + hash(record.getSourceTransportPort());
+        hash = 31 * hash + hash(record.getDestinationTransportPort());
+        hash = 31 * hash + hash(record.getProtocolIdentifier());
+        return Math.floorMod(hash ^ (hash >>> 16), shardCount);
+    }
+    
+    private static int hash(Object value) {
+        return value == null ? 0 : value.hashCode();
+    }
+    
+    private void write(List<IpfixRecord> chunk) {
+        long start = System.nanoTime();
+        RecordIds.assign(chunk);
+        List<IpfixRecord> saved = store.saveAll(chunk);
+        publisher.publish(saved);
+        metrics.written(saved.size(), start);
+    }
+    
+    /**
+     * Caller waiting for the records with ring sequences {@code first} to {@code last}
+     */
+    private static final class Waiter {
+        
+        final long first;
+        final long last;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        // Set by the worker when a write covering part of the range failed
+        Throwable failure;
+        
+        Waiter(long first, long last) {
+            this.first = first;
+            this.last = last;
+        }
+    }
+    
+    private final class Shard implements Runnable {
+        
+        final SpscRingBuffer<IpfixRecord> ring;
+        final ReentrantLock producerLock = new ReentrantLock();
+        // Ordered by sequence since they are added under the producer lock
+        final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+        final Thread thread;
+        volatile boolean idle;
+        
+        Shard(int index, int capacity) {
+            this.ring = new SpscRingBuffer<>(capacity);
+            this.thread = new Thread(this, "ipfix-ingest-" + index);
+            thread.setDaemon(true);
+        }
+        
+        void start() {
+            thread.start();
+        }
+        
+        /**
+         * Appends records known to fit; caller holds the producer lock
+         */
+        CompletableFuture<Void> append(List<IpfixRecord> records) {
+            long first = ring.nextSequence();
+            Waiter waiter = new Waiter(first, first + records.size() - 1);
+            waiters.add(waiter);
+            for (IpfixRecord record : records) {
+                ring.offer(record);
+            }
+            wake();
+            return waiter.future;
+        }
+        
+        /**
+         * Appends records until the ring is full
+         *
+         * @return records appended
+         */
+        int offer(List<IpfixRecord> records) {
+            int appended = 0;
+            producerLock.lock();
+            try {
+                if (!running) {
+                    return 0;
+                }
+                while (appended < records.size() && ring.offer(records.get(appended))) {
+                    appended++;
+                }
+            } finally {
+                producerLock.unlock();
+            }
+            if (appended > 0) {
+                wake();
+            }
+            return appended;
+        }
+        
+        private void wake() {
+            if (idle) {
+                LockSupport.unpark(thread);
+            }
+        }
+        
+        @Override
+        public void run() {
+            List<IpfixRecord> chunk = new ArrayList<>(batchSize);
+            while (true) {
+                long first = ring.consumedSequence();
+                int count = ring.drainTo(chunk, batchSize);
+                if (count == 0) {
+                    if (!running) {
+                        // Producers stopped appending before running was cleared
+                        if (ring.isEmpty()) {
+                            return;
+                        }
+                        continue;
+                    }
+                    idle = true;
+                    if (ring.isEmpty() && running) {
+                        LockSupport.parkNanos(this, idleWaitNanos);
+                    }
+                    idle = false;
+                    continue;
+                }
+                Throwable failure = null;
+                try {
+                    write(chunk);
+                } catch (RuntimeException e) {
+                    failure = e;
+                    log.error("Ingest shard {} failed to store {} records", thread.getName(), count, e);
+                }
+                chunk.clear();
+                complete(first + count - 1, failure);
+            }
+        }
+        
+        /**
+         * Completes the waiters whose records are all written, up to sequence {@code last}. Waiters cover
+         * disjoint ascending ranges, so only the head can extend past the chunk.
+         */
+        private void complete(long last, Throwable failure) {
+            Waiter waiter;
+            while ((waiter = waiters.peek()) != null && waiter.first <= last) {
+                if (failure != null && waiter.failure == null) {
+                    waiter.failure = failure;
+                }
+                if (waiter.last > last) {
+                    return;
+                }
+                waiters.poll();
+                if (waiter.failure != null) {
+                    waiter.future.completeExceptionally(waiter.failure);
+                } else {
+                    waiter.future.complete(null);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.ipfix.graphql.ingest;
+
+/**
+ * Thrown when the ingest pipeline has no room for a batch; the caller should retry later
+ */
+public class IngestRejectedException extends RuntimeException {
+    
+    public IngestRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,67 @@
+package com.ipfix.graphql.ingest;
+
+import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.repository.IpfixRecordStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Single ingest path for the GraphQL mutations and the binary collector: stores records,
+ * then publishes them to live subscriptions. Goes through the {@link IngestPipeline} when one is
+ * configured, otherwise works on the calling thread.
+ */
+@Service
+public class IpfixIngestService {
+    
+    private final IpfixRecordStore repository;
+    private final LiveFlowPublisher publisher;
+    private final IngestMetrics metrics;
+    private final IngestPipeline pipeline;
+    
+    public IpfixIngestService(IpfixRecordStore repository, LiveFlowPublisher publisher, IngestMetrics metrics,
+                              ObjectProvider<IngestPipeline> pipeline) {
+        this.repository = repository;
+        this.publisher = publisher;
+        this.metrics = metrics;
+        this.pipeline = pipeline.getIfAvailable();
+    }
+    
+    /**
+     * Ingests a batch as a whole, completing once it is stored
+     *
+     * @throws IngestRejectedException when the pipeline has no room for the batch
+     */
+    public CompletableFuture<List<IpfixRecord>> submit(List<IpfixRecord> batch) {
+        if (pipeline != null) {
+            return pipeline.submit(batch);
+        }
+        long submitted = System.nanoTime();
+        List<IpfixRecord> saved = store(batch);
+        metrics.stored(submitted);
+        return CompletableFuture.completedFuture(saved);
+    }
+    
+    /**
+     * Ingests what the pipeline has room for without waiting for it to be stored
+     *
+     * @return records dropped for lack of room
+     */
+    public int offer(List<IpfixRecord> batch) {
+        if (pipeline != null) {
+            return pipeline.offer(batch);
+        }
+        store(batch);
+        return 0;
+    }
+    
+    private List<IpfixRecord> store(List<IpfixRecord> batch) {
+        long start = System.nanoTime();
+        List<IpfixRecord> saved = repository.saveAll(batch);
+        publisher.publish(saved);
+        metrics.written(saved.size(), start);
+        return saved;
+    }
+}
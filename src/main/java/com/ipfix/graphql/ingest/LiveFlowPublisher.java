@@ -0,0 +1,97 @@
+package com.ipfix.graphql.ingest;
+
+import com.ipfix.graphql.config.IpfixSubscriptionProperties;
+import com.ipfix.graphql.model.IpfixRecord;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fans ingested records out to live subscriptions. Subscribers with equal {@link FlowMatcher}s share one
+ * multicast sink, so each record is tested once per distinct filter however many screens watch it.
+ * Every subscriber gets its own bounded buffer; when a slow consumer fills it, records are dropped
+ * according to {@code ipfix.subscriptions.overflow} instead of holding up ingest.
+ */
+@Component
+public class LiveFlowPublisher {
+    
+    private final Map<FlowMatcher, SharedStream> streams = new ConcurrentHashMap<>();
+    private final int bufferSize;
+    private final BufferOverflowStrategy overflow;
+    private final AtomicLong droppedRecords = new AtomicLong();
+    
+    public LiveFlowPublisher(IpfixSubscriptionProperties properties) {
+        if (properties.getBufferSize() < 1) {
+            throw new IllegalArgumentException("ipfix.subscriptions.buffer-size must be positive");
+        }
+        this.bufferSize = properties.getBufferSize();
+        this.overflow = properties.getOverflow();
+    }
+    
+    /**
+     * Records ingested from subscription onwards that match {@code matcher}
+     */
+    public Flux<IpfixRecord> subscribe(FlowMatcher matcher) {
+        return Flux.defer(() -> {
+            SharedStream stream = streams.compute(matcher, (m, shared) -> {
+                SharedStream joined = shared != null ? shared : new SharedStream();
+                joined.subscribers++;
+                return joined;
+            });
+            return stream.sink.asFlux()
+                    .onBackpressureBuffer(bufferSize, dropped -> droppedRecords.incrementAndGet(), overflow)
+                    .doFinally(signal -> leave(matcher));
+        });
+    }
+    
+    /**
+     * Hands stored records to the matching subscriptions; returns at once when nobody is subscribed
+     */
+    public void publish(List<IpfixRecord> records) {
+        if (streams.isEmpty()) {
+            return;
+        }
+        streams.forEach((matcher, stream) -> {
+            // Sinks reject concurrent emission, and ingest runs on collector and request threads
+            synchronized (stream) {
+                for (IpfixRecord record : records) {
+                    if (matcher.test(record)) {
+                        stream.sink.tryEmitNext(record);
+                    }
+                }
+            }
+        });
+    }
+    
+    /**
+     * Distinct filters currently subscribed to
+     */
+    public int getStreamCount() {
+        return streams.size();
+    }
+    
+    /**
+     * Records discarded because a subscriber's buffer was full
+     */
+    public long getDroppedRecords() {
+        return droppedRecords.get();
+    }
+    
+    private void leave(FlowMatcher matcher) {
+        streams.computeIfPresent(matcher, (m, stream) -> --stream.subscribers == 0 ? null : stream);
+    }
+    
+    private static final class SharedStream {
+        
+        // Best effort: a subscriber without demand misses records rather than blocking the others
+        final Sinks.Many<IpfixRecord> sink = Sinks.many().multicast().directBestEffort();
+        // Only changed inside ConcurrentHashMap.compute for this stream's key
+        int subscribers;
+    }
+}
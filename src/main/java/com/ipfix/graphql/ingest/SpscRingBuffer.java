@@ -0,0 +1,117 @@
+package com.ipfix.graphql.ingest;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free queue for exactly one producer thread and one consumer thread at a time. Slots are
+ * handed over through two sequence counters written with release and read with acquire semantics; each
+ * side caches the other's counter and only rereads it when the cached value says the ring is full or empty.
+ * Callers with several producers must serialize them.
+ */
+final class SpscRingBuffer<E> {
+    
+    private final Object[] slots;
+    private final int mask;
+    
+    // Next sequence to read, written by the consumer
+    private final AtomicLong head = new AtomicLong();
+    // Next sequence to write, written by the producer
+    private final AtomicLong tail = new AtomicLong();
+    
+    // Producer's last view of head
+    private long cachedHead;
+    // Consumer's last view of tail
+    private long cachedTail;
+    
+    SpscRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Ring capacity must be between 1 and 2^30: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new Object[size];
+        this.mask = size - 1;
+    }
+    
+    int capacity() {
+        return slots.length;
+    }
+    
+    /**
+     * Free slots as seen by the producer; never more than are really free
+     */
+    int remainingCapacity() {
+        cachedHead = head.getAcquire();
+        return slots.length - (int) (tail.getPlain() - cachedHead);
+    }
+    
+    /**
+     * Sequence the next offered element will get
+     */
+    long nextSequence() {
+        return tail.getPlain();
+    }
+    
+    /**
+     * Appends an element; producer only
+     *
+     * @return false when the ring is full
+     */
+    boolean offer(E element) {
+        long sequence = tail.getPlain();
+        if (sequence - cachedHead == slots.length) {
+            cachedHead = head.getAcquire();
+            if (sequence - cachedHead == slots.length) {
+                return false;
+            }
+        }
+        slots[(int) sequence & mask] = element;
+        tail.setRelease(sequence + 1);
+        return true;
+    }
+    
+    /**
+     * Moves up to {@code max} elements into {@code sink}; consumer only
+     *
+     * @return elements moved
+     */
+    @SuppressWarnings("unchecked")
+    int drainTo(List<? super E> sink, int max) {
+        long sequence = head.getPlain();
+        if (cachedTail == sequence) {
+            cachedTail = tail.getAcquire();
+        }
+        int count = (int) Math.min(max, cachedTail - sequence);
+        for (int i = 0; i < count; i++) {
+            int index = (int) (sequence + i) & mask;
+            sink.add((E) slots[index]);
+            slots[index] = null;
+        }
+        if (count > 0) {
+            head.setRelease(sequence + count);
+        }
+        return count;
+    }
+    
+    /**
+     * Sequence the consumer reads next; everything below it has been taken
+     */
+    long consumedSequence() {
+        return head.getPlain();
+    }
+    
+    /**
+     * Elements waiting, for monitoring from any thread
+     */
+    int size() {
+        long consumed = head.get();
+        return (int) (tail.get() - consumed);
+    }
+    
+    boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+}
@@ -0,0 +1,10 @@
+package com.ipfix.graphql.model;
+
+/**
+ * Which end of a flow an address filter applies to
+ */
+public enum AddressDirection {
+    SOURCE,
+    DESTINATION,
+    ANY
+}
@@ -0,0 +1,38 @@
+package com.ipfix.graphql.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Condition on one information element of a {@link FlowFilter}. Operands are text read with the element's
+ * type; every operator set must hold, and a record without the element only matches {@code isNull: true}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ElementCondition {
+    
+    // Element name as in IpfixRecord, or dpiInfo.*, bidirectionalFlowInfo.* and certInfo.*
+    private String element;
+    
+    private String eq;
+    private String ne;
+    private List<String> in;
+    private String gt;
+    private String gte;
+    private String lt;
+    private String lte;
+    
+    // Text elements only
+    private String prefix;
+    private String contains;
+    // Text search pattern, see TextSearch
+    private String matches;
+    
+    private Boolean isNull;
+}
@@ -0,0 +1,21 @@
+package com.ipfix.graphql.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Totals of one group of flow records
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlowAggregate {
+    
+    private String key;
+    private long bytes;     // sum of octetDeltaCount
+    private long packets;   // sum of packetDeltaCount
+    private long flows;     // number of flow records
+}
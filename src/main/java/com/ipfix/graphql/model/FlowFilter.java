@@ -0,0 +1,36 @@
+package com.ipfix.graphql.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Filter of live flow subscriptions and filtered queries. A record matches when every field set here matches,
+ * every {@link #where} condition and every {@link #and} filter holds and, when {@link #or} is given, at least
+ * one of its filters matches; an empty filter matches every record.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlowFilter {
+    
+    private String sourceCidr;
+    private String destinationCidr;
+    private Integer protocolIdentifier;
+    private Integer sourceTransportPort;
+    private Integer destinationTransportPort;
+    private String applicationName;
+    
+    // Record timestamp window, inclusive; either end open when null
+    private Instant start;
+    private Instant end;
+    
+    private List<ElementCondition> where;
+    private List<FlowFilter> and;
+    private List<FlowFilter> or;
+}
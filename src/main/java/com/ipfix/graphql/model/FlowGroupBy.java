@@ -0,0 +1,14 @@
+package com.ipfix.graphql.model;
+
+/**
+ * Element flow records are grouped by in aggregation queries
+ */
+public enum FlowGroupBy {
+    SOURCE_IP,
+    DESTINATION_IP,
+    SOURCE_PORT,
+    DESTINATION_PORT,
+    PROTOCOL,
+    APPLICATION_NAME,
+    SILK_APP_LABEL
+}
@@ -0,0 +1,10 @@
+package com.ipfix.graphql.model;
+
+/**
+ * Counter aggregation queries rank groups by
+ */
+public enum FlowMetric {
+    BYTES,
+    PACKETS,
+    FLOWS
+}
@@ -0,0 +1,23 @@
+package com.ipfix.graphql.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Totals of the flow records in one time bucket
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlowTimeBucket {
+    
+    private Instant start;
+    private long bytes;
+    private long packets;
+    private long flows;
+}
@@ -0,0 +1,20 @@
+package com.ipfix.graphql.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Compact result of a batch ingest: how many records were stored and the IDs bounding the batch
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestSummary {
+    
+    private Integer count;
+    private String firstId;
+    private String lastId;
+}
@@ -7,12 +7,15 @@ import lombok.NoArgsConstructor;
 
 import java.util.List;
 
+/**
+ * Relay connection over IPFIX records, newest first
+ */
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class SubTemplateMultiListElementInput {
-    private String semantic;
-    private List<SubTemplateListElementInput> subTemplateLists;
-    private String description;
+public class IpfixRecordConnection {
+    
+    private List<IpfixRecordEdge> edges;
+    private PageInfo pageInfo;
 }
@@ -0,0 +1,19 @@
+package com.ipfix.graphql.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Relay edge: a record and the opaque cursor pointing at it
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IpfixRecordEdge {
+    
+    private String cursor;
+    private IpfixRecord node;
+}
@@ -0,0 +1,15 @@
+package com.ipfix.graphql.model;
+
+/**
+ * DPI and application string elements covered by the text index
+ */
+public enum TextField {
+    HTTP_REQUEST_HOST,
+    HTTP_REQUEST_TARGET,
+    HTTP_USER_AGENT,
+    SSL_SERVER_NAME,
+    SSL_CERTIFICATE_SUBJECT,
+    DNS_QUERY_NAME,
+    APPLICATION_NAME,
+    APPLICATION_DESCRIPTION
+}
@@ -0,0 +1,181 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.config.IpfixBulkWriteProperties;
+import com.ipfix.graphql.model.IpfixRecord;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buffers saved records into batches and hands them to a bulk request of the remote store in the background.
+ * A batch is sent once it holds {@code batchSize} records or has waited {@code flushInterval}. At most
+ * {@code maxInFlight} requests run at once; adding blocks while they are all outstanding, which is the
+ * backpressure on ingest. A failed request is retried with exponential backoff; a batch still failing after
+ * {@code maxRetries} retries is dropped and counted.
+ * <p>
+ * Batches in flight together may land in either order, so two saves of one ID in quick succession may
+ * leave the older one stored.
+ */
+@Slf4j
+final class BulkWriter implements AutoCloseable {
+    
+    /**
+     * Sends one batch to the store; throws to have it retried
+     */
+    @FunctionalInterface
+    interface Sink {
+        void write(List<IpfixRecord> batch) throws Exception;
+    }
+    
+    private final String name;
+    private final IpfixBulkWriteProperties properties;
+    private final Sink sink;
+    private final Semaphore inFlight;
+    private final ExecutorService senders;
+    private final ScheduledExecutorService flusher;
+    private final AtomicLong failedRecords = new AtomicLong();
+    
+    // Batch being filled; guarded by this
+    private List<IpfixRecord> buffer = new ArrayList<>();
+    private long bufferStarted;
+    
+    BulkWriter(String name, IpfixBulkWriteProperties properties, Sink sink) {
+        this.name = name;
+        this.properties = properties;
+        this.sink = sink;
+        this.inFlight = new Semaphore(properties.getMaxInFlight());
+        AtomicInteger threads = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(properties.getMaxInFlight(), task -> {
+            Thread thread = new Thread(task, name + "-bulk-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, name + "-bulk-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, properties.getFlushInterval().toMillis());
+        flusher.scheduleWithFixedDelay(this::flushIfDue, interval, interval, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Queues records for writing, sending every batch they fill
+     */
+    void add(List<IpfixRecord> records) {
+        for (IpfixRecord record : records) {
+            List<IpfixRecord> full = null;
+            synchronized (this) {
+                if (buffer.isEmpty()) {
+                    bufferStarted = System.nanoTime();
+                }
+                buffer.add(record);
+                if (buffer.size() >= properties.getBatchSize()) {
+                    full = takeBuffer();
+                }
+            }
+            if (full != null) {
+                send(full);
+            }
+        }
+    }
+    
+    /**
+     * Sends the partial batch and waits until every request sent so far has completed
+     */
+    void flush() {
+        List<IpfixRecord> partial;
+        synchronized (this) {
+            partial = takeBuffer();
+        }
+        if (!partial.isEmpty()) {
+            send(partial);
+        }
+        inFlight.acquireUninterruptibly(properties.getMaxInFlight());
+        inFlight.release(properties.getMaxInFlight());
+    }
+    
+    /**
+     * Records dropped after their batch ran out of retries
+     */
+    long failedRecords() {
+        return failedRecords.get();
+    }
+    
+    @Override
+    public void close() {
+        flusher.shutdownNow();
+        flush();
+        senders.shutdown();
+    }
+    
+    private void flushIfDue() {
+        List<IpfixRecord> due = null;
+        synchronized (this) {
+            if (!buffer.isEmpty()
+                    && System.nanoTime() - bufferStarted >= properties.getFlushInterval().toNanos()) {
+                due = takeBuffer();
+            }
+        }
+        if (due != null) {
+            send(due);
+        }
+    }
+    
+    private List<IpfixRecord> takeBuffer() {
+        List<IpfixRecord> taken = buffer;
+        buffer = new ArrayList<>();
+        return taken;
+    }
+    
+    private void send(List<IpfixRecord> batch) {
+        inFlight.acquireUninterruptibly();
+        try {
+            senders.execute(() -> {
+                try {
+                    write(batch);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+    
+    private void write(List<IpfixRecord> batch) {
+        long backoff = properties.getRetryBackoff().toMillis();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                sink.write(batch);
+                return;
+            } catch (Exception e) {
+                if (attempt >= properties.getMaxRetries()) {
+                    failedRecords.addAndGet(batch.size());
+                    log.error("Dropped a batch of {} records after {} attempts to write to {}",
+                            batch.size(), attempt + 1, name, e);
+                    return;
+                }
+                log.warn("Bulk write of {} records to {} failed, retrying in {} ms: {}",
+                        batch.size(), name, backoff, e.toString());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    failedRecords.addAndGet(batch.size());
+                    return;
+                }
+                backoff *= 2;
+            }
+        }
+    }
+}
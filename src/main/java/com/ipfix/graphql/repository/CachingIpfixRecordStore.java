@@ -0,0 +1,626 @@
+package com.ipfix.graphql.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.ipfix.graphql.config.IpfixQueryCacheProperties;
+import com.ipfix.graphql.model.AddressDirection;
+import com.ipfix.graphql.model.FlowAggregate;
+import com.ipfix.graphql.model.FlowGroupBy;
+import com.ipfix.graphql.model.FlowMetric;
+import com.ipfix.graphql.model.FlowTimeBucket;
+import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.model.TextField;
+import com.ipfix.graphql.repository.FlowPredicate.Subnet;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Caches the results of the wrapped store's record and aggregation queries ({@code ipfix.query.cache.*}), keyed
+ * by query, arguments and {@link RecordProjection}. Arguments arrive normalized: times and CIDR blocks parsed,
+ * filters compiled into {@link FlowQuery FlowQueries} that are equal for equivalent filters, defaults applied.
+ * Eviction is Caffeine's W-TinyLFU, bounded by the records the results hold.
+ * <p>
+ * Each result keeps the scope of records that could change it: its time window, the page it covers and the
+ * filter its records passed. Saves and deletes drop only the results whose scope holds a written record, so
+ * ingest leaves results of other protocols, addresses and ended windows, and pages further back than the
+ * new records, cached. Results whose window ended before they were read live for {@code endedTtl}, the others
+ * for {@code ttl}; these bound how long changes made around this store (tier moves and expiry, other writers of
+ * a remote store) go unseen. Once per {@code ttl} the oldest stored timestamp is checked, and results reaching
+ * back past it are dropped, so records expired by retention do not outlive it in ended windows.
+ * <p>
+ * Results are indexed by the newest timestamp a record changing them can carry, so a write visits the results
+ * that are open-ended or reach its oldest record, not the whole cache; ended windows cost ingest nothing.
+ * Batches are taken as new records, which is what ingest writes. A single save with an ID also drops the
+ * results holding the version it replaces.
+ */
+public class CachingIpfixRecordStore implements IpfixRecordStore, AutoCloseable {
+    
+    private final IpfixRecordStore delegate;
+    private final Results results;
+    private final RecordProjection projection;
+    
+    public CachingIpfixRecordStore(IpfixRecordStore delegate, IpfixQueryCacheProperties properties) {
+        this(delegate, new Results(delegate, properties), RecordProjection.ALL);
+    }
+    
+    private CachingIpfixRecordStore(IpfixRecordStore delegate, Results results, RecordProjection projection) {
+        this.delegate = delegate;
+        this.results = results;
+        this.projection = projection;
+    }
+    
+    @Override
+    public IpfixRecord save(IpfixRecord record) {
+        Optional<IpfixRecord> replaced = record.getId() != null && results.holdsAny()
+                ? delegate.findById(record.getId()) : Optional.empty();
+        IpfixRecord saved = delegate.save(record);
+        results.changed(replaced.isPresent() ? List.of(replaced.get(), saved) : List.of(saved));
+        return saved;
+    }
+    
+    @Override
+    public List<IpfixRecord> saveAll(List<IpfixRecord> batch) {
+        List<IpfixRecord> saved = delegate.saveAll(batch);
+        results.changed(saved);
+        return saved;
+    }
+    
+    @Override
+    public Optional<IpfixRecord> findById(String id) {
+        return delegate.findById(id);
+    }
+    
+    @Override
+    public List<IpfixRecord> findAll() {
+        return delegate.findAll();
+    }
+    
+    @Override
+    public List<IpfixRecord> findAll(int limit, int offset) {
+        // Any write shifts the offsets
+        return records("findAll", Arrays.asList(limit, offset), Scope.ALL, Integer.MAX_VALUE,
+                () -> delegate.findAll(limit, offset));
+    }
+    
+    @Override
+    public List<IpfixRecord> findBySourceIp(String sourceIp) {
+        return findBySourceIp(sourceIp, null, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByDestinationIp(String destinationIp) {
+        return findByDestinationIp(destinationIp, null, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByProtocol(Integer protocolId) {
+        return findByProtocol(protocolId, null, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByTimeRange(Instant start, Instant end) {
+        return findByTimeRange(start, end, null, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public List<IpfixRecord> findPage(RecordKey after, int limit) {
+        return records("findPage", Arrays.asList(after, limit), Scope.ALL.before(after), limit,
+                () -> delegate.findPage(after, limit));
+    }
+    
+    @Override
+    public List<IpfixRecord> findBySourceIp(String sourceIp, RecordKey after, int limit) {
+        Scope scope = Scope.of(hasAddress(sourceIp, IpfixRecord::getSourceIPv4Address,
+                IpfixRecord::getSourceIPv6Address)).before(after);
+        return records("findBySourceIp", Arrays.asList(sourceIp, after, limit), scope, limit,
+                () -> limit == Integer.MAX_VALUE && after == null
+                        ? delegate.findBySourceIp(sourceIp) : delegate.findBySourceIp(sourceIp, after, limit));
+    }
+    
+    @Override
+    public List<IpfixRecord> findByDestinationIp(String destinationIp, RecordKey after, int limit) {
+        Scope scope = Scope.of(hasAddress(destinationIp, IpfixRecord::getDestinationIPv4Address,
+                IpfixRecord::getDestinationIPv6Address)).before(after);
+        return records("findByDestinationIp", Arrays.asList(destinationIp, after, limit), scope, limit,
+                () -> limit == Integer.MAX_VALUE && after == null ? delegate.findByDestinationIp(destinationIp)
+                        : delegate.findByDestinationIp(destinationIp, after, limit));
+    }
+    
+    @Override
+    public List<IpfixRecord> findByProtocol(Integer protocolId, RecordKey after, int limit) {
+        Scope scope = Scope.of(record -> Objects.equals(protocolId, record.getProtocolIdentifier())).before(after);
+        return records("findByProtocol", Arrays.asList(protocolId, after, limit), scope, limit,
+                () -> limit == Integer.MAX_VALUE && after == null
+                        ? delegate.findByProtocol(protocolId) : delegate.findByProtocol(protocolId, after, limit));
+    }
+    
+    @Override
+    public List<IpfixRecord> findByTimeRange(Instant start, Instant end, RecordKey after, int limit) {
+        Scope scope = Scope.ALL.within(start, end).before(after);
+        return records("findByTimeRange", Arrays.asList(start, end, after, limit), scope, limit,
+                () -> limit == Integer.MAX_VALUE && after == null
+                        ? delegate.findByTimeRange(start, end) : delegate.findByTimeRange(start, end, after, limit));
+    }
+    
+    @Override
+    public List<IpfixRecord> findBySubnet(IpNetwork subnet, AddressDirection direction, RecordKey after, int limit) {
+        Predicate<IpfixRecord> filter = direction == AddressDirection.ANY
+                ? new Subnet(subnet, AddressDirection.SOURCE).or(new Subnet(subnet, AddressDirection.DESTINATION))
+                : new Subnet(subnet, direction);
+        return records("findBySubnet", Arrays.asList(subnet, direction, after, limit), Scope.of(filter).before(after),
+                limit, () -> delegate.findBySubnet(subnet, direction, after, limit));
+    }
+    
+    @Override
+    public List<IpfixRecord> findWhere(FlowQuery query, RecordKey after, int limit) {
+        return records("findWhere", Arrays.asList(query, after, limit), Scope.of(query).before(after), limit,
+                () -> delegate.findWhere(query, after, limit));
+    }
+    
+    /**
+     * A view over the wrapped store's view, sharing this cache under keys that include the projection
+     */
+    @Override
+    public IpfixRecordStore reading(RecordProjection projection) {
+        return projection.equals(this.projection) ? this
+                : new CachingIpfixRecordStore(delegate.reading(projection), results, projection);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByText(TextSearch search, Set<TextField> fields, RecordKey after, int limit) {
+        Scope scope = Scope.of(FlowQuery.search(search, fields)).before(after);
+        return records("findByText", Arrays.asList(search, Set.copyOf(fields), after, limit), scope, limit,
+                () -> delegate.findByText(search, fields, after, limit));
+    }
+    
+    @Override
+    public List<FlowAggregate> aggregate(FlowGroupBy groupBy, FlowMetric metric, int limit, Instant start, Instant end) {
+        Key key = new Key("aggregate", Arrays.asList(groupBy, metric, limit, start, end), RecordProjection.ALL);
+        return results.get(key, Scope.ALL.within(start, end), Integer.MAX_VALUE,
+                () -> delegate.aggregate(groupBy, metric, limit, start, end));
+    }
+    
+    @Override
+    public List<FlowTimeBucket> timeSeries(Instant start, Instant end, Duration interval) {
+        Key key = new Key("timeSeries", Arrays.asList(start, end, interval), RecordProjection.ALL);
+        return results.get(key, Scope.ALL.within(start, end), Integer.MAX_VALUE,
+                () -> delegate.timeSeries(start, end, interval));
+    }
+    
+    @Override
+    public Optional<Instant> oldestTimestamp() {
+        return delegate.oldestTimestamp();
+    }
+    
+    @Override
+    public boolean deleteById(String id) {
+        Optional<IpfixRecord> deleted = results.holdsAny() ? delegate.findById(id) : Optional.empty();
+        boolean found = delegate.deleteById(id);
+        if (found && deleted.isPresent()) {
+            results.changed(List.of(deleted.get()));
+        } else if (found) {
+            results.clear();
+        }
+        return found;
+    }
+    
+    @Override
+    public void deleteAll() {
+        delegate.deleteAll();
+        results.clear();
+    }
+    
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+    
+    @Override
+    public long estimatedHeapBytes() {
+        return delegate.estimatedHeapBytes();
+    }
+    
+    @Override
+    public long indexedQueries() {
+        return delegate.indexedQueries();
+    }
+    
+    @Override
+    public long scannedQueries() {
+        return delegate.scannedQueries();
+    }
+    
+    /**
+     * Closes the wrapped store when it holds resources, as it would be closed unwrapped
+     */
+    @Override
+    public void close() throws Exception {
+        if (delegate instanceof AutoCloseable closeable && results.store == delegate) {
+            closeable.close();
+        }
+    }
+    
+    /**
+     * Hits, misses and evictions of the cache so far
+     */
+    public CacheStats cacheStats() {
+        return results.cache.stats();
+    }
+    
+    public long cachedResults() {
+        return results.cache.estimatedSize();
+    }
+    
+    /**
+     * Records held by cached results, each result counting one more
+     */
+    public long cachedRecords() {
+        return results.cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+    
+    /**
+     * Results dropped so far because a write could change them or they reached back past the oldest record
+     */
+    public long invalidatedResults() {
+        return results.invalidations.sum();
+    }
+    
+    private List<IpfixRecord> records(String query, List<Object> arguments, Scope scope, int limit,
+                                      Supplier<List<IpfixRecord>> load) {
+        return results.get(new Key(query, arguments, projection), scope, limit, load);
+    }
+    
+    /**
+     * Records with {@code address} in the field of either family, compared as addresses and as text
+     */
+    private static Predicate<IpfixRecord> hasAddress(String address, Function<IpfixRecord, String> ipv4,
+                                                     Function<IpfixRecord, String> ipv6) {
+        IpNetwork host = address == null ? null : IpNetwork.host(address);
+        return record -> sameAddress(address, host, ipv4.apply(record))
+                || sameAddress(address, host, ipv6.apply(record));
+    }
+    
+    private static boolean sameAddress(String address, IpNetwork host, String value) {
+        return value != null && (value.equals(address) || host != null && host.equals(IpNetwork.host(value)));
+    }
+    
+    record Key(String query, List<Object> arguments, RecordProjection projection) {
+    }
+    
+    /**
+     * Records whose saving or deletion can change a result: timestamped within [start, end] (open when null),
+     * ordered below {@code after} and, for a full page, not below its {@code last} record, and accepted by
+     * {@code filter}
+     */
+    record Scope(Instant start, Instant end, RecordKey after, RecordKey last, Predicate<IpfixRecord> filter) {
+        
+        static final Scope ALL = new Scope(null, null, null, null, record -> true);
+        
+        static Scope of(Predicate<IpfixRecord> filter) {
+            return new Scope(null, null, null, null, filter);
+        }
+        
+        Scope within(Instant start, Instant end) {
+            return new Scope(start, end, after, last, filter);
+        }
+        
+        Scope before(RecordKey after) {
+            return new Scope(start, end, after, last, filter);
+        }
+        
+        Scope from(RecordKey last) {
+            return new Scope(start, end, after, last, filter);
+        }
+        
+        boolean affects(IpfixRecord record) {
+            Instant timestamp = record.getTimestamp();
+            if (timestamp == null || record.getId() == null) {
+                return true;
+            }
+            if (start != null && timestamp.isBefore(start) || end != null && timestamp.isAfter(end)) {
+                return false;
+            }
+            RecordKey key = RecordKey.of(record);
+            if (after != null && key.compareTo(after) >= 0 || last != null && key.compareTo(last) < 0) {
+                return false;
+            }
+            return filter.test(record);
+        }
+        
+        /**
+         * Whether any of {@code records}, timestamped within [oldest, newest] when those are known, affects it
+         */
+        boolean affectsAny(List<IpfixRecord> records, Instant oldest, Instant newest) {
+            if (oldest != null && (end != null && oldest.isAfter(end) || start != null && newest.isBefore(start))) {
+                return false;
+            }
+            for (IpfixRecord record : records) {
+                if (affects(record)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        /**
+         * Newest timestamp a record affecting it can carry, or null when open-ended
+         */
+        Instant newest() {
+            if (after == null) {
+                return end;
+            }
+            return end == null || after.timestamp().isBefore(end) ? after.timestamp() : end;
+        }
+        
+        /**
+         * Whether it reaches back before {@code oldest}, so it may hold records that have since expired
+         */
+        boolean reachesBefore(Instant oldest) {
+            return oldest == null || start == null || start.isBefore(oldest);
+        }
+    }
+    
+    /**
+     * Position of a result in the write index: the newest timestamp of a record affecting it, open-ended last,
+     * then a sequence number telling results apart
+     */
+    record Slot(Instant newest, long sequence) implements Comparable<Slot> {
+        
+        private static final Comparator<Slot> ORDER =
+                Comparator.comparing(Slot::newest).thenComparingLong(Slot::sequence);
+        
+        @Override
+        public int compareTo(Slot other) {
+            return ORDER.compare(this, other);
+        }
+    }
+    
+    /**
+     * A cached result and its scope; compared by identity, so dropping it never drops a newer result of its key
+     */
+    private static final class Result {
+        
+        final List<?> value;
+        final Scope scope;
+        // Its time window ended before it was read, so it lives for endedTtl
+        final boolean ended;
+        final Slot slot;
+        
+        Result(List<?> value, Scope scope, boolean ended, Slot slot) {
+            this.value = value;
+            this.scope = scope;
+            this.ended = ended;
+            this.slot = slot;
+        }
+    }
+    
+    /**
+     * A query reading the wrapped store; writes affecting it meanwhile mark it stale, and its result is dropped
+     * once cached
+     */
+    private static final class Load {
+        
+        final Scope scope;
+        // Guarded by this
+        private boolean stale;
+        private boolean done;
+        
+        Load(Scope scope) {
+            this.scope = scope;
+        }
+        
+        synchronized void markStale() {
+            if (!done) {
+                stale = true;
+            }
+        }
+        
+        /**
+         * Ends the load, after its result was cached; a write that finds it ended then finds the result instead
+         */
+        synchronized boolean finish() {
+            done = true;
+            return stale;
+        }
+    }
+    
+    /**
+     * The cache and its bookkeeping, shared by the store and its projected views
+     */
+    private static final class Results {
+        
+        final Cache<Key, Result> cache;
+        final LongAdder invalidations = new LongAdder();
+        private final IpfixRecordStore store;
+        private final long maxRecords;
+        private final long ttlNanos;
+        private final long endedTtlNanos;
+        private final Set<Load> loads = ConcurrentHashMap.newKeySet();
+        // Keys of the cached results by slot, so a write visits only the results its records can reach
+        private final ConcurrentNavigableMap<Slot, Key> index = new ConcurrentSkipListMap<>();
+        private final AtomicLong slots = new AtomicLong();
+        // System.nanoTime() of the next check of the oldest stored timestamp, and that timestamp when last checked
+        private final AtomicLong horizonDue = new AtomicLong(System.nanoTime());
+        private volatile Instant horizon;
+        
+        Results(IpfixRecordStore store, IpfixQueryCacheProperties properties) {
+            this.store = store;
+            this.maxRecords = properties.getMaxRecords();
+            this.ttlNanos = properties.getTtl().toNanos();
+            this.endedTtlNanos = properties.getEndedTtl().toNanos();
+            this.cache = Caffeine.newBuilder()
+                    .maximumWeight(maxRecords)
+                    .weigher((Key key, Result result) -> result.value.size() + 1)
+                    .expireAfter(new Expiry<Key, Result>() {
+                        @Override
+                        public long expireAfterCreate(Key key, Result result, long currentTime) {
+                            return result.ended ? endedTtlNanos : ttlNanos;
+                        }
+                        
+                        @Override
+                        public long expireAfterUpdate(Key key, Result result, long currentTime, long currentDuration) {
+                            return expireAfterCreate(key, result, currentTime);
+                        }
+                        
+                        @Override
+                        public long expireAfterRead(Key key, Result result, long currentTime, long currentDuration) {
+                            return currentDuration;
+                        }
+                    })
+                    .evictionListener((Key key, Result result, RemovalCause cause) -> {
+                        if (result != null) {
+                            index.remove(result.slot, key);
+                        }
+                    })
+                    .recordStats()
+                    .build();
+        }
+        
+        /**
+         * Cached result of a query, or the result of {@code query}, cached unless a write affected it meanwhile;
+         * a result of {@code limit} or more records is a full page, changed only by records not below its last
+         */
+        @SuppressWarnings("unchecked")
+        <T> List<T> get(Key key, Scope scope, int limit, Supplier<List<T>> query) {
+            checkHorizon();
+            Result cached = cache.getIfPresent(key);
+            if (cached != null) {
+                return (List<T>) cached.value;
+            }
+            boolean ended = scope.end() != null && scope.end().isBefore(Instant.now());
+            Load load = new Load(scope);
+            loads.add(load);
+            List<T> value;
+            Result result = null;
+            try {
+                value = Collections.unmodifiableList(query.get());
+                if (value.size() < maxRecords) {
+                    Scope bounded = value.size() >= limit && value.get(value.size() - 1) instanceof IpfixRecord last
+                            ? scope.from(RecordKey.of(last)) : scope;
+                    Instant newest = bounded.newest();
+                    result = new Result(value, bounded, ended,
+                            new Slot(newest == null ? Instant.MAX : newest, slots.incrementAndGet()));
+                    put(key, result);
+                }
+            } finally {
+                loads.remove(load);
+            }
+            if (load.finish() && result != null && cache.asMap().remove(key, result)) {
+                index.remove(result.slot, key);
+                invalidations.increment();
+            }
+            return value;
+        }
+        
+        /**
+         * Caches a result and indexes it; the load is still registered, so writes meanwhile mark it stale
+         */
+        private void put(Key key, Result result) {
+            Result replaced = cache.asMap().put(key, result);
+            if (replaced != null) {
+                index.remove(replaced.slot, key);
+            }
+            index.put(result.slot, key);
+            if (cache.policy().getIfPresentQuietly(key) != result) {
+                // Replaced or evicted before it was indexed
+                index.remove(result.slot, key);
+            }
+        }
+        
+        /**
+         * Whether a write may affect any result, cached or loading
+         */
+        boolean holdsAny() {
+            return !loads.isEmpty() || cache.estimatedSize() > 0;
+        }
+        
+        /**
+         * Drops the results {@code records}, just saved or deleted, could change
+         */
+        void changed(List<IpfixRecord> records) {
+            if (records.isEmpty() || !holdsAny()) {
+                return;
+            }
+            Instant oldest = null;
+            Instant newest = null;
+            for (IpfixRecord record : records) {
+                Instant timestamp = record.getTimestamp();
+                if (timestamp == null) {
+                    oldest = null;
+                    break;
+                }
+                oldest = oldest == null || timestamp.isBefore(oldest) ? timestamp : oldest;
+                newest = newest == null || timestamp.isAfter(newest) ? timestamp : newest;
+            }
+            Instant from = oldest;
+            Instant to = newest;
+            invalidate(scope -> scope.affectsAny(records, from, to), from);
+        }
+        
+        void clear() {
+            invalidate(scope -> true, null);
+        }
+        
+        /**
+         * Drops the {@code affected} results among those a record timestamped {@code oldest} or later can reach,
+         * or among all when null
+         */
+        private void invalidate(Predicate<Scope> affected, Instant oldest) {
+            for (Load load : loads) {
+                if (affected.test(load.scope)) {
+                    load.markStale();
+                }
+            }
+            ConcurrentMap<Key, Result> entries = cache.asMap();
+            Map<Slot, Key> reached = oldest == null ? index : index.tailMap(new Slot(oldest, Long.MIN_VALUE));
+            for (Map.Entry<Slot, Key> slot : reached.entrySet()) {
+                Result result = cache.policy().getIfPresentQuietly(slot.getValue());
+                if (result == null || result.slot != slot.getKey()) {
+                    // Expired, or replaced by a newer result of its key
+                    index.remove(slot.getKey(), slot.getValue());
+                } else if (affected.test(result.scope) && entries.remove(slot.getValue(), result)) {
+                    index.remove(result.slot, slot.getValue());
+                    invalidations.increment();
+                }
+            }
+        }
+        
+        /**
+         * Once per ttl, drops the results reaching back past the oldest stored record when it moved forward
+         */
+        private void checkHorizon() {
+            long now = System.nanoTime();
+            long due = horizonDue.get();
+            if (now - due < 0 || !horizonDue.compareAndSet(due, now + ttlNanos)) {
+                return;
+            }
+            Instant oldest = store.oldestTimestamp().orElse(null);
+            Instant previous = horizon;
+            horizon = oldest;
+            if (previous != null && (oldest == null || oldest.isAfter(previous))) {
+                invalidate(scope -> scope.reachesBefore(oldest), null);
+            }
+        }
+    }
+}
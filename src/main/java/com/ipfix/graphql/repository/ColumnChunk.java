@@ -0,0 +1,133 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.model.IpfixRecord;
+
+/**
+ * A fixed number of rows of the columnar store. Timestamps, IDs and presence bits are always
+ * allocated; value columns are allocated on first use, so elements an exporter never sends cost nothing.
+ * A row's presence word has one bit per long column (bits 0-31) and per int column (bits 32-61).
+ */
+final class ColumnChunk {
+    
+    static final int SHIFT = 14;
+    static final int SIZE = 1 << SHIFT;
+    static final int MASK = SIZE - 1;
+    
+    // Long columns
+    static final int OCTETS = 0;
+    static final int PACKETS = 1;
+    static final int FLOWS = 2;
+    static final int FLOW_START = 3;
+    static final int FLOW_END = 4;
+    static final int FLOW_START_SYS_UP_TIME = 5;
+    static final int FLOW_END_SYS_UP_TIME = 6;
+    static final int SOURCE_V6_HIGH = 7;
+    static final int SOURCE_V6_LOW = 8;
+    static final int DESTINATION_V6_HIGH = 9;
+    static final int DESTINATION_V6_LOW = 10;
+    static final int EXPORTER_V6_HIGH = 11;
+    static final int EXPORTER_V6_LOW = 12;
+    static final int LONG_COLUMNS = 13;
+    
+    // Int columns
+    static final int PROTOCOL = 0;
+    static final int CLASS_OF_SERVICE = 1;
+    static final int TCP_FLAGS = 2;
+    static final int SOURCE_PORT = 3;
+    static final int SOURCE_V4 = 4;
+    static final int SOURCE_V4_PREFIX = 5;
+    static final int INGRESS_INTERFACE = 6;
+    static final int DESTINATION_PORT = 7;
+    static final int DESTINATION_V4 = 8;
+    static final int DESTINATION_V4_PREFIX = 9;
+    static final int EGRESS_INTERFACE = 10;
+    static final int NEXT_HOP_V4 = 11;
+    static final int SOURCE_V6_PREFIX = 12;
+    static final int DESTINATION_V6_PREFIX = 13;
+    static final int MPLS_LABEL_1 = 14;
+    static final int MPLS_LABEL_2 = 15;
+    static final int MPLS_LABEL_3 = 16;
+    static final int APPLICATION_ID = 17;
+    static final int OBSERVATION_DOMAIN = 18;
+    static final int EXPORTER_V4 = 19;
+    static final int INT_COLUMNS = 20;
+    
+    // Row flags kept in the presence word
+    static final long UUID_ID = 1L << 62;
+    static final long DELETED = 1L << 63;
+    
+    // Epoch nanoseconds
+    final long[] timestamps = new long[SIZE];
+    // Canonical UUID IDs as two halves; other IDs are kept in the remainder
+    final long[] idHigh = new long[SIZE];
+    final long[] idLow = new long[SIZE];
+    final long[] present = new long[SIZE];
+    final long[][] longs = new long[LONG_COLUMNS][];
+    final int[][] ints = new int[INT_COLUMNS][];
+    // Elements without a primitive column, null when a row has none
+    final IpfixRecord[] remainders = new IpfixRecord[SIZE];
+    
+    void setLong(int column, int row, long value) {
+        if (longs[column] == null) {
+            longs[column] = new long[SIZE];
+        }
+        longs[column][row] = value;
+        present[row] |= 1L << column;
+    }
+    
+    void setInt(int column, int row, int value) {
+        if (ints[column] == null) {
+            ints[column] = new int[SIZE];
+        }
+        ints[column][row] = value;
+        present[row] |= 1L << (32 + column);
+    }
+    
+    boolean hasLong(int column, int row) {
+        return (present[row] & (1L << column)) != 0;
+    }
+    
+    boolean hasInt(int column, int row) {
+        return (present[row] & (1L << (32 + column))) != 0;
+    }
+    
+    boolean isDeleted(int row) {
+        return (present[row] & DELETED) != 0;
+    }
+    
+    /**
+     * Heap of the chunk's arrays; the remainder records they point to are not included
+     */
+    long arrayBytes() {
+        long bytes = 4 * (16 + 8L * SIZE) + 16 + 4L * SIZE;
+        for (long[] column : longs) {
+            bytes += column != null ? 16 + 8L * SIZE : 0;
+        }
+        for (int[] column : ints) {
+            bytes += column != null ? 16 + 4L * SIZE : 0;
+        }
+        return bytes;
+    }
+    
+    /**
+     * Copies a row of another chunk into {@code row} of this one
+     */
+    void copyRow(ColumnChunk from, int source, int row) {
+        long bits = from.present[source];
+        timestamps[row] = from.timestamps[source];
+        idHigh[row] = from.idHigh[source];
+        idLow[row] = from.idLow[source];
+        remainders[row] = from.remainders[source];
+        present[row] = bits & (UUID_ID | DELETED);
+        for (int column = 0; column < LONG_COLUMNS; column++) {
+            if ((bits & (1L << column)) != 0) {
+                setLong(column, row, from.longs[column][source]);
+            }
+        }
+        for (int column = 0; column < INT_COLUMNS; column++) {
+            if ((bits & (1L << (32 + column))) != 0) {
+                setInt(column, row, from.ints[column][source]);
+            }
+        }
+    }
+}
@@ -0,0 +1,1047 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.model.AddressDirection;
+import com.ipfix.graphql.model.FlowAggregate;
+import com.ipfix.graphql.model.FlowGroupBy;
+import com.ipfix.graphql.model.FlowMetric;
+import com.ipfix.graphql.model.FlowTimeBucket;
+import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.model.TextField;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+import static com.ipfix.graphql.repository.ColumnChunk.*;
+
+/**
+ * Column-oriented in-memory store ({@code ipfix.storage.layout=columnar}).
+ * Core information elements are kept in primitive arrays split into {@link ColumnChunk}s:
+ * counters, timestamps and sysUpTime values as longs, ports, protocol and other small integers
+ * as ints, IPv4 addresses as ints and IPv6 addresses as (high, low) long pairs. Everything else
+ * (strings, DPI, biflow and CERT info, structured lists) goes to a per-row remainder record. {@link IpfixRecord}s are only built for the rows a query returns.
+ * <p>
+ * Rows are appended; {@code order} lists row numbers sorted by {@link RecordKey}. Replaced and
+ * deleted rows become tombstones and are reclaimed by compaction once they outnumber live rows.
+ * IPv6 addresses come back in RFC 5952 form. A read/write lock guards the whole store.
+ * <p>
+ * DPI and application strings are indexed per {@link TextField} in a {@link TextIndex} of row lists; a text
+ * search marks the rows of the matching values and walks the order testing only those marks.
+ */
+@Repository
+@Qualifier(IpfixRecordStore.HOT_TIER)
+@ConditionalOnProperty(prefix = "ipfix.storage", name = "layout", havingValue = "columnar")
+public class ColumnarIpfixRecordStore implements IpfixRecordStore {
+    
+    private static final List<LongField> LONG_FIELDS = List.of(
+            new LongField(OCTETS, IpfixRecord::getOctetDeltaCount, IpfixRecord::setOctetDeltaCount),
+            new LongField(PACKETS, IpfixRecord::getPacketDeltaCount, IpfixRecord::setPacketDeltaCount),
+            new LongField(FLOWS, IpfixRecord::getDeltaFlowCount, IpfixRecord::setDeltaFlowCount),
+            new LongField(FLOW_START_SYS_UP_TIME, IpfixRecord::getFlowStartSysUpTime, IpfixRecord::setFlowStartSysUpTime),
+            new LongField(FLOW_END_SYS_UP_TIME, IpfixRecord::getFlowEndSysUpTime, IpfixRecord::setFlowEndSysUpTime));
+    
+    private static final List<IntField> INT_FIELDS = List.of(
+            new IntField(PROTOCOL, IpfixRecord::getProtocolIdentifier, IpfixRecord::setProtocolIdentifier),
+            new IntField(CLASS_OF_SERVICE, IpfixRecord::getIpClassOfService, IpfixRecord::setIpClassOfService),
+            new IntField(TCP_FLAGS, IpfixRecord::getTcpControlBits, IpfixRecord::setTcpControlBits),
+            new IntField(SOURCE_PORT, IpfixRecord::getSourceTransportPort, IpfixRecord::setSourceTransportPort),
+            new IntField(SOURCE_V4_PREFIX, IpfixRecord::getSourceIPv4PrefixLength, IpfixRecord::setSourceIPv4PrefixLength),
+            new IntField(INGRESS_INTERFACE, IpfixRecord::getIngressInterface, IpfixRecord::setIngressInterface),
+            new IntField(DESTINATION_PORT, IpfixRecord::getDestinationTransportPort, IpfixRecord::setDestinationTransportPort),
+            new IntField(DESTINATION_V4_PREFIX, IpfixRecord::getDestinationIPv4PrefixLength,
+                    IpfixRecord::setDestinationIPv4PrefixLength),
+            new IntField(EGRESS_INTERFACE, IpfixRecord::getEgressInterface, IpfixRecord::setEgressInterface),
+            new IntField(SOURCE_V6_PREFIX, IpfixRecord::getSourceIPv6PrefixLength, IpfixRecord::setSourceIPv6PrefixLength),
+            new IntField(DESTINATION_V6_PREFIX, IpfixRecord::getDestinationIPv6PrefixLength,
+                    IpfixRecord::setDestinationIPv6PrefixLength),
+            new IntField(MPLS_LABEL_1, IpfixRecord::getMplsTopLabelStackSection, IpfixRecord::setMplsTopLabelStackSection),
+            new IntField(MPLS_LABEL_2, IpfixRecord::getMplsLabelStackSection2, IpfixRecord::setMplsLabelStackSection2),
+            new IntField(MPLS_LABEL_3, IpfixRecord::getMplsLabelStackSection3, IpfixRecord::setMplsLabelStackSection3),
+            new IntField(APPLICATION_ID, IpfixRecord::getApplicationId, IpfixRecord::setApplicationId),
+            new IntField(OBSERVATION_DOMAIN, IpfixRecord::getObservationDomainId, IpfixRecord::setObservationDomainId));
+    
+    // Heap of a distinct text value: its bucket, sorted and reversed set entries and token set entries
+    private static final long TEXT_VALUE_BYTES = 400;
+    
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private List<ColumnChunk> chunks = new ArrayList<>();
+    // Row numbers sorted by (timestamp, id), tombstones included
+    private int[] order = new int[ColumnChunk.SIZE];
+    private int rows;
+    private int live;
+    
+    // Row of every UUID ID (stale entries point at tombstones), and of any other ID
+    private UuidIndex uuidRows = new UuidIndex();
+    private Map<String, Integer> otherRows = new HashMap<>();
+    // Rows holding each distinct text value, tombstones included until compaction
+    private Map<TextField, TextIndex<RowList>> byText = textIndexes();
+    private long textEntries;
+    
+    private final LongAdder indexedQueries = new LongAdder();
+    private final LongAdder scannedQueries = new LongAdder();
+    
+    @Override
+    public IpfixRecord save(IpfixRecord record) {
+        if (record.getId() == null) {
+            record.setId(RecordIds.next());
+        }
+        if (record.getTimestamp() == null) {
+            record.setTimestamp(Instant.now());
+        }
+        IpAddresses.requireValid(record);
+        FlowStrings.intern(record);
+        StructuredLists.pack(record);
+        lock.writeLock().lock();
+        try {
+            put(record);
+            compactIfSparse();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return record;
+    }
+    
+    /**
+     * Saves a batch under a single write lock; IDs and timestamps are assigned as in {@link IpfixRecordRepository}
+     */
+    @Override
+    public List<IpfixRecord> saveAll(List<IpfixRecord> batch) {
+        if (batch.isEmpty()) {
+            return batch;
+        }
+        RecordIds.assign(batch);
+        for (IpfixRecord record : batch) {
+            epochNanos(record.getTimestamp());
+            IpAddresses.requireValid(record);
+            FlowStrings.intern(record);
+            StructuredLists.pack(record);
+        }
+        lock.writeLock().lock();
+        try {
+            for (IpfixRecord record : batch) {
+                put(record);
+            }
+            compactIfSparse();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return batch;
+    }
+    
+    @Override
+    public Optional<IpfixRecord> findById(String id) {
+        indexedQueries.increment();
+        lock.readLock().lock();
+        try {
+            int row = rowOf(id);
+            return row < 0 ? Optional.empty() : Optional.of(materialize(row));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public List<IpfixRecord> findAll() {
+        scannedQueries.increment();
+        lock.readLock().lock();
+        try {
+            List<IpfixRecord> all = new ArrayList<>(live);
+            for (int i = 0; i < rows; i++) {
+                int row = order[i];
+                if (!chunk(row).isDeleted(row & MASK)) {
+                    all.add(materialize(row));
+                }
+            }
+            return all;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public List<IpfixRecord> findAll(int limit, int offset) {
+        scannedQueries.increment();
+        lock.readLock().lock();
+        try {
+            List<IpfixRecord> page = new ArrayList<>(Math.min(limit, 1024));
+            int skipped = 0;
+            for (int i = rows - 1; i >= 0 && page.size() < limit; i--) {
+                int row = order[i];
+                if (chunk(row).isDeleted(row & MASK)) {
+                    continue;
+                }
+                if (skipped < offset) {
+                    skipped++;
+                } else {
+                    page.add(materialize(row));
+                }
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public List<IpfixRecord> findBySourceIp(String sourceIp) {
+        return findBySourceIp(sourceIp, null, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByDestinationIp(String destinationIp) {
+        return findByDestinationIp(destinationIp, null, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByProtocol(Integer protocolId) {
+        return findByProtocol(protocolId, null, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByTimeRange(Instant start, Instant end) {
+        return findByTimeRange(start, end, null, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public List<IpfixRecord> findPage(RecordKey after, int limit) {
+        indexedQueries.increment();
+        return scan(null, null, after, limit, row -> true);
+    }
+    
+    @Override
+    public List<IpfixRecord> findBySourceIp(String sourceIp, RecordKey after, int limit) {
+        scannedQueries.increment();
+        IpNetwork host = IpNetwork.host(sourceIp);
+        if (host == null) {
+            return new ArrayList<>();
+        }
+        return scan(null, null, after, limit, networkMatcher(host, SOURCE_V4, SOURCE_V6_HIGH, SOURCE_V6_LOW));
+    }
+    
+    @Override
+    public List<IpfixRecord> findByDestinationIp(String destinationIp, RecordKey after, int limit) {
+        scannedQueries.increment();
+        IpNetwork host = IpNetwork.host(destinationIp);
+        if (host == null) {
+            return new ArrayList<>();
+        }
+        return scan(null, null, after, limit, networkMatcher(host, DESTINATION_V4, DESTINATION_V6_HIGH,
+                DESTINATION_V6_LOW));
+    }
+    
+    @Override
+    public List<IpfixRecord> findByProtocol(Integer protocolId, RecordKey after, int limit) {
+        scannedQueries.increment();
+        if (protocolId == null) {
+            return new ArrayList<>();
+        }
+        int protocol = protocolId;
+        return scan(null, null, after, limit, row -> {
+            ColumnChunk chunk = chunk(row);
+            int i = row & MASK;
+            return chunk.hasInt(PROTOCOL, i) && chunk.ints[PROTOCOL][i] == protocol;
+        });
+    }
+    
+    @Override
+    public List<IpfixRecord> findByTimeRange(Instant start, Instant end, RecordKey after, int limit) {
+        indexedQueries.increment();
+        if (end.isBefore(start)) {
+            return new ArrayList<>();
+        }
+        return scan(RecordKey.lowest(start), RecordKey.lowest(end.plusNanos(1)), after, limit, row -> true);
+    }
+    
+    /**
+     * Scans the address columns; a CIDR match is a masked compare of one int or two longs per row
+     */
+    @Override
+    public List<IpfixRecord> findBySubnet(IpNetwork subnet, AddressDirection direction, RecordKey after, int limit) {
+        scannedQueries.increment();
+        IntPredicate source = networkMatcher(subnet, SOURCE_V4, SOURCE_V6_HIGH, SOURCE_V6_LOW);
+        IntPredicate destination = networkMatcher(subnet, DESTINATION_V4, DESTINATION_V6_HIGH, DESTINATION_V6_LOW);
+        IntPredicate filter = switch (direction) {
+            case SOURCE -> source;
+            case DESTINATION -> destination;
+            case ANY -> source.or(destination);
+        };
+        return scan(null, null, after, limit, filter);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByText(TextSearch search, Set<TextField> fields, RecordKey after, int limit) {
+        indexedQueries.increment();
+        lock.readLock().lock();
+        try {
+            BitSet matches = new BitSet(rows);
+            for (TextField field : fields) {
+                for (RowList list : byText.get(field).lookup(search)) {
+                    for (int k = 0; k < list.size; k++) {
+                        matches.set(list.rows[k]);
+                    }
+                }
+            }
+            return matches.isEmpty() ? new ArrayList<>() : scan(null, null, after, limit, matches::get);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Scans chunks in parallel straight off the columns, one {@link FlowAggregator} per chunk
+     */
+    @Override
+    public List<FlowAggregate> aggregate(FlowGroupBy groupBy, FlowMetric metric, int limit, Instant start, Instant end) {
+        scannedQueries.increment();
+        long from = start == null ? Long.MIN_VALUE : epochNanos(start);
+        long to = end == null ? Long.MAX_VALUE : epochNanos(end);
+        return aggregateChunks((chunk, i, aggregator) -> {
+            long timestamp = chunk.timestamps[i];
+            if (timestamp >= from && timestamp <= to) {
+                accumulate(aggregator, groupBy, chunk, i);
+            }
+        }).top(metric, limit, FlowAggregator.numericLabel(groupBy));
+    }
+    
+    @Override
+    public List<FlowTimeBucket> timeSeries(Instant start, Instant end, Duration interval) {
+        scannedQueries.increment();
+        int buckets = FlowAggregator.bucketCount(start, end, interval);
+        long intervalNanos = FlowAggregator.intervalNanos(interval);
+        long from = epochNanos(start);
+        long to = epochNanos(end);
+        return aggregateChunks((chunk, i, aggregator) -> {
+            long timestamp = chunk.timestamps[i];
+            if (timestamp >= from && timestamp <= to) {
+                aggregator.add((timestamp - from) / intervalNanos, counter(chunk, OCTETS, i), counter(chunk, PACKETS, i));
+            }
+        }).series(start, interval, buckets);
+    }
+    
+    @Override
+    public Optional<Instant> oldestTimestamp() {
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < rows; i++) {
+                int row = order[i];
+                if (!chunk(row).isDeleted(row & MASK)) {
+                    return Optional.of(instantOf(chunk(row).timestamps[row & MASK]));
+                }
+            }
+            return Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public boolean deleteById(String id) {
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(id);
+            if (row < 0) {
+                return false;
+            }
+            tombstone(row);
+            compactIfSparse();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public void deleteAll() {
+        lock.writeLock().lock();
+        try {
+            chunks = new ArrayList<>();
+            order = new int[ColumnChunk.SIZE];
+            rows = 0;
+            live = 0;
+            uuidRows = new UuidIndex();
+            otherRows = new HashMap<>();
+            byText = textIndexes();
+            textEntries = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public long count() {
+        lock.readLock().lock();
+        try {
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Column arrays, the row order, the ID and text indexes, plus the remainders of the newest rows sampled
+     */
+    @Override
+    public long estimatedHeapBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 16 + 4L * order.length + uuidRows.bytes() + 48L * otherRows.size();
+            bytes += 4 * textEntries;
+            for (TextIndex<RowList> index : byText.values()) {
+                bytes += TEXT_VALUE_BYTES * index.size();
+            }
+            for (ColumnChunk chunk : chunks) {
+                bytes += chunk.arrayBytes();
+            }
+            int sampled = Math.min(rows, HeapEstimate.SAMPLE);
+            long remainders = 0;
+            for (int i = rows - sampled; i < rows; i++) {
+                remainders += HeapEstimate.of(chunk(order[i]).remainders[order[i] & MASK]);
+            }
+            return sampled == 0 ? bytes : bytes + remainders / sampled * rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public long indexedQueries() {
+        return indexedQueries.sum();
+    }
+    
+    @Override
+    public long scannedQueries() {
+        return scannedQueries.sum();
+    }
+    
+    /**
+     * Newest-first scan of the live rows in [{@code from}, {@code to}) strictly older than {@code after};
+     * null bounds are open
+     */
+    private List<IpfixRecord> scan(RecordKey from, RecordKey to, RecordKey after, int limit, IntPredicate filter) {
+        lock.readLock().lock();
+        try {
+            List<IpfixRecord> page = new ArrayList<>(Math.min(limit, 1024));
+            int low = from == null ? 0 : lowerBound(from);
+            int high = to == null ? rows : lowerBound(to);
+            if (after != null) {
+                high = Math.min(high, lowerBound(after));
+            }
+            for (int i = high - 1; i >= low && page.size() < limit; i--) {
+                int row = order[i];
+                if (!chunk(row).isDeleted(row & MASK) && filter.test(row)) {
+                    page.add(materialize(row));
+                }
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Feeds every live row to {@code visitor}, chunks in parallel, and merges the per-chunk aggregators
+     */
+    private FlowAggregator aggregateChunks(RowVisitor visitor) {
+        lock.readLock().lock();
+        try {
+            return IntStream.range(0, (rows + MASK) >>> SHIFT).parallel()
+                    .mapToObj(c -> {
+                        ColumnChunk chunk = chunks.get(c);
+                        int length = Math.min(SIZE, rows - (c << SHIFT));
+                        FlowAggregator aggregator = new FlowAggregator();
+                        for (int i = 0; i < length; i++) {
+                            if (!chunk.isDeleted(i)) {
+                                visitor.visit(chunk, i, aggregator);
+                            }
+                        }
+                        return aggregator;
+                    })
+                    .reduce((a, b) -> {
+                        a.merge(b);
+                        return a;
+                    })
+                    .orElseGet(FlowAggregator::new);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private static void accumulate(FlowAggregator aggregator, FlowGroupBy groupBy, ColumnChunk chunk, int i) {
+        long octets = counter(chunk, OCTETS, i);
+        long packets = counter(chunk, PACKETS, i);
+        switch (groupBy) {
+            case SOURCE_IP -> accumulateAddress(aggregator, chunk, i, SOURCE_V4, SOURCE_V6_HIGH, SOURCE_V6_LOW,
+                    octets, packets);
+            case DESTINATION_IP -> accumulateAddress(aggregator, chunk, i, DESTINATION_V4, DESTINATION_V6_HIGH,
+                    DESTINATION_V6_LOW, octets, packets);
+            case SOURCE_PORT -> accumulateInt(aggregator, chunk, i, SOURCE_PORT, octets, packets);
+            case DESTINATION_PORT -> accumulateInt(aggregator, chunk, i, DESTINATION_PORT, octets, packets);
+            case PROTOCOL -> accumulateInt(aggregator, chunk, i, PROTOCOL, octets, packets);
+            case APPLICATION_NAME -> {
+                IpfixRecord rest = chunk.remainders[i];
+                if (rest != null && rest.getApplicationName() != null) {
+                    aggregator.add((Object) rest.getApplicationName(), octets, packets);
+                }
+            }
+            case SILK_APP_LABEL -> {
+                IpfixRecord rest = chunk.remainders[i];
+                if (rest != null && rest.getCertInfo() != null && rest.getCertInfo().getSilkAppLabel() != null) {
+                    aggregator.add(rest.getCertInfo().getSilkAppLabel().longValue(), octets, packets);
+                }
+            }
+        }
+    }
+    
+    private static void accumulateAddress(FlowAggregator aggregator, ColumnChunk chunk, int i, int v4Column,
+                                          int v6High, int v6Low, long octets, long packets) {
+        if (chunk.hasInt(v4Column, i)) {
+            aggregator.add(chunk.ints[v4Column][i] & 0xFFFFFFFFL, octets, packets);
+        } else if (chunk.hasLong(v6High, i)) {
+            aggregator.add((Object) new IpNetwork(true, chunk.longs[v6High][i], chunk.longs[v6Low][i], 128),
+                    octets, packets);
+        }
+    }
+    
+    private static void accumulateInt(FlowAggregator aggregator, ColumnChunk chunk, int i, int column,
+                                      long octets, long packets) {
+        if (chunk.hasInt(column, i)) {
+            aggregator.add(chunk.ints[column][i], octets, packets);
+        }
+    }
+    
+    private static long counter(ColumnChunk chunk, int column, int i) {
+        return chunk.hasLong(column, i) ? chunk.longs[column][i] : 0;
+    }
+    
+    /**
+     * Matches rows whose address lies within {@code block}, whatever their prefix length field
+     */
+    private IntPredicate networkMatcher(IpNetwork block, int v4Column, int v6High, int v6Low) {
+        long highMask = block.highMask();
+        long lowMask = block.lowMask();
+        if (!block.ipv6()) {
+            int mask = (int) lowMask;
+            int network = (int) block.low() & mask;
+            return row -> {
+                ColumnChunk chunk = chunk(row);
+                int i = row & MASK;
+                return chunk.hasInt(v4Column, i) && (chunk.ints[v4Column][i] & mask) == network;
+            };
+        }
+        long networkHigh = block.high() & highMask;
+        long networkLow = block.low() & lowMask;
+        return row -> {
+            ColumnChunk chunk = chunk(row);
+            int i = row & MASK;
+            return chunk.hasLong(v6High, i) && (chunk.longs[v6High][i] & highMask) == networkHigh
+                    && (chunk.longs[v6Low][i] & lowMask) == networkLow;
+        };
+    }
+    
+    private void put(IpfixRecord record) {
+        long timestamp = epochNanos(record.getTimestamp());
+        int previous = rowOf(record.getId());
+        if (previous >= 0) {
+            tombstone(previous);
+        }
+        int row = append(record, timestamp);
+        indexText(record, row);
+        ColumnChunk chunk = chunk(row);
+        if ((chunk.present[row & MASK] & UUID_ID) != 0) {
+            uuidRows.put(chunk.idHigh[row & MASK], chunk.idLow[row & MASK], row);
+        } else {
+            otherRows.put(record.getId(), row);
+        }
+        live++;
+        
+        // Rows almost always arrive in key order; otherwise shift the tail of the order
+        if (order.length < rows) {
+            order = Arrays.copyOf(order, rows * 2);
+        }
+        int position = rows - 1;
+        if (position > 0 && compareRows(order[position - 1], row) > 0) {
+            position = insertionPoint(row, position);
+            System.arraycopy(order, position, order, position + 1, rows - 1 - position);
+        }
+        order[position] = row;
+    }
+    
+    /**
+     * Writes a record into the next free row
+     */
+    private int append(IpfixRecord record, long timestamp) {
+        int row = rows++;
+        if ((row & MASK) == 0 && chunks.size() == row >>> SHIFT) {
+            chunks.add(new ColumnChunk());
+        }
+        ColumnChunk chunk = chunk(row);
+        int i = row & MASK;
+        IpfixRecord rest = null;
+        
+        chunk.timestamps[i] = timestamp;
+        String id = record.getId();
+        if (isCanonicalUuid(id)) {
+            chunk.idHigh[i] = (hex(id, 0, 8) << 32) | (hex(id, 9, 13) << 16) | hex(id, 14, 18);
+            chunk.idLow[i] = (hex(id, 19, 23) << 48) | hex(id, 24, 36);
+            chunk.present[i] = UUID_ID;
+        } else {
+            chunk.present[i] = 0;
+            rest = new IpfixRecord();
+            rest.setId(id);
+        }
+        
+        for (LongField field : LONG_FIELDS) {
+            Long value = field.getter().apply(record);
+            if (value != null) {
+                chunk.setLong(field.column(), i, value);
+            }
+        }
+        for (IntField field : INT_FIELDS) {
+            Integer value = field.getter().apply(record);
+            if (value != null) {
+                chunk.setInt(field.column(), i, value);
+            }
+        }
+        
+        putIPv4(chunk, SOURCE_V4, i, record.getSourceIPv4Address());
+        putIPv4(chunk, DESTINATION_V4, i, record.getDestinationIPv4Address());
+        putIPv4(chunk, NEXT_HOP_V4, i, record.getIpNextHopIPv4Address());
+        putIPv4(chunk, EXPORTER_V4, i, record.getExporterIPv4Address());
+        putIPv6(chunk, SOURCE_V6_HIGH, SOURCE_V6_LOW, i, record.getSourceIPv6Address());
+        putIPv6(chunk, DESTINATION_V6_HIGH, DESTINATION_V6_LOW, i, record.getDestinationIPv6Address());
+        putIPv6(chunk, EXPORTER_V6_HIGH, EXPORTER_V6_LOW, i, record.getExporterIPv6Address());
+        if (!putMillis(chunk, FLOW_START, i, record.getFlowStartMilliseconds())) {
+            rest = remainder(rest);
+            rest.setFlowStartMilliseconds(record.getFlowStartMilliseconds());
+        }
+        if (!putMillis(chunk, FLOW_END, i, record.getFlowEndMilliseconds())) {
+            rest = remainder(rest);
+            rest.setFlowEndMilliseconds(record.getFlowEndMilliseconds());
+        }
+        
+        if (record.getApplicationName() != null || record.getApplicationDescription() != null
+                || record.getDpiInfo() != null || record.getBidirectionalFlowInfo() != null
+                || record.getCertInfo() != null || record.getBasicLists() != null
+                || record.getSubTemplateLists() != null || record.getSubTemplateMultiLists() != null) {
+            rest = remainder(rest);
+            rest.setApplicationName(record.getApplicationName());
+            rest.setApplicationDescription(record.getApplicationDescription());
+            rest.setDpiInfo(record.getDpiInfo());
+            rest.setBidirectionalFlowInfo(record.getBidirectionalFlowInfo());
+            rest.setCertInfo(record.getCertInfo());
+            rest.setBasicLists(record.getBasicLists());
+            rest.setSubTemplateLists(record.getSubTemplateLists());
+            rest.setSubTemplateMultiLists(record.getSubTemplateMultiLists());
+        }
+        chunk.remainders[i] = rest;
+        return row;
+    }
+    
+    private IpfixRecord materialize(int row) {
+        ColumnChunk chunk = chunk(row);
+        int i = row & MASK;
+        IpfixRecord rest = chunk.remainders[i];
+        IpfixRecord record = new IpfixRecord();
+        if (rest != null) {
+            record.setId(rest.getId());
+            record.setFlowStartMilliseconds(rest.getFlowStartMilliseconds());
+            record.setFlowEndMilliseconds(rest.getFlowEndMilliseconds());
+            record.setApplicationName(rest.getApplicationName());
+            record.setApplicationDescription(rest.getApplicationDescription());
+            record.setDpiInfo(rest.getDpiInfo());
+            record.setBidirectionalFlowInfo(rest.getBidirectionalFlowInfo());
+            record.setCertInfo(rest.getCertInfo());
+            record.setBasicLists(rest.getBasicLists());
+            record.setSubTemplateLists(rest.getSubTemplateLists());
+            record.setSubTemplateMultiLists(rest.getSubTemplateMultiLists());
+        }
+        if ((chunk.present[i] & UUID_ID) != 0) {
+            record.setId(new UUID(chunk.idHigh[i], chunk.idLow[i]).toString());
+        }
+        record.setTimestamp(instantOf(chunk.timestamps[i]));
+        
+        for (LongField field : LONG_FIELDS) {
+            if (chunk.hasLong(field.column(), i)) {
+                field.setter().accept(record, chunk.longs[field.column()][i]);
+            }
+        }
+        for (IntField field : INT_FIELDS) {
+            if (chunk.hasInt(field.column(), i)) {
+                field.setter().accept(record, chunk.ints[field.column()][i]);
+            }
+        }
+        if (chunk.hasInt(SOURCE_V4, i)) {
+            record.setSourceIPv4Address(IpAddresses.formatIPv4(chunk.ints[SOURCE_V4][i]));
+        }
+        if (chunk.hasInt(DESTINATION_V4, i)) {
+            record.setDestinationIPv4Address(IpAddresses.formatIPv4(chunk.ints[DESTINATION_V4][i]));
+        }
+        if (chunk.hasInt(NEXT_HOP_V4, i)) {
+            record.setIpNextHopIPv4Address(IpAddresses.formatIPv4(chunk.ints[NEXT_HOP_V4][i]));
+        }
+        if (chunk.hasInt(EXPORTER_V4, i)) {
+            record.setExporterIPv4Address(IpAddresses.formatIPv4(chunk.ints[EXPORTER_V4][i]));
+        }
+        if (chunk.hasLong(SOURCE_V6_HIGH, i)) {
+            record.setSourceIPv6Address(IpAddresses.formatIPv6(
+                    chunk.longs[SOURCE_V6_HIGH][i], chunk.longs[SOURCE_V6_LOW][i]));
+        }
+        if (chunk.hasLong(DESTINATION_V6_HIGH, i)) {
+            record.setDestinationIPv6Address(IpAddresses.formatIPv6(
+                    chunk.longs[DESTINATION_V6_HIGH][i], chunk.longs[DESTINATION_V6_LOW][i]));
+        }
+        if (chunk.hasLong(EXPORTER_V6_HIGH, i)) {
+            record.setExporterIPv6Address(IpAddresses.formatIPv6(
+                    chunk.longs[EXPORTER_V6_HIGH][i], chunk.longs[EXPORTER_V6_LOW][i]));
+        }
+        if (chunk.hasLong(FLOW_START, i)) {
+            record.setFlowStartMilliseconds(Instant.ofEpochMilli(chunk.longs[FLOW_START][i]));
+        }
+        if (chunk.hasLong(FLOW_END, i)) {
+            record.setFlowEndMilliseconds(Instant.ofEpochMilli(chunk.longs[FLOW_END][i]));
+        }
+        return record;
+    }
+    
+    /**
+     * Live row holding {@code id}, or -1
+     */
+    private int rowOf(String id) {
+        int row;
+        if (isCanonicalUuid(id)) {
+            row = uuidRows.get((hex(id, 0, 8) << 32) | (hex(id, 9, 13) << 16) | hex(id, 14, 18),
+                    (hex(id, 19, 23) << 48) | hex(id, 24, 36));
+        } else {
+            Integer other = id == null ? null : otherRows.get(id);
+            row = other == null ? -1 : other;
+        }
+        return row >= 0 && !chunk(row).isDeleted(row & MASK) ? row : -1;
+    }
+    
+    private void tombstone(int row) {
+        ColumnChunk chunk = chunk(row);
+        int i = row & MASK;
+        IpfixRecord rest = chunk.remainders[i];
+        if (rest != null && rest.getId() != null) {
+            otherRows.remove(rest.getId());
+        }
+        chunk.present[i] |= DELETED;
+        // Keep only the ID, which still decides the tombstone's place in the order
+        chunk.remainders[i] = rest != null && rest.getId() != null ? IpfixRecord.builder().id(rest.getId()).build() : null;
+        live--;
+    }
+    
+    /**
+     * Rewrites the live rows in key order once tombstones outnumber them
+     */
+    private void compactIfSparse() {
+        int dead = rows - live;
+        if (dead < ColumnChunk.SIZE || dead <= live) {
+            return;
+        }
+        List<ColumnChunk> compacted = new ArrayList<>();
+        int target = 0;
+        for (int k = 0; k < rows; k++) {
+            int row = order[k];
+            ColumnChunk from = chunk(row);
+            if (from.isDeleted(row & MASK)) {
+                continue;
+            }
+            if ((target & MASK) == 0) {
+                compacted.add(new ColumnChunk());
+            }
+            compacted.get(target >>> SHIFT).copyRow(from, row & MASK, target & MASK);
+            target++;
+        }
+        chunks = compacted;
+        rows = target;
+        order = new int[Math.max(ColumnChunk.SIZE, target)];
+        uuidRows = new UuidIndex();
+        otherRows = new HashMap<>();
+        byText = textIndexes();
+        textEntries = 0;
+        for (int row = 0; row < rows; row++) {
+            order[row] = row;
+            ColumnChunk chunk = chunk(row);
+            int i = row & MASK;
+            if ((chunk.present[i] & UUID_ID) != 0) {
+                uuidRows.put(chunk.idHigh[i], chunk.idLow[i], row);
+            } else {
+                otherRows.put(chunk.remainders[i].getId(), row);
+            }
+            if (chunk.remainders[i] != null) {
+                indexText(chunk.remainders[i], row);
+            }
+        }
+    }
+    
+    private void indexText(IpfixRecord record, int row) {
+        for (TextField field : TextField.values()) {
+            byText.get(field).update((String) FlowElement.of(field).read(record), list -> {
+                if (list == null) {
+                    list = new RowList();
+                }
+                list.add(row);
+                textEntries++;
+                return list;
+            });
+        }
+    }
+    
+    private static Map<TextField, TextIndex<RowList>> textIndexes() {
+        Map<TextField, TextIndex<RowList>> indexes = new EnumMap<>(TextField.class);
+        for (TextField field : TextField.values()) {
+            indexes.put(field, new TextIndex<>());
+        }
+        return indexes;
+    }
+    
+    private ColumnChunk chunk(int row) {
+        return chunks.get(row >>> SHIFT);
+    }
+    
+    /**
+     * First position in {@code order} whose row sorts at or after {@code key}
+     */
+    private int lowerBound(RecordKey key) {
+        long nanos = epochNanos(key.timestamp());
+        int low = 0;
+        int high = rows;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int row = order[mid];
+            int cmp = Long.compare(chunk(row).timestamps[row & MASK], nanos);
+            if (cmp == 0) {
+                cmp = idOf(row).compareTo(key.id());
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Position in the first {@code length} entries of {@code order} where {@code row} belongs
+     */
+    private int insertionPoint(int row, int length) {
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareRows(order[mid], row) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Orders rows like {@link RecordKey}; canonical UUIDs compare as unsigned numbers, which matches their text order
+     */
+    private int compareRows(int a, int b) {
+        ColumnChunk chunkA = chunk(a);
+        ColumnChunk chunkB = chunk(b);
+        int i = a & MASK;
+        int j = b & MASK;
+        int cmp = Long.compare(chunkA.timestamps[i], chunkB.timestamps[j]);
+        if (cmp != 0) {
+            return cmp;
+        }
+        if ((chunkA.present[i] & chunkB.present[j] & UUID_ID) != 0) {
+            cmp = Long.compareUnsigned(chunkA.idHigh[i], chunkB.idHigh[j]);
+            return cmp != 0 ? cmp : Long.compareUnsigned(chunkA.idLow[i], chunkB.idLow[j]);
+        }
+        return idOf(a).compareTo(idOf(b));
+    }
+    
+    private String idOf(int row) {
+        ColumnChunk chunk = chunk(row);
+        int i = row & MASK;
+        if ((chunk.present[i] & UUID_ID) != 0) {
+            return new UUID(chunk.idHigh[i], chunk.idLow[i]).toString();
+        }
+        return chunk.remainders[i].getId();
+    }
+    
+    private static void putIPv4(ColumnChunk chunk, int column, int row, String address) {
+        if (address != null) {
+            chunk.setInt(column, row, (int) IpAddresses.parseIPv4(address));
+        }
+    }
+    
+    private static void putIPv6(ColumnChunk chunk, int highColumn, int lowColumn, int row, String address) {
+        if (address != null) {
+            long[] value = IpAddresses.parseIPv6(address);
+            chunk.setLong(highColumn, row, value[0]);
+            chunk.setLong(lowColumn, row, value[1]);
+        }
+    }
+    
+    /**
+     * Stores whole-millisecond instants as epoch millis; finer ones stay in the remainder
+     */
+    private static boolean putMillis(ColumnChunk chunk, int column, int row, Instant instant) {
+        if (instant == null) {
+            return true;
+        }
+        if (instant.getNano() % 1_000_000 != 0) {
+            return false;
+        }
+        try {
+            chunk.setLong(column, row, instant.toEpochMilli());
+            return true;
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+    
+    private static IpfixRecord remainder(IpfixRecord rest) {
+        return rest != null ? rest : new IpfixRecord();
+    }
+    
+    private static Instant instantOf(long epochNanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L), Math.floorMod(epochNanos, 1_000_000_000L));
+    }
+    
+    private static long epochNanos(Instant timestamp) {
+        try {
+            return Math.addExact(Math.multiplyExact(timestamp.getEpochSecond(), 1_000_000_000L), timestamp.getNano());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Timestamp out of range for the columnar store: " + timestamp);
+        }
+    }
+    
+    /**
+     * True for the lowercase 8-4-4-4-12 form produced by {@link UUID#toString()}
+     */
+    private static boolean isCanonicalUuid(String id) {
+        if (id == null || id.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static long hex(String text, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            value = (value << 4) | Character.digit(text.charAt(i), 16);
+        }
+        return value;
+    }
+    
+    @FunctionalInterface
+    private interface RowVisitor {
+        void visit(ColumnChunk chunk, int row, FlowAggregator aggregator);
+    }
+    
+    private record LongField(int column, Function<IpfixRecord, Long> getter, BiConsumer<IpfixRecord, Long> setter) {
+    }
+    
+    private record IntField(int column, Function<IpfixRecord, Integer> getter, BiConsumer<IpfixRecord, Integer> setter) {
+    }
+    
+    /**
+     * Growable list of row numbers
+     */
+    private static final class RowList {
+        
+        private int[] rows = new int[4];
+        private int size;
+        
+        void add(int row) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+    }
+    
+    /**
+     * Open-addressing map from a UUID's two halves to a row number, without per-entry objects
+     */
+    private static final class UuidIndex {
+        
+        private long[] highs = new long[1024];
+        private long[] lows = new long[1024];
+        // Row + 1, 0 marks an empty slot
+        private int[] slots = new int[1024];
+        private int size;
+        
+        int get(long high, long low) {
+            int mask = slots.length - 1;
+            for (int i = hash(high, low) & mask; slots[i] != 0; i = (i + 1) & mask) {
+                if (highs[i] == high && lows[i] == low) {
+                    return slots[i] - 1;
+                }
+            }
+            return -1;
+        }
+        
+        void put(long high, long low, int row) {
+            if ((size + 1) * 3 > slots.length * 2) {
+                grow();
+            }
+            int mask = slots.length - 1;
+            int i = hash(high, low) & mask;
+            while (slots[i] != 0 && (highs[i] != high || lows[i] != low)) {
+                i = (i + 1) & mask;
+            }
+            if (slots[i] == 0) {
+                size++;
+                highs[i] = high;
+                lows[i] = low;
+            }
+            slots[i] = row + 1;
+        }
+        
+        long bytes() {
+            return 3 * 16 + 20L * slots.length;
+        }
+        
+        private void grow() {
+            long[] oldHighs = highs;
+            long[] oldLows = lows;
+            int[] oldSlots = slots;
+            highs = new long[oldSlots.length * 2];
+            lows = new long[oldSlots.length * 2];
+            slots = new int[oldSlots.length * 2];
+            size = 0;
+            for (int i = 0; i < oldSlots.length; i++) {
+                if (oldSlots[i] != 0) {
+                    put(oldHighs[i], oldLows[i], oldSlots[i] - 1);
+                }
+            }
+        }
+        
+        private static int hash(long high, long low) {
+            long h = (high ^ Long.rotateLeft(low, 32)) * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 32);
+        }
+    }
+}
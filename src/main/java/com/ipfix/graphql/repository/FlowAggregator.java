@@ -0,0 +1,302 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.model.FlowAggregate;
+import com.ipfix.graphql.model.FlowGroupBy;
+import com.ipfix.graphql.model.FlowMetric;
+import com.ipfix.graphql.model.FlowTimeBucket;
+import com.ipfix.graphql.model.IpfixRecord;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.LongFunction;
+
+/**
+ * Byte, packet and flow totals per group. Numeric group keys (IPv4 addresses, ports, protocols,
+ * time bucket numbers) live in an open-addressing table with the counters in parallel long arrays,
+ * so accumulating allocates nothing; other keys (strings, IPv6 addresses) use a map of counter arrays.
+ * Not thread-safe: parallel scans give each task its own aggregator and {@link #merge} them.
+ */
+final class FlowAggregator {
+    
+    static final int MAX_TIME_BUCKETS = 10_000;
+    
+    private long[] keys = new long[64];
+    private boolean[] used = new boolean[64];
+    private long[] bytes = new long[64];
+    private long[] packets = new long[64];
+    private long[] flows = new long[64];
+    private int size;
+    
+    private final Map<Object, long[]> others = new HashMap<>();
+    
+    void add(long key, Long octetCount, Long packetCount) {
+        int slot = slot(key);
+        bytes[slot] += octetCount != null ? octetCount : 0;
+        packets[slot] += packetCount != null ? packetCount : 0;
+        flows[slot]++;
+    }
+    
+    void add(long key, long octetCount, long packetCount) {
+        int slot = slot(key);
+        bytes[slot] += octetCount;
+        packets[slot] += packetCount;
+        flows[slot]++;
+    }
+    
+    void add(Object key, Long octetCount, Long packetCount) {
+        long[] counters = others.computeIfAbsent(key, k -> new long[3]);
+        counters[0] += octetCount != null ? octetCount : 0;
+        counters[1] += packetCount != null ? packetCount : 0;
+        counters[2]++;
+    }
+    
+    /**
+     * Adds already summed totals under the numeric {@code key}
+     */
+    void addTotals(long key, long octetCount, long packetCount, long flowCount) {
+        int slot = slot(key);
+        bytes[slot] += octetCount;
+        packets[slot] += packetCount;
+        flows[slot] += flowCount;
+    }
+    
+    /**
+     * Adds already summed totals under {@code key}
+     */
+    void addTotals(Object key, long octetCount, long packetCount, long flowCount) {
+        long[] counters = others.computeIfAbsent(key, k -> new long[3]);
+        counters[0] += octetCount;
+        counters[1] += packetCount;
+        counters[2] += flowCount;
+    }
+    
+    /**
+     * Adds a record object under its {@code groupBy} element; records without the element are skipped
+     */
+    void add(FlowGroupBy groupBy, IpfixRecord record) {
+        Long octets = record.getOctetDeltaCount();
+        Long packets = record.getPacketDeltaCount();
+        switch (groupBy) {
+            case SOURCE_IP -> addAddress(record.getSourceIPv4Address(), record.getSourceIPv6Address(), octets, packets);
+            case DESTINATION_IP -> addAddress(record.getDestinationIPv4Address(), record.getDestinationIPv6Address(),
+                    octets, packets);
+            case SOURCE_PORT -> addNumber(record.getSourceTransportPort(), octets, packets);
+            case DESTINATION_PORT -> addNumber(record.getDestinationTransportPort(), octets, packets);
+            case PROTOCOL -> addNumber(record.getProtocolIdentifier(), octets, packets);
+            case APPLICATION_NAME -> {
+                if (record.getApplicationName() != null) {
+                    add((Object) record.getApplicationName(), octets, packets);
+                }
+            }
+            case SILK_APP_LABEL -> addNumber(
+                    record.getCertInfo() != null ? record.getCertInfo().getSilkAppLabel() : null, octets, packets);
+        }
+    }
+    
+    void merge(FlowAggregator other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.used[i]) {
+                int slot = slot(other.keys[i]);
+                bytes[slot] += other.bytes[i];
+                packets[slot] += other.packets[i];
+                flows[slot] += other.flows[i];
+            }
+        }
+        other.others.forEach((key, counters) -> others.merge(key, counters, (a, b) -> {
+            a[0] += b[0];
+            a[1] += b[1];
+            a[2] += b[2];
+            return a;
+        }));
+    }
+    
+    /**
+     * The {@code limit} largest groups by {@code metric}, largest first; ties are broken by key.
+     * Numeric keys are rendered with {@code numericLabel}, other keys with {@link #label(Object)}.
+     */
+    List<FlowAggregate> top(FlowMetric metric, int limit, LongFunction<String> numericLabel) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        int column = metric.ordinal();
+        Comparator<FlowAggregate> order = Comparator.<FlowAggregate>comparingLong(a -> value(a, column))
+                .thenComparing(FlowAggregate::getKey, Comparator.reverseOrder());
+        PriorityQueue<FlowAggregate> smallest = new PriorityQueue<>(order);
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i] && qualifies(smallest, limit, column, counter(column, i))) {
+                offer(smallest, limit, order,
+                        new FlowAggregate(numericLabel.apply(keys[i]), bytes[i], packets[i], flows[i]));
+            }
+        }
+        for (Map.Entry<Object, long[]> entry : others.entrySet()) {
+            long[] counters = entry.getValue();
+            if (qualifies(smallest, limit, column, counters[column])) {
+                offer(smallest, limit, order,
+                        new FlowAggregate(label(entry.getKey()), counters[0], counters[1], counters[2]));
+            }
+        }
+        List<FlowAggregate> top = new ArrayList<>(smallest);
+        top.sort(order.reversed());
+        return top;
+    }
+    
+    /**
+     * One entry per bucket of {@code interval} from {@code start}, empty buckets included;
+     * numeric keys are the bucket numbers
+     */
+    List<FlowTimeBucket> series(Instant start, Duration interval, int bucketCount) {
+        List<FlowTimeBucket> series = new ArrayList<>(bucketCount);
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            Instant bucketStart = start.plus(interval.multipliedBy(bucket));
+            int slot = find(bucket);
+            series.add(slot < 0
+                    ? new FlowTimeBucket(bucketStart, 0, 0, 0)
+                    : new FlowTimeBucket(bucketStart, bytes[slot], packets[slot], flows[slot]));
+        }
+        return series;
+    }
+    
+    /**
+     * Number of {@code interval} buckets covering [start, end]
+     *
+     * @throws IllegalArgumentException for an empty range, a non-positive interval or too many buckets
+     */
+    static int bucketCount(Instant start, Instant end, Duration interval) {
+        if (interval.isZero() || interval.isNegative()) {
+            throw new IllegalArgumentException("Interval must be positive");
+        }
+        if (end.isBefore(start)) {
+            throw new IllegalArgumentException("End time is before start time");
+        }
+        long buckets = Duration.between(start, end).dividedBy(interval) + 1;
+        if (buckets > MAX_TIME_BUCKETS) {
+            throw new IllegalArgumentException(
+                    "Time range spans " + buckets + " buckets, more than " + MAX_TIME_BUCKETS);
+        }
+        return (int) buckets;
+    }
+    
+    /**
+     * Length of {@code interval} in nanoseconds
+     *
+     * @throws IllegalArgumentException when it does not fit a long
+     */
+    static long intervalNanos(Duration interval) {
+        try {
+            return interval.toNanos();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Interval too large: " + interval);
+        }
+    }
+    
+    /**
+     * Renders numeric group keys: IPv4 addresses in dotted-quad form, everything else as a number
+     */
+    static LongFunction<String> numericLabel(FlowGroupBy groupBy) {
+        return groupBy == FlowGroupBy.SOURCE_IP || groupBy == FlowGroupBy.DESTINATION_IP
+                ? key -> IpAddresses.formatIPv4((int) key)
+                : Long::toString;
+    }
+    
+    static long nanosBetween(Instant start, Instant end) {
+        return (end.getEpochSecond() - start.getEpochSecond()) * 1_000_000_000L + (end.getNano() - start.getNano());
+    }
+    
+    static String label(Object key) {
+        return key instanceof IpNetwork network ? network.address() : key.toString();
+    }
+    
+    private void addAddress(String ipv4, String ipv6, Long octets, Long packets) {
+        if (ipv4 != null) {
+            add(IpAddresses.parseIPv4(ipv4), octets, packets);
+        } else if (ipv6 != null) {
+            add((Object) IpNetwork.host(ipv6), octets, packets);
+        }
+    }
+    
+    private void addNumber(Integer value, Long octets, Long packets) {
+        if (value != null) {
+            add(value.longValue(), octets, packets);
+        }
+    }
+    
+    private long counter(int column, int slot) {
+        return column == 0 ? bytes[slot] : column == 1 ? packets[slot] : flows[slot];
+    }
+    
+    private static long value(FlowAggregate aggregate, int column) {
+        return column == 0 ? aggregate.getBytes() : column == 1 ? aggregate.getPackets() : aggregate.getFlows();
+    }
+    
+    private static boolean qualifies(PriorityQueue<FlowAggregate> smallest, int limit, int column, long value) {
+        return smallest.size() < limit || value >= value(smallest.peek(), column);
+    }
+    
+    private static void offer(PriorityQueue<FlowAggregate> smallest, int limit, Comparator<FlowAggregate> order,
+                              FlowAggregate candidate) {
+        if (smallest.size() < limit) {
+            smallest.add(candidate);
+        } else if (order.compare(candidate, smallest.peek()) > 0) {
+            smallest.poll();
+            smallest.add(candidate);
+        }
+    }
+    
+    private int slot(long key) {
+        int slot = find(key);
+        if (slot >= 0) {
+            return slot;
+        }
+        if ((size + 1) * 3 > keys.length * 2) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while (used[i]) {
+            i = (i + 1) & mask;
+        }
+        used[i] = true;
+        keys[i] = key;
+        size++;
+        return i;
+    }
+    
+    private int find(long key) {
+        int mask = keys.length - 1;
+        for (int i = hash(key) & mask; used[i]; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private void grow() {
+        long[] oldKeys = keys;
+        boolean[] oldUsed = used;
+        long[] oldBytes = bytes;
+        long[] oldPackets = packets;
+        long[] oldFlows = flows;
+        int capacity = oldKeys.length * 2;
+        keys = new long[capacity];
+        used = new boolean[capacity];
+        bytes = new long[capacity];
+        packets = new long[capacity];
+        flows = new long[capacity];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = slot(oldKeys[i]);
+                bytes[slot] = oldBytes[i];
+                packets[slot] = oldPackets[i];
+                flows[slot] = oldFlows[i];
+            }
+        }
+    }
+    
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32);
+    }
+}
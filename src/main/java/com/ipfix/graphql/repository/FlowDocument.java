@@ -0,0 +1,172 @@
+package com.ipfix.graphql.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ipfix.graphql.model.FlowGroupBy;
+import com.ipfix.graphql.model.IpfixRecord;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Document layout shared by the remote stores. The full record is kept as JSON in {@link #RECORD}; the elements
+ * queries filter, sort and group on are copied into typed fields next to it so the store can evaluate them
+ * natively. Timestamps are epoch nanoseconds. Addresses are numbers: IPv4 as the unsigned 32-bit value,
+ * IPv6 as two 64-bit halves with the sign bit flipped so signed order is address order; each comes with
+ * the prefix length of its network, always set, so CIDR queries become range conditions.
+ */
+final class FlowDocument {
+    
+    static final String ID = "id";
+    static final String RECORD = "record";
+    static final String TIMESTAMP = "timestampNanos";
+    static final String SOURCE_IP = "sourceIp";
+    static final String DESTINATION_IP = "destinationIp";
+    static final String SOURCE_PORT = "sourcePort";
+    static final String DESTINATION_PORT = "destinationPort";
+    static final String PROTOCOL = "protocol";
+    static final String APPLICATION_NAME = "applicationName";
+    static final String SILK_APP_LABEL = "silkAppLabel";
+    static final String OCTETS = "octets";
+    static final String PACKETS = "packets";
+    
+    private FlowDocument() {
+    }
+    
+    /**
+     * Inclusive range condition on a numeric field
+     */
+    record Range(String field, long from, long to) {
+    }
+    
+    /**
+     * Indexed fields of a record, nulls left out
+     */
+    static Map<String, Object> fields(IpfixRecord record, ObjectMapper mapper) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put(ID, record.getId());
+        fields.put(TIMESTAMP, nanos(record.getTimestamp()));
+        addAddresses(fields, true,
+                IpNetwork.ofIPv4(record.getSourceIPv4Address(), record.getSourceIPv4PrefixLength()),
+                IpNetwork.ofIPv6(record.getSourceIPv6Address(), record.getSourceIPv6PrefixLength()));
+        addAddresses(fields, false,
+                IpNetwork.ofIPv4(record.getDestinationIPv4Address(), record.getDestinationIPv4PrefixLength()),
+                IpNetwork.ofIPv6(record.getDestinationIPv6Address(), record.getDestinationIPv6PrefixLength()));
+        put(fields, SOURCE_PORT, record.getSourceTransportPort());
+        put(fields, DESTINATION_PORT, record.getDestinationTransportPort());
+        put(fields, PROTOCOL, record.getProtocolIdentifier());
+        put(fields, APPLICATION_NAME, record.getApplicationName());
+        put(fields, SILK_APP_LABEL, record.getCertInfo() != null ? record.getCertInfo().getSilkAppLabel() : null);
+        put(fields, OCTETS, record.getOctetDeltaCount());
+        put(fields, PACKETS, record.getPacketDeltaCount());
+        try {
+            fields.put(RECORD, mapper.writeValueAsString(record));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize record " + record.getId(), e);
+        }
+        return fields;
+    }
+    
+    static IpfixRecord record(String json, ObjectMapper mapper) {
+        try {
+            return mapper.readValue(json, IpfixRecord.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot read stored record", e);
+        }
+    }
+    
+    /**
+     * Epoch nanoseconds of an instant
+     *
+     * @throws IllegalArgumentException beyond the years 1677 to 2262
+     */
+    static long nanos(Instant instant) {
+        try {
+            return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000_000L), instant.getNano());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Timestamp out of range: " + instant);
+        }
+    }
+    
+    static Instant instant(long nanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L), Math.floorMod(nanos, 1_000_000_000L));
+    }
+    
+    /**
+     * Field holding the group key of {@code groupBy}
+     */
+    static String groupField(FlowGroupBy groupBy) {
+        return switch (groupBy) {
+            case SOURCE_IP -> SOURCE_IP;
+            case DESTINATION_IP -> DESTINATION_IP;
+            case SOURCE_PORT -> SOURCE_PORT;
+            case DESTINATION_PORT -> DESTINATION_PORT;
+            case PROTOCOL -> PROTOCOL;
+            case APPLICATION_NAME -> APPLICATION_NAME;
+            case SILK_APP_LABEL -> SILK_APP_LABEL;
+        };
+    }
+    
+    /**
+     * Conditions, all of which must hold, for a source or destination address equal to {@code host}
+     * whatever prefix length it carries
+     */
+    static List<Range> host(IpNetwork host, boolean source) {
+        String prefix = source ? "source" : "destination";
+        if (!host.ipv6()) {
+            return List.of(new Range(prefix + "V4", host.low(), host.low()));
+        }
+        return List.of(new Range(prefix + "V6High", sortable(host.high()), sortable(host.high())),
+                new Range(prefix + "V6Low", sortable(host.low()), sortable(host.low())));
+    }
+    
+    /**
+     * Conditions, all of which must hold, for a source or destination address within {@code block},
+     * whatever its prefix length
+     */
+    static List<Range> subnet(IpNetwork block, boolean source) {
+        String prefix = source ? "source" : "destination";
+        IpNetwork lowest = block.lowest();
+        IpNetwork highest = block.highest();
+        if (!block.ipv6()) {
+            return List.of(new Range(prefix + "V4", lowest.low(), highest.low()));
+        }
+        if (block.prefixLength() <= 64) {
+            return List.of(new Range(prefix + "V6High", sortable(lowest.high()), sortable(highest.high())));
+        }
+        return List.of(new Range(prefix + "V6High", sortable(block.high()), sortable(block.high())),
+                new Range(prefix + "V6Low", sortable(lowest.low()), sortable(highest.low())));
+    }
+    
+    /**
+     * Maps an unsigned 64-bit half onto a signed long of the same order
+     */
+    static long sortable(long half) {
+        return half ^ Long.MIN_VALUE;
+    }
+    
+    private static void addAddresses(Map<String, Object> fields, boolean source, IpNetwork ipv4, IpNetwork ipv6) {
+        String prefix = source ? "source" : "destination";
+        if (ipv4 != null) {
+            fields.put(prefix + "V4", ipv4.low());
+            fields.put(prefix + "V4Prefix", ipv4.prefixLength());
+        }
+        if (ipv6 != null) {
+            fields.put(prefix + "V6High", sortable(ipv6.high()));
+            fields.put(prefix + "V6Low", sortable(ipv6.low()));
+            fields.put(prefix + "V6Prefix", ipv6.prefixLength());
+        }
+        IpNetwork grouped = ipv4 != null ? ipv4 : ipv6;
+        if (grouped != null) {
+            fields.put(source ? SOURCE_IP : DESTINATION_IP, grouped.address());
+        }
+    }
+    
+    private static void put(Map<String, Object> fields, String name, Object value) {
+        if (value != null) {
+            fields.put(name, value);
+        }
+    }
+}
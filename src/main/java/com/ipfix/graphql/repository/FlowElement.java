@@ -0,0 +1,240 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.model.BidirectionalFlowInfo;
+import com.ipfix.graphql.model.CertEnterpriseInfo;
+import com.ipfix.graphql.model.DpiInfo;
+import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.model.TextField;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Information elements a {@link FlowQuery} condition can name, with the type their operands are read as
+ */
+enum FlowElement {
+    
+    OCTET_DELTA_COUNT("octetDeltaCount", Kind.NUMBER, IpfixRecord::getOctetDeltaCount),
+    PACKET_DELTA_COUNT("packetDeltaCount", Kind.NUMBER, IpfixRecord::getPacketDeltaCount),
+    DELTA_FLOW_COUNT("deltaFlowCount", Kind.NUMBER, IpfixRecord::getDeltaFlowCount),
+    PROTOCOL_IDENTIFIER("protocolIdentifier", Kind.NUMBER, IpfixRecord::getProtocolIdentifier),
+    IP_CLASS_OF_SERVICE("ipClassOfService", Kind.NUMBER, IpfixRecord::getIpClassOfService),
+    TCP_CONTROL_BITS("tcpControlBits", Kind.NUMBER, IpfixRecord::getTcpControlBits),
+    SOURCE_TRANSPORT_PORT("sourceTransportPort", Kind.NUMBER, IpfixRecord::getSourceTransportPort),
+    SOURCE_IPV4_ADDRESS("sourceIPv4Address", Kind.TEXT, IpfixRecord::getSourceIPv4Address),
+    SOURCE_IPV4_PREFIX_LENGTH("sourceIPv4PrefixLength", Kind.NUMBER, IpfixRecord::getSourceIPv4PrefixLength),
+    INGRESS_INTERFACE("ingressInterface", Kind.NUMBER, IpfixRecord::getIngressInterface),
+    DESTINATION_TRANSPORT_PORT("destinationTransportPort", Kind.NUMBER, IpfixRecord::getDestinationTransportPort),
+    DESTINATION_IPV4_ADDRESS("destinationIPv4Address", Kind.TEXT, IpfixRecord::getDestinationIPv4Address),
+    DESTINATION_IPV4_PREFIX_LENGTH("destinationIPv4PrefixLength",
+            Kind.NUMBER, IpfixRecord::getDestinationIPv4PrefixLength),
+    EGRESS_INTERFACE("egressInterface", Kind.NUMBER, IpfixRecord::getEgressInterface),
+    IP_NEXT_HOP_IPV4_ADDRESS("ipNextHopIPv4Address", Kind.TEXT, IpfixRecord::getIpNextHopIPv4Address),
+    SOURCE_IPV6_ADDRESS("sourceIPv6Address", Kind.TEXT, IpfixRecord::getSourceIPv6Address),
+    DESTINATION_IPV6_ADDRESS("destinationIPv6Address", Kind.TEXT, IpfixRecord::getDestinationIPv6Address),
+    SOURCE_IPV6_PREFIX_LENGTH("sourceIPv6PrefixLength", Kind.NUMBER, IpfixRecord::getSourceIPv6PrefixLength),
+    DESTINATION_IPV6_PREFIX_LENGTH("destinationIPv6PrefixLength",
+            Kind.NUMBER, IpfixRecord::getDestinationIPv6PrefixLength),
+    FLOW_START_MILLISECONDS("flowStartMilliseconds", Kind.INSTANT, IpfixRecord::getFlowStartMilliseconds),
+    FLOW_END_MILLISECONDS("flowEndMilliseconds", Kind.INSTANT, IpfixRecord::getFlowEndMilliseconds),
+    FLOW_START_SYS_UP_TIME("flowStartSysUpTime", Kind.NUMBER, IpfixRecord::getFlowStartSysUpTime),
+    FLOW_END_SYS_UP_TIME("flowEndSysUpTime", Kind.NUMBER, IpfixRecord::getFlowEndSysUpTime),
+    MPLS_TOP_LABEL_STACK_SECTION("mplsTopLabelStackSection", Kind.NUMBER, IpfixRecord::getMplsTopLabelStackSection),
+    MPLS_LABEL_STACK_SECTION2("mplsLabelStackSection2", Kind.NUMBER, IpfixRecord::getMplsLabelStackSection2),
+    MPLS_LABEL_STACK_SECTION3("mplsLabelStackSection3", Kind.NUMBER, IpfixRecord::getMplsLabelStackSection3),
+    APPLICATION_ID("applicationId", Kind.NUMBER, IpfixRecord::getApplicationId),
+    APPLICATION_NAME("applicationName", Kind.TEXT, IpfixRecord::getApplicationName),
+    APPLICATION_DESCRIPTION("applicationDescription", Kind.TEXT, IpfixRecord::getApplicationDescription),
+    OBSERVATION_DOMAIN_ID("observationDomainId", Kind.NUMBER, IpfixRecord::getObservationDomainId),
+    EXPORTER_IPV4_ADDRESS("exporterIPv4Address", Kind.TEXT, IpfixRecord::getExporterIPv4Address),
+    EXPORTER_IPV6_ADDRESS("exporterIPv6Address", Kind.TEXT, IpfixRecord::getExporterIPv6Address),
+    
+    DPI_HTTP_REQUEST_METHOD("dpiInfo.httpRequestMethod", Kind.TEXT, dpi(DpiInfo::getHttpRequestMethod)),
+    DPI_HTTP_REQUEST_HOST("dpiInfo.httpRequestHost", Kind.TEXT, dpi(DpiInfo::getHttpRequestHost)),
+    DPI_HTTP_REQUEST_TARGET("dpiInfo.httpRequestTarget", Kind.TEXT, dpi(DpiInfo::getHttpRequestTarget)),
+    DPI_HTTP_USER_AGENT("dpiInfo.httpUserAgent", Kind.TEXT, dpi(DpiInfo::getHttpUserAgent)),
+    DPI_HTTP_STATUS_CODE("dpiInfo.httpStatusCode", Kind.NUMBER, dpi(DpiInfo::getHttpStatusCode)),
+    DPI_SSL_SERVER_NAME("dpiInfo.sslServerName", Kind.TEXT, dpi(DpiInfo::getSslServerName)),
+    DPI_SSL_CERTIFICATE_ISSUER("dpiInfo.sslCertificateIssuer", Kind.TEXT, dpi(DpiInfo::getSslCertificateIssuer)),
+    DPI_SSL_CERTIFICATE_SUBJECT("dpiInfo.sslCertificateSubject", Kind.TEXT, dpi(DpiInfo::getSslCertificateSubject)),
+    DPI_SSL_CIPHER_SUITE("dpiInfo.sslCipherSuite", Kind.TEXT, dpi(DpiInfo::getSslCipherSuite)),
+    DPI_SSL_VERSION("dpiInfo.sslVersion", Kind.NUMBER, dpi(DpiInfo::getSslVersion)),
+    DPI_DNS_QUERY_NAME("dpiInfo.dnsQueryName", Kind.TEXT, dpi(DpiInfo::getDnsQueryName)),
+    DPI_DNS_QUERY_TYPE("dpiInfo.dnsQueryType", Kind.NUMBER, dpi(DpiInfo::getDnsQueryType)),
+    DPI_DNS_RESPONSE_CODE("dpiInfo.dnsResponseCode", Kind.NUMBER, dpi(DpiInfo::getDnsResponseCode)),
+    DPI_DNS_RESPONSE_NAME("dpiInfo.dnsResponseName", Kind.TEXT, dpi(DpiInfo::getDnsResponseName)),
+    DPI_APPLICATION_PROTOCOL("dpiInfo.applicationProtocol", Kind.TEXT, dpi(DpiInfo::getApplicationProtocol)),
+    DPI_APPLICATION_LAYER_PROTOCOL_ID("dpiInfo.applicationLayerProtocolId",
+            Kind.NUMBER, dpi(DpiInfo::getApplicationLayerProtocolId)),
+    
+    BIFLOW_BIFLOW_DIRECTION("bidirectionalFlowInfo.biflowDirection",
+            Kind.TEXT, biflow(BidirectionalFlowInfo::getBiflowDirection)),
+    BIFLOW_REVERSE_OCTET_DELTA_COUNT("bidirectionalFlowInfo.reverseOctetDeltaCount",
+            Kind.NUMBER, biflow(BidirectionalFlowInfo::getReverseOctetDeltaCount)),
+    BIFLOW_REVERSE_PACKET_DELTA_COUNT("bidirectionalFlowInfo.reversePacketDeltaCount",
+            Kind.NUMBER, biflow(BidirectionalFlowInfo::getReversePacketDeltaCount)),
+    BIFLOW_REVERSE_FLOW_START_MILLISECONDS("bidirectionalFlowInfo.reverseFlowStartMilliseconds",
+            Kind.INSTANT, biflow(BidirectionalFlowInfo::getReverseFlowStartMilliseconds)),
+    BIFLOW_REVERSE_FLOW_END_MILLISECONDS("bidirectionalFlowInfo.reverseFlowEndMilliseconds",
+            Kind.INSTANT, biflow(BidirectionalFlowInfo::getReverseFlowEndMilliseconds)),
+    BIFLOW_REVERSE_TCP_CONTROL_BITS("bidirectionalFlowInfo.reverseTcpControlBits",
+            Kind.NUMBER, biflow(BidirectionalFlowInfo::getReverseTcpControlBits)),
+    BIFLOW_FLOW_DURATION_MILLISECONDS("bidirectionalFlowInfo.flowDurationMilliseconds",
+            Kind.NUMBER, biflow(BidirectionalFlowInfo::getFlowDurationMilliseconds)),
+    BIFLOW_FLOW_DURATION_MICROSECONDS("bidirectionalFlowInfo.flowDurationMicroseconds",
+            Kind.NUMBER, biflow(BidirectionalFlowInfo::getFlowDurationMicroseconds)),
+    BIFLOW_MINIMUM_IP_TOTAL_LENGTH("bidirectionalFlowInfo.minimumIpTotalLength",
+            Kind.NUMBER, biflow(BidirectionalFlowInfo::getMinimumIpTotalLength)),
+    BIFLOW_MAXIMUM_IP_TOTAL_LENGTH("bidirectionalFlowInfo.maximumIpTotalLength",
+            Kind.NUMBER, biflow(BidirectionalFlowInfo::getMaximumIpTotalLength)),
+    BIFLOW_REVERSE_MINIMUM_IP_TOTAL_LENGTH("bidirectionalFlowInfo.reverseMinimumIpTotalLength",
+            Kind.NUMBER, biflow(BidirectionalFlowInfo::getReverseMinimumIpTotalLength)),
+    BIFLOW_REVERSE_MAXIMUM_IP_TOTAL_LENGTH("bidirectionalFlowInfo.reverseMaximumIpTotalLength",
+            Kind.NUMBER, biflow(BidirectionalFlowInfo::getReverseMaximumIpTotalLength)),
+    BIFLOW_MINIMUM_TTL("bidirectionalFlowInfo.minimumTTL", Kind.NUMBER, biflow(BidirectionalFlowInfo::getMinimumTTL)),
+    BIFLOW_MAXIMUM_TTL("bidirectionalFlowInfo.maximumTTL", Kind.NUMBER, biflow(BidirectionalFlowInfo::getMaximumTTL)),
+    BIFLOW_REVERSE_MINIMUM_TTL("bidirectionalFlowInfo.reverseMinimumTTL",
+            Kind.NUMBER, biflow(BidirectionalFlowInfo::getReverseMinimumTTL)),
+    BIFLOW_REVERSE_MAXIMUM_TTL("bidirectionalFlowInfo.reverseMaximumTTL",
+            Kind.NUMBER, biflow(BidirectionalFlowInfo::getReverseMaximumTTL)),
+    BIFLOW_FLOW_END_REASON("bidirectionalFlowInfo.flowEndReason",
+            Kind.TEXT, biflow(BidirectionalFlowInfo::getFlowEndReason)),
+    BIFLOW_FLOW_DIRECTION("bidirectionalFlowInfo.flowDirection",
+            Kind.NUMBER, biflow(BidirectionalFlowInfo::getFlowDirection)),
+    
+    CERT_SILK_APP_LABEL("certInfo.silkAppLabel", Kind.NUMBER, cert(CertEnterpriseInfo::getSilkAppLabel)),
+    CERT_PAYLOAD_ENTROPY("certInfo.payloadEntropy", Kind.TEXT, cert(CertEnterpriseInfo::getPayloadEntropy)),
+    CERT_INITIAL_TCP_FLAGS("certInfo.initialTCPFlags", Kind.TEXT, cert(CertEnterpriseInfo::getInitialTCPFlags)),
+    CERT_UNION_TCP_FLAGS("certInfo.unionTCPFlags", Kind.TEXT, cert(CertEnterpriseInfo::getUnionTCPFlags)),
+    CERT_REVERSE_FLOW_DELTA_MILLISECONDS("certInfo.reverseFlowDeltaMilliseconds",
+            Kind.NUMBER, cert(CertEnterpriseInfo::getReverseFlowDeltaMilliseconds)),
+    CERT_FLOW_ATTRIBUTES("certInfo.flowAttributes", Kind.TEXT, cert(CertEnterpriseInfo::getFlowAttributes)),
+    CERT_FLOW_KEY_HASH("certInfo.flowKeyHash", Kind.NUMBER, cert(CertEnterpriseInfo::getFlowKeyHash)),
+    CERT_OS_NAME("certInfo.osName", Kind.TEXT, cert(CertEnterpriseInfo::getOsName)),
+    CERT_OS_VERSION("certInfo.osVersion", Kind.TEXT, cert(CertEnterpriseInfo::getOsVersion)),
+    CERT_OS_FINGERPRINT("certInfo.osFingerprint", Kind.TEXT, cert(CertEnterpriseInfo::getOsFingerprint)),
+    CERT_PAYLOAD_CONTENT("certInfo.payloadContent", Kind.TEXT, cert(CertEnterpriseInfo::getPayloadContent)),
+    CERT_PAYLOAD_LENGTH("certInfo.payloadLength", Kind.NUMBER, cert(CertEnterpriseInfo::getPayloadLength)),
+    CERT_REVERSE_PAYLOAD_CONTENT("certInfo.reversePayloadContent",
+            Kind.TEXT, cert(CertEnterpriseInfo::getReversePayloadContent)),
+    CERT_REVERSE_PAYLOAD_LENGTH("certInfo.reversePayloadLength",
+            Kind.NUMBER, cert(CertEnterpriseInfo::getReversePayloadLength)),
+    CERT_VLAN_ID("certInfo.vlanId", Kind.NUMBER, cert(CertEnterpriseInfo::getVlanId)),
+    CERT_REVERSE_VLAN_ID("certInfo.reverseVlanId", Kind.NUMBER, cert(CertEnterpriseInfo::getReverseVlanId)),
+    CERT_SOURCE_MAC_ADDRESS("certInfo.sourceMacAddress", Kind.TEXT, cert(CertEnterpriseInfo::getSourceMacAddress)),
+    CERT_DESTINATION_MAC_ADDRESS("certInfo.destinationMacAddress",
+            Kind.TEXT, cert(CertEnterpriseInfo::getDestinationMacAddress)),
+    CERT_INGRESS_INTERFACE_NAME("certInfo.ingressInterfaceName",
+            Kind.TEXT, cert(CertEnterpriseInfo::getIngressInterfaceName)),
+    CERT_EGRESS_INTERFACE_NAME("certInfo.egressInterfaceName",
+            Kind.TEXT, cert(CertEnterpriseInfo::getEgressInterfaceName));
+    
+    /**
+     * Type of an element's values: numbers compare as longs, instants as epoch nanoseconds, text as is
+     */
+    enum Kind {
+        NUMBER, INSTANT, TEXT
+    }
+    
+    private static final Map<String, FlowElement> BY_NAME = new HashMap<>();
+    
+    static {
+        for (FlowElement element : values()) {
+            BY_NAME.put(element.elementName, element);
+        }
+    }
+    
+    private final String elementName;
+    private final Kind kind;
+    private final Function<IpfixRecord, ?> reader;
+    
+    FlowElement(String elementName, Kind kind, Function<IpfixRecord, ?> reader) {
+        this.elementName = elementName;
+        this.kind = kind;
+        this.reader = reader;
+    }
+    
+    /**
+     * @throws IllegalArgumentException when no element has that name
+     */
+    static FlowElement named(String name) {
+        FlowElement element = BY_NAME.get(name);
+        if (element == null) {
+            throw new IllegalArgumentException("Unknown information element: " + name);
+        }
+        return element;
+    }
+    
+    /**
+     * The element behind a text index field
+     */
+    static FlowElement of(TextField field) {
+        return switch (field) {
+            case HTTP_REQUEST_HOST -> DPI_HTTP_REQUEST_HOST;
+            case HTTP_REQUEST_TARGET -> DPI_HTTP_REQUEST_TARGET;
+            case HTTP_USER_AGENT -> DPI_HTTP_USER_AGENT;
+            case SSL_SERVER_NAME -> DPI_SSL_SERVER_NAME;
+            case SSL_CERTIFICATE_SUBJECT -> DPI_SSL_CERTIFICATE_SUBJECT;
+            case DNS_QUERY_NAME -> DPI_DNS_QUERY_NAME;
+            case APPLICATION_NAME -> APPLICATION_NAME;
+            case APPLICATION_DESCRIPTION -> APPLICATION_DESCRIPTION;
+        };
+    }
+    
+    String elementName() {
+        return elementName;
+    }
+    
+    Kind kind() {
+        return kind;
+    }
+    
+    /**
+     * The element's value in a record, null when absent
+     */
+    Object read(IpfixRecord record) {
+        return reader.apply(record);
+    }
+    
+    /**
+     * A present value of a {@link Kind#NUMBER} or {@link Kind#INSTANT} element as a long
+     */
+    long longValue(Object value) {
+        return kind == Kind.INSTANT ? epochNanos((Instant) value) : ((Number) value).longValue();
+    }
+    
+    /**
+     * An operand read with the element's type
+     *
+     * @throws IllegalArgumentException when it does not parse
+     */
+    long parseLong(String operand) {
+        if (kind == Kind.TEXT) {
+            throw new IllegalArgumentException(elementName + " is not numeric");
+        }
+        try {
+            return kind == Kind.INSTANT ? epochNanos(Instant.parse(operand.trim())) : Long.parseLong(operand.trim());
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid " + elementName + " value: " + operand);
+        }
+    }
+    
+    static long epochNanos(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000_000L), instant.getNano());
+    }
+    
+    private static Function<IpfixRecord, ?> dpi(Function<DpiInfo, ?> getter) {
+        return record -> record.getDpiInfo() == null ? null : getter.apply(record.getDpiInfo());
+    }
+    
+    private static Function<IpfixRecord, ?> biflow(Function<BidirectionalFlowInfo, ?> getter) {
+        return record -> record.getBidirectionalFlowInfo() == null
+                ? null : getter.apply(record.getBidirectionalFlowInfo());
+    }
+    
+    private static Function<IpfixRecord, ?> cert(Function<CertEnterpriseInfo, ?> getter) {
+        return record -> record.getCertInfo() == null ? null : getter.apply(record.getCertInfo());
+    }
+}
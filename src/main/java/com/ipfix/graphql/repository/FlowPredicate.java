@@ -0,0 +1,183 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.model.AddressDirection;
+import com.ipfix.graphql.model.IpfixRecord;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Node of a compiled {@link FlowQuery}. Operands are parsed once at compile time, so testing a record only
+ * reads fields and compares longs or strings. Nodes are records, so equal filters compile to equal trees.
+ */
+sealed interface FlowPredicate extends Predicate<IpfixRecord> {
+    
+    FlowPredicate ALL = new And(List.of());
+    
+    /**
+     * Every term holds; no terms matches every record
+     */
+    record And(List<FlowPredicate> terms) implements FlowPredicate {
+        @Override
+        public boolean test(IpfixRecord record) {
+            for (int i = 0; i < terms.size(); i++) {
+                if (!terms.get(i).test(record)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+    
+    record Or(List<FlowPredicate> terms) implements FlowPredicate {
+        @Override
+        public boolean test(IpfixRecord record) {
+            for (int i = 0; i < terms.size(); i++) {
+                if (terms.get(i).test(record)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+    
+    /**
+     * Record timestamp within [start, end], either end open when null
+     */
+    record TimeWindow(Instant start, Instant end) implements FlowPredicate {
+        @Override
+        public boolean test(IpfixRecord record) {
+            Instant timestamp = record.getTimestamp();
+            return timestamp != null && (start == null || !timestamp.isBefore(start))
+                    && (end == null || !timestamp.isAfter(end));
+        }
+    }
+    
+    /**
+     * Source or destination address within {@code block}, whatever prefix length field the record carries
+     */
+    record Subnet(IpNetwork block, AddressDirection direction) implements FlowPredicate {
+        @Override
+        public boolean test(IpfixRecord record) {
+            boolean source = direction == AddressDirection.SOURCE;
+            if (block.ipv6()) {
+                IpNetwork network = source
+                        ? IpNetwork.ofIPv6(record.getSourceIPv6Address(), record.getSourceIPv6PrefixLength())
+                        : IpNetwork.ofIPv6(record.getDestinationIPv6Address(), record.getDestinationIPv6PrefixLength());
+                return network != null && block.contains(network);
+            }
+            String address = source ? record.getSourceIPv4Address() : record.getDestinationIPv4Address();
+            if (address == null) {
+                return false;
+            }
+            long v4 = IpAddresses.parseIPv4(address);
+            return v4 != IpAddresses.INVALID_IPV4 && (v4 & block.lowMask()) == block.low();
+        }
+    }
+    
+    /**
+     * Numeric or instant element within [min, max]
+     */
+    record Range(FlowElement element, long min, long max) implements FlowPredicate {
+        @Override
+        public boolean test(IpfixRecord record) {
+            Object value = element.read(record);
+            if (value == null) {
+                return false;
+            }
+            long number = element.longValue(value);
+            return number >= min && number <= max;
+        }
+    }
+    
+    record NotEqual(FlowElement element, long value) implements FlowPredicate {
+        @Override
+        public boolean test(IpfixRecord record) {
+            Object present = element.read(record);
+            return present != null && element.longValue(present) != value;
+        }
+    }
+    
+    /**
+     * Numeric or instant element equal to one of {@code values}, which are sorted and distinct
+     */
+    record AnyOf(FlowElement element, long[] values) implements FlowPredicate {
+        @Override
+        public boolean test(IpfixRecord record) {
+            Object value = element.read(record);
+            return value != null && Arrays.binarySearch(values, element.longValue(value)) >= 0;
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof AnyOf that && element == that.element && Arrays.equals(values, that.values);
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * element.hashCode() + Arrays.hashCode(values);
+        }
+        
+        @Override
+        public String toString() {
+            return "AnyOf[element=" + element + ", values=" + Arrays.toString(values) + "]";
+        }
+    }
+    
+    record Text(FlowElement element, TextOperator operator, String operand) implements FlowPredicate {
+        @Override
+        public boolean test(IpfixRecord record) {
+            Object value = element.read(record);
+            if (value == null) {
+                return false;
+            }
+            String text = (String) value;
+            return switch (operator) {
+                case EQ -> text.equals(operand);
+                case NE -> !text.equals(operand);
+                case PREFIX -> text.startsWith(operand);
+                case CONTAINS -> text.contains(operand);
+            };
+        }
+    }
+    
+    record TextAnyOf(FlowElement element, Set<String> values) implements FlowPredicate {
+        @Override
+        public boolean test(IpfixRecord record) {
+            Object value = element.read(record);
+            return value != null && values.contains(value);
+        }
+    }
+    
+    /**
+     * Any of {@code elements} matching a text search
+     */
+    record Search(TextSearch search, List<FlowElement> elements) implements FlowPredicate {
+        @Override
+        public boolean test(IpfixRecord record) {
+            for (int i = 0; i < elements.size(); i++) {
+                if (search.matches((String) elements.get(i).read(record))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+    
+    /**
+     * Element absent ({@code missing}) or present
+     */
+    record Missing(FlowElement element, boolean missing) implements FlowPredicate {
+        @Override
+        public boolean test(IpfixRecord record) {
+            return (element.read(record) == null) == missing;
+        }
+    }
+    
+    enum TextOperator {
+        EQ, NE, PREFIX, CONTAINS
+    }
+}
@@ -0,0 +1,437 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.model.AddressDirection;
+import com.ipfix.graphql.model.ElementCondition;
+import com.ipfix.graphql.model.FlowFilter;
+import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.model.TextField;
+import com.ipfix.graphql.repository.FlowPredicate.And;
+import com.ipfix.graphql.repository.FlowPredicate.AnyOf;
+import com.ipfix.graphql.repository.FlowPredicate.Missing;
+import com.ipfix.graphql.repository.FlowPredicate.NotEqual;
+import com.ipfix.graphql.repository.FlowPredicate.Or;
+import com.ipfix.graphql.repository.FlowPredicate.Range;
+import com.ipfix.graphql.repository.FlowPredicate.Search;
+import com.ipfix.graphql.repository.FlowPredicate.Subnet;
+import com.ipfix.graphql.repository.FlowPredicate.Text;
+import com.ipfix.graphql.repository.FlowPredicate.TextAnyOf;
+import com.ipfix.graphql.repository.FlowPredicate.TextOperator;
+import com.ipfix.graphql.repository.FlowPredicate.TimeWindow;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link FlowFilter} compiled into a {@link FlowPredicate} tree. Compiling validates and parses every operand
+ * once; {@link #find} then plans the lookup: of the filter's indexed conjuncts (its time window, CIDR blocks and
+ * protocol) the most selective drives a paged store query, and the rest of the tree is tested on the records
+ * it yields. Selectivity of a time window comes from the span of stored timestamps, that of the other
+ * conjuncts from the newest {@link #SAMPLE} records. Queries compiled from equivalent filters are equal.
+ */
+@Slf4j
+public final class FlowQuery implements Predicate<IpfixRecord> {
+    
+    public static final FlowQuery ALL = new FlowQuery(FlowPredicate.ALL);
+    
+    // Newest records tested to estimate the selectivity of conjuncts other than the time window
+    static final int SAMPLE = 256;
+    
+    private static final int MIN_CHUNK = 256;
+    private static final int MAX_CHUNK = 4096;
+    // Bounds of an open time window that every store can represent
+    private static final Instant FAR_PAST = Instant.EPOCH;
+    private static final Instant FAR_FUTURE = Instant.parse("9999-12-31T23:59:59Z");
+    
+    private final FlowPredicate predicate;
+    
+    private FlowQuery(FlowPredicate predicate) {
+        this.predicate = predicate;
+    }
+    
+    /**
+     * @throws IllegalArgumentException when a CIDR block, element name or operand is invalid
+     */
+    public static FlowQuery compile(FlowFilter filter) {
+        return filter == null ? ALL : new FlowQuery(compileFilter(filter));
+    }
+    
+    /**
+     * Records in which any of {@code fields} matches {@code search}
+     */
+    public static FlowQuery search(TextSearch search, Set<TextField> fields) {
+        List<FlowElement> elements = new ArrayList<>();
+        for (TextField field : EnumSet.copyOf(fields)) {
+            elements.add(FlowElement.of(field));
+        }
+        return new FlowQuery(new Search(search, List.copyOf(elements)));
+    }
+    
+    @Override
+    public boolean test(IpfixRecord record) {
+        return predicate.test(record);
+    }
+    
+    /**
+     * Newest-first page of matching records strictly older than {@code after} (from the newest when null),
+     * reading the driving access path in chunks until the page is full or the path is exhausted
+     */
+    public List<IpfixRecord> find(IpfixRecordStore store, RecordKey after, int limit) {
+        AccessPath path = plan(store);
+        FlowPredicate rest = residual(path);
+        List<IpfixRecord> page = new ArrayList<>(Math.min(limit, 1024));
+        int chunk = (int) Math.min(Math.max(4L * limit, MIN_CHUNK), MAX_CHUNK);
+        RecordKey cursor = after;
+        while (page.size() < limit) {
+            List<IpfixRecord> candidates = path.fetch(store, cursor, chunk);
+            for (int i = 0; i < candidates.size() && page.size() < limit; i++) {
+                if (rest.test(candidates.get(i))) {
+                    page.add(candidates.get(i));
+                }
+            }
+            if (candidates.size() < chunk) {
+                break;
+            }
+            cursor = RecordKey.of(candidates.get(candidates.size() - 1));
+        }
+        return page;
+    }
+    
+    /**
+     * Top-level record fields the filter reads, which records must hold for {@link #test} to see them
+     */
+    public Set<String> fields() {
+        Set<String> fields = new HashSet<>();
+        addFields(predicate, fields);
+        return fields;
+    }
+    
+    /**
+     * The access path {@link #find} reads: the indexed conjunct expected to match the fewest records, or a
+     * time-ordered scan when the filter has none
+     */
+    AccessPath plan(IpfixRecordStore store) {
+        List<AccessPath> candidates = new ArrayList<>();
+        for (FlowPredicate term : conjuncts()) {
+            if (term instanceof TimeWindow window) {
+                candidates.add(new ByTime(window));
+            } else if (term instanceof Subnet subnet) {
+                candidates.add(new BySubnet(subnet));
+            } else if (term instanceof Range range && range.element() == FlowElement.PROTOCOL_IDENTIFIER
+                    && range.min() == range.max() && range.min() == (int) range.min()) {
+                candidates.add(new ByProtocol(range));
+            }
+        }
+        if (candidates.isEmpty()) {
+            return new Scan();
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        List<IpfixRecord> sample = null;
+        AccessPath best = null;
+        double bestSelectivity = Double.MAX_VALUE;
+        for (AccessPath candidate : candidates) {
+            double selectivity;
+            if (candidate instanceof ByTime byTime) {
+                selectivity = timeSelectivity(store, byTime.term());
+            } else {
+                if (sample == null) {
+                    sample = store.findPage(null, SAMPLE);
+                }
+                selectivity = sampleSelectivity(sample, candidate.term());
+            }
+            if (selectivity < bestSelectivity) {
+                best = candidate;
+                bestSelectivity = selectivity;
+            }
+        }
+        log.debug("Filter {} reads {} (estimated selectivity {})", predicate, best, bestSelectivity);
+        return best;
+    }
+    
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof FlowQuery query && predicate.equals(query.predicate);
+    }
+    
+    @Override
+    public int hashCode() {
+        return predicate.hashCode();
+    }
+    
+    @Override
+    public String toString() {
+        return predicate.toString();
+    }
+    
+    private static void addFields(FlowPredicate term, Set<String> fields) {
+        if (term instanceof And and) {
+            and.terms().forEach(nested -> addFields(nested, fields));
+        } else if (term instanceof Or or) {
+            or.terms().forEach(nested -> addFields(nested, fields));
+        } else if (term instanceof TimeWindow) {
+            fields.add("timestamp");
+        } else if (term instanceof Subnet subnet) {
+            boolean source = subnet.direction() == AddressDirection.SOURCE;
+            if (subnet.block().ipv6()) {
+                fields.add(source ? "sourceIPv6Address" : "destinationIPv6Address");
+                fields.add(source ? "sourceIPv6PrefixLength" : "destinationIPv6PrefixLength");
+            } else {
+                fields.add(source ? "sourceIPv4Address" : "destinationIPv4Address");
+                fields.add(source ? "sourceIPv4PrefixLength" : "destinationIPv4PrefixLength");
+            }
+        } else if (term instanceof Search search) {
+            search.elements().forEach(element -> fields.add(field(element)));
+        } else if (term instanceof Range range) {
+            fields.add(field(range.element()));
+        } else if (term instanceof NotEqual notEqual) {
+            fields.add(field(notEqual.element()));
+        } else if (term instanceof AnyOf anyOf) {
+            fields.add(field(anyOf.element()));
+        } else if (term instanceof Text text) {
+            fields.add(field(text.element()));
+        } else if (term instanceof TextAnyOf anyOf) {
+            fields.add(field(anyOf.element()));
+        } else if (term instanceof Missing missing) {
+            fields.add(field(missing.element()));
+        }
+    }
+    
+    private static String field(FlowElement element) {
+        String name = element.elementName();
+        int dot = name.indexOf('.');
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+    
+    private List<FlowPredicate> conjuncts() {
+        return predicate instanceof And and ? and.terms() : List.of(predicate);
+    }
+    
+    /**
+     * The tree without the conjunct the access path already guarantees
+     */
+    private FlowPredicate residual(AccessPath path) {
+        if (path.term() == null) {
+            return predicate;
+        }
+        List<FlowPredicate> rest = new ArrayList<>(conjuncts());
+        rest.remove(path.term());
+        return and(rest);
+    }
+    
+    private static double timeSelectivity(IpfixRecordStore store, TimeWindow window) {
+        Optional<Instant> oldest = store.oldestTimestamp();
+        if (oldest.isEmpty()) {
+            return 0;
+        }
+        double from = seconds(oldest.get());
+        double to = Math.max(seconds(Instant.now()), from + 1);
+        double start = window.start() == null ? from : Math.max(from, seconds(window.start()));
+        double end = window.end() == null ? to : Math.min(to, seconds(window.end()));
+        return end < start ? 0 : (end - start) / (to - from);
+    }
+    
+    private static double sampleSelectivity(List<IpfixRecord> sample, FlowPredicate term) {
+        int matches = 0;
+        for (IpfixRecord record : sample) {
+            if (term.test(record)) {
+                matches++;
+            }
+        }
+        return (matches + 0.5) / (sample.size() + 1);
+    }
+    
+    private static double seconds(Instant instant) {
+        return instant.getEpochSecond() + instant.getNano() / 1e9;
+    }
+    
+    private static FlowPredicate compileFilter(FlowFilter filter) {
+        List<FlowPredicate> terms = new ArrayList<>();
+        if (filter.getStart() != null || filter.getEnd() != null) {
+            terms.add(new TimeWindow(filter.getStart(), filter.getEnd()));
+        }
+        if (filter.getSourceCidr() != null) {
+            terms.add(new Subnet(IpNetwork.parse(filter.getSourceCidr()), AddressDirection.SOURCE));
+        }
+        if (filter.getDestinationCidr() != null) {
+            terms.add(new Subnet(IpNetwork.parse(filter.getDestinationCidr()), AddressDirection.DESTINATION));
+        }
+        addEqual(terms, FlowElement.PROTOCOL_IDENTIFIER, filter.getProtocolIdentifier());
+        addEqual(terms, FlowElement.SOURCE_TRANSPORT_PORT, filter.getSourceTransportPort());
+        addEqual(terms, FlowElement.DESTINATION_TRANSPORT_PORT, filter.getDestinationTransportPort());
+        addText(terms, FlowElement.APPLICATION_NAME, TextOperator.EQ, filter.getApplicationName());
+        if (filter.getWhere() != null) {
+            for (ElementCondition condition : filter.getWhere()) {
+                compileCondition(condition, terms);
+            }
+        }
+        if (filter.getAnd() != null) {
+            for (FlowFilter nested : filter.getAnd()) {
+                FlowPredicate term = compileFilter(nested);
+                if (term instanceof And and) {
+                    terms.addAll(and.terms());
+                } else {
+                    terms.add(term);
+                }
+            }
+        }
+        if (filter.getOr() != null && !filter.getOr().isEmpty()) {
+            List<FlowPredicate> alternatives = new ArrayList<>();
+            for (FlowFilter nested : filter.getOr()) {
+                alternatives.add(compileFilter(nested));
+            }
+            terms.add(alternatives.size() == 1 ? alternatives.get(0) : new Or(List.copyOf(alternatives)));
+        }
+        return and(terms);
+    }
+    
+    private static void addEqual(List<FlowPredicate> terms, FlowElement element, Integer value) {
+        if (value != null) {
+            terms.add(new Range(element, value, value));
+        }
+    }
+    
+    private static void compileCondition(ElementCondition condition, List<FlowPredicate> terms) {
+        if (condition.getElement() == null) {
+            throw new IllegalArgumentException("Condition without an element");
+        }
+        FlowElement element = FlowElement.named(condition.getElement());
+        int before = terms.size();
+        if (condition.getIsNull() != null) {
+            terms.add(new Missing(element, condition.getIsNull()));
+        }
+        if (element.kind() == FlowElement.Kind.TEXT) {
+            if (condition.getGt() != null || condition.getGte() != null
+                    || condition.getLt() != null || condition.getLte() != null) {
+                throw new IllegalArgumentException(element.elementName() + " is text and has no order");
+            }
+            addText(terms, element, TextOperator.EQ, condition.getEq());
+            addText(terms, element, TextOperator.NE, condition.getNe());
+            addText(terms, element, TextOperator.PREFIX, condition.getPrefix());
+            addText(terms, element, TextOperator.CONTAINS, condition.getContains());
+            if (condition.getMatches() != null) {
+                terms.add(new Search(TextSearch.parse(condition.getMatches()), List.of(element)));
+            }
+            if (condition.getIn() != null) {
+                terms.add(new TextAnyOf(element, condition.getIn().stream()
+                        .map(FlowStrings::lookup)
+                        .collect(Collectors.toUnmodifiableSet())));
+            }
+        } else {
+            if (condition.getPrefix() != null || condition.getContains() != null || condition.getMatches() != null) {
+                throw new IllegalArgumentException("prefix, contains and matches apply to text elements, not "
+                        + element.elementName());
+            }
+            long min = Long.MIN_VALUE;
+            long max = Long.MAX_VALUE;
+            boolean empty = false;
+            if (condition.getEq() != null) {
+                long value = element.parseLong(condition.getEq());
+                min = value;
+                max = value;
+            }
+            if (condition.getGte() != null) {
+                min = Math.max(min, element.parseLong(condition.getGte()));
+            }
+            if (condition.getGt() != null) {
+                long value = element.parseLong(condition.getGt());
+                empty = value == Long.MAX_VALUE;
+                min = Math.max(min, empty ? value : value + 1);
+            }
+            if (condition.getLte() != null) {
+                max = Math.min(max, element.parseLong(condition.getLte()));
+            }
+            if (condition.getLt() != null) {
+                long value = element.parseLong(condition.getLt());
+                empty |= value == Long.MIN_VALUE;
+                max = Math.min(max, empty ? value : value - 1);
+            }
+            if (empty) {
+                terms.add(new Range(element, 1, 0));
+            } else if (min != Long.MIN_VALUE || max != Long.MAX_VALUE) {
+                terms.add(new Range(element, min, max));
+            }
+            if (condition.getNe() != null) {
+                terms.add(new NotEqual(element, element.parseLong(condition.getNe())));
+            }
+            if (condition.getIn() != null) {
+                terms.add(new AnyOf(element, condition.getIn().stream()
+                        .mapToLong(element::parseLong).sorted().distinct().toArray()));
+            }
+        }
+        if (terms.size() == before) {
+            throw new IllegalArgumentException("Condition on " + element.elementName() + " has no operator");
+        }
+    }
+    
+    /**
+     * Adds a text comparison; equality operands are taken as their {@link FlowStrings} instance when stored
+     * records share one, so matching values compare by reference
+     */
+    private static void addText(List<FlowPredicate> terms, FlowElement element, TextOperator operator,
+                                String operand) {
+        if (operand != null) {
+            terms.add(new Text(element, operator, operator == TextOperator.EQ || operator == TextOperator.NE
+                    ? FlowStrings.lookup(operand) : operand));
+        }
+    }
+    
+    private static FlowPredicate and(List<FlowPredicate> terms) {
+        return terms.size() == 1 ? terms.get(0) : new And(List.copyOf(terms));
+    }
+    
+    /**
+     * Paged store query yielding the candidates of a filter, newest first
+     */
+    sealed interface AccessPath {
+        
+        /**
+         * The conjunct every record the path yields satisfies, null for a scan
+         */
+        FlowPredicate term();
+        
+        List<IpfixRecord> fetch(IpfixRecordStore store, RecordKey after, int limit);
+    }
+    
+    record Scan() implements AccessPath {
+        @Override
+        public FlowPredicate term() {
+            return null;
+        }
+        
+        @Override
+        public List<IpfixRecord> fetch(IpfixRecordStore store, RecordKey after, int limit) {
+            return store.findPage(after, limit);
+        }
+    }
+    
+    record ByTime(TimeWindow term) implements AccessPath {
+        @Override
+        public List<IpfixRecord> fetch(IpfixRecordStore store, RecordKey after, int limit) {
+            return store.findByTimeRange(term.start() != null ? term.start() : FAR_PAST,
+                    term.end() != null ? term.end() : FAR_FUTURE, after, limit);
+        }
+    }
+    
+    record BySubnet(Subnet term) implements AccessPath {
+        @Override
+        public List<IpfixRecord> fetch(IpfixRecordStore store, RecordKey after, int limit) {
+            return store.findBySubnet(term.block(), term.direction(), after, limit);
+        }
+    }
+    
+    record ByProtocol(Range term) implements AccessPath {
+        @Override
+        public List<IpfixRecord> fetch(IpfixRecordStore store, RecordKey after, int limit) {
+            return store.findByProtocol((int) term.min(), after, limit);
+        }
+    }
+}
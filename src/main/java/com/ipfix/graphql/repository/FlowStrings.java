@@ -0,0 +1,91 @@
+package com.ipfix.graphql.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ipfix.graphql.model.CertEnterpriseInfo;
+import com.ipfix.graphql.model.DpiInfo;
+import com.ipfix.graphql.model.IpfixRecord;
+
+/**
+ * Process-wide dictionary of the categorical strings flows repeat: HTTP methods, cipher suites, protocol and
+ * OS names, interface names, list semantics and template field names. Every record decodes its own copies;
+ * the in-memory stores swap them for one shared instance per distinct value before keeping the record, so
+ * a value costs a reference per record instead of a string, and filters compiled against the shared
+ * instance compare by reference (or reuse its cached hash) instead of by content.
+ * <p>
+ * The dictionary holds at most {@link #CAPACITY} values, admitted and evicted by how often they recur
+ * (Caffeine's W-TinyLFU), so an exporter sending a stream of distinct values cannot crowd out the ones every
+ * flow repeats; values longer than {@link #MAX_LENGTH} are kept as they are. A value evicted and added again
+ * gets a new shared instance, so records may hold several; they still compare equal, only not by reference.
+ */
+public final class FlowStrings {
+    
+    static final int CAPACITY = 65536;
+    static final int MAX_LENGTH = 64;
+    
+    private static final Cache<String, String> VALUES = Caffeine.newBuilder().maximumSize(CAPACITY).build();
+    
+    private FlowStrings() {
+    }
+    
+    /**
+     * Replaces the dictionary fields of a record and its DPI and CERT info with their shared instances, in
+     * place; {@link StructuredLists#pack} does the same for structured lists
+     */
+    public static void intern(IpfixRecord record) {
+        record.setApplicationName(canonical(record.getApplicationName()));
+        DpiInfo dpi = record.getDpiInfo();
+        if (dpi != null) {
+            dpi.setHttpRequestMethod(canonical(dpi.getHttpRequestMethod()));
+            dpi.setSslCipherSuite(canonical(dpi.getSslCipherSuite()));
+            dpi.setSslCertificateIssuer(canonical(dpi.getSslCertificateIssuer()));
+            dpi.setApplicationProtocol(canonical(dpi.getApplicationProtocol()));
+        }
+        CertEnterpriseInfo cert = record.getCertInfo();
+        if (cert != null) {
+            cert.setOsName(canonical(cert.getOsName()));
+            cert.setOsVersion(canonical(cert.getOsVersion()));
+            cert.setInitialTCPFlags(canonical(cert.getInitialTCPFlags()));
+            cert.setUnionTCPFlags(canonical(cert.getUnionTCPFlags()));
+            cert.setIngressInterfaceName(canonical(cert.getIngressInterfaceName()));
+            cert.setEgressInterfaceName(canonical(cert.getEgressInterfaceName()));
+        }
+    }
+    
+    /**
+     * Shared instance of a value, added to the dictionary when missing; the value itself when it is null or
+     * too long
+     */
+    static String canonical(String value) {
+        if (value == null || value.length() > MAX_LENGTH) {
+            return value;
+        }
+        return VALUES.get(value, added -> added);
+    }
+    
+    /**
+     * Shared instance of a value already in the dictionary, or the value itself; never adds, so query
+     * operands do not take up room
+     */
+    static String lookup(String value) {
+        if (value == null) {
+            return null;
+        }
+        String shared = VALUES.policy().getIfPresentQuietly(value);
+        return shared != null ? shared : value;
+    }
+    
+    /**
+     * Whether {@code value} is the shared instance, so heap estimates count it once rather than per record
+     */
+    static boolean isShared(String value) {
+        return VALUES.policy().getIfPresentQuietly(value) == value;
+    }
+    
+    /**
+     * Distinct values held
+     */
+    public static int size() {
+        return (int) VALUES.estimatedSize();
+    }
+}
@@ -0,0 +1,117 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.model.IpfixRecord;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rough deep heap size of records, for the store size metrics. Assumes a 64-bit JVM with compressed
+ * references (12-byte headers, 4-byte references and fields, 8-byte alignment) and Latin-1 strings; cached
+ * small integers, enum constants, {@link FlowStrings} instances and shared template definitions are free;
+ * packed structured lists count their arrays. Stores multiply the average of a few sampled records, so
+ * nothing is computed on the write path.
+ */
+final class HeapEstimate {
+    
+    // Records sampled per estimate
+    static final int SAMPLE = 64;
+    
+    private static final String MODEL_PACKAGE = IpfixRecord.class.getPackageName();
+    private static final ClassValue<Field[]> FIELDS = new ClassValue<>() {
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+            List<Field> fields = new ArrayList<>();
+            for (Field field : type.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    field.setAccessible(true);
+                    fields.add(field);
+                }
+            }
+            return fields.toArray(Field[]::new);
+        }
+    };
+    
+    private HeapEstimate() {
+    }
+    
+    /**
+     * Average size of up to {@link #SAMPLE} records, 0 when there are none
+     */
+    static long averageRecord(Iterator<IpfixRecord> records) {
+        long total = 0;
+        int sampled = 0;
+        while (sampled < SAMPLE && records.hasNext()) {
+            total += of(records.next());
+            sampled++;
+        }
+        return sampled == 0 ? 0 : total / sampled;
+    }
+    
+    static long of(Object value) {
+        if (value == null || value instanceof Enum<?>) {
+            return 0;
+        }
+        if (value instanceof String text) {
+            return FlowStrings.isShared(text) ? 0 : 24 + align(16 + text.length());
+        }
+        if (value instanceof Integer number) {
+            return number >= -128 && number <= 127 ? 0 : 16;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return 16;
+        }
+        if (value instanceof Instant) {
+            return 24;
+        }
+        if (value instanceof PackedEntries entries) {
+            return entries.heapBytes();
+        }
+        if (value instanceof PackedValues values) {
+            return values.heapBytes();
+        }
+        if (value instanceof Collection<?> values) {
+            long size = 24 + align(16 + 4L * values.size());
+            for (Object element : values) {
+                size += of(element);
+            }
+            return size;
+        }
+        if (value instanceof Map<?, ?> entries) {
+            if (StructuredLists.isShared(entries)) {
+                return 0;
+            }
+            // Hash map: table slot and a 32-byte node per entry
+            long size = 48 + align(16 + 4L * entries.size() * 4 / 3);
+            for (Map.Entry<?, ?> entry : entries.entrySet()) {
+                size += 32 + of(entry.getKey()) + of(entry.getValue());
+            }
+            return size;
+        }
+        if (!value.getClass().getPackageName().equals(MODEL_PACKAGE)) {
+            return 16;
+        }
+        Field[] fields = FIELDS.get(value.getClass());
+        long size = align(12 + 4L * fields.length);
+        for (Field field : fields) {
+            if (!field.getType().isPrimitive()) {
+                try {
+                    size += of(field.get(value));
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        return size;
+    }
+    
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
@@ -0,0 +1,204 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.model.IpfixRecord;
+
+/**
+ * Parsing and formatting of IP address literals to and from their binary form:
+ * IPv4 as an unsigned 32-bit value, IPv6 as a (high, low) pair of 64-bit values.
+ * IPv6 text is produced in the RFC 5952 canonical form.
+ */
+public final class IpAddresses {
+    
+    /** Returned by {@link #parseIPv4} for input that is not a dotted-quad literal */
+    public static final long INVALID_IPV4 = -1L;
+    
+    private IpAddresses() {
+    }
+    
+    /**
+     * Parses a dotted-quad IPv4 literal
+     *
+     * @return the address as an unsigned value, or {@link #INVALID_IPV4}
+     */
+    public static long parseIPv4(String text) {
+        if (text == null) {
+            return INVALID_IPV4;
+        }
+        long address = 0;
+        int octet = -1;
+        int dots = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = octet < 0 ? c - '0' : octet * 10 + (c - '0');
+                if (octet > 255) {
+                    return INVALID_IPV4;
+                }
+            } else if (c == '.' && octet >= 0 && dots < 3) {
+                address = (address << 8) | octet;
+                octet = -1;
+                dots++;
+            } else {
+                return INVALID_IPV4;
+            }
+        }
+        if (dots != 3 || octet < 0) {
+            return INVALID_IPV4;
+        }
+        return (address << 8) | octet;
+    }
+    
+    /**
+     * Checks that every address field of a record holds an address literal of its family
+     *
+     * @throws IllegalArgumentException naming the first invalid field
+     */
+    public static void requireValid(IpfixRecord record) {
+        requireIPv4("sourceIPv4Address", record.getSourceIPv4Address());
+        requireIPv4("destinationIPv4Address", record.getDestinationIPv4Address());
+        requireIPv4("ipNextHopIPv4Address", record.getIpNextHopIPv4Address());
+        requireIPv4("exporterIPv4Address", record.getExporterIPv4Address());
+        requireIPv6("sourceIPv6Address", record.getSourceIPv6Address());
+        requireIPv6("destinationIPv6Address", record.getDestinationIPv6Address());
+        requireIPv6("exporterIPv6Address", record.getExporterIPv6Address());
+    }
+    
+    public static String formatIPv4(int address) {
+        return new StringBuilder(15)
+                .append(address >>> 24).append('.')
+                .append((address >>> 16) & 0xFF).append('.')
+                .append((address >>> 8) & 0xFF).append('.')
+                .append(address & 0xFF)
+                .toString();
+    }
+    
+    /**
+     * Parses an IPv6 literal, including the :: shorthand and an embedded IPv4 suffix
+     *
+     * @return {high, low} 64-bit halves, or null when the text is not an IPv6 literal
+     */
+    public static long[] parseIPv6(String text) {
+        if (text == null || text.indexOf(':') < 0) {
+            return null;
+        }
+        int[] groups = new int[8];
+        int count = 0;
+        int compressAt = -1;
+        int i = 0;
+        int length = text.length();
+        if (text.startsWith("::")) {
+            compressAt = 0;
+            i = 2;
+        }
+        while (i < length) {
+            int start = i;
+            int value = 0;
+            while (i < length && Character.digit(text.charAt(i), 16) >= 0 && i - start < 4) {
+                value = (value << 4) | Character.digit(text.charAt(i), 16);
+                i++;
+            }
+            if (i < length && text.charAt(i) == '.') {
+                // Embedded IPv4 in the last 32 bits
+                long v4 = parseIPv4(text.substring(start));
+                if (v4 == INVALID_IPV4 || count > 6) {
+                    return null;
+                }
+                groups[count++] = (int) (v4 >>> 16);
+                groups[count++] = (int) (v4 & 0xFFFF);
+                i = length;
+                break;
+            }
+            if (i == start || count == 8) {
+                return null;
+            }
+            groups[count++] = value;
+            if (i == length) {
+                break;
+            }
+            if (text.charAt(i) != ':') {
+                return null;
+            }
+            i++;
+            if (i < length && text.charAt(i) == ':') {
+                if (compressAt >= 0) {
+                    return null;
+                }
+                compressAt = count;
+                i++;
+            } else if (i == length) {
+                return null;
+            }
+        }
+        if (compressAt >= 0) {
+            if (count == 8) {
+                return null;
+            }
+            int shift = 8 - count;
+            System.arraycopy(groups, compressAt, groups, compressAt + shift, count - compressAt);
+            for (int g = compressAt; g < compressAt + shift; g++) {
+                groups[g] = 0;
+            }
+        } else if (count != 8) {
+            return null;
+        }
+        long high = 0;
+        long low = 0;
+        for (int g = 0; g < 4; g++) {
+            high = (high << 16) | groups[g];
+            low = (low << 16) | groups[g + 4];
+        }
+        return new long[]{high, low};
+    }
+    
+    /**
+     * Formats an IPv6 address in RFC 5952 form: lowercase, no leading zeros,
+     * the longest run of two or more zero groups replaced by ::
+     */
+    public static String formatIPv6(long high, long low) {
+        int[] groups = new int[8];
+        for (int g = 0; g < 4; g++) {
+            groups[g] = (int) ((high >>> (48 - 16 * g)) & 0xFFFF);
+            groups[g + 4] = (int) ((low >>> (48 - 16 * g)) & 0xFFFF);
+        }
+        int bestStart = -1;
+        int bestLength = 1;
+        for (int g = 0; g < 8; g++) {
+            if (groups[g] == 0) {
+                int end = g;
+                while (end < 8 && groups[end] == 0) {
+                    end++;
+                }
+                if (end - g > bestLength) {
+                    bestStart = g;
+                    bestLength = end - g;
+                }
+                g = end;
+            }
+        }
+        StringBuilder sb = new StringBuilder(39);
+        for (int g = 0; g < 8; g++) {
+            if (g == bestStart) {
+                sb.append("::");
+                g += bestLength - 1;
+                continue;
+            }
+            if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ':') {
+                sb.append(':');
+            }
+            sb.append(Integer.toHexString(groups[g]));
+        }
+        return sb.toString();
+    }
+    
+    private static void requireIPv4(String field, String address) {
+        if (address != null && parseIPv4(address) == INVALID_IPV4) {
+            throw new IllegalArgumentException("Invalid IPv4 address in " + field + ": " + address);
+        }
+    }
+    
+    private static void requireIPv6(String field, String address) {
+        if (address != null && parseIPv6(address) == null) {
+            throw new IllegalArgumentException("Invalid IPv6 address in " + field + ": " + address);
+        }
+    }
+}
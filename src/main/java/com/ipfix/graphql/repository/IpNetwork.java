@@ -0,0 +1,166 @@
+package com.ipfix.graphql.repository;
+
+/**
+ * An address with a prefix length in binary form: IPv4 addresses occupy the low 32 bits of {@code low},
+ * IPv6 addresses span {@code high} and {@code low}. Networks sort IPv4 before IPv6, then by address bits
+ * and prefix length, so every network inside a CIDR block falls in the key range
+ * [{@link #lowest()}, {@link #highest()}], the same set a prefix trie would hold under that block's node.
+ */
+public record IpNetwork(boolean ipv6, long high, long low, int prefixLength) implements Comparable<IpNetwork> {
+    
+    /**
+     * Parses CIDR notation such as {@code 10.1.0.0/16} or {@code 2001:db8::/32}; a bare address is a
+     * single-host block. Host bits are cleared.
+     */
+    public static IpNetwork parse(String cidr) {
+        if (cidr == null) {
+            throw new IllegalArgumentException("CIDR block is required");
+        }
+        int slash = cidr.indexOf('/');
+        String address = slash < 0 ? cidr : cidr.substring(0, slash);
+        IpNetwork host = host(address);
+        if (host == null) {
+            throw new IllegalArgumentException("Invalid CIDR block: " + cidr);
+        }
+        int prefixLength = host.maxLength();
+        if (slash >= 0) {
+            try {
+                prefixLength = Integer.parseInt(cidr.substring(slash + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid CIDR block: " + cidr);
+            }
+            if (prefixLength < 0 || prefixLength > host.maxLength()) {
+                throw new IllegalArgumentException("Invalid prefix length in CIDR block: " + cidr);
+            }
+        }
+        IpNetwork network = new IpNetwork(host.ipv6, host.high, host.low, prefixLength);
+        return network.lowest().withPrefixLength(prefixLength);
+    }
+    
+    /**
+     * Single-host network of an IPv4 or IPv6 literal, or null when the text is neither
+     */
+    public static IpNetwork host(String address) {
+        long v4 = IpAddresses.parseIPv4(address);
+        if (v4 != IpAddresses.INVALID_IPV4) {
+            return new IpNetwork(false, 0, v4, 32);
+        }
+        long[] v6 = IpAddresses.parseIPv6(address);
+        return v6 == null ? null : new IpNetwork(true, v6[0], v6[1], 128);
+    }
+    
+    /**
+     * Network of an IPv4 address field with its prefix length field (a host when absent), or null when
+     * the address is null
+     *
+     * @throws IllegalArgumentException when the address is not an IPv4 literal
+     */
+    public static IpNetwork ofIPv4(String address, Integer prefixLength) {
+        if (address == null) {
+            return null;
+        }
+        long v4 = IpAddresses.parseIPv4(address);
+        if (v4 == IpAddresses.INVALID_IPV4) {
+            throw new IllegalArgumentException("Invalid IPv4 address: " + address);
+        }
+        return new IpNetwork(false, 0, v4, clamp(prefixLength, 32));
+    }
+    
+    /**
+     * Network of an IPv6 address field with its prefix length field (a host when absent), or null when
+     * the address is null
+     *
+     * @throws IllegalArgumentException when the address is not an IPv6 literal
+     */
+    public static IpNetwork ofIPv6(String address, Integer prefixLength) {
+        if (address == null) {
+            return null;
+        }
+        long[] v6 = IpAddresses.parseIPv6(address);
+        if (v6 == null) {
+            throw new IllegalArgumentException("Invalid IPv6 address: " + address);
+        }
+        return new IpNetwork(true, v6[0], v6[1], clamp(prefixLength, 128));
+    }
+    
+    public int maxLength() {
+        return ipv6 ? 128 : 32;
+    }
+    
+    /**
+     * Mask over {@code high} selecting the network bits
+     */
+    public long highMask() {
+        if (!ipv6 || prefixLength == 0) {
+            return 0;
+        }
+        return prefixLength >= 64 ? -1L : -1L << (64 - prefixLength);
+    }
+    
+    /**
+     * Mask over {@code low} selecting the network bits
+     */
+    public long lowMask() {
+        if (!ipv6) {
+            return prefixLength == 0 ? 0 : (0xFFFFFFFFL << (32 - prefixLength)) & 0xFFFFFFFFL;
+        }
+        return prefixLength <= 64 ? 0 : -1L << (128 - prefixLength);
+    }
+    
+    /**
+     * First key of the block: its network address with prefix length 0
+     */
+    public IpNetwork lowest() {
+        return new IpNetwork(ipv6, high & highMask(), low & lowMask(), 0);
+    }
+    
+    /**
+     * Last key of the block: its highest address with the maximum prefix length
+     */
+    public IpNetwork highest() {
+        if (!ipv6) {
+            return new IpNetwork(false, 0, low | (~lowMask() & 0xFFFFFFFFL), 32);
+        }
+        return new IpNetwork(true, high | ~highMask(), low | ~lowMask(), 128);
+    }
+    
+    /**
+     * True when the address of {@code other} is of the same family and lies within this block, whatever
+     * prefix length it carries: a flow from 10.1.2.5 is within 10.1.2.0/24 even when exported as /16
+     */
+    public boolean contains(IpNetwork other) {
+        return other.ipv6 == ipv6 && ((other.high ^ high) & highMask()) == 0 && ((other.low ^ low) & lowMask()) == 0;
+    }
+    
+    @Override
+    public int compareTo(IpNetwork other) {
+        int cmp = Boolean.compare(ipv6, other.ipv6);
+        if (cmp == 0) {
+            cmp = Long.compareUnsigned(high, other.high);
+        }
+        if (cmp == 0) {
+            cmp = Long.compareUnsigned(low, other.low);
+        }
+        return cmp != 0 ? cmp : Integer.compare(prefixLength, other.prefixLength);
+    }
+    
+    /**
+     * The address in text form, without the prefix length
+     */
+    public String address() {
+        return ipv6 ? IpAddresses.formatIPv6(high, low) : IpAddresses.formatIPv4((int) low);
+    }
+    
+    @Override
+    public String toString() {
+        return address() + "/" + prefixLength;
+    }
+    
+    private IpNetwork withPrefixLength(int length) {
+        return new IpNetwork(ipv6, high, low, length);
+    }
+    
+    private static int clamp(Integer prefixLength, int max) {
+        return prefixLength == null || prefixLength < 0 || prefixLength > max ? max : prefixLength;
+    }
+}
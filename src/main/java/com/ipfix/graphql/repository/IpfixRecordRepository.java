@@ -1,87 +1,537 @@
 package com.ipfix.graphql.repository;
 
+import com.ipfix.graphql.model.AddressDirection;
+import com.ipfix.graphql.model.FlowAggregate;
+import com.ipfix.graphql.model.FlowGroupBy;
+import com.ipfix.graphql.model.FlowMetric;
+import com.ipfix.graphql.model.FlowTimeBucket;
 import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.model.TextField;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
 
 /**
- * In-memory repository for storing IPFIX records
+ * In-memory repository for storing IPFIX records.
+ * Records are kept in a skip list ordered by {@link RecordKey} (timestamp, id), so paging
+ * newest-first and time range scans never sort; an id map resolves keys for point lookups.
+ * Lookups by address and protocol go through concurrent secondary indexes with the same
+ * ordering, so their results come out newest-first as well. Addresses are parsed at ingest and
+ * indexed in binary form by network (address and prefix length field) in a {@link NetworkIndex},
+ * which also answers CIDR block queries. DPI and application strings are indexed per {@link TextField}
+ * in a {@link TextIndex} for text search.
+ * This is the default store ({@code ipfix.storage.layout=object}).
  */
 @Repository
-public class IpfixRecordRepository {
+@Qualifier(IpfixRecordStore.HOT_TIER)
+@ConditionalOnProperty(prefix = "ipfix.storage", name = "layout", havingValue = "object", matchIfMissing = true)
+public class IpfixRecordRepository implements IpfixRecordStore {
     
-    private final Map<String, IpfixRecord> records = new ConcurrentHashMap<>();
+    // Heap of the map entries behind one record: primary and ID maps, address and protocol indexes, its key
+    private static final long ENTRY_BYTES = 192;
     
+    // Primary storage in time order, and the key of every stored record by id
+    private final NavigableMap<RecordKey, IpfixRecord> records = new ConcurrentSkipListMap<>();
+    private final Map<String, RecordKey> keys = new ConcurrentHashMap<>();
+    
+    // Secondary indexes; address indexes cover both the IPv4 and the IPv6 field
+    private final NetworkIndex bySourceNetwork = new NetworkIndex();
+    private final NetworkIndex byDestinationNetwork = new NetworkIndex();
+    private final Map<Integer, NavigableMap<RecordKey, IpfixRecord>> byProtocol = new ConcurrentHashMap<>();
+    private final Map<TextField, TextIndex<NavigableMap<RecordKey, IpfixRecord>>> byText =
+            new EnumMap<>(TextField.class);
+    
+    {
+        for (TextField field : TextField.values()) {
+            byText.put(field, new TextIndex<>());
+        }
+    }
+    
+    private final LongAdder indexedQueries = new LongAdder();
+    private final LongAdder scannedQueries = new LongAdder();
+    
+    @Override
     public IpfixRecord save(IpfixRecord record) {
         if (record.getId() == null) {
-            record.setId(UUID.randomUUID().toString());
+            record.setId(RecordIds.next());
         }
         if (record.getTimestamp() == null) {
             record.setTimestamp(Instant.now());
         }
-        records.put(record.getId(), record);
+        IpAddresses.requireValid(record);
+        FlowStrings.intern(record);
+        StructuredLists.pack(record);
+        RecordKey key = RecordKey.of(record);
+        keys.compute(record.getId(), (id, previous) -> {
+            if (previous != null) {
+                remove(previous);
+            }
+            records.put(key, record);
+            index(record, key);
+            return key;
+        });
         return record;
     }
     
+    /**
+     * Saves a batch of records. Missing IDs come from one reserved {@link RecordIds} range and missing
+     * timestamps share one ingest instant, so the per-record cost is a map insert.
+     * Each record replaces its previous version under the ID's lock, as in {@link #save}; index entries are
+     * then grouped per key and applied with one update per distinct key. A record replaced or deleted by
+     * another writer before its entries land has them taken back under the ID's lock again.
+     */
+    @Override
+    public List<IpfixRecord> saveAll(List<IpfixRecord> batch) {
+        if (batch.isEmpty()) {
+            return batch;
+        }
+        RecordIds.assign(batch);
+        Map<String, IpfixRecord> entries = new HashMap<>(batch.size() * 4 / 3 + 1);
+        for (IpfixRecord record : batch) {
+            IpAddresses.requireValid(record);
+            FlowStrings.intern(record);
+            StructuredLists.pack(record);
+            entries.put(record.getId(), record);
+        }
+        
+        Map<IpNetwork, Map<RecordKey, IpfixRecord>> sources = new HashMap<>();
+        Map<IpNetwork, Map<RecordKey, IpfixRecord>> destinations = new HashMap<>();
+        Map<Integer, Map<RecordKey, IpfixRecord>> protocols = new HashMap<>();
+        Map<TextField, Map<String, Map<RecordKey, IpfixRecord>>> texts = new EnumMap<>(TextField.class);
+        Map<IpfixRecord, RecordKey> saved = new IdentityHashMap<>(entries.size() * 4 / 3 + 1);
+        for (IpfixRecord record : entries.values()) {
+            RecordKey key = RecordKey.of(record);
+            keys.compute(record.getId(), (id, previous) -> {
+                if (previous != null) {
+                    remove(previous);
+                }
+                records.put(key, record);
+                return key;
+            });
+            group(sources, sourceIPv4(record), key, record);
+            group(sources, sourceIPv6(record), key, record);
+            group(destinations, destinationIPv4(record), key, record);
+            group(destinations, destinationIPv6(record), key, record);
+            group(protocols, record.getProtocolIdentifier(), key, record);
+            for (TextField field : TextField.values()) {
+                group(texts.computeIfAbsent(field, f -> new HashMap<>()), text(record, field), key, record);
+            }
+            saved.put(record, key);
+        }
+        sources.forEach(bySourceNetwork::addAll);
+        destinations.forEach(byDestinationNetwork::addAll);
+        protocols.forEach((protocol, group) -> addAll(byProtocol, protocol, group));
+        texts.forEach((field, groups) -> groups.forEach(
+                (value, group) -> byText.get(field).update(value, adding(group))));
+        saved.forEach((record, key) -> {
+            if (keys.get(record.getId()) != key) {
+                settle(record, key);
+            }
+        });
+        return batch;
+    }
+    
+    @Override
     public Optional<IpfixRecord> findById(String id) {
-        return Optional.ofNullable(records.get(id));
+        indexedQueries.increment();
+        RecordKey key = keys.get(id);
+        return key == null ? Optional.empty() : Optional.ofNullable(records.get(key));
     }
     
+    @Override
     public List<IpfixRecord> findAll() {
+        scannedQueries.increment();
         return new ArrayList<>(records.values());
     }
     
+    /**
+     * Newest-first page; walks {@code offset + limit} entries of the time-ordered store
+     */
+    @Override
     public List<IpfixRecord> findAll(int limit, int offset) {
-        return records.values().stream()
-                .sorted(Comparator.comparing(IpfixRecord::getTimestamp).reversed())
-                .skip(offset)
-                .limit(limit)
-                .collect(Collectors.toList());
+        scannedQueries.increment();
+        List<IpfixRecord> page = new ArrayList<>(Math.min(limit, 1024));
+        Iterator<IpfixRecord> iterator = records.descendingMap().values().iterator();
+        for (int skipped = 0; skipped < offset && iterator.hasNext(); skipped++) {
+            iterator.next();
+        }
+        while (page.size() < limit && iterator.hasNext()) {
+            page.add(iterator.next());
+        }
+        return page;
     }
     
+    @Override
     public List<IpfixRecord> findBySourceIp(String sourceIp) {
-        return records.values().stream()
-                .filter(r -> sourceIp.equals(r.getSourceIPv4Address()) || 
-                            sourceIp.equals(r.getSourceIPv6Address()))
-                .sorted(Comparator.comparing(IpfixRecord::getTimestamp).reversed())
-                .collect(Collectors.toList());
+        return findBySourceIp(sourceIp, null, Integer.MAX_VALUE);
     }
     
+    @Override
     public List<IpfixRecord> findByDestinationIp(String destinationIp) {
-        return records.values().stream()
-                .filter(r -> destinationIp.equals(r.getDestinationIPv4Address()) || 
-                            destinationIp.equals(r.getDestinationIPv6Address()))
-                .sorted(Comparator.comparing(IpfixRecord::getTimestamp).reversed())
-                .collect(Collectors.toList());
+        return findByDestinationIp(destinationIp, null, Integer.MAX_VALUE);
     }
     
+    @Override
     public List<IpfixRecord> findByProtocol(Integer protocolId) {
-        return records.values().stream()
-                .filter(r -> protocolId.equals(r.getProtocolIdentifier()))
-                .sorted(Comparator.comparing(IpfixRecord::getTimestamp).reversed())
-                .collect(Collectors.toList());
+        indexedQueries.increment();
+        return newestFirst(byProtocol.get(protocolId));
     }
     
+    @Override
     public List<IpfixRecord> findByTimeRange(Instant start, Instant end) {
-        return records.values().stream()
-                .filter(r -> !r.getTimestamp().isBefore(start) && !r.getTimestamp().isAfter(end))
-                .sorted(Comparator.comparing(IpfixRecord::getTimestamp).reversed())
-                .collect(Collectors.toList());
+        indexedQueries.increment();
+        if (end.isBefore(start)) {
+            return new ArrayList<>();
+        }
+        return newestFirst(records.subMap(
+                RecordKey.lowest(start), true, RecordKey.lowest(end.plusNanos(1)), false));
+    }
+    
+    /**
+     * Newest-first page of all records strictly older than {@code after} (from the newest when null)
+     */
+    @Override
+    public List<IpfixRecord> findPage(RecordKey after, int limit) {
+        indexedQueries.increment();
+        return page(records, after, limit);
+    }
+    
+    @Override
+    public List<IpfixRecord> findBySourceIp(String sourceIp, RecordKey after, int limit) {
+        indexedQueries.increment();
+        IpNetwork host = IpNetwork.host(sourceIp);
+        return host == null ? new ArrayList<>() : merge(bySourceNetwork.address(host), after, limit);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByDestinationIp(String destinationIp, RecordKey after, int limit) {
+        indexedQueries.increment();
+        IpNetwork host = IpNetwork.host(destinationIp);
+        return host == null ? new ArrayList<>() : merge(byDestinationNetwork.address(host), after, limit);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByProtocol(Integer protocolId, RecordKey after, int limit) {
+        indexedQueries.increment();
+        return page(byProtocol.get(protocolId), after, limit);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByTimeRange(Instant start, Instant end, RecordKey after, int limit) {
+        indexedQueries.increment();
+        if (end.isBefore(start)) {
+            return new ArrayList<>();
+        }
+        return page(records.subMap(RecordKey.lowest(start), true, RecordKey.lowest(end.plusNanos(1)), false),
+                after, limit);
     }
     
+    @Override
+    public List<IpfixRecord> findBySubnet(IpNetwork subnet, AddressDirection direction, RecordKey after, int limit) {
+        indexedQueries.increment();
+        List<NavigableMap<RecordKey, IpfixRecord>> buckets = new ArrayList<>();
+        if (direction != AddressDirection.DESTINATION) {
+            buckets.addAll(bySourceNetwork.within(subnet));
+        }
+        if (direction != AddressDirection.SOURCE) {
+            buckets.addAll(byDestinationNetwork.within(subnet));
+        }
+        return merge(buckets, after, limit);
+    }
+    
+    /**
+     * Resolves the pattern to the matching distinct values of each field's {@link TextIndex} and merges their buckets
+     */
+    @Override
+    public List<IpfixRecord> findByText(TextSearch search, Set<TextField> fields, RecordKey after, int limit) {
+        indexedQueries.increment();
+        List<NavigableMap<RecordKey, IpfixRecord>> buckets = new ArrayList<>();
+        for (TextField field : fields) {
+            buckets.addAll(byText.get(field).lookup(search));
+        }
+        return merge(buckets, after, limit);
+    }
+    
+    /**
+     * Accumulates the time range with a parallel stream over the skip list, one {@link FlowAggregator} per task
+     */
+    @Override
+    public List<FlowAggregate> aggregate(FlowGroupBy groupBy, FlowMetric metric, int limit, Instant start, Instant end) {
+        scannedQueries.increment();
+        FlowAggregator totals = range(start, end).values().parallelStream().collect(FlowAggregator::new,
+                (aggregator, record) -> aggregator.add(groupBy, record), FlowAggregator::merge);
+        return totals.top(metric, limit, FlowAggregator.numericLabel(groupBy));
+    }
+    
+    @Override
+    public List<FlowTimeBucket> timeSeries(Instant start, Instant end, Duration interval) {
+        scannedQueries.increment();
+        int buckets = FlowAggregator.bucketCount(start, end, interval);
+        long intervalNanos = FlowAggregator.intervalNanos(interval);
+        FlowAggregator totals = range(start, end).values().parallelStream().collect(FlowAggregator::new,
+                (aggregator, record) -> aggregator.add(
+                        FlowAggregator.nanosBetween(start, record.getTimestamp()) / intervalNanos,
+                        record.getOctetDeltaCount(), record.getPacketDeltaCount()),
+                FlowAggregator::merge);
+        return totals.series(start, interval, buckets);
+    }
+    
+    @Override
+    public Optional<Instant> oldestTimestamp() {
+        Map.Entry<RecordKey, IpfixRecord> oldest = records.firstEntry();
+        return oldest == null ? Optional.empty() : Optional.of(oldest.getKey().timestamp());
+    }
+    
+    @Override
     public boolean deleteById(String id) {
-        return records.remove(id) != null;
+        boolean[] deleted = new boolean[1];
+        keys.computeIfPresent(id, (recordId, key) -> {
+            remove(key);
+            deleted[0] = true;
+            return null;
+        });
+        return deleted[0];
     }
     
+    @Override
     public void deleteAll() {
+        keys.clear();
         records.clear();
+        bySourceNetwork.clear();
+        byDestinationNetwork.clear();
+        byProtocol.clear();
+        byText.values().forEach(TextIndex::clear);
     }
     
+    @Override
     public long count() {
-        return records.size();
+        return keys.size();
+    }
+    
+    /**
+     * Record count times the sampled size of the newest records plus their map entries
+     */
+    @Override
+    public long estimatedHeapBytes() {
+        long count = count();
+        return count == 0 ? 0 : count * (HeapEstimate.averageRecord(records.descendingMap().values().iterator())
+                + ENTRY_BYTES);
+    }
+    
+    @Override
+    public long indexedQueries() {
+        return indexedQueries.sum();
+    }
+    
+    @Override
+    public long scannedQueries() {
+        return scannedQueries.sum();
+    }
+    
+    private void index(IpfixRecord record, RecordKey key) {
+        bySourceNetwork.add(sourceIPv4(record), key, record);
+        bySourceNetwork.add(sourceIPv6(record), key, record);
+        byDestinationNetwork.add(destinationIPv4(record), key, record);
+        byDestinationNetwork.add(destinationIPv6(record), key, record);
+        add(byProtocol, record.getProtocolIdentifier(), key, record);
+        for (TextField field : TextField.values()) {
+            byText.get(field).update(text(record, field), adding(Map.of(key, record)));
+        }
+    }
+    
+    /**
+     * Takes back the index entries of a batch record that another writer replaced or deleted while they
+     * were being applied, then indexes the record now stored under its ID again, whose entries under an
+     * equal key the batch may have overwritten
+     */
+    private void settle(IpfixRecord record, RecordKey key) {
+        keys.compute(record.getId(), (id, current) -> {
+            if (current != key) {
+                unindex(record, key);
+                IpfixRecord stored = current == null ? null : records.get(current);
+                if (stored != null) {
+                    index(stored, current);
+                }
+            }
+            return current;
+        });
+    }
+    
+    /**
+     * Removes the record stored under {@code key} from primary storage and every index
+     */
+    private void remove(RecordKey key) {
+        IpfixRecord record = records.remove(key);
+        if (record != null) {
+            unindex(record, key);
+        }
+    }
+    
+    private void unindex(IpfixRecord record, RecordKey key) {
+        bySourceNetwork.remove(sourceIPv4(record), key);
+        bySourceNetwork.remove(sourceIPv6(record), key);
+        byDestinationNetwork.remove(destinationIPv4(record), key);
+        byDestinationNetwork.remove(destinationIPv6(record), key);
+        remove(byProtocol, record.getProtocolIdentifier(), key);
+        for (TextField field : TextField.values()) {
+            byText.get(field).update(text(record, field), entries -> {
+                if (entries != null) {
+                    entries.remove(key);
+                }
+                return entries == null || entries.isEmpty() ? null : entries;
+            });
+        }
+    }
+    
+    private static <K> void add(Map<K, NavigableMap<RecordKey, IpfixRecord>> index, K value,
+                                RecordKey key, IpfixRecord record) {
+        if (value == null) {
+            return;
+        }
+        index.compute(value, (v, entries) -> {
+            if (entries == null) {
+                entries = new ConcurrentSkipListMap<>();
+            }
+            entries.put(key, record);
+            return entries;
+        });
+    }
+    
+    private static <K> void addAll(Map<K, NavigableMap<RecordKey, IpfixRecord>> index, K value,
+                                   Map<RecordKey, IpfixRecord> group) {
+        index.compute(value, (v, entries) -> {
+            if (entries == null) {
+                entries = new ConcurrentSkipListMap<>();
+            }
+            entries.putAll(group);
+            return entries;
+        });
+    }
+    
+    private static <K> void remove(Map<K, NavigableMap<RecordKey, IpfixRecord>> index, K value, RecordKey key) {
+        if (value == null) {
+            return;
+        }
+        index.computeIfPresent(value, (v, entries) -> {
+            entries.remove(key);
+            return entries.isEmpty() ? null : entries;
+        });
+    }
+    
+    private static <K> void group(Map<K, Map<RecordKey, IpfixRecord>> groups, K value,
+                                  RecordKey key, IpfixRecord record) {
+        if (value != null) {
+            groups.computeIfAbsent(value, v -> new HashMap<>()).put(key, record);
+        }
+    }
+    
+    private static List<IpfixRecord> page(NavigableMap<RecordKey, IpfixRecord> entries, RecordKey after, int limit) {
+        List<IpfixRecord> page = new ArrayList<>(Math.min(limit, 1024));
+        if (entries == null) {
+            return page;
+        }
+        NavigableMap<RecordKey, IpfixRecord> older = after == null ? entries : entries.headMap(after, false);
+        Iterator<IpfixRecord> iterator = older.descendingMap().values().iterator();
+        while (page.size() < limit && iterator.hasNext()) {
+            page.add(iterator.next());
+        }
+        return page;
+    }
+    
+    /**
+     * Newest-first merge of several index buckets; a record found in more than one appears once
+     */
+    private static List<IpfixRecord> merge(List<NavigableMap<RecordKey, IpfixRecord>> buckets,
+                                           RecordKey after, int limit) {
+        if (buckets.size() <= 1) {
+            return page(buckets.isEmpty() ? null : buckets.get(0), after, limit);
+        }
+        PriorityQueue<Head> heads = new PriorityQueue<>(buckets.size(),
+                (a, b) -> b.entry().getKey().compareTo(a.entry().getKey()));
+        for (NavigableMap<RecordKey, IpfixRecord> bucket : buckets) {
+            NavigableMap<RecordKey, IpfixRecord> older = after == null ? bucket : bucket.headMap(after, false);
+            Iterator<Map.Entry<RecordKey, IpfixRecord>> iterator = older.descendingMap().entrySet().iterator();
+            if (iterator.hasNext()) {
+                heads.add(new Head(iterator.next(), iterator));
+            }
+        }
+        List<IpfixRecord> page = new ArrayList<>(Math.min(limit, 1024));
+        RecordKey last = null;
+        while (page.size() < limit && !heads.isEmpty()) {
+            Head head = heads.poll();
+            if (!head.entry().getKey().equals(last)) {
+                last = head.entry().getKey();
+                page.add(head.entry().getValue());
+            }
+            if (head.rest().hasNext()) {
+                heads.add(new Head(head.rest().next(), head.rest()));
+            }
+        }
+        return page;
+    }
+    
+    /**
+     * Records timestamped within [start, end], either bound open when null
+     */
+    private NavigableMap<RecordKey, IpfixRecord> range(Instant start, Instant end) {
+        if (start != null && end != null && end.isBefore(start)) {
+            return Collections.emptyNavigableMap();
+        }
+        NavigableMap<RecordKey, IpfixRecord> range = records;
+        if (start != null) {
+            range = range.tailMap(RecordKey.lowest(start), true);
+        }
+        if (end != null) {
+            range = range.headMap(RecordKey.lowest(end.plusNanos(1)), false);
+        }
+        return range;
+    }
+    
+    private static UnaryOperator<NavigableMap<RecordKey, IpfixRecord>> adding(Map<RecordKey, IpfixRecord> group) {
+        return entries -> {
+            if (entries == null) {
+                entries = new ConcurrentSkipListMap<>();
+            }
+            entries.putAll(group);
+            return entries;
+        };
+    }
+    
+    private static String text(IpfixRecord record, TextField field) {
+        return (String) FlowElement.of(field).read(record);
+    }
+    
+    private static IpNetwork sourceIPv4(IpfixRecord record) {
+        return IpNetwork.ofIPv4(record.getSourceIPv4Address(), record.getSourceIPv4PrefixLength());
+    }
+    
+    private static IpNetwork sourceIPv6(IpfixRecord record) {
+        return IpNetwork.ofIPv6(record.getSourceIPv6Address(), record.getSourceIPv6PrefixLength());
+    }
+    
+    private static IpNetwork destinationIPv4(IpfixRecord record) {
+        return IpNetwork.ofIPv4(record.getDestinationIPv4Address(), record.getDestinationIPv4PrefixLength());
+    }
+    
+    private static IpNetwork destinationIPv6(IpfixRecord record) {
+        return IpNetwork.ofIPv6(record.getDestinationIPv6Address(), record.getDestinationIPv6PrefixLength());
+    }
+    
+    private static List<IpfixRecord> newestFirst(NavigableMap<RecordKey, IpfixRecord> entries) {
+        if (entries == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(entries.descendingMap().values());
+    }
+    
+    private record Head(Map.Entry<RecordKey, IpfixRecord> entry, Iterator<Map.Entry<RecordKey, IpfixRecord>> rest) {
     }
 }
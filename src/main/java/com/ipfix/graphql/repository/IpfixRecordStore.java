@@ -0,0 +1,142 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.model.AddressDirection;
+import com.ipfix.graphql.model.FlowAggregate;
+import com.ipfix.graphql.model.FlowGroupBy;
+import com.ipfix.graphql.model.FlowMetric;
+import com.ipfix.graphql.model.FlowTimeBucket;
+import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.model.TextField;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Storage of IPFIX records. Every listing returns records newest-first by {@link RecordKey},
+ * except {@link #findAll()} which returns them oldest-first. Address fields must hold IP literals
+ * of their family; saving anything else fails with an {@link IllegalArgumentException}.
+ * The implementation is selected with {@code ipfix.storage.layout}: {@code object} or {@code columnar} in memory,
+ * {@code solr} or {@code mongodb} remote; with retention enabled it becomes the hot tier of a
+ * {@link TieredIpfixRecordStore}.
+ */
+public interface IpfixRecordStore {
+    
+    /**
+     * Qualifier of the layout store, which the tiered store and the tier mover wrap
+     */
+    String HOT_TIER = "hotTier";
+    
+    /**
+     * Saves a record, replacing any record with the same ID; assigns an ID and timestamp when missing
+     */
+    IpfixRecord save(IpfixRecord record);
+    
+    /**
+     * Saves a batch of records with the same semantics as {@link #save} applied in order
+     */
+    List<IpfixRecord> saveAll(List<IpfixRecord> batch);
+    
+    Optional<IpfixRecord> findById(String id);
+    
+    List<IpfixRecord> findAll();
+    
+    List<IpfixRecord> findAll(int limit, int offset);
+    
+    List<IpfixRecord> findBySourceIp(String sourceIp);
+    
+    List<IpfixRecord> findByDestinationIp(String destinationIp);
+    
+    List<IpfixRecord> findByProtocol(Integer protocolId);
+    
+    List<IpfixRecord> findByTimeRange(Instant start, Instant end);
+    
+    /**
+     * Newest-first page of all records strictly older than {@code after} (from the newest when null)
+     */
+    List<IpfixRecord> findPage(RecordKey after, int limit);
+    
+    List<IpfixRecord> findBySourceIp(String sourceIp, RecordKey after, int limit);
+    
+    List<IpfixRecord> findByDestinationIp(String destinationIp, RecordKey after, int limit);
+    
+    List<IpfixRecord> findByProtocol(Integer protocolId, RecordKey after, int limit);
+    
+    List<IpfixRecord> findByTimeRange(Instant start, Instant end, RecordKey after, int limit);
+    
+    /**
+     * Newest-first page of records whose source and/or destination network (address and prefix length
+     * field) lies within {@code subnet}
+     */
+    List<IpfixRecord> findBySubnet(IpNetwork subnet, AddressDirection direction, RecordKey after, int limit);
+    
+    /**
+     * Newest-first page of records matching {@code query}, read through the access path it plans over this
+     * store's paged queries; stores that can evaluate filters natively may override it
+     */
+    default List<IpfixRecord> findWhere(FlowQuery query, RecordKey after, int limit) {
+        return query.find(this, after, limit);
+    }
+    
+    /**
+     * Newest-first page of records in which any of {@code fields} matches {@code search}; stores without
+     * a text index answer it as a {@link #findWhere} scan
+     */
+    default List<IpfixRecord> findByText(TextSearch search, Set<TextField> fields, RecordKey after, int limit) {
+        return findWhere(FlowQuery.search(search, fields), after, limit);
+    }
+    
+    /**
+     * View of this store for reads that only need the {@code projection}'s fields: stores that decode records
+     * may leave the other fields out of the records they return. Writes go to the store itself.
+     */
+    default IpfixRecordStore reading(RecordProjection projection) {
+        return this;
+    }
+    
+    /**
+     * Sums bytes, packets and flow records per group over records timestamped within [start, end]
+     * (open when null) and returns the {@code limit} largest groups by {@code metric}.
+     * Records without the grouped element are not counted.
+     */
+    List<FlowAggregate> aggregate(FlowGroupBy groupBy, FlowMetric metric, int limit, Instant start, Instant end);
+    
+    /**
+     * Sums bytes, packets and flow records per {@code interval} bucket of record timestamps within [start, end]
+     */
+    List<FlowTimeBucket> timeSeries(Instant start, Instant end, Duration interval);
+    
+    /**
+     * Timestamp of the oldest stored record, empty when the store is empty
+     */
+    Optional<Instant> oldestTimestamp();
+    
+    boolean deleteById(String id);
+    
+    void deleteAll();
+    
+    long count();
+    
+    /**
+     * Estimated heap held by the stored records and their indexes, 0 when they are kept outside the JVM
+     */
+    default long estimatedHeapBytes() {
+        return 0;
+    }
+    
+    /**
+     * Queries answered so far through an index or the time order, 0 when the store does not count them
+     */
+    default long indexedQueries() {
+        return 0;
+    }
+    
+    /**
+     * Queries answered so far by visiting records one by one: filters without an index, offsets and aggregations
+     */
+    default long scannedQueries() {
+        return 0;
+    }
+}
@@ -0,0 +1,418 @@
+package com.ipfix.graphql.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ipfix.graphql.config.IpfixWalProperties;
+import com.ipfix.graphql.model.AddressDirection;
+import com.ipfix.graphql.model.FlowAggregate;
+import com.ipfix.graphql.model.FlowGroupBy;
+import com.ipfix.graphql.model.FlowMetric;
+import com.ipfix.graphql.model.FlowTimeBucket;
+import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.model.TextField;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Makes an in-memory store durable ({@code ipfix.wal.enabled=true}). Every change is applied to the wrapped
+ * store and then queued for the {@link WriteAheadLog}, so callers never wait for the disk. Both steps run
+ * under one lock, so the log holds changes in the order the store applied them, also for concurrent writes
+ * of one ID, and replay ends in the same state; the log writer, which encodes the changes, is the slower side.
+ * A snapshot of the whole store is taken once {@code snapshotLogSize} of log was written since the last one,
+ * or after {@code snapshotInterval}; it is written in the segment file format, split into parts written and
+ * loaded in parallel, after which the log files it covers are deleted. After a failed log write, changes
+ * are still applied but throw until the snapshot that is then taken right away makes them durable.
+ * <p>
+ * Creating the store recovers the wrapped store: it loads the newest complete snapshot, then replays the log
+ * files written after it. Logged changes are idempotent (saves replace by ID), so a change that reached
+ * the snapshot as well as the log is simply applied twice.
+ */
+@Slf4j
+public class JournaledIpfixRecordStore implements IpfixRecordStore, AutoCloseable {
+    
+    static final int SNAPSHOT_PART_RECORDS = 65_536;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String PART_SUFFIX = ".seg";
+    private static final String TEMP_SUFFIX = ".tmp";
+    
+    private final IpfixRecordStore delegate;
+    private final IpfixWalProperties properties;
+    private final Path directory;
+    private final WriteAheadLog journal;
+    private final ObjectMapper mapper = SegmentWriter.newMapper();
+    // Held from applying a change to queueing it
+    private final ReentrantLock writes = new ReentrantLock();
+    private final ScheduledExecutorService snapshots = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "wal-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Log size and time of the last snapshot; guarded by this
+    private long snapshotBytes;
+    private long snapshotNanos = System.nanoTime();
+    
+    public JournaledIpfixRecordStore(IpfixRecordStore delegate, IpfixWalProperties properties) {
+        this.delegate = delegate;
+        this.properties = properties;
+        this.directory = Path.of(properties.getDirectory());
+        this.journal = new WriteAheadLog(directory, properties);
+        recover();
+        snapshots.scheduleWithFixedDelay(this::snapshotIfDue, 1, 1, TimeUnit.SECONDS);
+    }
+    
+    @Override
+    public IpfixRecord save(IpfixRecord record) {
+        writes.lock();
+        try {
+            IpfixRecord saved = delegate.save(record);
+            journal.appendSaves(List.of(saved));
+            return saved;
+        } finally {
+            writes.unlock();
+        }
+    }
+    
+    @Override
+    public List<IpfixRecord> saveAll(List<IpfixRecord> batch) {
+        writes.lock();
+        try {
+            List<IpfixRecord> saved = delegate.saveAll(batch);
+            journal.appendSaves(saved);
+            return saved;
+        } finally {
+            writes.unlock();
+        }
+    }
+    
+    @Override
+    public Optional<IpfixRecord> findById(String id) {
+        return delegate.findById(id);
+    }
+    
+    @Override
+    public List<IpfixRecord> findAll() {
+        return delegate.findAll();
+    }
+    
+    @Override
+    public List<IpfixRecord> findAll(int limit, int offset) {
+        return delegate.findAll(limit, offset);
+    }
+    
+    @Override
+    public List<IpfixRecord> findBySourceIp(String sourceIp) {
+        return delegate.findBySourceIp(sourceIp);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByDestinationIp(String destinationIp) {
+        return delegate.findByDestinationIp(destinationIp);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByProtocol(Integer protocolId) {
+        return delegate.findByProtocol(protocolId);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByTimeRange(Instant start, Instant end) {
+        return delegate.findByTimeRange(start, end);
+    }
+    
+    @Override
+    public List<IpfixRecord> findPage(RecordKey after, int limit) {
+        return delegate.findPage(after, limit);
+    }
+    
+    @Override
+    public List<IpfixRecord> findBySourceIp(String sourceIp, RecordKey after, int limit) {
+        return delegate.findBySourceIp(sourceIp, after, limit);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByDestinationIp(String destinationIp, RecordKey after, int limit) {
+        return delegate.findByDestinationIp(destinationIp, after, limit);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByProtocol(Integer protocolId, RecordKey after, int limit) {
+        return delegate.findByProtocol(protocolId, after, limit);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByTimeRange(Instant start, Instant end, RecordKey after, int limit) {
+        return delegate.findByTimeRange(start, end, after, limit);
+    }
+    
+    @Override
+    public List<IpfixRecord> findBySubnet(IpNetwork subnet, AddressDirection direction, RecordKey after, int limit) {
+        return delegate.findBySubnet(subnet, direction, after, limit);
+    }
+    
+    @Override
+    public List<IpfixRecord> findWhere(FlowQuery query, RecordKey after, int limit) {
+        return delegate.findWhere(query, after, limit);
+    }
+    
+    /**
+     * The wrapped store's view; reads need no journaling
+     */
+    @Override
+    public IpfixRecordStore reading(RecordProjection projection) {
+        return delegate.reading(projection);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByText(TextSearch search, Set<TextField> fields, RecordKey after, int limit) {
+        return delegate.findByText(search, fields, after, limit);
+    }
+    
+    @Override
+    public List<FlowAggregate> aggregate(FlowGroupBy groupBy, FlowMetric metric, int limit, Instant start, Instant end) {
+        return delegate.aggregate(groupBy, metric, limit, start, end);
+    }
+    
+    @Override
+    public List<FlowTimeBucket> timeSeries(Instant start, Instant end, Duration interval) {
+        return delegate.timeSeries(start, end, interval);
+    }
+    
+    @Override
+    public Optional<Instant> oldestTimestamp() {
+        return delegate.oldestTimestamp();
+    }
+    
+    @Override
+    public boolean deleteById(String id) {
+        writes.lock();
+        try {
+            boolean deleted = delegate.deleteById(id);
+            if (deleted) {
+                journal.appendDelete(id);
+            }
+            return deleted;
+        } finally {
+            writes.unlock();
+        }
+    }
+    
+    @Override
+    public void deleteAll() {
+        writes.lock();
+        try {
+            delegate.deleteAll();
+            journal.appendClear();
+        } finally {
+            writes.unlock();
+        }
+    }
+    
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+    
+    @Override
+    public long estimatedHeapBytes() {
+        return delegate.estimatedHeapBytes();
+    }
+    
+    @Override
+    public long indexedQueries() {
+        return delegate.indexedQueries();
+    }
+    
+    @Override
+    public long scannedQueries() {
+        return delegate.scannedQueries();
+    }
+    
+    /**
+     * Waits until every change made so far is written and forced to disk
+     */
+    public void sync() {
+        journal.sync().join();
+    }
+    
+    /**
+     * Writes a snapshot of the store and deletes the log files and older snapshots it replaces
+     */
+    public synchronized void snapshot() {
+        long started = System.nanoTime();
+        // Flush the queue first so the files being replaced hold everything applied so far
+        journal.sync().join();
+        long written = journal.bytesWritten();
+        long sequence = journal.roll();
+        List<IpfixRecord> records = delegate.findAll();
+        Path target = snapshotPath(sequence);
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try {
+            Files.createDirectories(temp);
+            int parts = (records.size() + SNAPSHOT_PART_RECORDS - 1) / SNAPSHOT_PART_RECORDS;
+            IntStream.range(0, parts).parallel().forEach(part -> writePart(temp.resolve(partName(part)),
+                    records.subList(part * SNAPSHOT_PART_RECORDS,
+                            Math.min(records.size(), (part + 1) * SNAPSHOT_PART_RECORDS))));
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            for (long older : snapshotSequences()) {
+                if (older < sequence) {
+                    deleteRecursively(snapshotPath(older));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write snapshot " + target, e);
+        }
+        journal.deleteBefore(sequence);
+        snapshotBytes = written;
+        snapshotNanos = System.nanoTime();
+        log.info("Wrote snapshot of {} records in {} ms", records.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+    
+    /**
+     * Stops snapshots and writes out the queued log
+     */
+    @Override
+    public void close() {
+        snapshots.shutdownNow();
+        journal.close();
+    }
+    
+    private synchronized void snapshotIfDue() {
+        try {
+            long written = journal.bytesWritten() - snapshotBytes;
+            if (journal.failed() || written >= properties.getSnapshotLogSize().toBytes() || (written > 0
+                    && System.nanoTime() - snapshotNanos >= properties.getSnapshotInterval().toNanos())) {
+                snapshot();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Snapshot failed", e);
+        }
+    }
+    
+    private void recover() {
+        long started = System.nanoTime();
+        long from = 0;
+        long loaded = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path temp : files.filter(file -> file.getFileName().toString().endsWith(TEMP_SUFFIX)).toList()) {
+                deleteRecursively(temp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list " + directory, e);
+        }
+        List<Long> complete = snapshotSequences();
+        if (!complete.isEmpty()) {
+            from = complete.get(complete.size() - 1);
+            loaded = loadSnapshot(snapshotPath(from));
+        }
+        long replayed = journal.replay(from, this::apply);
+        if (loaded > 0 || replayed > 0) {
+            log.info("Recovered {} snapshot records and {} logged changes in {} ms; {} records in store",
+                    loaded, replayed, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), delegate.count());
+        }
+    }
+    
+    private long loadSnapshot(Path snapshot) {
+        try (Stream<Path> parts = Files.list(snapshot)) {
+            return parts.toList().parallelStream().mapToLong(part -> {
+                try {
+                    SegmentFile file = SegmentFile.open(part);
+                    SegmentFile.Columns columns = file.columns();
+                    List<IpfixRecord> records = new ArrayList<>(file.rows());
+                    for (int row = 0; row < file.rows(); row++) {
+                        records.add(columns.record(row, mapper));
+                    }
+                    delegate.saveAll(records);
+                    return records.size();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot read snapshot part " + part, e);
+                }
+            }).sum();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read snapshot " + snapshot, e);
+        }
+    }
+    
+    /**
+     * Applies replayed changes in log order, runs of saves as one batch
+     */
+    private void apply(List<WriteAheadLog.Change> changes) {
+        List<IpfixRecord> saves = new ArrayList<>();
+        for (WriteAheadLog.Change change : changes) {
+            if (change.type() == WriteAheadLog.Type.SAVE) {
+                saves.add(change.record());
+                continue;
+            }
+            if (!saves.isEmpty()) {
+                delegate.saveAll(saves);
+                saves = new ArrayList<>();
+            }
+            if (change.type() == WriteAheadLog.Type.DELETE) {
+                delegate.deleteById(change.id());
+            } else {
+                delegate.deleteAll();
+            }
+        }
+        if (!saves.isEmpty()) {
+            delegate.saveAll(saves);
+        }
+    }
+    
+    private void writePart(Path file, List<IpfixRecord> records) {
+        try {
+            Files.write(file, SegmentWriter.encode(records, mapper));
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write snapshot part " + file, e);
+        }
+    }
+    
+    private List<Long> snapshotSequences() {
+        List<Long> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!name.endsWith(TEMP_SUFFIX)) {
+                    found.add(Long.parseLong(name.substring(SNAPSHOT_PREFIX.length())));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            throw new IllegalStateException("Cannot list snapshots in " + directory, e);
+        }
+        Collections.sort(found);
+        return found;
+    }
+    
+    private Path snapshotPath(long sequence) {
+        return directory.resolve(String.format("%s%020d", SNAPSHOT_PREFIX, sequence));
+    }
+    
+    private static String partName(int part) {
+        return String.format("part-%05d%s", part, PART_SUFFIX);
+    }
+    
+    private static void deleteRecursively(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> children = Files.list(path)) {
+                for (Path child : children.toList()) {
+                    deleteRecursively(child);
+                }
+            }
+        }
+        Files.deleteIfExists(path);
+    }
+}
@@ -0,0 +1,333 @@
+package com.ipfix.graphql.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ipfix.graphql.config.IpfixBulkWriteProperties;
+import com.ipfix.graphql.model.AddressDirection;
+import com.ipfix.graphql.model.FlowAggregate;
+import com.ipfix.graphql.model.FlowGroupBy;
+import com.ipfix.graphql.model.FlowMetric;
+import com.ipfix.graphql.model.FlowTimeBucket;
+import com.ipfix.graphql.model.IpfixRecord;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BsonField;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.WriteModel;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Store backed by a MongoDB collection ({@code ipfix.storage.layout=mongodb}) holding one {@link FlowDocument}
+ * per record, keyed by record ID. Saves go through a {@link BulkWriter} as unordered bulk upserts and become
+ * visible once their batch is written; {@link #flush()} waits for that. Every query runs in MongoDB: filters
+ * and keyset pages on (timestamp, id) use the compound indexes created at startup, and aggregations are
+ * {@code $group} pipelines, so only the returned records cross the wire.
+ */
+@Slf4j
+public class MongoIpfixRecordStore implements IpfixRecordStore, AutoCloseable {
+    
+    private static final String ID = "_id";
+    private static final Bson NEWEST_FIRST = Sorts.descending(FlowDocument.TIMESTAMP, ID);
+    private static final Bson OLDEST_FIRST = Sorts.ascending(FlowDocument.TIMESTAMP, ID);
+    private static final Bson RECORD_ONLY = Projections.include(FlowDocument.RECORD);
+    
+    private final MongoCollection<Document> collection;
+    private final ObjectMapper mapper = SegmentWriter.newMapper();
+    private final BulkWriter writer;
+    
+    public MongoIpfixRecordStore(MongoCollection<Document> collection, IpfixBulkWriteProperties bulk) {
+        this.collection = collection;
+        createIndexes();
+        this.writer = new BulkWriter("mongodb", bulk, this::write);
+    }
+    
+    @Override
+    public IpfixRecord save(IpfixRecord record) {
+        return saveAll(List.of(record)).get(0);
+    }
+    
+    @Override
+    public List<IpfixRecord> saveAll(List<IpfixRecord> batch) {
+        RecordIds.prepare(batch);
+        writer.add(batch);
+        return batch;
+    }
+    
+    @Override
+    public Optional<IpfixRecord> findById(String id) {
+        return Optional.ofNullable(collection.find(Filters.eq(ID, id)).projection(RECORD_ONLY).first())
+                .map(this::record);
+    }
+    
+    @Override
+    public List<IpfixRecord> findAll() {
+        return find(Filters.empty(), null, Integer.MAX_VALUE, OLDEST_FIRST);
+    }
+    
+    @Override
+    public List<IpfixRecord> findAll(int limit, int offset) {
+        List<IpfixRecord> page = new ArrayList<>(Math.min(limit, 1024));
+        if (limit > 0) {
+            collection.find().sort(NEWEST_FIRST).skip(offset).limit(limit).projection(RECORD_ONLY)
+                    .forEach(document -> page.add(record(document)));
+        }
+        return page;
+    }
+    
+    @Override
+    public List<IpfixRecord> findBySourceIp(String sourceIp) {
+        return findBySourceIp(sourceIp, null, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByDestinationIp(String destinationIp) {
+        return findByDestinationIp(destinationIp, null, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByProtocol(Integer protocolId) {
+        return findByProtocol(protocolId, null, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByTimeRange(Instant start, Instant end) {
+        return findByTimeRange(start, end, null, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public List<IpfixRecord> findPage(RecordKey after, int limit) {
+        return find(Filters.empty(), after, limit, NEWEST_FIRST);
+    }
+    
+    @Override
+    public List<IpfixRecord> findBySourceIp(String sourceIp, RecordKey after, int limit) {
+        IpNetwork host = IpNetwork.host(sourceIp);
+        return host == null ? new ArrayList<>()
+                : find(all(FlowDocument.host(host, true)), after, limit, NEWEST_FIRST);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByDestinationIp(String destinationIp, RecordKey after, int limit) {
+        IpNetwork host = IpNetwork.host(destinationIp);
+        return host == null ? new ArrayList<>()
+                : find(all(FlowDocument.host(host, false)), after, limit, NEWEST_FIRST);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByProtocol(Integer protocolId, RecordKey after, int limit) {
+        Bson filter = protocolId == null
+                ? Filters.exists(FlowDocument.PROTOCOL, false)
+                : Filters.eq(FlowDocument.PROTOCOL, protocolId);
+        return find(filter, after, limit, NEWEST_FIRST);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByTimeRange(Instant start, Instant end, RecordKey after, int limit) {
+        if (end.isBefore(start)) {
+            return new ArrayList<>();
+        }
+        return find(timeRange(start, end), after, limit, NEWEST_FIRST);
+    }
+    
+    @Override
+    public List<IpfixRecord> findBySubnet(IpNetwork subnet, AddressDirection direction, RecordKey after, int limit) {
+        Bson source = all(FlowDocument.subnet(subnet, true));
+        Bson destination = all(FlowDocument.subnet(subnet, false));
+        Bson filter = switch (direction) {
+            case SOURCE -> source;
+            case DESTINATION -> destination;
+            case ANY -> Filters.or(source, destination);
+        };
+        return find(filter, after, limit, NEWEST_FIRST);
+    }
+    
+    /**
+     * {@code $group} on the group field, ranked and cut to {@code limit} in MongoDB
+     */
+    @Override
+    public List<FlowAggregate> aggregate(FlowGroupBy groupBy, FlowMetric metric, int limit, Instant start, Instant end) {
+        if (limit <= 0 || (start != null && end != null && end.isBefore(start))) {
+            return new ArrayList<>();
+        }
+        String field = FlowDocument.groupField(groupBy);
+        String ranked = metric.name().toLowerCase();
+        List<Bson> pipeline = List.of(
+                Aggregates.match(Filters.and(timeRange(start, end), Filters.exists(field))),
+                Aggregates.group("$" + field, totals()),
+                Aggregates.sort(Sorts.orderBy(Sorts.descending(ranked), Sorts.ascending(ID))),
+                Aggregates.limit(limit));
+        FlowAggregator totals = new FlowAggregator();
+        for (Document group : collection.aggregate(pipeline)) {
+            totals.addTotals(group.get(ID).toString(), number(group, "bytes"), number(group, "packets"),
+                    number(group, "flows"));
+        }
+        return totals.top(metric, limit, Long::toString);
+    }
+    
+    /**
+     * {@code $group} on the offset of each record's bucket from {@code start}
+     */
+    @Override
+    public List<FlowTimeBucket> timeSeries(Instant start, Instant end, Duration interval) {
+        int bucketCount = FlowAggregator.bucketCount(start, end, interval);
+        long intervalNanos = FlowAggregator.intervalNanos(interval);
+        long from = FlowDocument.nanos(start);
+        Document offset = new Document("$subtract", List.of("$" + FlowDocument.TIMESTAMP, from));
+        Document bucketOffset = new Document("$subtract",
+                List.of(offset, new Document("$mod", List.of(offset, intervalNanos))));
+        List<Bson> pipeline = List.of(
+                Aggregates.match(timeRange(start, end)),
+                Aggregates.group(bucketOffset, totals()));
+        FlowAggregator totals = new FlowAggregator();
+        for (Document group : collection.aggregate(pipeline)) {
+            totals.addTotals(((Number) group.get(ID)).longValue() / intervalNanos, number(group, "bytes"),
+                    number(group, "packets"), number(group, "flows"));
+        }
+        return totals.series(start, interval, bucketCount);
+    }
+    
+    @Override
+    public Optional<Instant> oldestTimestamp() {
+        Document oldest = collection.find().sort(OLDEST_FIRST)
+                .projection(Projections.include(FlowDocument.TIMESTAMP)).first();
+        return oldest == null ? Optional.empty()
+                : Optional.of(FlowDocument.instant(oldest.getLong(FlowDocument.TIMESTAMP)));
+    }
+    
+    /**
+     * Deletes a record after writing out pending saves, so a queued save cannot bring it back
+     */
+    @Override
+    public boolean deleteById(String id) {
+        writer.flush();
+        return collection.deleteOne(Filters.eq(ID, id)).getDeletedCount() > 0;
+    }
+    
+    @Override
+    public void deleteAll() {
+        writer.flush();
+        collection.deleteMany(Filters.empty());
+    }
+    
+    @Override
+    public long count() {
+        return collection.countDocuments();
+    }
+    
+    /**
+     * Writes out pending saves
+     */
+    public void flush() {
+        writer.flush();
+    }
+    
+    /**
+     * Records dropped after their bulk request ran out of retries
+     */
+    public long failedRecords() {
+        return writer.failedRecords();
+    }
+    
+    @Override
+    public void close() {
+        writer.close();
+    }
+    
+    private void createIndexes() {
+        collection.createIndex(Indexes.descending(FlowDocument.TIMESTAMP, ID));
+        for (String direction : List.of("source", "destination")) {
+            collection.createIndex(Indexes.ascending(direction + "V4", direction + "V4Prefix"));
+            collection.createIndex(
+                    Indexes.ascending(direction + "V6High", direction + "V6Low", direction + "V6Prefix"));
+        }
+        collection.createIndex(Indexes.compoundIndex(Indexes.ascending(FlowDocument.PROTOCOL),
+                Indexes.descending(FlowDocument.TIMESTAMP, ID)));
+    }
+    
+    /**
+     * Upserts a batch by record ID; later saves of an ID in the batch win
+     */
+    private void write(List<IpfixRecord> batch) {
+        Map<String, WriteModel<Document>> upserts = new LinkedHashMap<>();
+        ReplaceOptions upsert = new ReplaceOptions().upsert(true);
+        for (IpfixRecord record : batch) {
+            Document document = new Document(ID, record.getId());
+            FlowDocument.fields(record, mapper).forEach((name, value) -> {
+                if (!name.equals(FlowDocument.ID)) {
+                    document.append(name, value);
+                }
+            });
+            upserts.put(record.getId(), new ReplaceOneModel<>(Filters.eq(ID, record.getId()), document, upsert));
+        }
+        collection.bulkWrite(new ArrayList<>(upserts.values()), new BulkWriteOptions().ordered(false));
+    }
+    
+    /**
+     * Reads matches in {@code sort} order, starting past the keyset bound {@code after}
+     */
+    private List<IpfixRecord> find(Bson filter, RecordKey after, int limit, Bson sort) {
+        List<IpfixRecord> page = new ArrayList<>(Math.min(limit, 1024));
+        if (limit <= 0) {
+            return page;
+        }
+        if (after != null) {
+            long timestamp = FlowDocument.nanos(after.timestamp());
+            filter = Filters.and(filter, Filters.or(Filters.lt(FlowDocument.TIMESTAMP, timestamp),
+                    Filters.and(Filters.eq(FlowDocument.TIMESTAMP, timestamp), Filters.lt(ID, after.id()))));
+        }
+        collection.find(filter).sort(sort).limit(limit == Integer.MAX_VALUE ? 0 : limit).projection(RECORD_ONLY)
+                .forEach(document -> page.add(record(document)));
+        return page;
+    }
+    
+    /**
+     * Filter on records timestamped within [start, end], either bound open when null
+     */
+    private static Bson timeRange(Instant start, Instant end) {
+        List<Bson> bounds = new ArrayList<>(2);
+        if (start != null) {
+            bounds.add(Filters.gte(FlowDocument.TIMESTAMP, FlowDocument.nanos(start)));
+        }
+        if (end != null) {
+            bounds.add(Filters.lte(FlowDocument.TIMESTAMP, FlowDocument.nanos(end)));
+        }
+        return bounds.isEmpty() ? Filters.empty() : Filters.and(bounds);
+    }
+    
+    private static Bson all(List<FlowDocument.Range> ranges) {
+        return Filters.and(ranges.stream().map(range -> range.from() == range.to()
+                ? Filters.eq(range.field(), range.from())
+                : Filters.and(Filters.gte(range.field(), range.from()), Filters.lte(range.field(), range.to())))
+                .toList());
+    }
+    
+    private static List<BsonField> totals() {
+        return List.of(Accumulators.sum("bytes", "$" + FlowDocument.OCTETS),
+                Accumulators.sum("packets", "$" + FlowDocument.PACKETS), Accumulators.sum("flows", 1));
+    }
+    
+    private static long number(Document group, String name) {
+        Object value = group.get(name);
+        return value instanceof Number number ? number.longValue() : 0;
+    }
+    
+    private IpfixRecord record(Document document) {
+        return FlowDocument.record(document.getString(FlowDocument.RECORD), mapper);
+    }
+}
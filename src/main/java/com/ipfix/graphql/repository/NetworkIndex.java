@@ -0,0 +1,93 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.model.IpfixRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Radix index of records by address network. Each network maps to its records in key order, and the
+ * networks are also kept sorted by address bits, so the buckets under a CIDR block are found with a
+ * single range scan. Buckets are created and dropped under the hash map's per-key lock, which also
+ * serializes updates of the ordered network set.
+ */
+final class NetworkIndex {
+    
+    private final Map<IpNetwork, NavigableMap<RecordKey, IpfixRecord>> buckets = new ConcurrentHashMap<>();
+    private final NavigableSet<IpNetwork> networks = new ConcurrentSkipListSet<>();
+    
+    void add(IpNetwork network, RecordKey key, IpfixRecord record) {
+        if (network == null) {
+            return;
+        }
+        buckets.compute(network, (n, entries) -> {
+            if (entries == null) {
+                entries = new ConcurrentSkipListMap<>();
+                networks.add(n);
+            }
+            entries.put(key, record);
+            return entries;
+        });
+    }
+    
+    void addAll(IpNetwork network, Map<RecordKey, IpfixRecord> group) {
+        buckets.compute(network, (n, entries) -> {
+            if (entries == null) {
+                entries = new ConcurrentSkipListMap<>();
+                networks.add(n);
+            }
+            entries.putAll(group);
+            return entries;
+        });
+    }
+    
+    void remove(IpNetwork network, RecordKey key) {
+        if (network == null) {
+            return;
+        }
+        buckets.computeIfPresent(network, (n, entries) -> {
+            entries.remove(key);
+            if (entries.isEmpty()) {
+                networks.remove(n);
+                return null;
+            }
+            return entries;
+        });
+    }
+    
+    /**
+     * Buckets of every address lying within {@code block}, whatever prefix length its records carry
+     */
+    List<NavigableMap<RecordKey, IpfixRecord>> within(IpNetwork block) {
+        return collect(block.lowest(), block.highest());
+    }
+    
+    /**
+     * Buckets of an address, whatever prefix length its records carry
+     */
+    List<NavigableMap<RecordKey, IpfixRecord>> address(IpNetwork host) {
+        return collect(host.lowest(), host.highest());
+    }
+    
+    void clear() {
+        buckets.clear();
+        networks.clear();
+    }
+    
+    private List<NavigableMap<RecordKey, IpfixRecord>> collect(IpNetwork from, IpNetwork to) {
+        List<NavigableMap<RecordKey, IpfixRecord>> found = new ArrayList<>();
+        for (IpNetwork network : networks.subSet(from, true, to, true)) {
+            NavigableMap<RecordKey, IpfixRecord> entries = buckets.get(network);
+            if (entries != null) {
+                found.add(entries);
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,293 @@
+package com.ipfix.graphql.repository;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sub-template list entries stored by column: one {@link Schema} of field names and value kinds, shared by
+ * every list with the same fields, and one array per field, primitive for numbers and IPv4 addresses.
+ * An entry is read as an immutable map view over its row, built only when a query or a serializer asks for
+ * it, so a stored entry costs its values instead of a hash map repeating every field name.
+ */
+final class PackedEntries extends AbstractList<Map<String, Object>> implements RandomAccess {
+    
+    // Distinct schemas shared; lists with further field sets get schemas of their own
+    static final int MAX_SCHEMAS = 4096;
+    
+    private static final Map<Schema, Schema> SCHEMAS = new ConcurrentHashMap<>();
+    
+    private final Schema schema;
+    // long[], int[], double[] or Object[] per field, by kind
+    private final Object[] columns;
+    private final int size;
+    
+    private PackedEntries(Schema schema, Object[] columns, int size) {
+        this.schema = schema;
+        this.columns = columns;
+        this.size = size;
+    }
+    
+    /**
+     * Packed copy of a list whose entries all hold the same fields in the same order; the list itself when
+     * it is already packed or its entries differ
+     */
+    static List<Map<String, Object>> pack(List<Map<String, Object>> entries) {
+        if (entries instanceof PackedEntries || entries.isEmpty() || entries.get(0) == null) {
+            return entries;
+        }
+        String[] names = entries.get(0).keySet().toArray(String[]::new);
+        Kind[] kinds = new Kind[names.length];
+        for (Map<String, Object> entry : entries) {
+            if (entry == null || entry.size() != names.length) {
+                return entries;
+            }
+            int field = 0;
+            for (Map.Entry<String, Object> value : entry.entrySet()) {
+                if (!names[field].equals(value.getKey())) {
+                    return entries;
+                }
+                kinds[field] = Kind.merge(kinds[field], value.getValue());
+                field++;
+            }
+        }
+        for (int field = 0; field < names.length; field++) {
+            names[field] = FlowStrings.canonical(names[field]);
+        }
+        Schema schema = Schema.shared(names, kinds);
+        Object[] columns = new Object[names.length];
+        for (int field = 0; field < names.length; field++) {
+            columns[field] = kinds[field].allocate(entries.size());
+        }
+        for (int row = 0; row < entries.size(); row++) {
+            int field = 0;
+            for (Object value : entries.get(row).values()) {
+                kinds[field].set(columns[field], row, value);
+                field++;
+            }
+        }
+        return new PackedEntries(schema, columns, entries.size());
+    }
+    
+    @Override
+    public Map<String, Object> get(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException(row);
+        }
+        return new Row(row);
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Heap held by the columns; the schema and shared strings are counted once elsewhere
+     */
+    long heapBytes() {
+        long bytes = 24 + align(16 + 4L * columns.length);
+        for (int field = 0; field < columns.length; field++) {
+            bytes += schema.kinds[field].heapBytes(columns[field], size);
+        }
+        return bytes;
+    }
+    
+    private Object value(int field, int row) {
+        return schema.kinds[field].get(columns[field], row);
+    }
+    
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+    
+    /**
+     * How a field's values are held: numbers of one boxed type without nulls and canonical IPv4 literals in
+     * primitive arrays, anything else as objects
+     */
+    enum Kind {
+        LONG, INT, DOUBLE, IPV4, OBJECT;
+        
+        static Kind merge(Kind kind, Object value) {
+            Kind own = of(value);
+            return kind == null || kind == own ? own : OBJECT;
+        }
+        
+        private static Kind of(Object value) {
+            if (value instanceof Long) {
+                return LONG;
+            }
+            if (value instanceof Integer) {
+                return INT;
+            }
+            if (value instanceof Double) {
+                return DOUBLE;
+            }
+            if (value instanceof String text && text.length() <= 15) {
+                long address = IpAddresses.parseIPv4(text);
+                if (address != IpAddresses.INVALID_IPV4 && IpAddresses.formatIPv4((int) address).equals(text)) {
+                    return IPV4;
+                }
+            }
+            return OBJECT;
+        }
+        
+        Object allocate(int size) {
+            return switch (this) {
+                case LONG -> new long[size];
+                case INT, IPV4 -> new int[size];
+                case DOUBLE -> new double[size];
+                case OBJECT -> new Object[size];
+            };
+        }
+        
+        void set(Object column, int row, Object value) {
+            switch (this) {
+                case LONG -> ((long[]) column)[row] = (Long) value;
+                case INT -> ((int[]) column)[row] = (Integer) value;
+                case DOUBLE -> ((double[]) column)[row] = (Double) value;
+                case IPV4 -> ((int[]) column)[row] = (int) IpAddresses.parseIPv4((String) value);
+                case OBJECT -> ((Object[]) column)[row] = value instanceof String text
+                        ? FlowStrings.canonical(text) : value;
+            }
+        }
+        
+        Object get(Object column, int row) {
+            return switch (this) {
+                case LONG -> ((long[]) column)[row];
+                case INT -> ((int[]) column)[row];
+                case DOUBLE -> ((double[]) column)[row];
+                case IPV4 -> IpAddresses.formatIPv4(((int[]) column)[row]);
+                case OBJECT -> ((Object[]) column)[row];
+            };
+        }
+        
+        long heapBytes(Object column, int size) {
+            return switch (this) {
+                case LONG, DOUBLE -> align(16 + 8L * size);
+                case INT, IPV4 -> align(16 + 4L * size);
+                case OBJECT -> {
+                    long bytes = align(16 + 4L * size);
+                    for (Object value : (Object[]) column) {
+                        bytes += HeapEstimate.of(value);
+                    }
+                    yield bytes;
+                }
+            };
+        }
+    }
+    
+    /**
+     * Field names, in entry order, and their kinds
+     */
+    static final class Schema {
+        
+        final String[] names;
+        final Kind[] kinds;
+        private final Map<String, Integer> fields;
+        
+        private Schema(String[] names, Kind[] kinds) {
+            this.names = names;
+            this.kinds = kinds;
+            this.fields = new HashMap<>(names.length * 4 / 3 + 1);
+            for (int field = 0; field < names.length; field++) {
+                fields.put(names[field], field);
+            }
+        }
+        
+        static Schema shared(String[] names, Kind[] kinds) {
+            Schema schema = new Schema(names, kinds);
+            Schema shared = SCHEMAS.get(schema);
+            if (shared != null) {
+                return shared;
+            }
+            return SCHEMAS.size() < MAX_SCHEMAS ? SCHEMAS.computeIfAbsent(schema, added -> added) : schema;
+        }
+        
+        int field(Object name) {
+            Integer field = fields.get(name);
+            return field == null ? -1 : field;
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Schema that && Arrays.equals(names, that.names)
+                    && Arrays.equals(kinds, that.kinds);
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(names) + Arrays.hashCode(kinds);
+        }
+    }
+    
+    /**
+     * Read-only map view of one entry
+     */
+    private final class Row extends AbstractMap<String, Object> {
+        
+        private final int row;
+        
+        Row(int row) {
+            this.row = row;
+        }
+        
+        @Override
+        public Object get(Object key) {
+            int field = schema.field(key);
+            return field < 0 ? null : value(field, row);
+        }
+        
+        @Override
+        public boolean containsKey(Object key) {
+            return schema.field(key) >= 0;
+        }
+        
+        @Override
+        public int size() {
+            return columns.length;
+        }
+        
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<>() {
+                        private int field;
+                        
+                        @Override
+                        public boolean hasNext() {
+                            return field < columns.length;
+                        }
+                        
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (field >= columns.length) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<String, Object> entry = new SimpleImmutableEntry<>(schema.names[field],
+                                    value(field, row));
+                            field++;
+                            return entry;
+                        }
+                    };
+                }
+                
+                @Override
+                public int size() {
+                    return columns.length;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.ipfix.graphql.repository;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.RandomAccess;
+
+/**
+ * Basic list values of an integer or IPv4 address element held in a primitive array. Values are only packed
+ * when every one is the canonical text of its number or address, so reading one back yields the same text.
+ */
+final class PackedValues extends AbstractList<String> implements RandomAccess {
+    
+    private final long[] numbers;
+    private final int[] addresses;
+    
+    private PackedValues(long[] numbers, int[] addresses) {
+        this.numbers = numbers;
+        this.addresses = addresses;
+    }
+    
+    /**
+     * Packed copy of the values of a list of {@code dataType}; otherwise the values with short strings shared
+     * through {@link FlowStrings}
+     */
+    static List<String> pack(String dataType, List<String> values) {
+        if (values instanceof PackedValues || values.isEmpty()) {
+            return values;
+        }
+        String type = dataType == null ? "" : dataType.toLowerCase(Locale.ROOT);
+        if (type.startsWith("unsigned") || type.startsWith("signed")) {
+            long[] numbers = new long[values.size()];
+            for (int i = 0; i < numbers.length; i++) {
+                String value = values.get(i);
+                if (value == null || value.isEmpty() || value.length() > 20) {
+                    return shared(values);
+                }
+                try {
+                    numbers[i] = Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    return shared(values);
+                }
+                if (!Long.toString(numbers[i]).equals(value)) {
+                    return shared(values);
+                }
+            }
+            return new PackedValues(numbers, null);
+        }
+        if (type.equals("ipv4address")) {
+            int[] addresses = new int[values.size()];
+            for (int i = 0; i < addresses.length; i++) {
+                String value = values.get(i);
+                long address = value == null ? IpAddresses.INVALID_IPV4 : IpAddresses.parseIPv4(value);
+                if (address == IpAddresses.INVALID_IPV4 || !IpAddresses.formatIPv4((int) address).equals(value)) {
+                    return shared(values);
+                }
+                addresses[i] = (int) address;
+            }
+            return new PackedValues(null, addresses);
+        }
+        return shared(values);
+    }
+    
+    @Override
+    public String get(int index) {
+        return numbers != null ? Long.toString(numbers[index]) : IpAddresses.formatIPv4(addresses[index]);
+    }
+    
+    @Override
+    public int size() {
+        return numbers != null ? numbers.length : addresses.length;
+    }
+    
+    long heapBytes() {
+        return 16 + (numbers != null ? align(16 + 8L * numbers.length) : align(16 + 4L * addresses.length));
+    }
+    
+    private static List<String> shared(List<String> values) {
+        String[] shared = new String[values.size()];
+        for (int i = 0; i < shared.length; i++) {
+            shared[i] = FlowStrings.canonical(values.get(i));
+        }
+        return Arrays.asList(shared);
+    }
+    
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
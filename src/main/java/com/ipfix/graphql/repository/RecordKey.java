@@ -0,0 +1,28 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.model.IpfixRecord;
+
+import java.time.Instant;
+
+/**
+ * Sort key of a stored record: timestamp first, record ID as tie-breaker
+ */
+public record RecordKey(Instant timestamp, String id) implements Comparable<RecordKey> {
+    
+    public static RecordKey of(IpfixRecord record) {
+        return new RecordKey(record.getTimestamp(), record.getId());
+    }
+    
+    /**
+     * Smallest possible key at the given instant, used as a range bound
+     */
+    public static RecordKey lowest(Instant timestamp) {
+        return new RecordKey(timestamp, "");
+    }
+    
+    @Override
+    public int compareTo(RecordKey other) {
+        int cmp = timestamp.compareTo(other.timestamp);
+        return cmp != 0 ? cmp : id.compareTo(other.id);
+    }
+}
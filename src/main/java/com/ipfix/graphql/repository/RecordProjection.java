@@ -0,0 +1,71 @@
+package com.ipfix.graphql.repository;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Top-level {@code IpfixRecord} fields a reader needs, so stores that decode records can leave the others
+ * out. The ID and timestamp are always included since paging and merging order records by them.
+ */
+public final class RecordProjection {
+    
+    public static final RecordProjection ALL = new RecordProjection(null);
+    
+    // Null when every field is needed
+    private final Set<String> fields;
+    
+    private RecordProjection(Set<String> fields) {
+        this.fields = fields;
+    }
+    
+    public static RecordProjection of(Collection<String> fields) {
+        Set<String> needed = new HashSet<>(fields);
+        needed.add("id");
+        needed.add("timestamp");
+        return new RecordProjection(Set.copyOf(needed));
+    }
+    
+    public boolean includes(String field) {
+        return fields == null || fields.contains(field);
+    }
+    
+    public boolean isAll() {
+        return fields == null;
+    }
+    
+    /**
+     * The fields included, null when every field is
+     */
+    Set<String> fields() {
+        return fields;
+    }
+    
+    /**
+     * This projection widened by {@code more}
+     */
+    public RecordProjection plus(Collection<String> more) {
+        if (fields == null || fields.containsAll(more)) {
+            return this;
+        }
+        Set<String> needed = new HashSet<>(fields);
+        needed.addAll(more);
+        return new RecordProjection(Set.copyOf(needed));
+    }
+    
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof RecordProjection that && (fields == null ? that.fields == null
+                : fields.equals(that.fields));
+    }
+    
+    @Override
+    public int hashCode() {
+        return fields == null ? 0 : fields.hashCode();
+    }
+    
+    @Override
+    public String toString() {
+        return fields == null ? "RecordProjection[all]" : "RecordProjection" + fields;
+    }
+}
@@ -0,0 +1,288 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.model.CertEnterpriseInfo;
+import com.ipfix.graphql.model.DpiInfo;
+import com.ipfix.graphql.model.IpfixRecord;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Columns of a sealed segment file. The ordinal is the column ID stored on disk, so new columns are only
+ * ever appended. {@code path} names the JSON element a column takes out of the per-row remainder; values
+ * a column cannot reproduce exactly (sub-millisecond flow times, non-canonical address text) stay there.
+ * Address columns hold the binary address, which the writer parses from the text.
+ */
+enum SegmentColumn {
+    
+    TIMESTAMP_SECONDS(Encoding.DELTA, "timestamp", number(r -> r.getTimestamp().getEpochSecond(), null)),
+    TIMESTAMP_NANOS(Encoding.FRAME_OF_REFERENCE, "timestamp", number(r -> (long) r.getTimestamp().getNano(), null)),
+    ID(Encoding.FRONT_CODED, "id", text(IpfixRecord::getId, IpfixRecord::setId)),
+    
+    OCTETS(Encoding.DELTA, "octetDeltaCount",
+            number(IpfixRecord::getOctetDeltaCount, IpfixRecord::setOctetDeltaCount)),
+    PACKETS(Encoding.DELTA, "packetDeltaCount",
+            number(IpfixRecord::getPacketDeltaCount, IpfixRecord::setPacketDeltaCount)),
+    FLOWS(Encoding.DELTA, "deltaFlowCount",
+            number(IpfixRecord::getDeltaFlowCount, IpfixRecord::setDeltaFlowCount)),
+    FLOW_START(Encoding.DELTA, "flowStartMilliseconds",
+            millis(IpfixRecord::getFlowStartMilliseconds, IpfixRecord::setFlowStartMilliseconds)),
+    FLOW_END(Encoding.DELTA, "flowEndMilliseconds",
+            millis(IpfixRecord::getFlowEndMilliseconds, IpfixRecord::setFlowEndMilliseconds)),
+    FLOW_START_SYS_UP_TIME(Encoding.DELTA, "flowStartSysUpTime",
+            number(IpfixRecord::getFlowStartSysUpTime, IpfixRecord::setFlowStartSysUpTime)),
+    FLOW_END_SYS_UP_TIME(Encoding.DELTA, "flowEndSysUpTime",
+            number(IpfixRecord::getFlowEndSysUpTime, IpfixRecord::setFlowEndSysUpTime)),
+    
+    PROTOCOL(Encoding.FRAME_OF_REFERENCE, "protocolIdentifier",
+            integer(IpfixRecord::getProtocolIdentifier, IpfixRecord::setProtocolIdentifier)),
+    CLASS_OF_SERVICE(Encoding.FRAME_OF_REFERENCE, "ipClassOfService",
+            integer(IpfixRecord::getIpClassOfService, IpfixRecord::setIpClassOfService)),
+    TCP_FLAGS(Encoding.FRAME_OF_REFERENCE, "tcpControlBits",
+            integer(IpfixRecord::getTcpControlBits, IpfixRecord::setTcpControlBits)),
+    SOURCE_PORT(Encoding.FRAME_OF_REFERENCE, "sourceTransportPort",
+            integer(IpfixRecord::getSourceTransportPort, IpfixRecord::setSourceTransportPort)),
+    SOURCE_V4(Encoding.FRAME_OF_REFERENCE, "sourceIPv4Address",
+            ipv4(IpfixRecord::getSourceIPv4Address, IpfixRecord::setSourceIPv4Address)),
+    SOURCE_V4_PREFIX(Encoding.FRAME_OF_REFERENCE, "sourceIPv4PrefixLength",
+            integer(IpfixRecord::getSourceIPv4PrefixLength, IpfixRecord::setSourceIPv4PrefixLength)),
+    INGRESS_INTERFACE(Encoding.FRAME_OF_REFERENCE, "ingressInterface",
+            integer(IpfixRecord::getIngressInterface, IpfixRecord::setIngressInterface)),
+    DESTINATION_PORT(Encoding.FRAME_OF_REFERENCE, "destinationTransportPort",
+            integer(IpfixRecord::getDestinationTransportPort, IpfixRecord::setDestinationTransportPort)),
+    DESTINATION_V4(Encoding.FRAME_OF_REFERENCE, "destinationIPv4Address",
+            ipv4(IpfixRecord::getDestinationIPv4Address, IpfixRecord::setDestinationIPv4Address)),
+    DESTINATION_V4_PREFIX(Encoding.FRAME_OF_REFERENCE, "destinationIPv4PrefixLength",
+            integer(IpfixRecord::getDestinationIPv4PrefixLength, IpfixRecord::setDestinationIPv4PrefixLength)),
+    EGRESS_INTERFACE(Encoding.FRAME_OF_REFERENCE, "egressInterface",
+            integer(IpfixRecord::getEgressInterface, IpfixRecord::setEgressInterface)),
+    NEXT_HOP_V4(Encoding.FRAME_OF_REFERENCE, "ipNextHopIPv4Address",
+            ipv4(IpfixRecord::getIpNextHopIPv4Address, IpfixRecord::setIpNextHopIPv4Address)),
+    SOURCE_V6_PREFIX(Encoding.FRAME_OF_REFERENCE, "sourceIPv6PrefixLength",
+            integer(IpfixRecord::getSourceIPv6PrefixLength, IpfixRecord::setSourceIPv6PrefixLength)),
+    DESTINATION_V6_PREFIX(Encoding.FRAME_OF_REFERENCE, "destinationIPv6PrefixLength",
+            integer(IpfixRecord::getDestinationIPv6PrefixLength, IpfixRecord::setDestinationIPv6PrefixLength)),
+    MPLS_LABEL_1(Encoding.FRAME_OF_REFERENCE, "mplsTopLabelStackSection",
+            integer(IpfixRecord::getMplsTopLabelStackSection, IpfixRecord::setMplsTopLabelStackSection)),
+    MPLS_LABEL_2(Encoding.FRAME_OF_REFERENCE, "mplsLabelStackSection2",
+            integer(IpfixRecord::getMplsLabelStackSection2, IpfixRecord::setMplsLabelStackSection2)),
+    MPLS_LABEL_3(Encoding.FRAME_OF_REFERENCE, "mplsLabelStackSection3",
+            integer(IpfixRecord::getMplsLabelStackSection3, IpfixRecord::setMplsLabelStackSection3)),
+    APPLICATION_ID(Encoding.FRAME_OF_REFERENCE, "applicationId",
+            integer(IpfixRecord::getApplicationId, IpfixRecord::setApplicationId)),
+    OBSERVATION_DOMAIN(Encoding.FRAME_OF_REFERENCE, "observationDomainId",
+            integer(IpfixRecord::getObservationDomainId, IpfixRecord::setObservationDomainId)),
+    EXPORTER_V4(Encoding.FRAME_OF_REFERENCE, "exporterIPv4Address",
+            ipv4(IpfixRecord::getExporterIPv4Address, IpfixRecord::setExporterIPv4Address)),
+    SILK_APP_LABEL(Encoding.FRAME_OF_REFERENCE, "certInfo.silkAppLabel",
+            integer(r -> r.getCertInfo() != null ? r.getCertInfo().getSilkAppLabel() : null,
+                    (r, v) -> certInfo(r).setSilkAppLabel(v))),
+    
+    SOURCE_V6(Encoding.ADDRESS, "sourceIPv6Address",
+            ipv6(IpfixRecord::getSourceIPv6Address, IpfixRecord::setSourceIPv6Address)),
+    DESTINATION_V6(Encoding.ADDRESS, "destinationIPv6Address",
+            ipv6(IpfixRecord::getDestinationIPv6Address, IpfixRecord::setDestinationIPv6Address)),
+    EXPORTER_V6(Encoding.ADDRESS, "exporterIPv6Address",
+            ipv6(IpfixRecord::getExporterIPv6Address, IpfixRecord::setExporterIPv6Address)),
+    
+    APPLICATION_NAME(Encoding.DICTIONARY, "applicationName",
+            text(IpfixRecord::getApplicationName, IpfixRecord::setApplicationName)),
+    SSL_SERVER_NAME(Encoding.DICTIONARY, "dpiInfo.sslServerName",
+            text(r -> r.getDpiInfo() != null ? r.getDpiInfo().getSslServerName() : null,
+                    (r, v) -> dpiInfo(r).setSslServerName(v))),
+    HTTP_REQUEST_HOST(Encoding.DICTIONARY, "dpiInfo.httpRequestHost",
+            text(r -> r.getDpiInfo() != null ? r.getDpiInfo().getHttpRequestHost() : null,
+                    (r, v) -> dpiInfo(r).setHttpRequestHost(v))),
+    OS_NAME(Encoding.DICTIONARY, "certInfo.osName",
+            text(r -> r.getCertInfo() != null ? r.getCertInfo().getOsName() : null,
+                    (r, v) -> certInfo(r).setOsName(v))),
+    
+    REMAINDER(Encoding.DEFLATE_JSON, null, null),
+    // Both address families of a direction, as (ipv6, high, low) keys
+    SOURCE_BLOOM(Encoding.BLOOM, null, null),
+    DESTINATION_BLOOM(Encoding.BLOOM, null, null),
+    ID_BLOOM(Encoding.BLOOM, null, null);
+    
+    enum Encoding {
+        // Zigzag varint of the difference to the previous present value
+        DELTA,
+        // Offset from the column minimum, bit-packed at the width of the column range
+        FRAME_OF_REFERENCE,
+        // IPv6 address as two raw longs
+        ADDRESS,
+        // Sorted distinct values, then bit-packed value numbers
+        DICTIONARY,
+        // Length of the prefix shared with the previous value, then the rest
+        FRONT_CODED,
+        // The elements no column holds, as JSON per row, deflated as one block
+        DEFLATE_JSON,
+        BLOOM
+    }
+    
+    private static final Map<String, SegmentColumn> BY_FIELD = new HashMap<>();
+    
+    static {
+        for (SegmentColumn column : values()) {
+            if (column.holdsField()) {
+                BY_FIELD.putIfAbsent(column.field, column);
+            }
+        }
+    }
+    
+    private final Encoding encoding;
+    private final String path;
+    // Top-level record field of the path
+    private final String field;
+    private final Access access;
+    
+    SegmentColumn(Encoding encoding, String path, Access access) {
+        this.encoding = encoding;
+        this.path = path;
+        this.field = path == null || path.indexOf('.') < 0 ? path : path.substring(0, path.indexOf('.'));
+        this.access = access;
+    }
+    
+    Encoding encoding() {
+        return encoding;
+    }
+    
+    String path() {
+        return path;
+    }
+    
+    /**
+     * Top-level record field the column holds or holds part of, null for columns without a path
+     */
+    String field() {
+        return field;
+    }
+    
+    /**
+     * Whether the column holds a whole top-level field rather than an element nested in one
+     */
+    boolean holdsField() {
+        return path != null && path.equals(field);
+    }
+    
+    /**
+     * Column holding the whole top-level {@code field}, null when it lives in the remainder or only partly
+     * in columns
+     */
+    static SegmentColumn holding(String field) {
+        return BY_FIELD.get(field);
+    }
+    
+    /**
+     * Value of a numeric column, null when the record does not have it in column form
+     */
+    Long number(IpfixRecord record) {
+        return access.number().apply(record);
+    }
+    
+    void setNumber(IpfixRecord record, long value) {
+        access.setNumber().accept(record, value);
+    }
+    
+    /**
+     * Value of a text or address column, null when the record does not have it
+     */
+    String text(IpfixRecord record) {
+        return access.text().apply(record);
+    }
+    
+    void setText(IpfixRecord record, String value) {
+        access.setText().accept(record, value);
+    }
+    
+    /**
+     * True when the column value formats back to the record's element, which can then leave the remainder
+     */
+    boolean exact(IpfixRecord record) {
+        return access.exact().test(record);
+    }
+    
+    private record Access(Function<IpfixRecord, Long> number, BiConsumer<IpfixRecord, Long> setNumber,
+                          Function<IpfixRecord, String> text, BiConsumer<IpfixRecord, String> setText,
+                          Predicate<IpfixRecord> exact) {
+    }
+    
+    private static Access number(Function<IpfixRecord, Long> getter, BiConsumer<IpfixRecord, Long> setter) {
+        return new Access(getter, setter, null, null, r -> true);
+    }
+    
+    private static Access text(Function<IpfixRecord, String> getter, BiConsumer<IpfixRecord, String> setter) {
+        return new Access(null, null, getter, setter, r -> true);
+    }
+    
+    private static Access integer(Function<IpfixRecord, Integer> getter, BiConsumer<IpfixRecord, Integer> setter) {
+        return number(r -> {
+            Integer value = getter.apply(r);
+            return value != null ? value.longValue() : null;
+        }, (r, v) -> setter.accept(r, v.intValue()));
+    }
+    
+    /**
+     * Epoch milliseconds; instants with sub-millisecond digits stay in the remainder
+     */
+    private static Access millis(Function<IpfixRecord, Instant> getter, BiConsumer<IpfixRecord, Instant> setter) {
+        return number(r -> {
+            Instant value = getter.apply(r);
+            if (value == null || value.getNano() % 1_000_000 != 0) {
+                return null;
+            }
+            try {
+                return value.toEpochMilli();
+            } catch (ArithmeticException e) {
+                return null;
+            }
+        }, (r, v) -> setter.accept(r, Instant.ofEpochMilli(v)));
+    }
+    
+    /**
+     * Unsigned 32-bit address. Text such as {@code 010.0.0.1} keeps its original form in the remainder,
+     * which then takes precedence over the column on read.
+     */
+    private static Access ipv4(Function<IpfixRecord, String> getter, BiConsumer<IpfixRecord, String> setter) {
+        Function<IpfixRecord, Long> number = r -> {
+            long address = IpAddresses.parseIPv4(getter.apply(r));
+            return address != IpAddresses.INVALID_IPV4 ? address : null;
+        };
+        return new Access(number, (r, v) -> {
+            if (getter.apply(r) == null) {
+                setter.accept(r, IpAddresses.formatIPv4(v.intValue()));
+            }
+        }, null, null, r -> IpAddresses.formatIPv4(number.apply(r).intValue()).equals(getter.apply(r)));
+    }
+    
+    /**
+     * IPv6 address text, stored as its two halves; non-canonical text keeps its form in the remainder
+     */
+    private static Access ipv6(Function<IpfixRecord, String> getter, BiConsumer<IpfixRecord, String> setter) {
+        return new Access(null, null, getter, (r, v) -> {
+            if (getter.apply(r) == null) {
+                setter.accept(r, v);
+            }
+        }, r -> {
+            long[] address = IpAddresses.parseIPv6(getter.apply(r));
+            return IpAddresses.formatIPv6(address[0], address[1]).equals(getter.apply(r));
+        });
+    }
+    
+    private static DpiInfo dpiInfo(IpfixRecord record) {
+        if (record.getDpiInfo() == null) {
+            record.setDpiInfo(new DpiInfo());
+        }
+        return record.getDpiInfo();
+    }
+    
+    private static CertEnterpriseInfo certInfo(IpfixRecord record) {
+        if (record.getCertInfo() == null) {
+            record.setCertInfo(new CertEnterpriseInfo());
+        }
+        return record.getCertInfo();
+    }
+}
@@ -0,0 +1,216 @@
+package com.ipfix.graphql.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ipfix.graphql.model.AddressDirection;
+import com.ipfix.graphql.model.TextField;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+/**
+ * Row filter of a segment scan, evaluated in two steps: {@link #mightMatch} rules out whole segments from
+ * their zone maps and bloom filters, then {@link #rows} tests rows against only the columns it needs
+ */
+interface SegmentCondition {
+    
+    SegmentCondition ALL = new SegmentCondition() {
+        @Override
+        public boolean mightMatch(SegmentFile file) {
+            return true;
+        }
+        
+        @Override
+        public IntPredicate rows(SegmentFile.Columns columns) {
+            return row -> true;
+        }
+    };
+    
+    /**
+     * False when no row of the segment can match
+     */
+    boolean mightMatch(SegmentFile file);
+    
+    IntPredicate rows(SegmentFile.Columns columns);
+    
+    /**
+     * Rows whose source address is {@code host}, whatever prefix length they carry
+     */
+    static SegmentCondition sourceAddress(IpNetwork host) {
+        return address(host, SegmentColumn.SOURCE_V4, SegmentColumn.SOURCE_V6, SegmentColumn.SOURCE_BLOOM);
+    }
+    
+    static SegmentCondition destinationAddress(IpNetwork host) {
+        return address(host, SegmentColumn.DESTINATION_V4, SegmentColumn.DESTINATION_V6,
+                SegmentColumn.DESTINATION_BLOOM);
+    }
+    
+    /**
+     * Rows with protocol {@code protocol}; rows without one when null
+     */
+    static SegmentCondition protocol(Integer protocol) {
+        return new SegmentCondition() {
+            @Override
+            public boolean mightMatch(SegmentFile file) {
+                if (protocol == null) {
+                    return true;
+                }
+                return file.has(SegmentColumn.PROTOCOL) && file.min(SegmentColumn.PROTOCOL) <= protocol
+                        && protocol <= file.max(SegmentColumn.PROTOCOL);
+            }
+            
+            @Override
+            public IntPredicate rows(SegmentFile.Columns columns) {
+                if (protocol == null) {
+                    return row -> !columns.present(SegmentColumn.PROTOCOL, row);
+                }
+                long[] values = columns.longs(SegmentColumn.PROTOCOL);
+                return row -> values[row] == protocol && columns.present(SegmentColumn.PROTOCOL, row);
+            }
+        };
+    }
+    
+    /**
+     * Rows whose source and/or destination address lies within {@code block}, whatever its prefix length
+     */
+    static SegmentCondition subnet(IpNetwork block, AddressDirection direction) {
+        SegmentCondition source = block.ipv6()
+                ? ipv6Subnet(block, SegmentColumn.SOURCE_V6)
+                : ipv4Subnet(block, SegmentColumn.SOURCE_V4);
+        SegmentCondition destination = block.ipv6()
+                ? ipv6Subnet(block, SegmentColumn.DESTINATION_V6)
+                : ipv4Subnet(block, SegmentColumn.DESTINATION_V4);
+        return switch (direction) {
+            case SOURCE -> source;
+            case DESTINATION -> destination;
+            case ANY -> new SegmentCondition() {
+                @Override
+                public boolean mightMatch(SegmentFile file) {
+                    return source.mightMatch(file) || destination.mightMatch(file);
+                }
+                
+                @Override
+                public IntPredicate rows(SegmentFile.Columns columns) {
+                    return source.rows(columns).or(destination.rows(columns));
+                }
+            };
+        };
+    }
+    
+    /**
+     * Rows in which any of {@code fields} matches {@code search}. Fields kept as dictionary columns are tested
+     * once per distinct value; the others are read from the row's decoded record. Without such fields,
+     * segments holding none of the columns are skipped.
+     */
+    static SegmentCondition text(TextSearch search, Set<TextField> fields, ObjectMapper mapper) {
+        List<SegmentColumn> dictionaries = new ArrayList<>();
+        List<TextField> decoded = new ArrayList<>();
+        for (TextField field : fields) {
+            String path = FlowElement.of(field).elementName();
+            Optional<SegmentColumn> column = Arrays.stream(SegmentColumn.values())
+                    .filter(c -> c.encoding() == SegmentColumn.Encoding.DICTIONARY && path.equals(c.path()))
+                    .findFirst();
+            if (column.isPresent()) {
+                dictionaries.add(column.get());
+            } else {
+                decoded.add(field);
+            }
+        }
+        return new SegmentCondition() {
+            @Override
+            public boolean mightMatch(SegmentFile file) {
+                return !decoded.isEmpty() || dictionaries.stream().anyMatch(file::has);
+            }
+            
+            @Override
+            public IntPredicate rows(SegmentFile.Columns columns) {
+                List<String[]> values = new ArrayList<>();
+                for (SegmentColumn column : dictionaries) {
+                    values.add(columns.strings(column));
+                }
+                // Dictionary values share their instances
+                Map<String, Boolean> verdicts = new IdentityHashMap<>();
+                return row -> {
+                    for (String[] column : values) {
+                        String value = column[row];
+                        if (value != null && verdicts.computeIfAbsent(value, search::matches)) {
+                            return true;
+                        }
+                    }
+                    return !decoded.isEmpty() && search.matchesAny(columns.record(row, mapper), decoded);
+                };
+            }
+        };
+    }
+    
+    private static SegmentCondition address(IpNetwork host, SegmentColumn ipv4, SegmentColumn ipv6,
+                                            SegmentColumn bloom) {
+        SegmentColumn column = host.ipv6() ? ipv6 : ipv4;
+        long zoneKey = host.ipv6() ? host.high() : host.low();
+        long hash = SegmentWriter.addressHash(host.ipv6(), host.high(), host.low());
+        return new SegmentCondition() {
+            @Override
+            public boolean mightMatch(SegmentFile file) {
+                return inZone(file, column, zoneKey, zoneKey) && file.mightContain(bloom, hash);
+            }
+            
+            @Override
+            public IntPredicate rows(SegmentFile.Columns columns) {
+                if (host.ipv6()) {
+                    long[][] addresses = columns.addresses(column);
+                    return row -> addresses[0][row] == host.high() && addresses[1][row] == host.low()
+                            && columns.present(column, row);
+                }
+                long[] addresses = columns.longs(column);
+                return row -> addresses[row] == host.low() && columns.present(column, row);
+            }
+        };
+    }
+    
+    private static SegmentCondition ipv4Subnet(IpNetwork block, SegmentColumn column) {
+        long mask = block.lowMask();
+        return new SegmentCondition() {
+            @Override
+            public boolean mightMatch(SegmentFile file) {
+                return inZone(file, column, block.low(), block.low() | (~mask & 0xFFFFFFFFL));
+            }
+            
+            @Override
+            public IntPredicate rows(SegmentFile.Columns columns) {
+                long[] addresses = columns.longs(column);
+                return row -> (addresses[row] & mask) == block.low() && columns.present(column, row);
+            }
+        };
+    }
+    
+    private static SegmentCondition ipv6Subnet(IpNetwork block, SegmentColumn column) {
+        long highMask = block.highMask();
+        long lowMask = block.lowMask();
+        return new SegmentCondition() {
+            @Override
+            public boolean mightMatch(SegmentFile file) {
+                return inZone(file, column, block.high(), block.high() | ~highMask);
+            }
+            
+            @Override
+            public IntPredicate rows(SegmentFile.Columns columns) {
+                long[][] addresses = columns.addresses(column);
+                return row -> ((addresses[0][row] ^ block.high()) & highMask) == 0
+                        && ((addresses[1][row] ^ block.low()) & lowMask) == 0 && columns.present(column, row);
+            }
+        };
+    }
+    
+    /**
+     * True when [from, to] overlaps the column's zone map; address columns compare unsigned
+     */
+    private static boolean inZone(SegmentFile file, SegmentColumn column, long from, long to) {
+        return file.has(column) && Long.compareUnsigned(from, file.max(column)) <= 0
+                && Long.compareUnsigned(file.min(column), to) <= 0;
+    }
+}
@@ -0,0 +1,475 @@
+package com.ipfix.graphql.repository;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ipfix.graphql.model.IpfixRecord;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A segment file written by {@link SegmentWriter}, memory-mapped read-only. Opening it reads only the
+ * header and column directory; the zone maps and bloom filters answer whether a query can match without
+ * decoding anything. Column data is decoded per query through {@link #columns()}, and only for the columns
+ * the query touches. All reads use absolute positions, so one mapping serves concurrent queries.
+ */
+final class SegmentFile {
+    
+    private static final SegmentColumn[] COLUMNS = SegmentColumn.values();
+    
+    private final ByteBuffer data;
+    private final int rows;
+    // Section offset per column ordinal, -1 for columns the segment does not have
+    private final int[] offsets = new int[COLUMNS.length];
+    private final int[] lengths = new int[COLUMNS.length];
+    private final long[] mins = new long[COLUMNS.length];
+    private final long[] maxs = new long[COLUMNS.length];
+    
+    SegmentFile(ByteBuffer data) throws IOException {
+        this.data = data;
+        for (int i = 0; i < SegmentWriter.MAGIC.length; i++) {
+            if (data.capacity() < SegmentWriter.HEADER_BYTES || data.get(i) != SegmentWriter.MAGIC[i]) {
+                throw new IOException("Not a segment file or unsupported version");
+            }
+        }
+        rows = data.getInt(SegmentWriter.MAGIC.length);
+        int columnCount = data.getInt(SegmentWriter.MAGIC.length + 4);
+        Arrays.fill(offsets, -1);
+        for (int i = 0; i < columnCount; i++) {
+            int entry = SegmentWriter.HEADER_BYTES + i * SegmentWriter.ENTRY_BYTES;
+            int column = data.getShort(entry);
+            if (column < 0 || column >= COLUMNS.length || data.get(entry + 2) != COLUMNS[column].encoding().ordinal()) {
+                throw new IOException("Unknown segment column " + column);
+            }
+            offsets[column] = Math.toIntExact(data.getLong(entry + 3));
+            lengths[column] = data.getInt(entry + 11);
+            mins[column] = data.getLong(entry + 15);
+            maxs[column] = data.getLong(entry + 23);
+        }
+    }
+    
+    static SegmentFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new SegmentFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+    
+    int rows() {
+        return rows;
+    }
+    
+    /**
+     * True when at least one row has a value in {@code column}
+     */
+    boolean has(SegmentColumn column) {
+        return offsets[column.ordinal()] >= 0;
+    }
+    
+    /**
+     * Smallest value of a numeric column; the high half of an address column, to be compared unsigned
+     */
+    long min(SegmentColumn column) {
+        return mins[column.ordinal()];
+    }
+    
+    long max(SegmentColumn column) {
+        return maxs[column.ordinal()];
+    }
+    
+    /**
+     * Bloom filter test: false means no row has the key of {@code hash}
+     */
+    boolean mightContain(SegmentColumn bloom, long hash) {
+        int offset = offsets[bloom.ordinal()];
+        if (offset < 0) {
+            return false;
+        }
+        int hashes = data.get(offset);
+        long bits = (long) (lengths[bloom.ordinal()] - 1) * 8;
+        for (int i = 0; i < hashes; i++) {
+            long bit = SegmentWriter.bloomBit(hash, i, bits);
+            if ((data.getLong(offset + 1 + (int) (bit >>> 6) * 8) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Decoding view for one query; not thread-safe
+     */
+    Columns columns() {
+        return new Columns();
+    }
+    
+    /**
+     * Lazily decoded columns of the segment, each decoded once on first use
+     */
+    final class Columns {
+        
+        private final Map<SegmentColumn, BitSet> presence = new EnumMap<>(SegmentColumn.class);
+        private final Map<SegmentColumn, Object> values = new EnumMap<>(SegmentColumn.class);
+        private int[] remainderOffsets;
+        private byte[] remainder;
+        
+        int rows() {
+            return rows;
+        }
+        
+        boolean present(SegmentColumn column, int row) {
+            return presence(column).get(row);
+        }
+        
+        /**
+         * Values of a numeric column per row, 0 where absent
+         */
+        long[] longs(SegmentColumn column) {
+            return (long[]) values.computeIfAbsent(column, c -> c.encoding() == SegmentColumn.Encoding.DELTA
+                    ? decodeDelta(c) : decodeFrameOfReference(c));
+        }
+        
+        /**
+         * Halves of an address column per row, {@code [0]} high and {@code [1]} low, 0 where absent
+         */
+        long[][] addresses(SegmentColumn column) {
+            return (long[][]) values.computeIfAbsent(column, this::decodeAddresses);
+        }
+        
+        /**
+         * Values of a text column per row, null where absent; dictionary values share their instances
+         */
+        String[] strings(SegmentColumn column) {
+            return (String[]) values.computeIfAbsent(column, c -> c.encoding() == SegmentColumn.Encoding.DICTIONARY
+                    ? decodeDictionary(c) : decodeFrontCoded(c));
+        }
+        
+        Instant timestamp(int row) {
+            return Instant.ofEpochSecond(longs(SegmentColumn.TIMESTAMP_SECONDS)[row],
+                    longs(SegmentColumn.TIMESTAMP_NANOS)[row]);
+        }
+        
+        String id(int row) {
+            return strings(SegmentColumn.ID)[row];
+        }
+        
+        /**
+         * First row timestamped at or after {@code instant}, {@link #rows()} when none
+         */
+        int firstAtOrAfter(Instant instant) {
+            long[] seconds = longs(SegmentColumn.TIMESTAMP_SECONDS);
+            long[] nanos = longs(SegmentColumn.TIMESTAMP_NANOS);
+            int low = 0;
+            int high = rows;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int cmp = Long.compare(seconds[mid], instant.getEpochSecond());
+                if (cmp < 0 || (cmp == 0 && nanos[mid] < instant.getNano())) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+        
+        /**
+         * First row timestamped after {@code instant}, {@link #rows()} when none
+         */
+        int firstAfter(Instant instant) {
+            return firstAtOrAfter(instant.plusNanos(1));
+        }
+        
+        /**
+         * First row whose key is at or after {@code key}, {@link #rows()} when none
+         */
+        int firstAtOrAfter(RecordKey key) {
+            int row = firstAtOrAfter(key.timestamp());
+            while (row < rows && timestamp(row).equals(key.timestamp()) && id(row).compareTo(key.id()) < 0) {
+                row++;
+            }
+            return row;
+        }
+        
+        IpfixRecord record(int row, ObjectMapper mapper) {
+            return record(row, mapper, RecordProjection.ALL);
+        }
+        
+        /**
+         * Rebuilds the projected fields of a row from its remainder and its column values. Columns outside the
+         * projection are not decoded; the remainder is only parsed when a projected field may be in it, and
+         * then only its projected elements are bound.
+         */
+        IpfixRecord record(int row, ObjectMapper mapper, RecordProjection projection) {
+            IpfixRecord record;
+            if (present(SegmentColumn.REMAINDER, row) && needsRemainder(row, projection)) {
+                decodeRemainder();
+                int start = remainderOffsets[row];
+                int length = (int) varLongAt(remainder, start);
+                try {
+                    record = projection.isAll()
+                            ? mapper.readValue(remainder, start + varLongSize(length), length, IpfixRecord.class)
+                            : readProjected(start + varLongSize(length), length, mapper, projection);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Corrupt segment row " + row, e);
+                }
+            } else {
+                record = new IpfixRecord();
+            }
+            record.setTimestamp(timestamp(row));
+            for (SegmentColumn column : COLUMNS) {
+                if (column.path() == null || !projection.includes(column.field()) || !has(column)
+                        || !present(column, row)
+                        || column == SegmentColumn.TIMESTAMP_SECONDS || column == SegmentColumn.TIMESTAMP_NANOS) {
+                    continue;
+                }
+                switch (column.encoding()) {
+                    case DELTA, FRAME_OF_REFERENCE -> column.setNumber(record, longs(column)[row]);
+                    case ADDRESS -> {
+                        long[][] address = addresses(column);
+                        column.setText(record, IpAddresses.formatIPv6(address[0][row], address[1][row]));
+                    }
+                    default -> column.setText(record, strings(column)[row]);
+                }
+            }
+            return record;
+        }
+        
+        /**
+         * Whether a projected field of the row may be held by its remainder: every field but those a column
+         * holds whole and has a value for in this row
+         */
+        private boolean needsRemainder(int row, RecordProjection projection) {
+            if (projection.isAll()) {
+                return true;
+            }
+            for (String field : projection.fields()) {
+                SegmentColumn column = SegmentColumn.holding(field);
+                if (column == null || !has(column) || !present(column, row)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        /**
+         * Binds the projected elements of a remainder, skipping the others unparsed
+         */
+        private IpfixRecord readProjected(int offset, int length, ObjectMapper mapper, RecordProjection projection)
+                throws IOException {
+            ObjectNode kept = mapper.createObjectNode();
+            try (JsonParser parser = mapper.getFactory().createParser(remainder, offset, length)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new IOException("Remainder is not an object");
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    parser.nextToken();
+                    if (projection.includes(name)) {
+                        kept.set(name, mapper.readTree(parser));
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+            return mapper.treeToValue(kept, IpfixRecord.class);
+        }
+        
+        private BitSet presence(SegmentColumn column) {
+            return presence.computeIfAbsent(column, c -> {
+                int offset = offsets[c.ordinal()];
+                if (offset < 0) {
+                    return new BitSet();
+                }
+                byte[] bitmap = new byte[(rows + 7) / 8];
+                data.get(offset, bitmap);
+                return BitSet.valueOf(bitmap);
+            });
+        }
+        
+        private long[] decodeDelta(SegmentColumn column) {
+            long[] decoded = new long[rows];
+            if (!has(column)) {
+                return decoded;
+            }
+            BitSet present = presence(column);
+            int[] position = {offsets[column.ordinal()] + (rows + 7) / 8};
+            long previous = 0;
+            for (int row = present.nextSetBit(0); row >= 0; row = present.nextSetBit(row + 1)) {
+                long delta = readVarLong(position);
+                previous += (delta >>> 1) ^ -(delta & 1);
+                decoded[row] = previous;
+            }
+            return decoded;
+        }
+        
+        private long[] decodeFrameOfReference(SegmentColumn column) {
+            long[] decoded = new long[rows];
+            if (!has(column)) {
+                return decoded;
+            }
+            BitSet present = presence(column);
+            int offset = offsets[column.ordinal()] + (rows + 7) / 8;
+            int width = data.get(offset);
+            long min = mins[column.ordinal()];
+            long position = 0;
+            for (int row = present.nextSetBit(0); row >= 0; row = present.nextSetBit(row + 1)) {
+                decoded[row] = min + unpack(offset + 1, position, width);
+                position += width;
+            }
+            return decoded;
+        }
+        
+        private long[][] decodeAddresses(SegmentColumn column) {
+            long[][] decoded = new long[2][rows];
+            if (!has(column)) {
+                return decoded;
+            }
+            BitSet present = presence(column);
+            int position = offsets[column.ordinal()] + (rows + 7) / 8;
+            for (int row = present.nextSetBit(0); row >= 0; row = present.nextSetBit(row + 1)) {
+                decoded[0][row] = data.getLong(position);
+                decoded[1][row] = data.getLong(position + 8);
+                position += 16;
+            }
+            return decoded;
+        }
+        
+        private String[] decodeDictionary(SegmentColumn column) {
+            String[] decoded = new String[rows];
+            if (!has(column)) {
+                return decoded;
+            }
+            BitSet present = presence(column);
+            int[] position = {offsets[column.ordinal()] + (rows + 7) / 8};
+            String[] dictionary = new String[(int) readVarLong(position)];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = readText(position);
+            }
+            int width = data.get(position[0]);
+            int packed = position[0] + 1;
+            long bit = 0;
+            for (int row = present.nextSetBit(0); row >= 0; row = present.nextSetBit(row + 1)) {
+                decoded[row] = dictionary[(int) unpack(packed, bit, width)];
+                bit += width;
+            }
+            return decoded;
+        }
+        
+        private String[] decodeFrontCoded(SegmentColumn column) {
+            String[] decoded = new String[rows];
+            if (!has(column)) {
+                return decoded;
+            }
+            BitSet present = presence(column);
+            int[] position = {offsets[column.ordinal()] + (rows + 7) / 8};
+            String previous = "";
+            for (int row = present.nextSetBit(0); row >= 0; row = present.nextSetBit(row + 1)) {
+                int shared = (int) readVarLong(position);
+                previous = previous.substring(0, shared) + readText(position);
+                decoded[row] = previous;
+            }
+            return decoded;
+        }
+        
+        private void decodeRemainder() {
+            if (remainder != null) {
+                return;
+            }
+            BitSet present = presence(SegmentColumn.REMAINDER);
+            int[] position = {offsets[SegmentColumn.REMAINDER.ordinal()] + (rows + 7) / 8};
+            byte[] raw = new byte[(int) readVarLong(position)];
+            int end = offsets[SegmentColumn.REMAINDER.ordinal()] + lengths[SegmentColumn.REMAINDER.ordinal()];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(data.slice(position[0], end - position[0]));
+                int filled = 0;
+                while (filled < raw.length) {
+                    int inflated = inflater.inflate(raw, filled, raw.length - filled);
+                    if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                        throw new IOException("Truncated segment remainder");
+                    }
+                    filled += inflated;
+                }
+            } catch (IOException | DataFormatException e) {
+                throw new UncheckedIOException(new IOException("Corrupt segment remainder", e));
+            } finally {
+                inflater.end();
+            }
+            int[] starts = new int[rows];
+            int start = 0;
+            for (int row = present.nextSetBit(0); row >= 0; row = present.nextSetBit(row + 1)) {
+                starts[row] = start;
+                long length = varLongAt(raw, start);
+                start += varLongSize(length) + (int) length;
+            }
+            remainderOffsets = starts;
+            remainder = raw;
+        }
+        
+        private long unpack(int base, long position, int width) {
+            long value = 0;
+            int got = 0;
+            while (got < width) {
+                int shift = (int) (position & 7);
+                int take = Math.min(8 - shift, width - got);
+                long bits = ((data.get(base + (int) (position >>> 3)) & 0xFF) >>> shift) & ((1 << take) - 1);
+                value |= bits << got;
+                got += take;
+                position += take;
+            }
+            return value;
+        }
+        
+        private String readText(int[] position) {
+            byte[] utf8 = new byte[(int) readVarLong(position)];
+            data.get(position[0], utf8);
+            position[0] += utf8.length;
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+        
+        private long readVarLong(int[] position) {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data.get(position[0]++);
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+    
+    private static long varLongAt(byte[] bytes, int position) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = bytes[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+    
+    private static int varLongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
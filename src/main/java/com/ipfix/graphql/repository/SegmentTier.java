@@ -0,0 +1,537 @@
+package com.ipfix.graphql.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ipfix.graphql.model.FlowGroupBy;
+import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.model.TextField;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * On-disk tier of immutable segments. A segment holds the records of one sealed time window in the compressed
+ * columnar format of {@link SegmentWriter}, in {@link RecordKey} order; its time bounds, record count and
+ * sequence number are encoded in the file name. Segments are written to a temporary file and renamed into
+ * place, so a crash never leaves a partial segment behind. Deleting a record appends its ID to the segment's
+ * {@code .deleted} sidecar instead of rewriting the segment. JSON-lines segments of earlier versions are
+ * converted when the tier is opened.
+ * <p>
+ * Segments are memory-mapped. Scans skip segments by time bounds, zone maps and bloom filters, binary search
+ * the timestamp column for the time range and walk it newest-first, so only the columns a query filters on
+ * are decoded and only matching rows are rebuilt into records. Aggregations never rebuild records.
+ * Time windows sealed more than once (late records) simply yield overlapping segments.
+ */
+@Slf4j
+public class SegmentTier {
+    
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".seg";
+    private static final String LEGACY_SUFFIX = ".jsonl";
+    private static final String DELETED_SUFFIX = ".deleted";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Comparator<Segment> NEWEST_FIRST =
+            Comparator.comparing(Segment::last).thenComparing(Segment::first).reversed();
+    private static final Comparator<IpfixRecord> NEWEST_RECORD_FIRST =
+            Comparator.comparing(RecordKey::of).reversed();
+    
+    private final Path directory;
+    private final ObjectMapper mapper = SegmentWriter.newMapper();
+    // Sorted by NEWEST_FIRST; replaced wholesale on every change
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+    // Serializes segment list changes and deletion files; a lock rather than a monitor so virtual threads
+    // doing the file I/O do not pin their carrier
+    private final ReentrantLock changes = new ReentrantLock();
+    // Held shared by reads spanning both tiers, exclusively to publish or release a window being sealed
+    private final ReentrantReadWriteLock sealing = new ReentrantReadWriteLock();
+    private Instant sealedThrough;
+    
+    /**
+     * Opens the segments found in {@code directory}, creating it when missing
+     */
+    public SegmentTier(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+            List<Segment> found = new ArrayList<>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(TEMP_SUFFIX)) {
+                        Files.deleteIfExists(file);
+                    } else if (name.startsWith(PREFIX) && name.endsWith(SUFFIX)) {
+                        found.add(open(file));
+                    } else if (name.startsWith(PREFIX) && name.endsWith(LEGACY_SUFFIX)) {
+                        found.add(open(convert(file)));
+                    }
+                }
+            }
+            found.sort(NEWEST_FIRST);
+            segments.addAll(found);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open segment directory " + directory, e);
+        }
+        log.info("Opened {} segments ({} records) in {}", segments.size(), count(), directory);
+    }
+    
+    /**
+     * Seals records, oldest first, into a new segment
+     */
+    public void write(List<IpfixRecord> records) {
+        if (!records.isEmpty()) {
+            add(create(records));
+        }
+    }
+    
+    /**
+     * Seals records, oldest first, into a new segment that still lives in the tier above, and runs {@code evict}
+     * to remove them from there. Until it returns, {@link #spanning} passes readers the newest sealed timestamp,
+     * through which they count the segment instead of the tier above.
+     */
+    public void seal(List<IpfixRecord> records, Runnable evict) {
+        if (records.isEmpty()) {
+            return;
+        }
+        Segment segment = create(records);
+        Instant through = records.get(records.size() - 1).getTimestamp();
+        sealing.writeLock().lock();
+        try {
+            add(segment);
+            sealedThrough = through;
+        } finally {
+            sealing.writeLock().unlock();
+        }
+        try {
+            evict.run();
+        } finally {
+            sealing.writeLock().lock();
+            try {
+                sealedThrough = null;
+            } finally {
+                sealing.writeLock().unlock();
+            }
+        }
+    }
+    
+    /**
+     * Runs a read spanning this tier and the one above against a segment list no {@link #seal} changes midway;
+     * {@code read} gets the timestamp through which the window being sealed is on disk but not yet evicted
+     * from above, or null
+     */
+    <T> T spanning(Function<Instant, T> read) {
+        sealing.readLock().lock();
+        try {
+            return read.apply(sealedThrough);
+        } finally {
+            sealing.readLock().unlock();
+        }
+    }
+    
+    private Segment create(List<IpfixRecord> records) {
+        Instant first = records.get(0).getTimestamp();
+        Instant last = records.get(records.size() - 1).getTimestamp();
+        String name = PREFIX + floorMillis(first) + "_" + ceilMillis(last) + "_" + records.size() + "_"
+                + sequence.incrementAndGet() + SUFFIX;
+        Path file = directory.resolve(name);
+        Path temp = directory.resolve(name + TEMP_SUFFIX);
+        try {
+            Files.write(temp, SegmentWriter.encode(records, mapper));
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            return new Segment(file, Instant.ofEpochMilli(floorMillis(first)), Instant.ofEpochMilli(ceilMillis(last)),
+                    records.size(), Files.size(file), ConcurrentHashMap.newKeySet(), SegmentFile.open(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write segment " + file, e);
+        }
+    }
+    
+    /**
+     * Newest-first matches within [from, to] strictly older than {@code after}, rebuilt with the projected
+     * fields; null bounds are open
+     */
+    List<IpfixRecord> scan(Instant from, Instant to, RecordKey after, int limit, SegmentCondition condition,
+                           RecordProjection projection) {
+        List<IpfixRecord> found = new ArrayList<>();
+        if (limit <= 0) {
+            return found;
+        }
+        for (Segment segment : segments) {
+            if (found.size() >= limit && found.get(found.size() - 1).getTimestamp().isAfter(segment.last())) {
+                // Every remaining segment ends before the oldest record already kept
+                break;
+            }
+            if (!overlaps(segment, from, to) || (after != null && segment.first().isAfter(after.timestamp()))
+                    || !condition.mightMatch(segment.file())) {
+                continue;
+            }
+            SegmentFile.Columns columns = segment.file().columns();
+            int low = from == null ? 0 : columns.firstAtOrAfter(from);
+            int high = to == null ? columns.rows() : columns.firstAfter(to);
+            if (after != null) {
+                high = Math.min(high, columns.firstAtOrAfter(after));
+            }
+            IntPredicate matches = condition.rows(columns);
+            int taken = 0;
+            for (int row = high - 1; row >= low && taken < limit; row--) {
+                if (matches.test(row) && live(segment, columns, row)) {
+                    found.add(columns.record(row, mapper, projection));
+                    taken++;
+                }
+            }
+            found.sort(NEWEST_RECORD_FIRST);
+            if (found.size() > limit) {
+                found.subList(limit, found.size()).clear();
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * Newest-first records in which any of {@code fields} matches {@code search}, strictly older than {@code after}
+     */
+    List<IpfixRecord> search(TextSearch search, Set<TextField> fields, RecordKey after, int limit,
+                             RecordProjection projection) {
+        return scan(null, null, after, limit, SegmentCondition.text(search, fields, mapper), projection);
+    }
+    
+    public Optional<IpfixRecord> findById(String id) {
+        return locate(id).map(Map.Entry::getValue);
+    }
+    
+    /**
+     * Marks a record deleted in the segment holding it
+     */
+    public boolean deleteById(String id) {
+        Optional<Map.Entry<Segment, IpfixRecord>> located = locate(id);
+        if (located.isEmpty()) {
+            return false;
+        }
+        Segment segment = located.get().getKey();
+        changes.lock();
+        try {
+            if (!segment.deleted().add(id)) {
+                return false;
+            }
+            try {
+                Files.writeString(deletedFile(segment.path()), id + System.lineSeparator(),
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                segment.deleted().remove(id);
+                throw new UncheckedIOException("Cannot record deletion in " + segment.path(), e);
+            }
+        } finally {
+            changes.unlock();
+        }
+        return true;
+    }
+    
+    /**
+     * Sums the live records within [from, to] per {@code groupBy} element, reading only the counter and
+     * group columns; segments are aggregated in parallel
+     */
+    FlowAggregator aggregate(Instant from, Instant to, FlowGroupBy groupBy) {
+        return aggregate(from, to, (columns, aggregator) -> groupRows(groupBy, columns, aggregator));
+    }
+    
+    /**
+     * Sums the live records within [start, end] per bucket number of {@code intervalNanos} from {@code start}
+     */
+    FlowAggregator timeBuckets(Instant start, Instant end, long intervalNanos) {
+        return aggregate(start, end, (columns, aggregator) -> {
+            long[] seconds = columns.longs(SegmentColumn.TIMESTAMP_SECONDS);
+            long[] nanos = columns.longs(SegmentColumn.TIMESTAMP_NANOS);
+            long[] octets = columns.longs(SegmentColumn.OCTETS);
+            long[] packets = columns.longs(SegmentColumn.PACKETS);
+            return row -> aggregator.add(((seconds[row] - start.getEpochSecond()) * 1_000_000_000L
+                    + (nanos[row] - start.getNano())) / intervalNanos, octets[row], packets[row]);
+        });
+    }
+    
+    /**
+     * Timestamp of the oldest live record on disk
+     */
+    public Optional<Instant> oldestTimestamp() {
+        List<Segment> oldestFirst = new ArrayList<>(segments);
+        oldestFirst.sort(Comparator.comparing(Segment::first));
+        Instant oldest = null;
+        for (Segment segment : oldestFirst) {
+            if (oldest != null && oldest.isBefore(segment.first())) {
+                break;
+            }
+            Optional<Instant> first = firstLive(segment);
+            if (first.isPresent() && (oldest == null || first.get().isBefore(oldest))) {
+                oldest = first.get();
+            }
+        }
+        return Optional.ofNullable(oldest);
+    }
+    
+    /**
+     * Deletes segments whose newest record is older than {@code cutoff}, then the oldest segments
+     * while the tier is larger than {@code maxBytes}
+     *
+     * @return the number of segments deleted
+     */
+    public int expire(Instant cutoff, long maxBytes) {
+        int expired = 0;
+        for (Segment segment : segments) {
+            if (segment.last().isBefore(cutoff)) {
+                delete(segment);
+                expired++;
+            }
+        }
+        long total = sizeBytes();
+        while (total > maxBytes && !segments.isEmpty()) {
+            Segment oldest = Collections.min(segments, Comparator.comparing(Segment::first));
+            delete(oldest);
+            total -= oldest.bytes();
+            expired++;
+        }
+        return expired;
+    }
+    
+    public long count() {
+        long count = 0;
+        for (Segment segment : segments) {
+            count += segment.count() - segment.deleted().size();
+        }
+        return count;
+    }
+    
+    public long sizeBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.bytes();
+        }
+        return bytes;
+    }
+    
+    public int segmentCount() {
+        return segments.size();
+    }
+    
+    public void clear() {
+        for (Segment segment : segments) {
+            delete(segment);
+        }
+    }
+    
+    private Optional<Map.Entry<Segment, IpfixRecord>> locate(String id) {
+        long hash = SegmentWriter.textHash(id);
+        for (Segment segment : segments) {
+            if (segment.deleted().contains(id) || !segment.file().mightContain(SegmentColumn.ID_BLOOM, hash)) {
+                continue;
+            }
+            SegmentFile.Columns columns = segment.file().columns();
+            String[] ids = columns.strings(SegmentColumn.ID);
+            for (int row = 0; row < ids.length; row++) {
+                if (id.equals(ids[row])) {
+                    return Optional.of(Map.entry(segment, columns.record(row, mapper)));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+    
+    private Optional<Instant> firstLive(Segment segment) {
+        SegmentFile.Columns columns = segment.file().columns();
+        for (int row = 0; row < columns.rows(); row++) {
+            if (live(segment, columns, row)) {
+                return Optional.of(columns.timestamp(row));
+            }
+        }
+        return Optional.empty();
+    }
+    
+    private FlowAggregator aggregate(Instant from, Instant to, ColumnAccumulator accumulator) {
+        return segments.parallelStream()
+                .filter(segment -> overlaps(segment, from, to))
+                .map(segment -> {
+                    FlowAggregator aggregator = new FlowAggregator();
+                    SegmentFile.Columns columns = segment.file().columns();
+                    int high = to == null ? columns.rows() : columns.firstAfter(to);
+                    IntConsumer rows = accumulator.bind(columns, aggregator);
+                    for (int row = from == null ? 0 : columns.firstAtOrAfter(from); row < high; row++) {
+                        if (live(segment, columns, row)) {
+                            rows.accept(row);
+                        }
+                    }
+                    return aggregator;
+                })
+                .reduce((a, b) -> {
+                    a.merge(b);
+                    return a;
+                })
+                .orElseGet(FlowAggregator::new);
+    }
+    
+    /**
+     * Adds rows under their {@code groupBy} element the way {@link FlowAggregator#add(FlowGroupBy, IpfixRecord)}
+     * adds records; absent counters decode as 0
+     */
+    private static IntConsumer groupRows(FlowGroupBy groupBy, SegmentFile.Columns columns, FlowAggregator aggregator) {
+        long[] octets = columns.longs(SegmentColumn.OCTETS);
+        long[] packets = columns.longs(SegmentColumn.PACKETS);
+        return switch (groupBy) {
+            case SOURCE_IP -> addressRows(columns, aggregator, SegmentColumn.SOURCE_V4, SegmentColumn.SOURCE_V6);
+            case DESTINATION_IP -> addressRows(columns, aggregator, SegmentColumn.DESTINATION_V4,
+                    SegmentColumn.DESTINATION_V6);
+            case SOURCE_PORT -> numberRows(columns, aggregator, SegmentColumn.SOURCE_PORT);
+            case DESTINATION_PORT -> numberRows(columns, aggregator, SegmentColumn.DESTINATION_PORT);
+            case PROTOCOL -> numberRows(columns, aggregator, SegmentColumn.PROTOCOL);
+            case SILK_APP_LABEL -> numberRows(columns, aggregator, SegmentColumn.SILK_APP_LABEL);
+            case APPLICATION_NAME -> {
+                String[] names = columns.strings(SegmentColumn.APPLICATION_NAME);
+                yield row -> {
+                    if (names[row] != null) {
+                        aggregator.addTotals(names[row], octets[row], packets[row], 1);
+                    }
+                };
+            }
+        };
+    }
+    
+    private static IntConsumer addressRows(SegmentFile.Columns columns, FlowAggregator aggregator,
+                                           SegmentColumn ipv4, SegmentColumn ipv6) {
+        long[] octets = columns.longs(SegmentColumn.OCTETS);
+        long[] packets = columns.longs(SegmentColumn.PACKETS);
+        long[] v4 = columns.longs(ipv4);
+        long[][] v6 = columns.addresses(ipv6);
+        return row -> {
+            if (columns.present(ipv4, row)) {
+                aggregator.add(v4[row], octets[row], packets[row]);
+            } else if (columns.present(ipv6, row)) {
+                aggregator.addTotals(new IpNetwork(true, v6[0][row], v6[1][row], 128), octets[row], packets[row], 1);
+            }
+        };
+    }
+    
+    private static IntConsumer numberRows(SegmentFile.Columns columns, FlowAggregator aggregator,
+                                          SegmentColumn column) {
+        long[] octets = columns.longs(SegmentColumn.OCTETS);
+        long[] packets = columns.longs(SegmentColumn.PACKETS);
+        long[] values = columns.longs(column);
+        return row -> {
+            if (columns.present(column, row)) {
+                aggregator.add(values[row], octets[row], packets[row]);
+            }
+        };
+    }
+    
+    private static boolean live(Segment segment, SegmentFile.Columns columns, int row) {
+        return segment.deleted().isEmpty() || !segment.deleted().contains(columns.id(row));
+    }
+    
+    /**
+     * Rewrites a JSON-lines segment of an earlier version in the columnar format, keeping its name and deletions
+     */
+    private Path convert(Path legacy) throws IOException {
+        List<IpfixRecord> records = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(legacy)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                records.add(mapper.readValue(line, IpfixRecord.class));
+            }
+        }
+        String name = legacy.getFileName().toString();
+        Path file = legacy.resolveSibling(name.substring(0, name.length() - LEGACY_SUFFIX.length()) + SUFFIX);
+        Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+        Files.write(temp, SegmentWriter.encode(records, mapper));
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        if (Files.exists(deletedFile(legacy))) {
+            Files.move(deletedFile(legacy), deletedFile(file), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.delete(legacy);
+        log.info("Converted {} to the columnar segment format", name);
+        return file;
+    }
+    
+    private Segment open(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        String[] parts = name.substring(PREFIX.length(), name.length() - SUFFIX.length()).split("_");
+        if (parts.length != 4) {
+            throw new IOException("Unrecognized segment file name " + name);
+        }
+        sequence.accumulateAndGet(Long.parseLong(parts[3]), Math::max);
+        Set<String> deleted = ConcurrentHashMap.newKeySet();
+        Path deletedFile = deletedFile(file);
+        if (Files.exists(deletedFile)) {
+            for (String id : Files.readAllLines(deletedFile)) {
+                if (!id.isEmpty()) {
+                    deleted.add(id);
+                }
+            }
+        }
+        return new Segment(file, Instant.ofEpochMilli(Long.parseLong(parts[0])),
+                Instant.ofEpochMilli(Long.parseLong(parts[1])), Long.parseLong(parts[2]), Files.size(file), deleted,
+                SegmentFile.open(file));
+    }
+    
+    private void add(Segment segment) {
+        changes.lock();
+        try {
+            segments.add(segment);
+            segments.sort(NEWEST_FIRST);
+        } finally {
+            changes.unlock();
+        }
+    }
+    
+    private void delete(Segment segment) {
+        changes.lock();
+        try {
+            if (!segments.remove(segment)) {
+                return;
+            }
+            Files.deleteIfExists(segment.path());
+            Files.deleteIfExists(deletedFile(segment.path()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete segment " + segment.path(), e);
+        } finally {
+            changes.unlock();
+        }
+    }
+    
+    private static boolean overlaps(Segment segment, Instant from, Instant to) {
+        return (from == null || !segment.last().isBefore(from)) && (to == null || !segment.first().isAfter(to));
+    }
+    
+    private static Path deletedFile(Path segment) {
+        return segment.resolveSibling(segment.getFileName() + DELETED_SUFFIX);
+    }
+    
+    private static long floorMillis(Instant instant) {
+        return instant.toEpochMilli();
+    }
+    
+    private static long ceilMillis(Instant instant) {
+        return instant.plusNanos(999_999).toEpochMilli();
+    }
+    
+    /**
+     * A sealed segment file; {@code first} and {@code last} are its record time bounds rounded outwards to
+     * milliseconds. The mapping stays readable after the file is deleted, so expiry never breaks a running scan.
+     */
+    private record Segment(Path path, Instant first, Instant last, long count, long bytes, Set<String> deleted,
+                           SegmentFile file) {
+    }
+    
+    /**
+     * Binds a per-row accumulation to the decoded columns of one segment
+     */
+    @FunctionalInterface
+    private interface ColumnAccumulator {
+        IntConsumer bind(SegmentFile.Columns columns, FlowAggregator aggregator);
+    }
+}
@@ -0,0 +1,454 @@
+package com.ipfix.graphql.repository;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ipfix.graphql.model.IpfixRecord;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes sealed records into the segment file format read by {@link SegmentFile}:
+ * <pre>
+ * magic "IPFXSEG" version | int rows | int columns
+ * per column: short id | byte encoding | long offset | int length | long min | long max
+ * column sections
+ * </pre>
+ * Every section except the bloom filters starts with a presence bitmap of one bit per row, and only
+ * present values follow. Columns no record has are left out. {@code min} and {@code max} are the zone map
+ * of a numeric column (the high half for IPv6 addresses, compared unsigned). The same records always
+ * encode to the same bytes: dictionaries are sorted, the bloom hash is fixed and nothing depends on the clock.
+ */
+final class SegmentWriter {
+    
+    static final byte[] MAGIC = {'I', 'P', 'F', 'X', 'S', 'E', 'G', 1};
+    static final int HEADER_BYTES = MAGIC.length + 8;
+    static final int ENTRY_BYTES = 2 + 1 + 8 + 4 + 8 + 8;
+    static final int BLOOM_BITS_PER_KEY = 10;
+    static final int BLOOM_HASHES = 7;
+    static final int DEFLATE_LEVEL = 6;
+    
+    private SegmentWriter() {
+    }
+    
+    /**
+     * Encodes records, which must all have an ID and a timestamp, in {@link RecordKey} order
+     */
+    static byte[] encode(List<IpfixRecord> records, ObjectMapper mapper) throws IOException {
+        List<IpfixRecord> rows = new ArrayList<>(records);
+        rows.sort(Comparator.comparing(RecordKey::of));
+        Map<SegmentColumn, Section> sections = new EnumMap<>(SegmentColumn.class);
+        for (SegmentColumn column : SegmentColumn.values()) {
+            Section section = switch (column.encoding()) {
+                case DELTA -> delta(column, rows);
+                case FRAME_OF_REFERENCE -> frameOfReference(column, rows);
+                case ADDRESS -> address(column, rows);
+                case DICTIONARY -> dictionary(column, rows);
+                case FRONT_CODED -> frontCoded(column, rows);
+                case DEFLATE_JSON -> remainder(rows, mapper);
+                case BLOOM -> bloom(column, rows);
+            };
+            if (section != null) {
+                sections.put(column, section);
+            }
+        }
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(MAGIC);
+        out.writeInt(rows.size());
+        out.writeInt(sections.size());
+        long offset = HEADER_BYTES + (long) sections.size() * ENTRY_BYTES;
+        for (Map.Entry<SegmentColumn, Section> entry : sections.entrySet()) {
+            Section section = entry.getValue();
+            out.writeShort(entry.getKey().ordinal());
+            out.writeByte(entry.getKey().encoding().ordinal());
+            out.writeLong(offset);
+            out.writeInt(section.bytes().length);
+            out.writeLong(section.min());
+            out.writeLong(section.max());
+            offset += section.bytes().length;
+        }
+        for (Section section : sections.values()) {
+            out.write(section.bytes());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * JSON mapper for records at rest: nulls are left out and unknown properties of older versions ignored
+     */
+    static ObjectMapper newMapper() {
+        return JsonMapper.builder()
+                .findAndAddModules()
+                .serializationInclusion(JsonInclude.Include.NON_NULL)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+    }
+    
+    /**
+     * Bloom filter hash of an address
+     */
+    static long addressHash(boolean ipv6, long high, long low) {
+        return mix(mix(high ^ (ipv6 ? 0x6A09E667F3BCC909L : 0)) + low);
+    }
+    
+    /**
+     * Bloom filter hash of a string
+     */
+    static long textHash(String text) {
+        long h = 0x3C6EF372FE94F82BL;
+        for (int i = 0; i < text.length(); i++) {
+            h = (h + text.charAt(i)) * 0x9E3779B97F4A7C15L;
+        }
+        return mix(h);
+    }
+    
+    /**
+     * The {@code i}-th probed bit of a hash in a filter of {@code bits} bits (double hashing)
+     */
+    static long bloomBit(long hash, int i, long bits) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return Math.floorMod(h1 + (long) i * h2, bits);
+    }
+    
+    private record Section(byte[] bytes, long min, long max) {
+    }
+    
+    private static Section delta(SegmentColumn column, List<IpfixRecord> rows) throws IOException {
+        Long[] values = numbers(column, rows);
+        if (values == null) {
+            return null;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(presence(values));
+        long previous = 0;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (Long value : values) {
+            if (value != null) {
+                writeVarLong(out, zigzag(value - previous));
+                previous = value;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+        }
+        return new Section(out.toByteArray(), min, max);
+    }
+    
+    private static Section frameOfReference(SegmentColumn column, List<IpfixRecord> rows) throws IOException {
+        Long[] values = numbers(column, rows);
+        if (values == null) {
+            return null;
+        }
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        int count = 0;
+        for (Long value : values) {
+            if (value != null) {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                count++;
+            }
+        }
+        long[] offsets = new long[count];
+        int i = 0;
+        for (Long value : values) {
+            if (value != null) {
+                offsets[i++] = value - min;
+            }
+        }
+        int width = 64 - Long.numberOfLeadingZeros(max - min);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(presence(values));
+        out.write(width);
+        out.write(pack(offsets, width));
+        return new Section(out.toByteArray(), min, max);
+    }
+    
+    private static Section address(SegmentColumn column, List<IpfixRecord> rows) throws IOException {
+        long[][] values = new long[rows.size()][];
+        boolean any = false;
+        for (int row = 0; row < rows.size(); row++) {
+            values[row] = IpAddresses.parseIPv6(column.text(rows.get(row)));
+            any |= values[row] != null;
+        }
+        if (!any) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(presence(values));
+        long min = -1L;
+        long max = 0;
+        for (long[] value : values) {
+            if (value != null) {
+                out.writeLong(value[0]);
+                out.writeLong(value[1]);
+                min = Long.compareUnsigned(value[0], min) < 0 ? value[0] : min;
+                max = Long.compareUnsigned(value[0], max) > 0 ? value[0] : max;
+            }
+        }
+        out.flush();
+        return new Section(bytes.toByteArray(), min, max);
+    }
+    
+    private static Section dictionary(SegmentColumn column, List<IpfixRecord> rows) throws IOException {
+        String[] values = texts(column, rows);
+        if (values == null) {
+            return null;
+        }
+        TreeSet<String> distinct = new TreeSet<>();
+        for (String value : values) {
+            if (value != null) {
+                distinct.add(value);
+            }
+        }
+        Map<String, Integer> codes = new HashMap<>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(presence(values));
+        writeVarLong(out, distinct.size());
+        for (String value : distinct) {
+            codes.put(value, codes.size());
+            writeText(out, value);
+        }
+        long[] packed = Arrays.stream(values).filter(Objects::nonNull).mapToLong(codes::get).toArray();
+        int width = 64 - Long.numberOfLeadingZeros(distinct.size() - 1);
+        out.write(width);
+        out.write(pack(packed, width));
+        return new Section(out.toByteArray(), 0, distinct.size() - 1);
+    }
+    
+    private static Section frontCoded(SegmentColumn column, List<IpfixRecord> rows) throws IOException {
+        String[] values = texts(column, rows);
+        if (values == null) {
+            return null;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(presence(values));
+        String previous = "";
+        for (String value : values) {
+            if (value != null) {
+                int shared = 0;
+                int max = Math.min(previous.length(), value.length());
+                while (shared < max && previous.charAt(shared) == value.charAt(shared)) {
+                    shared++;
+                }
+                if (shared > 0 && Character.isHighSurrogate(value.charAt(shared - 1))) {
+                    shared--;
+                }
+                writeVarLong(out, shared);
+                writeText(out, value.substring(shared));
+                previous = value;
+            }
+        }
+        return new Section(out.toByteArray(), 0, 0);
+    }
+    
+    /**
+     * Each row's elements that no column took, as JSON, deflated as one block
+     */
+    private static Section remainder(List<IpfixRecord> rows, ObjectMapper mapper) throws IOException {
+        byte[][] values = new byte[rows.size()][];
+        boolean any = false;
+        for (int row = 0; row < rows.size(); row++) {
+            IpfixRecord record = rows.get(row);
+            ObjectNode tree = mapper.valueToTree(record);
+            for (SegmentColumn column : SegmentColumn.values()) {
+                if (column.path() != null && inColumn(column, record)) {
+                    remove(tree, column.path());
+                }
+            }
+            if (!tree.isEmpty()) {
+                values[row] = mapper.writeValueAsBytes(tree);
+                any = true;
+            }
+        }
+        if (!any) {
+            return null;
+        }
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        for (byte[] value : values) {
+            if (value != null) {
+                writeVarLong(raw, value.length);
+                raw.write(value);
+            }
+        }
+        byte[] input = raw.toByteArray();
+        Deflater deflater = new Deflater(DEFLATE_LEVEL);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            out.write(presence(values));
+            writeVarLong(out, input.length);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+        } finally {
+            deflater.end();
+        }
+        return new Section(out.toByteArray(), 0, 0);
+    }
+    
+    private static Section bloom(SegmentColumn column, List<IpfixRecord> rows) throws IOException {
+        List<Long> hashes = new ArrayList<>();
+        for (IpfixRecord record : rows) {
+            switch (column) {
+                case SOURCE_BLOOM -> addressHashes(hashes, record.getSourceIPv4Address(), record.getSourceIPv6Address());
+                case DESTINATION_BLOOM -> addressHashes(hashes, record.getDestinationIPv4Address(),
+                        record.getDestinationIPv6Address());
+                case ID_BLOOM -> {
+                    if (record.getId() != null) {
+                        hashes.add(textHash(record.getId()));
+                    }
+                }
+                default -> throw new IllegalStateException("Not a bloom filter column: " + column);
+            }
+        }
+        if (hashes.isEmpty()) {
+            return null;
+        }
+        long bits = Math.max(64, ((long) hashes.size() * BLOOM_BITS_PER_KEY + 63) / 64 * 64);
+        long[] words = new long[(int) (bits / 64)];
+        for (long hash : hashes) {
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                long bit = bloomBit(hash, i, bits);
+                words[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(BLOOM_HASHES);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+        out.flush();
+        return new Section(bytes.toByteArray(), 0, 0);
+    }
+    
+    private static void addressHashes(List<Long> hashes, String ipv4, String ipv6) {
+        long v4 = IpAddresses.parseIPv4(ipv4);
+        if (v4 != IpAddresses.INVALID_IPV4) {
+            hashes.add(addressHash(false, 0, v4));
+        }
+        long[] v6 = ipv6 != null ? IpAddresses.parseIPv6(ipv6) : null;
+        if (v6 != null) {
+            hashes.add(addressHash(true, v6[0], v6[1]));
+        }
+    }
+    
+    private static boolean inColumn(SegmentColumn column, IpfixRecord record) {
+        boolean present = switch (column.encoding()) {
+            case DELTA, FRAME_OF_REFERENCE -> column.number(record) != null;
+            case ADDRESS -> IpAddresses.parseIPv6(column.text(record)) != null;
+            default -> column.text(record) != null;
+        };
+        return present && column.exact(record);
+    }
+    
+    /**
+     * Removes a top-level element or an element of a nested object, dropping the object once it is empty
+     */
+    private static void remove(ObjectNode tree, String path) {
+        int dot = path.indexOf('.');
+        if (dot < 0) {
+            tree.remove(path);
+            return;
+        }
+        String parent = path.substring(0, dot);
+        JsonNode nested = tree.get(parent);
+        if (nested instanceof ObjectNode object) {
+            object.remove(path.substring(dot + 1));
+            if (object.isEmpty()) {
+                tree.remove(parent);
+            }
+        }
+    }
+    
+    private static Long[] numbers(SegmentColumn column, List<IpfixRecord> rows) {
+        Long[] values = new Long[rows.size()];
+        boolean any = false;
+        for (int row = 0; row < values.length; row++) {
+            values[row] = column.number(rows.get(row));
+            any |= values[row] != null;
+        }
+        return any ? values : null;
+    }
+    
+    private static String[] texts(SegmentColumn column, List<IpfixRecord> rows) {
+        String[] values = new String[rows.size()];
+        boolean any = false;
+        for (int row = 0; row < values.length; row++) {
+            values[row] = column.text(rows.get(row));
+            any |= values[row] != null;
+        }
+        return any ? values : null;
+    }
+    
+    private static byte[] presence(Object[] values) {
+        byte[] bitmap = new byte[(values.length + 7) / 8];
+        for (int row = 0; row < values.length; row++) {
+            if (values[row] != null) {
+                bitmap[row >>> 3] |= (byte) (1 << (row & 7));
+            }
+        }
+        return bitmap;
+    }
+    
+    /**
+     * Packs values of {@code width} bits each, lowest bit first
+     */
+    private static byte[] pack(long[] values, int width) {
+        byte[] packed = new byte[(int) (((long) values.length * width + 7) / 8)];
+        long position = 0;
+        for (long value : values) {
+            int left = width;
+            while (left > 0) {
+                int index = (int) (position >>> 3);
+                int shift = (int) (position & 7);
+                int take = Math.min(8 - shift, left);
+                packed[index] |= (byte) ((value & ((1L << take) - 1)) << shift);
+                value >>>= take;
+                left -= take;
+                position += take;
+            }
+        }
+        return packed;
+    }
+    
+    private static void writeText(ByteArrayOutputStream out, String value) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, utf8.length);
+        out.write(utf8, 0, utf8.length);
+    }
+    
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+    
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
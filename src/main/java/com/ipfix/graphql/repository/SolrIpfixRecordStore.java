@@ -0,0 +1,361 @@
+package com.ipfix.graphql.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ipfix.graphql.config.IpfixBulkWriteProperties;
+import com.ipfix.graphql.config.IpfixSolrProperties;
+import com.ipfix.graphql.model.AddressDirection;
+import com.ipfix.graphql.model.FlowAggregate;
+import com.ipfix.graphql.model.FlowGroupBy;
+import com.ipfix.graphql.model.FlowMetric;
+import com.ipfix.graphql.model.FlowTimeBucket;
+import com.ipfix.graphql.model.IpfixRecord;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.json.JsonFacetMap;
+import org.apache.solr.client.solrj.request.json.JsonQueryRequest;
+import org.apache.solr.client.solrj.request.json.RangeFacetMap;
+import org.apache.solr.client.solrj.request.json.TermsFacetMap;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.client.solrj.response.json.BucketBasedJsonFacet;
+import org.apache.solr.client.solrj.response.json.BucketJsonFacet;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CursorMarkParams;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Store backed by a Solr collection ({@code ipfix.storage.layout=solr}) laid out as {@link FlowDocument}s.
+ * Saves go through a {@link BulkWriter} and become visible within {@code commitWithin}; {@link #flush()}
+ * makes everything saved so far visible. Every query runs in Solr: filters are filter queries on the typed
+ * fields, pages are keyset conditions on (timestamp, id) read with cursor marks, and aggregations are JSON
+ * facets, so only the returned records cross the wire. Facet sums come back as doubles, exact up to 2^53.
+ */
+@Slf4j
+public class SolrIpfixRecordStore implements IpfixRecordStore, AutoCloseable {
+    
+    private static final int PAGE_ROWS = 1000;
+    private static final String NEWEST_FIRST = FlowDocument.TIMESTAMP + " desc," + FlowDocument.ID + " desc";
+    private static final String OLDEST_FIRST = FlowDocument.TIMESTAMP + " asc," + FlowDocument.ID + " asc";
+    
+    private final SolrClient client;
+    private final String collection;
+    private final int commitWithin;
+    private final ObjectMapper mapper = SegmentWriter.newMapper();
+    private final BulkWriter writer;
+    
+    public SolrIpfixRecordStore(SolrClient client, IpfixSolrProperties properties, IpfixBulkWriteProperties bulk) {
+        this.client = client;
+        this.collection = properties.getCollection();
+        this.commitWithin = (int) Math.min(Integer.MAX_VALUE, properties.getCommitWithin().toMillis());
+        this.writer = new BulkWriter("solr", bulk, this::write);
+    }
+    
+    @Override
+    public IpfixRecord save(IpfixRecord record) {
+        return saveAll(List.of(record)).get(0);
+    }
+    
+    @Override
+    public List<IpfixRecord> saveAll(List<IpfixRecord> batch) {
+        RecordIds.prepare(batch);
+        writer.add(batch);
+        return batch;
+    }
+    
+    @Override
+    public Optional<IpfixRecord> findById(String id) {
+        SolrDocument document = call(() -> client.getById(collection, id));
+        return Optional.ofNullable(document).map(this::record);
+    }
+    
+    @Override
+    public List<IpfixRecord> findAll() {
+        return search(List.of(), null, Integer.MAX_VALUE, OLDEST_FIRST);
+    }
+    
+    @Override
+    public List<IpfixRecord> findAll(int limit, int offset) {
+        SolrQuery query = new SolrQuery("*:*").setStart(offset).setRows(limit).setFields(FlowDocument.RECORD);
+        query.set("sort", NEWEST_FIRST);
+        return call(() -> client.query(collection, query)).getResults().stream().map(this::record)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+    
+    @Override
+    public List<IpfixRecord> findBySourceIp(String sourceIp) {
+        return findBySourceIp(sourceIp, null, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByDestinationIp(String destinationIp) {
+        return findByDestinationIp(destinationIp, null, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByProtocol(Integer protocolId) {
+        return findByProtocol(protocolId, null, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByTimeRange(Instant start, Instant end) {
+        return findByTimeRange(start, end, null, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public List<IpfixRecord> findPage(RecordKey after, int limit) {
+        return search(List.of(), after, limit, NEWEST_FIRST);
+    }
+    
+    @Override
+    public List<IpfixRecord> findBySourceIp(String sourceIp, RecordKey after, int limit) {
+        IpNetwork host = IpNetwork.host(sourceIp);
+        return host == null ? new ArrayList<>() : search(List.of(all(FlowDocument.host(host, true))), after, limit,
+                NEWEST_FIRST);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByDestinationIp(String destinationIp, RecordKey after, int limit) {
+        IpNetwork host = IpNetwork.host(destinationIp);
+        return host == null ? new ArrayList<>() : search(List.of(all(FlowDocument.host(host, false))), after, limit,
+                NEWEST_FIRST);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByProtocol(Integer protocolId, RecordKey after, int limit) {
+        String filter = protocolId == null
+                ? "-" + FlowDocument.PROTOCOL + ":[* TO *]"
+                : FlowDocument.PROTOCOL + ":" + protocolId;
+        return search(List.of(filter), after, limit, NEWEST_FIRST);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByTimeRange(Instant start, Instant end, RecordKey after, int limit) {
+        if (end.isBefore(start)) {
+            return new ArrayList<>();
+        }
+        return search(List.of(timeRange(start, end)), after, limit, NEWEST_FIRST);
+    }
+    
+    @Override
+    public List<IpfixRecord> findBySubnet(IpNetwork subnet, AddressDirection direction, RecordKey after, int limit) {
+        String source = all(FlowDocument.subnet(subnet, true));
+        String destination = all(FlowDocument.subnet(subnet, false));
+        String filter = switch (direction) {
+            case SOURCE -> source;
+            case DESTINATION -> destination;
+            case ANY -> "(" + source + ") OR (" + destination + ")";
+        };
+        return search(List.of(filter), after, limit, NEWEST_FIRST);
+    }
+    
+    /**
+     * Terms facet on the group field, ranked by the metric in Solr
+     */
+    @Override
+    public List<FlowAggregate> aggregate(FlowGroupBy groupBy, FlowMetric metric, int limit, Instant start, Instant end) {
+        if (limit <= 0 || (start != null && end != null && end.isBefore(start))) {
+            return new ArrayList<>();
+        }
+        TermsFacetMap groups = new TermsFacetMap(FlowDocument.groupField(groupBy)).setLimit(limit)
+                .setSort(metricName(metric) + " desc");
+        withTotals(groups);
+        JsonQueryRequest request = new JsonQueryRequest().setQuery("*:*").setLimit(0)
+                .withFilter(timeRange(start, end)).withFacet("groups", groups);
+        FlowAggregator totals = new FlowAggregator();
+        for (BucketJsonFacet bucket : buckets(request, "groups")) {
+            totals.addTotals(bucket.getVal().toString(), sum(bucket, "bytes"), sum(bucket, "packets"),
+                    bucket.getCount());
+        }
+        return totals.top(metric, limit, Long::toString);
+    }
+    
+    /**
+     * Range facet over the timestamp field with one bucket per interval
+     */
+    @Override
+    public List<FlowTimeBucket> timeSeries(Instant start, Instant end, Duration interval) {
+        int bucketCount = FlowAggregator.bucketCount(start, end, interval);
+        long intervalNanos = FlowAggregator.intervalNanos(interval);
+        long from = FlowDocument.nanos(start);
+        RangeFacetMap buckets = new RangeFacetMap(FlowDocument.TIMESTAMP, from,
+                from + intervalNanos * bucketCount, intervalNanos);
+        withTotals(buckets);
+        JsonQueryRequest request = new JsonQueryRequest().setQuery("*:*").setLimit(0)
+                .withFilter(timeRange(start, end)).withFacet("buckets", buckets);
+        FlowAggregator totals = new FlowAggregator();
+        for (BucketJsonFacet bucket : buckets(request, "buckets")) {
+            if (bucket.getCount() > 0) {
+                long bucketStart = ((Number) bucket.getVal()).longValue();
+                totals.addTotals((bucketStart - from) / intervalNanos, sum(bucket, "bytes"), sum(bucket, "packets"),
+                        bucket.getCount());
+            }
+        }
+        return totals.series(start, interval, bucketCount);
+    }
+    
+    @Override
+    public Optional<Instant> oldestTimestamp() {
+        SolrQuery query = new SolrQuery("*:*").setRows(1).setFields(FlowDocument.TIMESTAMP);
+        query.set("sort", OLDEST_FIRST);
+        List<SolrDocument> oldest = call(() -> client.query(collection, query)).getResults();
+        return oldest.isEmpty() ? Optional.empty()
+                : Optional.of(FlowDocument.instant((Long) oldest.get(0).getFirstValue(FlowDocument.TIMESTAMP)));
+    }
+    
+    /**
+     * Deletes a record after writing out pending saves, so a queued save cannot bring it back
+     */
+    @Override
+    public boolean deleteById(String id) {
+        writer.flush();
+        if (findById(id).isEmpty()) {
+            return false;
+        }
+        call(() -> client.deleteById(collection, id, commitWithin));
+        return true;
+    }
+    
+    @Override
+    public void deleteAll() {
+        writer.flush();
+        call(() -> client.deleteByQuery(collection, "*:*"));
+        call(() -> client.commit(collection));
+    }
+    
+    /**
+     * Records visible to queries
+     */
+    @Override
+    public long count() {
+        SolrQuery query = new SolrQuery("*:*").setRows(0);
+        return call(() -> client.query(collection, query)).getResults().getNumFound();
+    }
+    
+    /**
+     * Writes out pending saves and commits, making them visible to queries
+     */
+    public void flush() {
+        writer.flush();
+        call(() -> client.commit(collection, true, true, true));
+    }
+    
+    /**
+     * Records dropped after their bulk request ran out of retries
+     */
+    public long failedRecords() {
+        return writer.failedRecords();
+    }
+    
+    @Override
+    public void close() {
+        writer.close();
+    }
+    
+    private void write(List<IpfixRecord> batch) throws SolrServerException, IOException {
+        List<SolrInputDocument> documents = new ArrayList<>(batch.size());
+        for (IpfixRecord record : batch) {
+            SolrInputDocument document = new SolrInputDocument();
+            FlowDocument.fields(record, mapper).forEach(document::addField);
+            documents.add(document);
+        }
+        client.add(collection, documents, commitWithin);
+    }
+    
+    /**
+     * Reads matches in {@code sort} order with cursor marks, starting past the keyset bound {@code after}
+     */
+    private List<IpfixRecord> search(List<String> filters, RecordKey after, int limit, String sort) {
+        List<IpfixRecord> page = new ArrayList<>(Math.min(limit, 1024));
+        if (limit <= 0) {
+            return page;
+        }
+        SolrQuery query = new SolrQuery("*:*").setFields(FlowDocument.RECORD);
+        query.set("sort", sort);
+        filters.forEach(query::addFilterQuery);
+        if (after != null) {
+            query.addFilterQuery(olderThan(after));
+        }
+        String cursor = CursorMarkParams.CURSOR_MARK_START;
+        while (page.size() < limit) {
+            query.setRows(Math.min(PAGE_ROWS, limit - page.size()));
+            query.set(CursorMarkParams.CURSOR_MARK_PARAM, cursor);
+            QueryResponse response = call(() -> client.query(collection, query));
+            response.getResults().forEach(document -> page.add(record(document)));
+            if (cursor.equals(response.getNextCursorMark())) {
+                break;
+            }
+            cursor = response.getNextCursorMark();
+        }
+        return page;
+    }
+    
+    private static String olderThan(RecordKey after) {
+        long timestamp = FlowDocument.nanos(after.timestamp());
+        return FlowDocument.TIMESTAMP + ":{* TO " + timestamp + "} OR (+" + FlowDocument.TIMESTAMP + ":" + timestamp
+                + " +" + FlowDocument.ID + ":{* TO " + ClientUtils.escapeQueryChars(after.id()) + "})";
+    }
+    
+    /**
+     * Filter on records timestamped within [start, end], either bound open when null
+     */
+    private static String timeRange(Instant start, Instant end) {
+        return FlowDocument.TIMESTAMP + ":[" + (start == null ? "*" : FlowDocument.nanos(start)) + " TO "
+                + (end == null ? "*" : FlowDocument.nanos(end)) + "]";
+    }
+    
+    private static String all(List<FlowDocument.Range> ranges) {
+        return ranges.stream().map(range -> "+" + range.field() + ":[" + range.from() + " TO " + range.to() + "]")
+                .collect(Collectors.joining(" "));
+    }
+    
+    private static void withTotals(JsonFacetMap<?> facet) {
+        facet.withStatSubFacet("bytes", "sum(" + FlowDocument.OCTETS + ")");
+        facet.withStatSubFacet("packets", "sum(" + FlowDocument.PACKETS + ")");
+    }
+    
+    private List<BucketJsonFacet> buckets(JsonQueryRequest request, String facet) {
+        QueryResponse response = call(() -> request.process(client, collection));
+        BucketBasedJsonFacet buckets = response.getJsonFacetingResponse().getBucketBasedFacets(facet);
+        return buckets == null ? List.of() : buckets.getBuckets();
+    }
+    
+    private static long sum(BucketJsonFacet bucket, String name) {
+        Object value = bucket.getStatValue(name);
+        return value instanceof Number number ? Math.round(number.doubleValue()) : 0;
+    }
+    
+    private static String metricName(FlowMetric metric) {
+        return switch (metric) {
+            case BYTES -> "bytes";
+            case PACKETS -> "packets";
+            case FLOWS -> "count";
+        };
+    }
+    
+    private IpfixRecord record(SolrDocument document) {
+        return FlowDocument.record((String) document.getFirstValue(FlowDocument.RECORD), mapper);
+    }
+    
+    private <T> T call(SolrCall<T> call) {
+        try {
+            return call.run();
+        } catch (SolrServerException | IOException e) {
+            throw new IllegalStateException("Solr request to collection " + collection + " failed", e);
+        }
+    }
+    
+    @FunctionalInterface
+    private interface SolrCall<T> {
+        T run() throws SolrServerException, IOException;
+    }
+}
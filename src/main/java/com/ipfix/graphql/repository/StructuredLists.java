@@ -0,0 +1,90 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.model.BasicListElement;
+import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.model.SubTemplateListElement;
+import com.ipfix.graphql.model.SubTemplateMultiListElement;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact storage of a record's structured data (RFC 6313 lists), applied by the in-memory stores before they
+ * keep a record: basic list values of integer and IPv4 elements go into {@link PackedValues}, sub-template
+ * list entries into {@link PackedEntries}, and template definitions, semantics and names are shared between
+ * records. Lists keep their model types, so resolvers and serializers read them as before.
+ */
+public final class StructuredLists {
+    
+    // Distinct template definitions shared; further ones stay with their lists
+    static final int MAX_DEFINITIONS = 4096;
+    
+    private static final Map<Map<String, String>, Map<String, String>> DEFINITIONS = new ConcurrentHashMap<>();
+    
+    private StructuredLists() {
+    }
+    
+    /**
+     * Packs the lists of a record in place
+     */
+    public static void pack(IpfixRecord record) {
+        if (record.getBasicLists() != null) {
+            for (BasicListElement list : record.getBasicLists()) {
+                list.setSemantic(FlowStrings.canonical(list.getSemantic()));
+                list.setInformationElementName(FlowStrings.canonical(list.getInformationElementName()));
+                list.setDataType(FlowStrings.canonical(list.getDataType()));
+                if (list.getValues() != null) {
+                    list.setValues(PackedValues.pack(list.getDataType(), list.getValues()));
+                }
+            }
+        }
+        packLists(record.getSubTemplateLists());
+        if (record.getSubTemplateMultiLists() != null) {
+            for (SubTemplateMultiListElement multiList : record.getSubTemplateMultiLists()) {
+                multiList.setSemantic(FlowStrings.canonical(multiList.getSemantic()));
+                packLists(multiList.getSubTemplateLists());
+            }
+        }
+    }
+    
+    /**
+     * Whether {@code definition} is a shared template definition, so heap estimates count it once rather
+     * than per record
+     */
+    static boolean isShared(Map<?, ?> definition) {
+        return DEFINITIONS.get(definition) == definition;
+    }
+    
+    private static void packLists(List<SubTemplateListElement> lists) {
+        if (lists == null) {
+            return;
+        }
+        for (SubTemplateListElement list : lists) {
+            list.setSemantic(FlowStrings.canonical(list.getSemantic()));
+            list.setTemplateName(FlowStrings.canonical(list.getTemplateName()));
+            if (list.getTemplateDefinition() != null) {
+                list.setTemplateDefinition(definition(list.getTemplateDefinition()));
+            }
+            if (list.getEntries() != null) {
+                list.setEntries(PackedEntries.pack(list.getEntries()));
+            }
+        }
+    }
+    
+    /**
+     * Shared read-only copy of a template definition, in order, with shared field and type names
+     */
+    private static Map<String, String> definition(Map<String, String> definition) {
+        Map<String, String> shared = DEFINITIONS.get(definition);
+        if (shared != null) {
+            return shared;
+        }
+        Map<String, String> copy = new LinkedHashMap<>(definition.size() * 4 / 3 + 1);
+        definition.forEach((name, type) -> copy.put(FlowStrings.canonical(name), FlowStrings.canonical(type)));
+        Map<String, String> readOnly = Collections.unmodifiableMap(copy);
+        return DEFINITIONS.size() < MAX_DEFINITIONS ? DEFINITIONS.computeIfAbsent(readOnly, added -> added) : readOnly;
+    }
+}
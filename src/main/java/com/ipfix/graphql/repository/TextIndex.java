@@ -0,0 +1,144 @@
+package com.ipfix.graphql.repository;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.UnaryOperator;
+
+/**
+ * Inverted index of one text element. Every distinct value, lower-cased, maps to a bucket of the records
+ * holding it; the values are also kept sorted as they are and reversed, and listed under each of their
+ * tokens, so a {@link TextSearch} resolves to the buckets of its matching values with one range scan
+ * (prefix, suffix, domain) or one token lookup (term) instead of visiting records. Flows repeat a small set
+ * of hosts, names and agents, so the dictionary stays far smaller than the store. Buckets are created and
+ * dropped under the hash map's per-key lock, which also serializes updates of the value sets.
+ *
+ * @param <B> bucket of the records holding one value, as the store keeps them
+ */
+final class TextIndex<B> {
+    
+    private final Map<String, B> buckets = new ConcurrentHashMap<>();
+    private final NavigableSet<String> values = new ConcurrentSkipListSet<>();
+    private final NavigableSet<String> reversed = new ConcurrentSkipListSet<>();
+    private final Map<String, Set<String>> tokens = new ConcurrentHashMap<>();
+    
+    /**
+     * Replaces the bucket of {@code value} with {@code change} applied to it; a new value starts from null
+     * and a null result drops the value
+     */
+    void update(String value, UnaryOperator<B> change) {
+        if (value == null) {
+            return;
+        }
+        buckets.compute(TextSearch.normalize(value), (key, bucket) -> {
+            B updated = change.apply(bucket);
+            if (bucket == null && updated != null) {
+                register(key);
+            } else if (bucket != null && updated == null) {
+                unregister(key);
+            }
+            return updated;
+        });
+    }
+    
+    /**
+     * Buckets of every value matching {@code search}
+     */
+    List<B> lookup(TextSearch search) {
+        List<B> found = new ArrayList<>();
+        switch (search.kind()) {
+            case PREFIX -> collect(values, search.text(), false, found);
+            case SUFFIX -> collect(reversed, reverse(search.text()), true, found);
+            case DOMAIN -> {
+                collect(reversed, reverse(search.text()), true, found);
+                add(search.text().substring(1), found);
+            }
+            case TERM -> {
+                Set<String> candidates = null;
+                for (String token : search.tokens()) {
+                    Set<String> holding = tokens.get(token);
+                    if (holding == null) {
+                        return found;
+                    }
+                    if (candidates == null || holding.size() < candidates.size()) {
+                        candidates = holding;
+                    }
+                }
+                boolean single = search.tokens().size() == 1;
+                for (String value : candidates) {
+                    if (single || search.matchesNormalized(value)) {
+                        add(value, found);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * Distinct values indexed
+     */
+    int size() {
+        return buckets.size();
+    }
+    
+    void clear() {
+        buckets.clear();
+        values.clear();
+        reversed.clear();
+        tokens.clear();
+    }
+    
+    private void register(String value) {
+        values.add(value);
+        reversed.add(reverse(value));
+        for (String token : new HashSet<>(TextSearch.tokenize(value))) {
+            tokens.compute(token, (t, holding) -> {
+                if (holding == null) {
+                    holding = ConcurrentHashMap.newKeySet();
+                }
+                holding.add(value);
+                return holding;
+            });
+        }
+    }
+    
+    private void unregister(String value) {
+        values.remove(value);
+        reversed.remove(reverse(value));
+        for (String token : new HashSet<>(TextSearch.tokenize(value))) {
+            tokens.computeIfPresent(token, (t, holding) -> {
+                holding.remove(value);
+                return holding.isEmpty() ? null : holding;
+            });
+        }
+    }
+    
+    /**
+     * Adds the buckets of the keys of {@code sorted} starting with {@code start}
+     */
+    private void collect(NavigableSet<String> sorted, String start, boolean reversedKeys, List<B> found) {
+        for (String key : sorted.tailSet(start, true)) {
+            if (!key.startsWith(start)) {
+                break;
+            }
+            add(reversedKeys ? reverse(key) : key, found);
+        }
+    }
+    
+    private void add(String value, List<B> found) {
+        B bucket = buckets.get(value);
+        if (bucket != null) {
+            found.add(bucket);
+        }
+    }
+    
+    private static String reverse(String value) {
+        return new StringBuilder(value).reverse().toString();
+    }
+}
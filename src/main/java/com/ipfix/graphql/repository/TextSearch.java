@@ -0,0 +1,103 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.model.TextField;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A parsed text search pattern, matched case-insensitively against whole element values:
+ * <ul>
+ * <li>{@code *.example.com}: the domain and every name under it</li>
+ * <li>{@code *ample.com}: values ending with the text</li>
+ * <li>{@code api.*}: values starting with the text</li>
+ * <li>{@code login}, {@code example.com}: values containing the term, or the terms in sequence, as whole
+ * tokens (runs of letters and digits)</li>
+ * </ul>
+ */
+public record TextSearch(Kind kind, String text, List<String> tokens) {
+    
+    public enum Kind {
+        TERM, PREFIX, SUFFIX, DOMAIN
+    }
+    
+    /**
+     * @throws IllegalArgumentException when the pattern is blank, has no token to search for or a wildcard
+     * anywhere but at one end
+     */
+    public static TextSearch parse(String pattern) {
+        String text = pattern == null ? "" : pattern.trim().toLowerCase(Locale.ROOT);
+        boolean leading = text.startsWith("*");
+        boolean trailing = text.length() > 1 && text.endsWith("*");
+        String body = text.substring(leading ? 1 : 0, text.length() - (trailing ? 1 : 0));
+        if (body.isEmpty() || body.contains("*") || (leading && trailing)) {
+            throw new IllegalArgumentException("Invalid text search: '" + pattern
+                    + "'; use a term, prefix*, *suffix or *.domain");
+        }
+        if (leading) {
+            return new TextSearch(body.startsWith(".") && body.length() > 1 ? Kind.DOMAIN : Kind.SUFFIX,
+                    body, List.of());
+        }
+        if (trailing) {
+            return new TextSearch(Kind.PREFIX, body, List.of());
+        }
+        List<String> tokens = tokenize(body);
+        if (tokens.isEmpty()) {
+            throw new IllegalArgumentException("Text search '" + pattern + "' has no letters or digits");
+        }
+        return new TextSearch(Kind.TERM, body, List.copyOf(tokens));
+    }
+    
+    /**
+     * Whether a value, in any case, matches
+     */
+    public boolean matches(String value) {
+        return value != null && matchesNormalized(normalize(value));
+    }
+    
+    /**
+     * Whether any of {@code fields} of the record matches
+     */
+    public boolean matchesAny(IpfixRecord record, Iterable<TextField> fields) {
+        for (TextField field : fields) {
+            if (matches((String) FlowElement.of(field).read(record))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    boolean matchesNormalized(String value) {
+        return switch (kind) {
+            case PREFIX -> value.startsWith(text);
+            case SUFFIX -> value.endsWith(text);
+            case DOMAIN -> value.endsWith(text) || value.equals(text.substring(1));
+            case TERM -> Collections.indexOfSubList(tokenize(value), tokens) >= 0;
+        };
+    }
+    
+    static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * Runs of letters and digits of a normalized value, in order
+     */
+    static List<String> tokenize(String value) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= value.length(); i++) {
+            boolean word = i < value.length() && Character.isLetterOrDigit(value.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                tokens.add(value.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
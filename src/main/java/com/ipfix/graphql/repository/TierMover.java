@@ -0,0 +1,113 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.config.IpfixRetentionProperties;
+import com.ipfix.graphql.model.IpfixRecord;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Background lifecycle engine of the tiered store. Each run seals every time window of the hot tier that
+ * ended before the age cutoff ({@code hotRetention}) into a segment, and further windows while the hot tier
+ * held more than {@code maxHotRecords} when the run began, then expires segments by age and total size.
+ * Windows are aligned to multiples of {@code segmentWindow} since the epoch and are moved oldest first, one
+ * window in memory at a time. Runs are serialized; ingest is never blocked.
+ */
+@Slf4j
+public class TierMover {
+    
+    private final IpfixRecordStore hot;
+    private final SegmentTier segments;
+    private final IpfixRetentionProperties properties;
+    private final long windowNanos;
+    
+    public TierMover(IpfixRecordStore hot, SegmentTier segments, IpfixRetentionProperties properties) {
+        this.hot = hot;
+        this.segments = segments;
+        this.properties = properties;
+        this.windowNanos = FlowAggregator.intervalNanos(properties.getSegmentWindow());
+        if (windowNanos <= 0) {
+            throw new IllegalArgumentException("ipfix.retention.segment-window must be positive");
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${ipfix.retention.check-interval-millis:1000}")
+    public void run() {
+        try {
+            runOnce(Instant.now());
+        } catch (RuntimeException e) {
+            log.warn("Tier mover run failed", e);
+        }
+    }
+    
+    /**
+     * Seals and expires as of {@code now}
+     *
+     * @return the number of records moved to segments
+     */
+    public synchronized long runOnce(Instant now) {
+        long moved = seal(cutoff(now), hot.count() - properties.getMaxHotRecords());
+        int expired = segments.expire(now.minus(properties.getSegmentRetention()),
+                properties.getMaxSegmentBytes().toBytes());
+        if (moved > 0 || expired > 0) {
+            log.info("Moved {} records to segments, expired {} segments; {} hot, {} on disk ({} bytes)",
+                    moved, expired, hot.count(), segments.count(), segments.sizeBytes());
+        }
+        return moved;
+    }
+    
+    /**
+     * End of the last window to seal by age: windows ending at or before it leave memory
+     */
+    private Instant cutoff(Instant now) {
+        return windowStart(now.minus(properties.getHotRetention()));
+    }
+    
+    /**
+     * Seals the windows before {@code cutoff}, and further windows until {@code excess} records have left
+     * memory; the window holding the last record that did not fit goes whole. Stops at a window none of
+     * whose records could be deleted from the hot tier.
+     *
+     * @return the number of records deleted from the hot tier
+     */
+    private long seal(Instant cutoff, long excess) {
+        long moved = 0;
+        for (Optional<Instant> oldest = hot.oldestTimestamp();
+             oldest.isPresent() && (oldest.get().isBefore(cutoff) || moved < excess);
+             oldest = hot.oldestTimestamp()) {
+            Instant start = windowStart(oldest.get());
+            Instant end = start.plusNanos(windowNanos - 1);
+            List<IpfixRecord> window = new ArrayList<>(hot.findByTimeRange(start, end));
+            if (window.isEmpty()) {
+                break;
+            }
+            Collections.reverse(window);
+            long[] deleted = new long[1];
+            segments.seal(window, () -> {
+                for (IpfixRecord record : window) {
+                    if (hot.deleteById(record.getId())) {
+                        deleted[0]++;
+                    }
+                }
+            });
+            if (deleted[0] == 0) {
+                // Sealing the same window again would only write it to disk again
+                log.warn("Sealed {} records from {} but none left the hot tier; stopping this run",
+                        window.size(), start);
+                break;
+            }
+            moved += deleted[0];
+        }
+        return moved;
+    }
+    
+    private Instant windowStart(Instant instant) {
+        long nanos = FlowAggregator.nanosBetween(Instant.EPOCH, instant);
+        return Instant.EPOCH.plusNanos(Math.floorDiv(nanos, windowNanos) * windowNanos);
+    }
+}
@@ -0,0 +1,289 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.model.AddressDirection;
+import com.ipfix.graphql.model.FlowAggregate;
+import com.ipfix.graphql.model.FlowGroupBy;
+import com.ipfix.graphql.model.FlowMetric;
+import com.ipfix.graphql.model.FlowTimeBucket;
+import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.model.TextField;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Store spanning the in-memory hot tier and the on-disk {@link SegmentTier} ({@code ipfix.retention.enabled=true}).
+ * Writes go to the hot tier, from where the {@link TierMover} seals aged windows into segments. Reads ask
+ * both tiers for a newest-first page and merge them, so callers see one store; a record caught between
+ * being sealed and leaving memory is returned once. Aggregations and counts sum both tiers, skipping the
+ * hot records of the window being sealed, which its segment already holds.
+ */
+public class TieredIpfixRecordStore implements IpfixRecordStore {
+    
+    private final IpfixRecordStore hot;
+    private final SegmentTier segments;
+    private final RecordProjection projection;
+    
+    public TieredIpfixRecordStore(IpfixRecordStore hot, SegmentTier segments) {
+        this(hot, segments, RecordProjection.ALL);
+    }
+    
+    private TieredIpfixRecordStore(IpfixRecordStore hot, SegmentTier segments, RecordProjection projection) {
+        this.hot = hot;
+        this.segments = segments;
+        this.projection = projection;
+    }
+    
+    /**
+     * The same tiers, rebuilding segment records with only the projected fields
+     */
+    @Override
+    public IpfixRecordStore reading(RecordProjection projection) {
+        return projection.equals(this.projection) ? this
+                : new TieredIpfixRecordStore(hot.reading(projection), segments, projection);
+    }
+    
+    @Override
+    public IpfixRecord save(IpfixRecord record) {
+        return hot.save(record);
+    }
+    
+    @Override
+    public List<IpfixRecord> saveAll(List<IpfixRecord> batch) {
+        return hot.saveAll(batch);
+    }
+    
+    @Override
+    public Optional<IpfixRecord> findById(String id) {
+        Optional<IpfixRecord> record = hot.findById(id);
+        return record.isPresent() ? record : segments.findById(id);
+    }
+    
+    @Override
+    public List<IpfixRecord> findAll() {
+        List<IpfixRecord> all = merge(hot.findAll(Integer.MAX_VALUE, 0),
+                segments.scan(null, null, null, Integer.MAX_VALUE, SegmentCondition.ALL, projection),
+                Integer.MAX_VALUE);
+        Collections.reverse(all);
+        return all;
+    }
+    
+    @Override
+    public List<IpfixRecord> findAll(int limit, int offset) {
+        int window = (int) Math.min((long) limit + offset, Integer.MAX_VALUE);
+        List<IpfixRecord> newest = merge(hot.findAll(window, 0),
+                segments.scan(null, null, null, window, SegmentCondition.ALL, projection), window);
+        return offset >= newest.size() ? new ArrayList<>() : new ArrayList<>(newest.subList(offset, newest.size()));
+    }
+    
+    @Override
+    public List<IpfixRecord> findBySourceIp(String sourceIp) {
+        return findBySourceIp(sourceIp, null, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByDestinationIp(String destinationIp) {
+        return findByDestinationIp(destinationIp, null, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByProtocol(Integer protocolId) {
+        return findByProtocol(protocolId, null, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByTimeRange(Instant start, Instant end) {
+        return findByTimeRange(start, end, null, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public List<IpfixRecord> findPage(RecordKey after, int limit) {
+        return merge(hot.findPage(after, limit),
+                segments.scan(null, null, after, limit, SegmentCondition.ALL, projection), limit);
+    }
+    
+    @Override
+    public List<IpfixRecord> findBySourceIp(String sourceIp, RecordKey after, int limit) {
+        IpNetwork host = IpNetwork.host(sourceIp);
+        List<IpfixRecord> cold = host == null ? List.of()
+                : segments.scan(null, null, after, limit, SegmentCondition.sourceAddress(host), projection);
+        return merge(hot.findBySourceIp(sourceIp, after, limit), cold, limit);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByDestinationIp(String destinationIp, RecordKey after, int limit) {
+        IpNetwork host = IpNetwork.host(destinationIp);
+        List<IpfixRecord> cold = host == null ? List.of()
+                : segments.scan(null, null, after, limit, SegmentCondition.destinationAddress(host), projection);
+        return merge(hot.findByDestinationIp(destinationIp, after, limit), cold, limit);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByProtocol(Integer protocolId, RecordKey after, int limit) {
+        List<IpfixRecord> cold = segments.scan(null, null, after, limit, SegmentCondition.protocol(protocolId),
+                projection);
+        return merge(hot.findByProtocol(protocolId, after, limit), cold, limit);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByTimeRange(Instant start, Instant end, RecordKey after, int limit) {
+        if (end.isBefore(start)) {
+            return new ArrayList<>();
+        }
+        return merge(hot.findByTimeRange(start, end, after, limit),
+                segments.scan(start, end, after, limit, SegmentCondition.ALL, projection), limit);
+    }
+    
+    @Override
+    public List<IpfixRecord> findBySubnet(IpNetwork subnet, AddressDirection direction, RecordKey after, int limit) {
+        return merge(hot.findBySubnet(subnet, direction, after, limit),
+                segments.scan(null, null, after, limit, SegmentCondition.subnet(subnet, direction), projection),
+                limit);
+    }
+    
+    /**
+     * Widens the projection by the fields the query tests, which it reads from the records it plans over
+     */
+    @Override
+    public List<IpfixRecord> findWhere(FlowQuery query, RecordKey after, int limit) {
+        return query.find(reading(projection.plus(query.fields())), after, limit);
+    }
+    
+    @Override
+    public List<IpfixRecord> findByText(TextSearch search, Set<TextField> fields, RecordKey after, int limit) {
+        return merge(hot.findByText(search, fields, after, limit),
+                segments.search(search, fields, after, limit, projection), limit);
+    }
+    
+    /**
+     * Takes every hot group and every segment group, sums them by key and ranks the totals
+     */
+    @Override
+    public List<FlowAggregate> aggregate(FlowGroupBy groupBy, FlowMetric metric, int limit, Instant start, Instant end) {
+        return segments.spanning(sealedThrough -> {
+            FlowAggregator totals = new FlowAggregator();
+            Instant hotStart = sealedThrough == null || (start != null && start.isAfter(sealedThrough))
+                    ? start : sealedThrough.plusNanos(1);
+            if (end == null || !end.isBefore(hotStart)) {
+                for (FlowAggregate group : hot.aggregate(groupBy, metric, Integer.MAX_VALUE, hotStart, end)) {
+                    totals.addTotals(group.getKey(), group.getBytes(), group.getPackets(), group.getFlows());
+                }
+            }
+            FlowAggregator cold = segments.aggregate(start, end, groupBy);
+            for (FlowAggregate group : cold.top(metric, Integer.MAX_VALUE, FlowAggregator.numericLabel(groupBy))) {
+                totals.addTotals(group.getKey(), group.getBytes(), group.getPackets(), group.getFlows());
+            }
+            return totals.top(metric, limit, Long::toString);
+        });
+    }
+    
+    @Override
+    public List<FlowTimeBucket> timeSeries(Instant start, Instant end, Duration interval) {
+        return segments.spanning(sealedThrough -> {
+            List<FlowTimeBucket> series = hot.timeSeries(start, end, interval);
+            if (sealedThrough != null && !sealedThrough.isBefore(start)) {
+                // Same buckets from the same start, holding the hot records already counted from disk
+                addTo(series, hot.timeSeries(start, end.isBefore(sealedThrough) ? end : sealedThrough, interval), -1);
+            }
+            long intervalNanos = FlowAggregator.intervalNanos(interval);
+            FlowAggregator cold = segments.timeBuckets(start, end, intervalNanos);
+            addTo(series, cold.series(start, interval, series.size()), 1);
+            return series;
+        });
+    }
+    
+    @Override
+    public Optional<Instant> oldestTimestamp() {
+        Optional<Instant> hotOldest = hot.oldestTimestamp();
+        Optional<Instant> coldOldest = segments.oldestTimestamp();
+        if (hotOldest.isEmpty()) {
+            return coldOldest;
+        }
+        return coldOldest.isPresent() && coldOldest.get().isBefore(hotOldest.get()) ? coldOldest : hotOldest;
+    }
+    
+    @Override
+    public boolean deleteById(String id) {
+        return hot.deleteById(id) || segments.deleteById(id);
+    }
+    
+    @Override
+    public void deleteAll() {
+        hot.deleteAll();
+        segments.clear();
+    }
+    
+    @Override
+    public long count() {
+        return segments.spanning(sealedThrough -> {
+            long hotCount = hot.count();
+            Optional<Instant> oldest = hot.oldestTimestamp();
+            if (sealedThrough != null && oldest.isPresent() && !oldest.get().isAfter(sealedThrough)) {
+                Duration sealed = Duration.between(oldest.get(), sealedThrough).plusNanos(1);
+                hotCount -= hot.timeSeries(oldest.get(), sealedThrough, sealed).get(0).getFlows();
+            }
+            return hotCount + segments.count();
+        });
+    }
+    
+    /**
+     * The hot tier's; segments are memory-mapped outside the heap and queried by column, not counted here
+     */
+    @Override
+    public long estimatedHeapBytes() {
+        return hot.estimatedHeapBytes();
+    }
+    
+    @Override
+    public long indexedQueries() {
+        return hot.indexedQueries();
+    }
+    
+    @Override
+    public long scannedQueries() {
+        return hot.scannedQueries();
+    }
+    
+    /**
+     * Adds {@code sign} times each bucket of {@code other} to the bucket at the same index of {@code series}
+     */
+    private static void addTo(List<FlowTimeBucket> series, List<FlowTimeBucket> other, int sign) {
+        for (int i = 0; i < Math.min(series.size(), other.size()); i++) {
+            FlowTimeBucket bucket = series.get(i);
+            FlowTimeBucket added = other.get(i);
+            bucket.setBytes(bucket.getBytes() + sign * added.getBytes());
+            bucket.setPackets(bucket.getPackets() + sign * added.getPackets());
+            bucket.setFlows(bucket.getFlows() + sign * added.getFlows());
+        }
+    }
+    
+    /**
+     * Merges two newest-first lists into one of at most {@code limit} records, dropping repeated keys
+     */
+    private static List<IpfixRecord> merge(List<IpfixRecord> hot, List<IpfixRecord> cold, int limit) {
+        if (cold.isEmpty()) {
+            return hot;
+        }
+        List<IpfixRecord> merged = new ArrayList<>(Math.min(hot.size() + cold.size(), limit));
+        int i = 0;
+        int j = 0;
+        RecordKey previous = null;
+        while (merged.size() < limit && (i < hot.size() || j < cold.size())) {
+            IpfixRecord next;
+            if (j >= cold.size()) {
+                next = hot.get(i++);
+            } else if (i >= hot.size()) {
+                next = cold.get(j++);
+            } else {
+                next = RecordKey.of(hot.get(i)).compareTo(RecordKey.of(cold.get(j))) >= 0 ? hot.get(i++) : cold.get(j++);
+            }
+            RecordKey key = RecordKey.of(next);
+            if (!key.equals(previous)) {
+                merged.add(next);
+                previous = key;
+            }
+        }
+        return merged;
+    }
+}
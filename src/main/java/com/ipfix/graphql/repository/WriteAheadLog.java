@@ -0,0 +1,472 @@
+package com.ipfix.graphql.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ipfix.graphql.config.IpfixWalProperties;
+import com.ipfix.graphql.config.IpfixWalProperties.FsyncPolicy;
+import com.ipfix.graphql.model.IpfixRecord;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of store changes. Callers enqueue changes into a bounded queue and return; a single writer
+ * thread drains up to {@code maxBatchEntries} of them, encodes them into one buffer, writes it with one
+ * {@link FileChannel} call and forces it per the {@link FsyncPolicy} (group commit). Log files are numbered;
+ * the writer starts a new one at {@code logFileSize} and {@link #roll()} starts one on demand, so everything
+ * before a file number can be dropped once a snapshot covers it.
+ * <p>
+ * A frame is {@code int length | int crc32 | byte type | payload}, the payload being the saved record as JSON
+ * or the deleted ID. Replay stops reading a file at the first torn or corrupt frame, which can only be the
+ * tail of a write cut short by a crash: a write that fails is cut off the file again, or the writer moves on
+ * to a new file when it cannot be. The changes of a failed write are lost to the log, so from then on
+ * appending throws until {@link #deleteBefore} drops the log files up to the failure, a snapshot having
+ * covered them.
+ */
+@Slf4j
+public class WriteAheadLog implements AutoCloseable {
+
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+    private static final int FRAME_HEADER = 9;
+
+    /**
+     * Kind of a logged change
+     */
+    enum Type {
+        SAVE, DELETE, CLEAR
+    }
+
+    /**
+     * A change read back from the log; {@code record} is set for saves, {@code id} for deletes
+     */
+    record Change(Type type, IpfixRecord record, String id) {
+    }
+
+    // A queued change; a null type is a sync marker
+    private record Pending(Type type, List<IpfixRecord> records, String id, CompletableFuture<Void> done) {
+    }
+
+    private final Path directory;
+    private final IpfixWalProperties properties;
+    private final ObjectMapper mapper = SegmentWriter.newMapper();
+    private final BlockingQueue<Pending> queue;
+    private final Thread writer;
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private volatile boolean closed;
+
+    // Guarded by this
+    private FileChannel channel;
+    private long sequence;
+    private long fileBytes;
+    private boolean dirty;
+    private long lastForceNanos = System.nanoTime();
+    // Last failed write and the number of the file being written at the time
+    private Exception failure;
+    private long failedSequence;
+
+    /**
+     * Opens the log directory, creating it when missing, and starts a new log file after the existing ones
+     */
+    public WriteAheadLog(Path directory, IpfixWalProperties properties) {
+        this.directory = directory;
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        try {
+            Files.createDirectories(directory);
+            sequence = sequences().stream().mapToLong(Long::longValue).max().orElse(0);
+            openNext();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open write-ahead log in " + directory, e);
+        }
+        writer = new Thread(this::drain, "wal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues saved records; blocks while the queue is full. The list is copied, since the writer reads it
+     * later and callers such as the ingest workers reuse theirs.
+     */
+    public void appendSaves(List<IpfixRecord> records) {
+        if (!records.isEmpty()) {
+            enqueue(new Pending(Type.SAVE, List.copyOf(records), null, null));
+        }
+    }
+
+    public void appendDelete(String id) {
+        enqueue(new Pending(Type.DELETE, List.of(), id, null));
+    }
+
+    public void appendClear() {
+        enqueue(new Pending(Type.CLEAR, List.of(), null, null));
+    }
+
+    /**
+     * Completes once every change queued before the call is written and forced to disk
+     */
+    public CompletableFuture<Void> sync() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        enqueue(new Pending(null, List.of(), null, done));
+        return done;
+    }
+
+    /**
+     * Starts a new log file
+     *
+     * @return its number; every change written before the call is in a lower-numbered file
+     */
+    public synchronized long roll() {
+        try {
+            openNext();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot start a new write-ahead log file in " + directory, e);
+        }
+        return sequence;
+    }
+
+    /**
+     * Total bytes written since the log was opened
+     */
+    public long bytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * Reads the log files numbered {@code from} and up, excluding the one being written, and hands each
+     * file's changes in order to {@code apply}. Frames of a file are decoded in parallel.
+     *
+     * @return the number of changes replayed
+     */
+    public long replay(long from, Consumer<List<Change>> apply) {
+        long replayed = 0;
+        long current;
+        synchronized (this) {
+            current = sequence;
+        }
+        for (long file : sequences()) {
+            if (file < from || file >= current) {
+                continue;
+            }
+            List<Change> changes = read(path(file));
+            apply.accept(changes);
+            replayed += changes.size();
+        }
+        return replayed;
+    }
+
+    /**
+     * Whether a write failed since the last {@link #deleteBefore} covering it; appending throws meanwhile
+     */
+    public synchronized boolean failed() {
+        return failure != null;
+    }
+
+    /**
+     * Deletes the log files numbered below {@code sequence}, which a snapshot covers, and clears a write
+     * failure that happened before that file
+     */
+    public void deleteBefore(long sequence) {
+        for (long file : sequences()) {
+            if (file < sequence) {
+                try {
+                    Files.deleteIfExists(path(file));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot delete write-ahead log file " + path(file), e);
+                }
+            }
+        }
+        synchronized (this) {
+            if (failure != null && failedSequence < sequence) {
+                log.info("Write-ahead log files up to the failed write are covered by a snapshot; appending again");
+                failure = null;
+            }
+        }
+    }
+
+    /**
+     * Writes out the queue, forces the log and stops the writer
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                channel.force(false);
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Cannot close write-ahead log file {}", path(sequence), e);
+            }
+        }
+    }
+
+    /**
+     * Queues a change, or a sync marker, which is let through a failure so that a snapshot can flush the queue
+     */
+    private void enqueue(Pending pending) {
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed");
+        }
+        synchronized (this) {
+            if (failure != null && pending.type() != null) {
+                throw new IllegalStateException("Write-ahead log write failed; changes are not durable until "
+                        + "the next snapshot", failure);
+            }
+        }
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while appending to the write-ahead log", e);
+        }
+    }
+
+    private void drain() {
+        List<Pending> batch = new ArrayList<>();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(1 << 16);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    forceIfDue();
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, properties.getMaxBatchEntries() - 1);
+                commit(batch, buffer);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                log.error("Write-ahead log write failed; {} changes are not durable", batch.size(), e);
+                synchronized (this) {
+                    failure = e;
+                    failedSequence = sequence;
+                }
+                batch.forEach(pending -> {
+                    if (pending.done() != null) {
+                        pending.done().completeExceptionally(e);
+                    }
+                });
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes a batch with one channel write and at most one force
+     */
+    private void commit(List<Pending> batch, ByteArrayOutputStream buffer) throws IOException {
+        buffer.reset();
+        DataOutputStream out = new DataOutputStream(buffer);
+        CRC32 crc = new CRC32();
+        boolean sync = false;
+        for (Pending pending : batch) {
+            if (pending.type() == null) {
+                sync = true;
+                continue;
+            }
+            switch (pending.type()) {
+                case SAVE -> {
+                    for (IpfixRecord record : pending.records()) {
+                        writeFrame(out, crc, Type.SAVE, mapper.writeValueAsBytes(record));
+                    }
+                }
+                case DELETE -> writeFrame(out, crc, Type.DELETE, pending.id().getBytes(StandardCharsets.UTF_8));
+                case CLEAR -> writeFrame(out, crc, Type.CLEAR, new byte[0]);
+            }
+        }
+        synchronized (this) {
+            ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+            try {
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            } catch (IOException e) {
+                discardPartialWrite();
+                throw e;
+            }
+            fileBytes += buffer.size();
+            bytesWritten.addAndGet(buffer.size());
+            dirty |= buffer.size() > 0;
+            if (sync || properties.getFsync() == FsyncPolicy.COMMIT) {
+                force();
+            } else {
+                forceIfDue();
+            }
+            if (fileBytes >= properties.getLogFileSize().toBytes()) {
+                openNext();
+            }
+        }
+        for (Pending pending : batch) {
+            if (pending.done() != null) {
+                pending.done().complete(null);
+            }
+        }
+    }
+
+    private synchronized void forceIfDue() {
+        if (dirty && properties.getFsync() == FsyncPolicy.INTERVAL
+                && System.nanoTime() - lastForceNanos >= properties.getFsyncInterval().toNanos()) {
+            try {
+                force();
+            } catch (IOException e) {
+                log.error("Cannot force write-ahead log file {}", path(sequence), e);
+            }
+        }
+    }
+
+    private void force() throws IOException {
+        channel.force(false);
+        dirty = false;
+        lastForceNanos = System.nanoTime();
+    }
+
+    private void openNext() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+        }
+        start();
+    }
+
+    private void start() throws IOException {
+        sequence++;
+        channel = create(path(sequence));
+        fileBytes = 0;
+        dirty = false;
+    }
+
+    /**
+     * Opens a new log file for writing
+     */
+    FileChannel create(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Cuts the frames of a failed write off the file, so that frames written after them are not lost to replay
+     * behind a torn one; starts a new file when the file cannot be truncated
+     */
+    private void discardPartialWrite() {
+        try {
+            channel.truncate(fileBytes);
+            channel.position(fileBytes);
+        } catch (IOException e) {
+            log.warn("Cannot truncate write-ahead log file {}; starting a new one", path(sequence), e);
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // The file ends in a torn frame either way, which replay skips
+            }
+            try {
+                start();
+            } catch (IOException next) {
+                log.error("Cannot start a new write-ahead log file in {}", directory, next);
+            }
+        }
+    }
+
+    private static void writeFrame(DataOutputStream out, CRC32 crc, Type type, byte[] payload) throws IOException {
+        crc.reset();
+        crc.update(type.ordinal());
+        crc.update(payload);
+        out.writeInt(payload.length);
+        out.writeInt((int) crc.getValue());
+        out.writeByte(type.ordinal());
+        out.write(payload);
+    }
+
+    /**
+     * Reads the valid frames of a log file in order, parsing record payloads in parallel
+     */
+    private List<Change> read(Path file) {
+        ByteBuffer data;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            data = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read write-ahead log file " + file, e);
+        }
+        List<int[]> frames = new ArrayList<>();
+        CRC32 crc = new CRC32();
+        int position = 0;
+        while (position + FRAME_HEADER <= data.limit()) {
+            int length = data.getInt(position);
+            int type = data.get(position + 8);
+            if (length < 0 || position + FRAME_HEADER + length > data.limit() || type < 0
+                    || type >= Type.values().length) {
+                break;
+            }
+            crc.reset();
+            crc.update(type);
+            crc.update(data.slice(position + FRAME_HEADER, length));
+            if ((int) crc.getValue() != data.getInt(position + 4)) {
+                break;
+            }
+            frames.add(new int[]{type, position + FRAME_HEADER, length});
+            position += FRAME_HEADER + length;
+        }
+        if (position < data.limit()) {
+            log.warn("Ignoring {} bytes of torn or corrupt data at the end of {}", data.limit() - position, file);
+        }
+        return IntStream.range(0, frames.size()).parallel()
+                .mapToObj(i -> decode(data, frames.get(i)))
+                .toList();
+    }
+
+    private Change decode(ByteBuffer data, int[] frame) {
+        byte[] payload = new byte[frame[2]];
+        data.get(frame[1], payload);
+        Type type = Type.values()[frame[0]];
+        try {
+            return switch (type) {
+                case SAVE -> new Change(type, mapper.readValue(payload, IpfixRecord.class), null);
+                case DELETE -> new Change(type, null, new String(payload, StandardCharsets.UTF_8));
+                case CLEAR -> new Change(type, null, null);
+            };
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt write-ahead log record", e);
+        }
+    }
+
+    private List<Long> sequences() {
+        List<Long> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                found.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+            }
+        } catch (IOException | NumberFormatException e) {
+            throw new IllegalStateException("Cannot list write-ahead log files in " + directory, e);
+        }
+        Collections.sort(found);
+        return found;
+    }
+
+    private Path path(long sequence) {
+        return directory.resolve(String.format("%s%020d%s", PREFIX, sequence, SUFFIX));
+    }
+}
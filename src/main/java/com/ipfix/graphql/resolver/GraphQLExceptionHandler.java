@@ -0,0 +1,39 @@
+package com.ipfix.graphql.resolver;
+
+import com.ipfix.graphql.ingest.IngestRejectedException;
+import graphql.ErrorClassification;
+import graphql.GraphQLError;
+import graphql.schema.DataFetchingEnvironment;
+import org.springframework.graphql.data.method.annotation.GraphQlExceptionHandler;
+import org.springframework.graphql.execution.ErrorType;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+
+/**
+ * Maps invalid client arguments to BAD_REQUEST errors instead of opaque internal errors,
+ * and a full ingest pipeline or scan limit to UNAVAILABLE so clients know to retry
+ */
+@ControllerAdvice
+public class GraphQLExceptionHandler {
+    
+    private static final ErrorClassification UNAVAILABLE = ErrorClassification.errorClassification("UNAVAILABLE");
+    
+    @GraphQlExceptionHandler
+    public GraphQLError handleIllegalArgument(IllegalArgumentException ex, DataFetchingEnvironment env) {
+        return GraphQLError.newError()
+                .errorType(ErrorType.BAD_REQUEST)
+                .message(ex.getMessage())
+                .path(env.getExecutionStepInfo().getPath())
+                .location(env.getField().getSourceLocation())
+                .build();
+    }
+    
+    @GraphQlExceptionHandler({IngestRejectedException.class, QueryRejectedException.class})
+    public GraphQLError handleRejected(RuntimeException ex, DataFetchingEnvironment env) {
+        return GraphQLError.newError()
+                .errorType(UNAVAILABLE)
+                .message(ex.getMessage())
+                .path(env.getExecutionStepInfo().getPath())
+                .location(env.getField().getSourceLocation())
+                .build();
+    }
+}
@@ -1,24 +1,50 @@
 package com.ipfix.graphql.resolver;
 
+import com.ipfix.graphql.config.IpfixQueryProperties;
+import com.ipfix.graphql.model.AddressDirection;
+import com.ipfix.graphql.model.FlowAggregate;
+import com.ipfix.graphql.model.FlowFilter;
+import com.ipfix.graphql.model.FlowGroupBy;
+import com.ipfix.graphql.model.FlowMetric;
+import com.ipfix.graphql.model.FlowTimeBucket;
 import com.ipfix.graphql.model.IpfixRecord;
-import com.ipfix.graphql.repository.IpfixRecordRepository;
+import com.ipfix.graphql.model.IpfixRecordConnection;
+import com.ipfix.graphql.model.TextField;
+import com.ipfix.graphql.repository.FlowQuery;
+import com.ipfix.graphql.repository.IpNetwork;
+import com.ipfix.graphql.repository.IpfixRecordStore;
+import com.ipfix.graphql.repository.RecordKey;
+import com.ipfix.graphql.repository.RecordProjection;
+import com.ipfix.graphql.repository.TextSearch;
+import graphql.schema.DataFetchingFieldSelectionSet;
+import graphql.schema.SelectedField;
 import org.springframework.graphql.data.method.annotation.Argument;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
 import org.springframework.stereotype.Controller;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 /**
- * GraphQL Query resolver for IPFIX records
+ * GraphQL Query resolver for IPFIX records. Fetchers are plain blocking calls, safe on virtual threads;
+ * the ones whose cost grows with the store (aggregations and unpaged lists) run through a {@link ScanLimiter}.
+ * Record queries read the store through a {@link RecordProjection} of the fields their selection set asks for,
+ * so stores that decode records from disk skip the rest.
  */
 @Controller
 public class IpfixQueryResolver {
     
-    private final IpfixRecordRepository repository;
+    private static final int MAX_TOP_FLOWS = 1000;
     
-    public IpfixQueryResolver(IpfixRecordRepository repository) {
+    private final IpfixRecordStore repository;
+    private final ScanLimiter scans;
+    
+    public IpfixQueryResolver(IpfixRecordStore repository, IpfixQueryProperties properties) {
         this.repository = repository;
+        this.scans = new ScanLimiter(properties);
     }
     
     @QueryMapping
@@ -29,40 +55,237 @@ public class IpfixQueryResolver {
     @QueryMapping
     public List<IpfixRecord> ipfixRecords(
             @Argument Integer limit,
-            @Argument Integer offset) {
+            @Argument Integer offset,
+            DataFetchingFieldSelectionSet selection) {
         
-        int actualLimit = limit != null ? limit : 100;
+        int actualLimit = RecordCursors.pageSize(limit, "limit");
         int actualOffset = offset != null ? offset : 0;
-        
-        return repository.findAll(actualLimit, actualOffset);
+        if (actualOffset < 0) {
+            throw new IllegalArgumentException("offset must not be negative");
+        }
+        IpfixRecordStore store = reading(selection);
+        // Skipping walks every record before the offset
+        return scans.run(() -> store.findAll(actualLimit, actualOffset));
     }
     
     @QueryMapping
-    public List<IpfixRecord> ipfixRecordsBySourceIp(@Argument String sourceIp) {
-        return repository.findBySourceIp(sourceIp);
+    public List<IpfixRecord> ipfixRecordsBySourceIp(
+            @Argument String sourceIp,
+            DataFetchingFieldSelectionSet selection) {
+        IpfixRecordStore store = reading(selection);
+        return scans.run(() -> store.findBySourceIp(sourceIp));
     }
     
     @QueryMapping
-    public List<IpfixRecord> ipfixRecordsByDestinationIp(@Argument String destinationIp) {
-        return repository.findByDestinationIp(destinationIp);
+    public List<IpfixRecord> ipfixRecordsByDestinationIp(
+            @Argument String destinationIp,
+            DataFetchingFieldSelectionSet selection) {
+        IpfixRecordStore store = reading(selection);
+        return scans.run(() -> store.findByDestinationIp(destinationIp));
+    }
+    
+    @QueryMapping
+    public List<IpfixRecord> ipfixRecordsBySubnet(
+            @Argument String cidr,
+            @Argument AddressDirection direction,
+            @Argument Integer limit,
+            DataFetchingFieldSelectionSet selection) {
+        
+        int actualLimit = RecordCursors.pageSize(limit, "limit");
+        IpNetwork subnet = IpNetwork.parse(cidr);
+        IpfixRecordStore store = reading(selection);
+        return scans.run(() -> store.findBySubnet(subnet, orAny(direction), null, actualLimit));
     }
     
     @QueryMapping
-    public List<IpfixRecord> ipfixRecordsByProtocol(@Argument Integer protocolId) {
-        return repository.findByProtocol(protocolId);
+    public List<IpfixRecord> ipfixRecordsByProtocol(
+            @Argument Integer protocolId,
+            DataFetchingFieldSelectionSet selection) {
+        IpfixRecordStore store = reading(selection);
+        return scans.run(() -> store.findByProtocol(protocolId));
     }
     
     @QueryMapping
     public List<IpfixRecord> ipfixRecordsByTimeRange(
+            @Argument String startTime,
+            @Argument String endTime,
+            DataFetchingFieldSelectionSet selection) {
+        Instant start = Instant.parse(startTime);
+        Instant end = Instant.parse(endTime);
+        IpfixRecordStore store = reading(selection);
+        return scans.run(() -> store.findByTimeRange(start, end));
+    }
+    
+    @QueryMapping
+    public IpfixRecordConnection ipfixRecordsConnection(
+            @Argument Integer first,
+            @Argument String after,
+            DataFetchingFieldSelectionSet selection) {
+        int pageSize = RecordCursors.pageSize(first);
+        RecordKey cursor = RecordCursors.decode(after);
+        return RecordCursors.connection(
+                nodes(selection).findPage(cursor, pageSize + 1), pageSize, cursor != null);
+    }
+    
+    @QueryMapping
+    public IpfixRecordConnection ipfixRecordsBySourceIpConnection(
+            @Argument String sourceIp,
+            @Argument Integer first,
+            @Argument String after,
+            DataFetchingFieldSelectionSet selection) {
+        int pageSize = RecordCursors.pageSize(first);
+        RecordKey cursor = RecordCursors.decode(after);
+        return RecordCursors.connection(
+                nodes(selection).findBySourceIp(sourceIp, cursor, pageSize + 1), pageSize, cursor != null);
+    }
+    
+    @QueryMapping
+    public IpfixRecordConnection ipfixRecordsByDestinationIpConnection(
+            @Argument String destinationIp,
+            @Argument Integer first,
+            @Argument String after,
+            DataFetchingFieldSelectionSet selection) {
+        int pageSize = RecordCursors.pageSize(first);
+        RecordKey cursor = RecordCursors.decode(after);
+        return RecordCursors.connection(
+                nodes(selection).findByDestinationIp(destinationIp, cursor, pageSize + 1),
+                pageSize, cursor != null);
+    }
+    
+    @QueryMapping
+    public IpfixRecordConnection ipfixRecordsBySubnetConnection(
+            @Argument String cidr,
+            @Argument AddressDirection direction,
+            @Argument Integer first,
+            @Argument String after,
+            DataFetchingFieldSelectionSet selection) {
+        int pageSize = RecordCursors.pageSize(first);
+        RecordKey cursor = RecordCursors.decode(after);
+        return RecordCursors.connection(
+                nodes(selection).findBySubnet(IpNetwork.parse(cidr), orAny(direction), cursor, pageSize + 1),
+                pageSize, cursor != null);
+    }
+    
+    @QueryMapping
+    public IpfixRecordConnection ipfixRecordsByProtocolConnection(
+            @Argument Integer protocolId,
+            @Argument Integer first,
+            @Argument String after,
+            DataFetchingFieldSelectionSet selection) {
+        int pageSize = RecordCursors.pageSize(first);
+        RecordKey cursor = RecordCursors.decode(after);
+        return RecordCursors.connection(
+                nodes(selection).findByProtocol(protocolId, cursor, pageSize + 1), pageSize, cursor != null);
+    }
+    
+    @QueryMapping
+    public IpfixRecordConnection ipfixRecordsByTimeRangeConnection(
+            @Argument String startTime,
+            @Argument String endTime,
+            @Argument Integer first,
+            @Argument String after,
+            DataFetchingFieldSelectionSet selection) {
+        int pageSize = RecordCursors.pageSize(first);
+        RecordKey cursor = RecordCursors.decode(after);
+        return RecordCursors.connection(
+                nodes(selection).findByTimeRange(
+                        Instant.parse(startTime), Instant.parse(endTime), cursor, pageSize + 1),
+                pageSize, cursor != null);
+    }
+    
+    /**
+     * Compiles the filter once and reads the store through its most selective index; runs through the
+     * {@link ScanLimiter} because filters without one visit records until the page fills
+     */
+    @QueryMapping
+    public IpfixRecordConnection ipfixRecordsWhere(
+            @Argument FlowFilter filter,
+            @Argument Integer first,
+            @Argument String after,
+            DataFetchingFieldSelectionSet selection) {
+        int pageSize = RecordCursors.pageSize(first);
+        RecordKey cursor = RecordCursors.decode(after);
+        FlowQuery query = FlowQuery.compile(filter);
+        IpfixRecordStore store = nodes(selection);
+        return RecordCursors.connection(
+                scans.run(() -> store.findWhere(query, cursor, pageSize + 1)), pageSize, cursor != null);
+    }
+    
+    /**
+     * Fields default to every indexed one; stores without a text index answer through the {@link ScanLimiter}'s
+     * budget like {@link #ipfixRecordsWhere}
+     */
+    @QueryMapping
+    public IpfixRecordConnection ipfixRecordsByText(
+            @Argument String search,
+            @Argument List<TextField> fields,
+            @Argument Integer first,
+            @Argument String after,
+            DataFetchingFieldSelectionSet selection) {
+        int pageSize = RecordCursors.pageSize(first);
+        RecordKey cursor = RecordCursors.decode(after);
+        TextSearch pattern = TextSearch.parse(search);
+        Set<TextField> searched = fields == null || fields.isEmpty()
+                ? EnumSet.allOf(TextField.class) : EnumSet.copyOf(fields);
+        IpfixRecordStore store = nodes(selection);
+        return RecordCursors.connection(
+                scans.run(() -> store.findByText(pattern, searched, cursor, pageSize + 1)),
+                pageSize, cursor != null);
+    }
+    
+    @QueryMapping
+    public List<FlowAggregate> topFlows(
+            @Argument FlowGroupBy groupBy,
+            @Argument FlowMetric metric,
+            @Argument Integer limit,
             @Argument String startTime,
             @Argument String endTime) {
+        
+        int actualLimit = limit != null ? limit : 10;
+        if (actualLimit < 1 || actualLimit > MAX_TOP_FLOWS) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_TOP_FLOWS);
+        }
+        Instant start = startTime != null ? Instant.parse(startTime) : null;
+        Instant end = endTime != null ? Instant.parse(endTime) : null;
+        
+        FlowMetric actualMetric = metric != null ? metric : FlowMetric.BYTES;
+        return scans.run(() -> repository.aggregate(groupBy, actualMetric, actualLimit, start, end));
+    }
+    
+    @QueryMapping
+    public List<FlowTimeBucket> flowTimeSeries(
+            @Argument String startTime,
+            @Argument String endTime,
+            @Argument Integer intervalSeconds) {
         Instant start = Instant.parse(startTime);
         Instant end = Instant.parse(endTime);
-        return repository.findByTimeRange(start, end);
+        return scans.run(() -> repository.timeSeries(start, end, Duration.ofSeconds(intervalSeconds)));
     }
     
     @QueryMapping
     public Long ipfixRecordsCount() {
         return repository.count();
     }
+    
+    /**
+     * The store read for a list of records, decoding only the fields the query selects on them
+     */
+    private IpfixRecordStore reading(DataFetchingFieldSelectionSet selection) {
+        return repository.reading(projection(selection.getImmediateFields()));
+    }
+    
+    /**
+     * The store read for a connection, decoding only the fields the query selects on its nodes
+     */
+    private IpfixRecordStore nodes(DataFetchingFieldSelectionSet selection) {
+        return repository.reading(projection(selection.getFields("edges/node/*")));
+    }
+    
+    private static RecordProjection projection(List<SelectedField> fields) {
+        return RecordProjection.of(fields.stream().map(SelectedField::getName).toList());
+    }
+    
+    private static AddressDirection orAny(AddressDirection direction) {
+        return direction != null ? direction : AddressDirection.ANY;
+    }
 }
@@ -0,0 +1,28 @@
+package com.ipfix.graphql.resolver;
+
+import com.ipfix.graphql.ingest.FlowMatcher;
+import com.ipfix.graphql.ingest.LiveFlowPublisher;
+import com.ipfix.graphql.model.FlowFilter;
+import com.ipfix.graphql.model.IpfixRecord;
+import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.SubscriptionMapping;
+import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Flux;
+
+/**
+ * GraphQL Subscription resolver for live IPFIX records
+ */
+@Controller
+public class IpfixSubscriptionResolver {
+    
+    private final LiveFlowPublisher publisher;
+    
+    public IpfixSubscriptionResolver(LiveFlowPublisher publisher) {
+        this.publisher = publisher;
+    }
+    
+    @SubscriptionMapping
+    public Flux<IpfixRecord> flowIngested(@Argument FlowFilter filter) {
+        return publisher.subscribe(FlowMatcher.of(filter));
+    }
+}
@@ -0,0 +1,160 @@
+package com.ipfix.graphql.resolver;
+
+import com.ipfix.graphql.model.IpfixRecordConnection;
+import graphql.ExecutionResult;
+import graphql.execution.DataFetcherResult;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationValidationParameters;
+import graphql.language.Document;
+import graphql.language.OperationDefinition;
+import graphql.validation.ValidationError;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GraphQL timings: {@code ipfix.graphql.phase} per parse, validate and execute phase of a request, and
+ * {@code ipfix.query} with the {@code ipfix.query.results} cardinality per top-level query field. Meters are
+ * created once per phase and field; a request costs one small timing object per phase and per top-level
+ * query field, and nested fields are not instrumented at all.
+ */
+@Component
+public class QueryMetricsInstrumentation extends SimplePerformantInstrumentation {
+    
+    private final MeterRegistry registry;
+    private final Timer parse;
+    private final Timer validate;
+    private final Timer execute;
+    private final Map<String, QueryMeters> queries = new ConcurrentHashMap<>();
+    
+    public QueryMetricsInstrumentation(MeterRegistry registry) {
+        this.registry = registry;
+        this.parse = phase("parse");
+        this.validate = phase("validate");
+        this.execute = phase("execute");
+    }
+    
+    @Override
+    public InstrumentationContext<Document> beginParse(InstrumentationExecutionParameters parameters,
+                                                       InstrumentationState state) {
+        return new Timing<>(parse);
+    }
+    
+    @Override
+    public InstrumentationContext<List<ValidationError>> beginValidation(InstrumentationValidationParameters parameters,
+                                                                         InstrumentationState state) {
+        return new Timing<>(validate);
+    }
+    
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecuteOperation(
+            InstrumentationExecuteOperationParameters parameters, InstrumentationState state) {
+        return new Timing<>(execute);
+    }
+    
+    @Override
+    public InstrumentationContext<Object> beginFieldFetch(InstrumentationFieldFetchParameters parameters,
+                                                          InstrumentationState state) {
+        if (parameters.isTrivialDataFetcher()
+                || parameters.getExecutionContext().getOperationDefinition().getOperation()
+                != OperationDefinition.Operation.QUERY
+                || parameters.getExecutionStepInfo().getPath().getLevel() != 1) {
+            return null;
+        }
+        return new QueryTiming(queries.computeIfAbsent(parameters.getField().getName(), this::query));
+    }
+    
+    private Timer phase(String name) {
+        return Timer.builder("ipfix.graphql.phase")
+                .description("Time spent in one phase of a GraphQL request")
+                .tag("phase", name)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+    
+    private QueryMeters query(String field) {
+        return new QueryMeters(
+                Timer.builder("ipfix.query")
+                        .description("Time to fetch a top-level query field")
+                        .tag("query", field)
+                        .publishPercentileHistogram()
+                        .register(registry),
+                DistributionSummary.builder("ipfix.query.results")
+                        .description("Records or groups a top-level query field returned")
+                        .tag("query", field)
+                        .publishPercentileHistogram()
+                        .register(registry));
+    }
+    
+    /**
+     * Records, edges or groups in a fetched value; a single object counts as one
+     */
+    static int cardinality(Object value) {
+        if (value instanceof DataFetcherResult<?> result) {
+            return cardinality(result.getData());
+        }
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Collection<?> values) {
+            return values.size();
+        }
+        if (value instanceof IpfixRecordConnection connection) {
+            return connection.getEdges().size();
+        }
+        return 1;
+    }
+    
+    private record QueryMeters(Timer latency, DistributionSummary results) {
+    }
+    
+    private static class Timing<T> implements InstrumentationContext<T> {
+        
+        private final Timer timer;
+        private final long start = System.nanoTime();
+        
+        Timing(Timer timer) {
+            this.timer = timer;
+        }
+        
+        @Override
+        public void onDispatched(CompletableFuture<T> result) {
+        }
+        
+        @Override
+        public void onCompleted(T result, Throwable t) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+    
+    private static final class QueryTiming extends Timing<Object> {
+        
+        private final DistributionSummary results;
+        
+        QueryTiming(QueryMeters meters) {
+            super(meters.latency());
+            this.results = meters.results();
+        }
+        
+        @Override
+        public void onCompleted(Object result, Throwable t) {
+            super.onCompleted(result, t);
+            if (t == null) {
+                results.record(cardinality(result));
+            }
+        }
+    }
+}
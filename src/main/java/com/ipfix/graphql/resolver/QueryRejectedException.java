@@ -0,0 +1,11 @@
+package com.ipfix.graphql.resolver;
+
+/**
+ * Thrown when a scan waited too long for a free slot; the caller should retry later
+ */
+public class QueryRejectedException extends RuntimeException {
+    
+    public QueryRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,95 @@
+package com.ipfix.graphql.resolver;
+
+import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.model.IpfixRecordConnection;
+import com.ipfix.graphql.model.IpfixRecordEdge;
+import com.ipfix.graphql.model.PageInfo;
+import com.ipfix.graphql.repository.RecordKey;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Opaque Relay cursors encoding a record's (timestamp, id) position, and connection assembly
+ */
+public final class RecordCursors {
+    
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+    
+    private RecordCursors() {
+    }
+    
+    public static String encode(IpfixRecord record) {
+        Instant timestamp = record.getTimestamp();
+        String position = timestamp.getEpochSecond() + ":" + timestamp.getNano() + ":" + record.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Decodes a cursor, or returns null when there is none
+     *
+     * @throws IllegalArgumentException if the cursor was not produced by {@link #encode}
+     */
+    public static RecordKey decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int first = position.indexOf(':');
+            int second = position.indexOf(':', first + 1);
+            Instant timestamp = Instant.ofEpochSecond(
+                    Long.parseLong(position.substring(0, first)),
+                    Long.parseLong(position.substring(first + 1, second)));
+            return new RecordKey(timestamp, position.substring(second + 1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+    
+    /**
+     * Page size for a {@code first} argument, defaulted and capped at {@link #MAX_PAGE_SIZE}
+     */
+    public static int pageSize(Integer first) {
+        return pageSize(first, "first");
+    }
+    
+    /**
+     * Page size for a size argument such as {@code first} or {@code limit}, defaulted and capped at
+     * {@link #MAX_PAGE_SIZE}
+     *
+     * @throws IllegalArgumentException when the size is negative
+     */
+    public static int pageSize(Integer size, String argument) {
+        if (size == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException(argument + " must not be negative");
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
+    
+    /**
+     * Builds a connection from up to {@code pageSize + 1} records; the extra record only signals a next page
+     */
+    public static IpfixRecordConnection connection(List<IpfixRecord> records, int pageSize, boolean hasPrevious) {
+        boolean hasNext = records.size() > pageSize;
+        List<IpfixRecordEdge> edges = new ArrayList<>(Math.min(records.size(), pageSize));
+        for (int i = 0; i < records.size() && i < pageSize; i++) {
+            IpfixRecord record = records.get(i);
+            edges.add(new IpfixRecordEdge(encode(record), record));
+        }
+        PageInfo pageInfo = PageInfo.builder()
+                .hasNextPage(hasNext)
+                .hasPreviousPage(hasPrevious)
+                .startCursor(edges.isEmpty() ? null : edges.get(0).getCursor())
+                .endCursor(edges.isEmpty() ? null : edges.get(edges.size() - 1).getCursor())
+                .build();
+        return new IpfixRecordConnection(edges, pageInfo);
+    }
+}
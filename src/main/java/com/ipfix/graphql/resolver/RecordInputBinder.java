@@ -0,0 +1,314 @@
+package com.ipfix.graphql.resolver;
+
+import com.ipfix.graphql.model.BasicListElement;
+import com.ipfix.graphql.model.BidirectionalFlowInfo;
+import com.ipfix.graphql.model.CertEnterpriseInfo;
+import com.ipfix.graphql.model.DpiInfo;
+import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.model.SubTemplateListElement;
+import com.ipfix.graphql.model.SubTemplateMultiListElement;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binds {@code IpfixRecordInput} argument values, as coerced by graphql-java, straight into the records that
+ * are stored. Only the fields present in the input are set, so a record costs its own objects and nothing
+ * else: no intermediate input objects, no reflection, and nested lists keep the argument's value lists.
+ * Nested list elements get no ID here; {@link StructuredListResolver} derives one when a query asks for it.
+ */
+final class RecordInputBinder {
+    
+    private RecordInputBinder() {
+    }
+    
+    static IpfixRecord record(Map<String, Object> input) {
+        IpfixRecord record = new IpfixRecord();
+        for (Map.Entry<String, Object> entry : input.entrySet()) {
+            Object value = entry.getValue();
+            switch (entry.getKey()) {
+                case "octetDeltaCount" -> record.setOctetDeltaCount((Long) value);
+                case "packetDeltaCount" -> record.setPacketDeltaCount((Long) value);
+                case "deltaFlowCount" -> record.setDeltaFlowCount((Long) value);
+                case "protocolIdentifier" -> record.setProtocolIdentifier((Integer) value);
+                case "ipClassOfService" -> record.setIpClassOfService((Integer) value);
+                case "tcpControlBits" -> record.setTcpControlBits((Integer) value);
+                case "sourceTransportPort" -> record.setSourceTransportPort((Integer) value);
+                case "sourceIPv4Address" -> record.setSourceIPv4Address((String) value);
+                case "sourceIPv4PrefixLength" -> record.setSourceIPv4PrefixLength((Integer) value);
+                case "ingressInterface" -> record.setIngressInterface((Integer) value);
+                case "destinationTransportPort" -> record.setDestinationTransportPort((Integer) value);
+                case "destinationIPv4Address" -> record.setDestinationIPv4Address((String) value);
+                case "destinationIPv4PrefixLength" -> record.setDestinationIPv4PrefixLength((Integer) value);
+                case "egressInterface" -> record.setEgressInterface((Integer) value);
+                case "ipNextHopIPv4Address" -> record.setIpNextHopIPv4Address((String) value);
+                case "sourceIPv6Address" -> record.setSourceIPv6Address((String) value);
+                case "destinationIPv6Address" -> record.setDestinationIPv6Address((String) value);
+                case "sourceIPv6PrefixLength" -> record.setSourceIPv6PrefixLength((Integer) value);
+                case "destinationIPv6PrefixLength" -> record.setDestinationIPv6PrefixLength((Integer) value);
+                case "flowStartMilliseconds" -> record.setFlowStartMilliseconds((Instant) value);
+                case "flowEndMilliseconds" -> record.setFlowEndMilliseconds((Instant) value);
+                case "flowStartSysUpTime" -> record.setFlowStartSysUpTime((Long) value);
+                case "flowEndSysUpTime" -> record.setFlowEndSysUpTime((Long) value);
+                case "mplsTopLabelStackSection" -> record.setMplsTopLabelStackSection((Integer) value);
+                case "mplsLabelStackSection2" -> record.setMplsLabelStackSection2((Integer) value);
+                case "mplsLabelStackSection3" -> record.setMplsLabelStackSection3((Integer) value);
+                case "applicationId" -> record.setApplicationId((Integer) value);
+                case "applicationName" -> record.setApplicationName((String) value);
+                case "applicationDescription" -> record.setApplicationDescription((String) value);
+                case "dpiInfo" -> record.setDpiInfo(dpiInfo(map(value)));
+                case "bidirectionalFlowInfo" -> record.setBidirectionalFlowInfo(bidirectionalFlowInfo(map(value)));
+                case "certInfo" -> record.setCertInfo(certInfo(map(value)));
+                case "basicLists" -> record.setBasicLists(basicLists(list(value)));
+                case "subTemplateLists" -> record.setSubTemplateLists(subTemplateLists(list(value)));
+                case "subTemplateMultiLists" -> record.setSubTemplateMultiLists(subTemplateMultiLists(list(value)));
+                case "observationDomainId" -> record.setObservationDomainId((Integer) value);
+                case "exporterIPv4Address" -> record.setExporterIPv4Address((String) value);
+                case "exporterIPv6Address" -> record.setExporterIPv6Address((String) value);
+                default -> {
+                }
+            }
+        }
+        return record;
+    }
+    
+    private static DpiInfo dpiInfo(Map<String, Object> input) {
+        if (input == null) {
+            return null;
+        }
+        DpiInfo dpi = new DpiInfo();
+        for (Map.Entry<String, Object> entry : input.entrySet()) {
+            Object value = entry.getValue();
+            switch (entry.getKey()) {
+                case "httpRequestMethod" -> dpi.setHttpRequestMethod((String) value);
+                case "httpRequestHost" -> dpi.setHttpRequestHost((String) value);
+                case "httpRequestTarget" -> dpi.setHttpRequestTarget((String) value);
+                case "httpUserAgent" -> dpi.setHttpUserAgent((String) value);
+                case "httpStatusCode" -> dpi.setHttpStatusCode((Integer) value);
+                case "sslServerName" -> dpi.setSslServerName((String) value);
+                case "sslCertificateIssuer" -> dpi.setSslCertificateIssuer((String) value);
+                case "sslCertificateSubject" -> dpi.setSslCertificateSubject((String) value);
+                case "sslCipherSuite" -> dpi.setSslCipherSuite((String) value);
+                case "sslVersion" -> dpi.setSslVersion((Integer) value);
+                case "dnsQueryName" -> dpi.setDnsQueryName((String) value);
+                case "dnsQueryType" -> dpi.setDnsQueryType((Integer) value);
+                case "dnsResponseCode" -> dpi.setDnsResponseCode((Integer) value);
+                case "dnsResponseName" -> dpi.setDnsResponseName((String) value);
+                case "applicationProtocol" -> dpi.setApplicationProtocol((String) value);
+                case "applicationLayerProtocolId" -> dpi.setApplicationLayerProtocolId((Integer) value);
+                default -> {
+                }
+            }
+        }
+        return dpi;
+    }
+    
+    private static BidirectionalFlowInfo bidirectionalFlowInfo(Map<String, Object> input) {
+        if (input == null) {
+            return null;
+        }
+        BidirectionalFlowInfo biflow = new BidirectionalFlowInfo();
+        for (Map.Entry<String, Object> entry : input.entrySet()) {
+            Object value = entry.getValue();
+            switch (entry.getKey()) {
+                case "biflowDirection" -> biflow.setBiflowDirection((String) value);
+                case "reverseOctetDeltaCount" -> biflow.setReverseOctetDeltaCount((Long) value);
+                case "reversePacketDeltaCount" -> biflow.setReversePacketDeltaCount((Long) value);
+                case "reverseFlowStartMilliseconds" -> biflow.setReverseFlowStartMilliseconds((Instant) value);
+                case "reverseFlowEndMilliseconds" -> biflow.setReverseFlowEndMilliseconds((Instant) value);
+                case "reverseTcpControlBits" -> biflow.setReverseTcpControlBits((Integer) value);
+                case "flowDurationMilliseconds" -> biflow.setFlowDurationMilliseconds((Long) value);
+                case "flowDurationMicroseconds" -> biflow.setFlowDurationMicroseconds((Long) value);
+                case "minimumIpTotalLength" -> biflow.setMinimumIpTotalLength((Long) value);
+                case "maximumIpTotalLength" -> biflow.setMaximumIpTotalLength((Long) value);
+                case "reverseMinimumIpTotalLength" -> biflow.setReverseMinimumIpTotalLength((Long) value);
+                case "reverseMaximumIpTotalLength" -> biflow.setReverseMaximumIpTotalLength((Long) value);
+                case "minimumTTL" -> biflow.setMinimumTTL((Integer) value);
+                case "maximumTTL" -> biflow.setMaximumTTL((Integer) value);
+                case "reverseMinimumTTL" -> biflow.setReverseMinimumTTL((Integer) value);
+                case "reverseMaximumTTL" -> biflow.setReverseMaximumTTL((Integer) value);
+                case "flowEndReason" -> biflow.setFlowEndReason((String) value);
+                case "flowDirection" -> biflow.setFlowDirection((Integer) value);
+                default -> {
+                }
+            }
+        }
+        return biflow;
+    }
+    
+    private static CertEnterpriseInfo certInfo(Map<String, Object> input) {
+        if (input == null) {
+            return null;
+        }
+        CertEnterpriseInfo cert = new CertEnterpriseInfo();
+        for (Map.Entry<String, Object> entry : input.entrySet()) {
+            Object value = entry.getValue();
+            switch (entry.getKey()) {
+                case "silkAppLabel" -> cert.setSilkAppLabel((Integer) value);
+                case "payloadEntropy" -> cert.setPayloadEntropy((String) value);
+                case "initialTCPFlags" -> cert.setInitialTCPFlags((String) value);
+                case "unionTCPFlags" -> cert.setUnionTCPFlags((String) value);
+                case "reverseFlowDeltaMilliseconds" -> cert.setReverseFlowDeltaMilliseconds((Long) value);
+                case "flowAttributes" -> cert.setFlowAttributes((String) value);
+                case "flowKeyHash" -> cert.setFlowKeyHash((Integer) value);
+                case "osName" -> cert.setOsName((String) value);
+                case "osVersion" -> cert.setOsVersion((String) value);
+                case "osFingerprint" -> cert.setOsFingerprint((String) value);
+                case "payloadContent" -> cert.setPayloadContent((String) value);
+                case "payloadLength" -> cert.setPayloadLength((Integer) value);
+                case "reversePayloadContent" -> cert.setReversePayloadContent((String) value);
+                case "reversePayloadLength" -> cert.setReversePayloadLength((Integer) value);
+                case "vlanId" -> cert.setVlanId((Integer) value);
+                case "reverseVlanId" -> cert.setReverseVlanId((Integer) value);
+                case "sourceMacAddress" -> cert.setSourceMacAddress((String) value);
+                case "destinationMacAddress" -> cert.setDestinationMacAddress((String) value);
+                case "ingressInterfaceName" -> cert.setIngressInterfaceName((String) value);
+                case "egressInterfaceName" -> cert.setEgressInterfaceName((String) value);
+                default -> {
+                }
+            }
+        }
+        return cert;
+    }
+    
+    private static List<BasicListElement> basicLists(List<Map<String, Object>> inputs) {
+        if (inputs == null) {
+            return null;
+        }
+        List<BasicListElement> elements = new ArrayList<>(inputs.size());
+        for (Map<String, Object> input : inputs) {
+            elements.add(basicList(input));
+        }
+        return elements;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static BasicListElement basicList(Map<String, Object> input) {
+        if (input == null) {
+            return null;
+        }
+        BasicListElement element = new BasicListElement();
+        for (Map.Entry<String, Object> entry : input.entrySet()) {
+            Object value = entry.getValue();
+            switch (entry.getKey()) {
+                case "informationElementId" -> element.setInformationElementId((Integer) value);
+                case "informationElementName" -> element.setInformationElementName((String) value);
+                case "semantic" -> element.setSemantic((String) value);
+                case "values" -> element.setValues((List<String>) value);
+                case "dataType" -> element.setDataType((String) value);
+                default -> {
+                }
+            }
+        }
+        return element;
+    }
+    
+    private static List<SubTemplateListElement> subTemplateLists(List<Map<String, Object>> inputs) {
+        if (inputs == null) {
+            return null;
+        }
+        List<SubTemplateListElement> elements = new ArrayList<>(inputs.size());
+        for (Map<String, Object> input : inputs) {
+            elements.add(subTemplateList(input));
+        }
+        return elements;
+    }
+    
+    private static SubTemplateListElement subTemplateList(Map<String, Object> input) {
+        if (input == null) {
+            return null;
+        }
+        SubTemplateListElement element = new SubTemplateListElement();
+        for (Map.Entry<String, Object> entry : input.entrySet()) {
+            Object value = entry.getValue();
+            switch (entry.getKey()) {
+                case "templateId" -> element.setTemplateId((Integer) value);
+                case "templateName" -> element.setTemplateName((String) value);
+                case "semantic" -> element.setSemantic((String) value);
+                case "entries" -> element.setEntries(entries(value));
+                case "templateDefinition" -> element.setTemplateDefinition(templateDefinition(value));
+                default -> {
+                }
+            }
+        }
+        return element;
+    }
+    
+    private static List<SubTemplateMultiListElement> subTemplateMultiLists(List<Map<String, Object>> inputs) {
+        if (inputs == null) {
+            return null;
+        }
+        List<SubTemplateMultiListElement> elements = new ArrayList<>(inputs.size());
+        for (Map<String, Object> input : inputs) {
+            elements.add(subTemplateMultiList(input));
+        }
+        return elements;
+    }
+    
+    private static SubTemplateMultiListElement subTemplateMultiList(Map<String, Object> input) {
+        if (input == null) {
+            return null;
+        }
+        SubTemplateMultiListElement element = new SubTemplateMultiListElement();
+        for (Map.Entry<String, Object> entry : input.entrySet()) {
+            Object value = entry.getValue();
+            switch (entry.getKey()) {
+                case "semantic" -> element.setSemantic((String) value);
+                case "subTemplateLists" -> element.setSubTemplateLists(subTemplateLists(list(value)));
+                case "description" -> element.setDescription((String) value);
+                default -> {
+                }
+            }
+        }
+        return element;
+    }
+    
+    /**
+     * Sub-template list entries, checked here because the JSON scalar accepts any value and a bad entry would
+     * otherwise only fail when the batch is stored
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> entries(Object value) {
+        if (value == null) {
+            return null;
+        }
+        for (Object entry : (List<?>) value) {
+            if (!(entry instanceof Map)) {
+                throw new IllegalArgumentException("Invalid subTemplateList entry, expected a JSON object: " + entry);
+            }
+        }
+        return (List<Map<String, Object>>) value;
+    }
+    
+    /**
+     * Template definition: a JSON object mapping field names to data type names
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, String> templateDefinition(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof Map<?, ?> definition)) {
+            throw new IllegalArgumentException("Invalid templateDefinition, expected a JSON object: " + value);
+        }
+        for (Map.Entry<?, ?> field : definition.entrySet()) {
+            if (field.getValue() != null && !(field.getValue() instanceof String)) {
+                throw new IllegalArgumentException("Invalid templateDefinition data type for " + field.getKey()
+                        + ", expected a string: " + field.getValue());
+            }
+        }
+        return (Map<String, String>) value;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> map(Object value) {
+        return (Map<String, Object>) value;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> list(Object value) {
+        return (List<Map<String, Object>>) value;
+    }
+}
@@ -0,0 +1,45 @@
+package com.ipfix.graphql.resolver;
+
+import com.ipfix.graphql.config.IpfixQueryProperties;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the number of store scans running at once. Waiting callers block on a fair semaphore, which parks
+ * virtual threads without holding their carrier.
+ */
+final class ScanLimiter {
+    
+    private final Semaphore permits;
+    private final long timeoutNanos;
+    
+    ScanLimiter(IpfixQueryProperties properties) {
+        int scans = properties.getMaxConcurrentScans() > 0
+                ? properties.getMaxConcurrentScans() : 2 * Runtime.getRuntime().availableProcessors();
+        this.permits = new Semaphore(scans, true);
+        this.timeoutNanos = properties.getScanWaitTimeout().toNanos();
+    }
+    
+    /**
+     * Runs {@code scan} once a slot is free
+     *
+     * @throws QueryRejectedException when no slot frees up within the wait timeout
+     */
+    <T> T run(Supplier<T> scan) {
+        try {
+            if (!permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new QueryRejectedException("Too many concurrent scans, retry later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryRejectedException("Interrupted while waiting to scan");
+        }
+        try {
+            return scan.get();
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.ipfix.graphql.resolver;
+
+import com.ipfix.graphql.model.BasicListElement;
+import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.model.SubTemplateListElement;
+import com.ipfix.graphql.model.SubTemplateMultiListElement;
+import graphql.schema.DataFetchingFieldSelectionSet;
+import org.springframework.graphql.data.method.annotation.SchemaMapping;
+import org.springframework.stereotype.Controller;
+
+import java.util.List;
+
+/**
+ * Structured data (RFC 6313 lists) of a record. Elements are stored without IDs; when a query selects
+ * one, it is derived from the record ID and the element's position ({@code <record>:b0}, {@code <record>:s1},
+ * {@code <record>:m0:s2}), so it is stable across reads and stores and costs nothing for queries that do not
+ * ask for it. Deriving is idempotent, so filling it into a shared stored element is safe.
+ */
+@Controller
+public class StructuredListResolver {
+    
+    @SchemaMapping(typeName = "IpfixRecord")
+    public List<BasicListElement> basicLists(IpfixRecord record, DataFetchingFieldSelectionSet selection) {
+        List<BasicListElement> lists = record.getBasicLists();
+        if (lists != null && selection.contains("id")) {
+            for (int i = 0; i < lists.size(); i++) {
+                BasicListElement list = lists.get(i);
+                if (list.getId() == null) {
+                    list.setId(record.getId() + ":b" + i);
+                }
+            }
+        }
+        return lists;
+    }
+    
+    @SchemaMapping(typeName = "IpfixRecord")
+    public List<SubTemplateListElement> subTemplateLists(IpfixRecord record, DataFetchingFieldSelectionSet selection) {
+        List<SubTemplateListElement> lists = record.getSubTemplateLists();
+        if (lists != null && selection.contains("id")) {
+            fillIds(lists, record.getId() + ":s");
+        }
+        return lists;
+    }
+    
+    @SchemaMapping(typeName = "IpfixRecord")
+    public List<SubTemplateMultiListElement> subTemplateMultiLists(IpfixRecord record,
+                                                                  DataFetchingFieldSelectionSet selection) {
+        List<SubTemplateMultiListElement> lists = record.getSubTemplateMultiLists();
+        if (lists == null) {
+            return null;
+        }
+        boolean ids = selection.contains("id");
+        boolean nestedIds = selection.contains("subTemplateLists/id");
+        if (ids || nestedIds) {
+            for (int i = 0; i < lists.size(); i++) {
+                SubTemplateMultiListElement list = lists.get(i);
+                String id = record.getId() + ":m" + i;
+                if (ids && list.getId() == null) {
+                    list.setId(id);
+                }
+                if (nestedIds && list.getSubTemplateLists() != null) {
+                    fillIds(list.getSubTemplateLists(), id + ":s");
+                }
+            }
+        }
+        return lists;
+    }
+    
+    private static void fillIds(List<SubTemplateListElement> lists, String prefix) {
+        for (int i = 0; i < lists.size(); i++) {
+            SubTemplateListElement list = lists.get(i);
+            if (list.getId() == null) {
+                list.setId(prefix + i);
+            }
+        }
+    }
+}
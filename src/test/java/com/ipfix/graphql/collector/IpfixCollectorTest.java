@@ -0,0 +1,66 @@
+package com.ipfix.graphql.collector;
+
+import com.ipfix.graphql.config.IpfixCollectorProperties;
+import com.ipfix.graphql.repository.IpfixRecordRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IpfixCollectorTest {
+    
+    private IpfixRecordRepository repository;
+    private IpfixCollector collector;
+    
+    @BeforeEach
+    void setUp() {
+        IpfixCollectorProperties properties = new IpfixCollectorProperties();
+        properties.setBindAddress("127.0.0.1");
+        properties.setPort(0);
+        properties.setBatchSize(50);
+        properties.setFlushIntervalMillis(10);
+        repository = new IpfixRecordRepository();
+        collector = new IpfixCollector(properties, new IpfixMessageDecoder(),
+                new IpfixRecordBatchWriter(batch -> {
+                    repository.saveAll(batch);
+                    return 0;
+                }, properties.getBatchSize(), properties.getFlushIntervalMillis()));
+        collector.start();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        collector.stop();
+    }
+    
+    @Test
+    void testUdpIngest() throws Exception {
+        IpfixTestExporter exporter = new IpfixTestExporter();
+        IpfixTestExporter.sendUdp("127.0.0.1", collector.getUdpPort(),
+                List.of(exporter.templateMessage(), exporter.dataMessage(10), exporter.dataMessage(10)));
+        
+        awaitCount(20);
+        assertEquals(20, repository.count());
+    }
+    
+    @Test
+    void testTcpIngest() throws Exception {
+        IpfixTestExporter exporter = new IpfixTestExporter();
+        IpfixTestExporter.sendTcp("127.0.0.1", collector.getTcpPort(),
+                List.of(exporter.templateMessage(), exporter.dataMessage(25), exporter.dataMessage(25)));
+        
+        awaitCount(50);
+        assertEquals(50, repository.count());
+        assertEquals(0, collector.getMalformedMessages());
+    }
+    
+    private void awaitCount(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (repository.count() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
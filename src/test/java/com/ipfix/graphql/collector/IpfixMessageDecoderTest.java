@@ -0,0 +1,158 @@
+package com.ipfix.graphql.collector;
+
+import com.ipfix.graphql.model.IpfixRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IpfixMessageDecoderTest {
+
+    private static final String EXPORTER = "192.0.2.1";
+
+    private IpfixMessageDecoder decoder;
+    private IpfixTestExporter exporter;
+    private List<IpfixRecord> records;
+
+    @BeforeEach
+    void setUp() {
+        decoder = new IpfixMessageDecoder();
+        exporter = new IpfixTestExporter();
+        records = new ArrayList<>();
+    }
+
+    @Test
+    void testDecodeTemplateAndData() {
+        decode(exporter.templateMessage());
+        assertEquals(1, decoder.getTemplateCount());
+
+        int decoded = decode(exporter.dataMessage(5));
+        assertEquals(5, decoded);
+        assertEquals(5, records.size());
+
+        IpfixRecord record = records.get(0);
+        assertTrue(record.getSourceIPv4Address().startsWith("10.0."));
+        assertTrue(record.getDestinationIPv4Address().startsWith("192.168."));
+        assertNotNull(record.getOctetDeltaCount());
+        assertNotNull(record.getPacketDeltaCount());
+        assertNotNull(record.getFlowStartMilliseconds());
+        assertNotNull(record.getBidirectionalFlowInfo().getReverseOctetDeltaCount());
+        assertNotNull(record.getCertInfo().getSilkAppLabel());
+        assertTrue(record.getDpiInfo().getHttpRequestHost().contains("example"));
+        assertNotNull(record.getApplicationName());
+        assertEquals(1, record.getObservationDomainId());
+        assertEquals(EXPORTER, record.getExporterIPv4Address());
+    }
+
+    @Test
+    void testDataWithoutTemplateIsSkipped() {
+        assertEquals(0, decode(exporter.dataMessage(3)));
+        assertEquals(1, decoder.getSkippedDataSets());
+    }
+
+    @Test
+    void testTemplateWithdrawal() {
+        decode(exporter.templateMessage());
+        ByteBuffer withdrawal = ByteBuffer.allocate(8);
+        withdrawal.putShort((short) IpfixMessageDecoder.TEMPLATE_SET_ID).putShort((short) 0);
+        withdrawal.putShort((short) IpfixTestExporter.FLOW_TEMPLATE_ID).putShort((short) 0);
+        decode(exporter.message(withdrawal));
+
+        assertEquals(0, decoder.getTemplateCount());
+        assertEquals(0, decode(exporter.dataMessage(1)));
+    }
+
+    @Test
+    void testBasicListAndSubTemplateList() {
+        ByteBuffer templates = ByteBuffer.allocate(64);
+        templates.putShort((short) IpfixMessageDecoder.TEMPLATE_SET_ID).putShort((short) 0);
+        templates.putShort((short) 300).putShort((short) 1);
+        IpfixTestExporter.field(templates, 117, 65535, 6871);   // httpHost
+        templates.putShort((short) 301).putShort((short) 3);
+        IpfixTestExporter.field(templates, 4, 1, 0);            // protocolIdentifier
+        IpfixTestExporter.field(templates, 291, 65535, 0);      // basicList
+        IpfixTestExporter.field(templates, 292, 65535, 0);      // subTemplateList
+        decode(exporter.message(templates));
+
+        ByteBuffer data = ByteBuffer.allocate(64);
+        data.putShort((short) 301).putShort((short) 0);
+        data.put((byte) 6);
+        data.put((byte) 13).put((byte) 3).putShort((short) 8).putShort((short) 4);
+        data.putInt(0x0A000001).putInt(0x0A000002);
+        data.put((byte) 19).put((byte) 3).putShort((short) 300);
+        IpfixTestExporter.string(data, "www.example.com");
+        decode(exporter.message(data));
+
+        assertEquals(1, records.size());
+        IpfixRecord record = records.get(0);
+        assertEquals(6, record.getProtocolIdentifier());
+        assertEquals(List.of("10.0.0.1", "10.0.0.2"), record.getBasicLists().get(0).getValues());
+        assertEquals("allOf", record.getBasicLists().get(0).getSemantic());
+        assertEquals("www.example.com", record.getSubTemplateLists().get(0).getEntries().get(0).get("httpHost"));
+        assertEquals("www.example.com", record.getDpiInfo().getHttpRequestHost());
+    }
+
+    @Test
+    void testZeroLengthTemplateIsRejected() {
+        ByteBuffer template = ByteBuffer.allocate(16);
+        template.putShort((short) IpfixMessageDecoder.TEMPLATE_SET_ID).putShort((short) 0);
+        template.putShort((short) 310).putShort((short) 1);
+        IpfixTestExporter.field(template, 96, 0, 0);            // applicationName, zero octets
+        assertThrows(IpfixDecodingException.class, () -> decode(exporter.message(template)));
+        assertEquals(0, decoder.getTemplateCount());
+
+        ByteBuffer data = ByteBuffer.allocate(16);
+        data.putShort((short) 310).putShort((short) 0);
+        data.putInt(0);
+        assertEquals(0, decode(exporter.message(data)));
+        assertTrue(records.isEmpty());
+    }
+
+    @Test
+    void testZeroLengthBasicListElementIsRejected() {
+        ByteBuffer template = ByteBuffer.allocate(16);
+        template.putShort((short) IpfixMessageDecoder.TEMPLATE_SET_ID).putShort((short) 0);
+        template.putShort((short) 302).putShort((short) 1);
+        IpfixTestExporter.field(template, 291, 65535, 0);       // basicList
+        decode(exporter.message(template));
+
+        ByteBuffer data = ByteBuffer.allocate(16);
+        data.putShort((short) 302).putShort((short) 0);
+        data.put((byte) 7).put((byte) 3).putShort((short) 8).putShort((short) 0);
+        data.putShort((short) 0);
+        assertThrows(IpfixDecodingException.class, () -> decode(exporter.message(data)));
+        assertTrue(records.isEmpty());
+    }
+
+    @Test
+    void testZeroLengthSubTemplateDecodesNoEntries() {
+        ByteBuffer templates = ByteBuffer.allocate(32);
+        templates.putShort((short) IpfixMessageDecoder.TEMPLATE_SET_ID).putShort((short) 0);
+        templates.putShort((short) 303).putShort((short) 1);
+        IpfixTestExporter.field(templates, 292, 65535, 0);      // subTemplateList
+        templates.putShort((short) 304).putShort((short) 1);
+        IpfixTestExporter.field(templates, 96, 0, 0);           // applicationName, zero octets
+        assertThrows(IpfixDecodingException.class, () -> decode(exporter.message(templates)));
+
+        ByteBuffer data = ByteBuffer.allocate(16);
+        data.putShort((short) 303).putShort((short) 0);
+        data.put((byte) 5).put((byte) 3).putShort((short) 304).putShort((short) 0);
+        assertEquals(1, decode(exporter.message(data)));
+        assertTrue(records.get(0).getSubTemplateLists().get(0).getEntries().isEmpty());
+    }
+
+    @Test
+    void testTruncatedMessageIsRejected() {
+        byte[] message = exporter.templateMessage();
+        ByteBuffer truncated = ByteBuffer.wrap(message, 0, 10);
+        assertThrows(IpfixDecodingException.class, () -> decoder.decode(truncated, EXPORTER, records::add));
+    }
+
+    private int decode(byte[] message) {
+        return decoder.decode(ByteBuffer.wrap(message), EXPORTER, records::add);
+    }
+}
@@ -0,0 +1,227 @@
+package com.ipfix.graphql.collector;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Test exporter producing IPFIX byte fixtures, replaying pcap captures and
+ * measuring collector throughput.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.ipfix.graphql.collector.IpfixTestExporter \
+ *     -Dexec.args="localhost 4739 udp 100000 30"
+ * </pre>
+ * Arguments are host, port, transport (udp/tcp), number of messages and records
+ * per message; a fifth argument ending in {@code .pcap} replays that capture instead.
+ */
+public class IpfixTestExporter {
+
+    public static final int FLOW_TEMPLATE_ID = 256;
+    public static final long DOMAIN_ID = 1;
+
+    private static final String[] HOSTS = {"example.com", "api.example.com", "cdn.example.net", "mail.example.org"};
+    private static final String[] APPLICATIONS = {"http", "https", "dns", "ssh", "smtp"};
+
+    private final Random random = new Random(42);
+    private int sequence;
+
+    /**
+     * Template set describing the fixture flow record
+     */
+    public byte[] templateMessage() {
+        ByteBuffer set = ByteBuffer.allocate(256);
+        set.putShort((short) IpfixMessageDecoder.TEMPLATE_SET_ID).putShort((short) 0);
+        set.putShort((short) FLOW_TEMPLATE_ID).putShort((short) 13);
+        field(set, 8, 4, 0);        // sourceIPv4Address
+        field(set, 12, 4, 0);       // destinationIPv4Address
+        field(set, 7, 2, 0);        // sourceTransportPort
+        field(set, 11, 2, 0);       // destinationTransportPort
+        field(set, 4, 1, 0);        // protocolIdentifier
+        field(set, 1, 8, 0);        // octetDeltaCount
+        field(set, 2, 4, 0);        // packetDeltaCount (reduced size)
+        field(set, 152, 8, 0);      // flowStartMilliseconds
+        field(set, 153, 8, 0);      // flowEndMilliseconds
+        field(set, 1, 8, 29305);    // reverseOctetDeltaCount
+        field(set, 33, 2, 6871);    // silkAppLabel
+        field(set, 117, 65535, 6871); // httpHost
+        field(set, 96, 65535, 0);   // applicationName
+        return message(set);
+    }
+
+    /**
+     * Data set with {@code records} pseudo-random flows for the fixture template
+     */
+    public byte[] dataMessage(int records) {
+        ByteBuffer set = ByteBuffer.allocate(4 + records * 96);
+        set.putShort((short) FLOW_TEMPLATE_ID).putShort((short) 0);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < records; i++) {
+            set.putInt(0x0A000000 | random.nextInt(1 << 16));
+            set.putInt(0xC0A80000 | random.nextInt(1 << 8));
+            set.putShort((short) (1024 + random.nextInt(60000)));
+            set.putShort((short) (random.nextBoolean() ? 443 : 80));
+            set.put((byte) (random.nextInt(10) < 8 ? 6 : 17));
+            set.putLong(64 + random.nextInt(1_000_000));
+            set.putInt(1 + random.nextInt(1000));
+            set.putLong(now - 5000);
+            set.putLong(now);
+            set.putLong(random.nextInt(100_000));
+            set.putShort((short) (random.nextBoolean() ? 443 : 80));
+            string(set, HOSTS[random.nextInt(HOSTS.length)]);
+            string(set, APPLICATIONS[random.nextInt(APPLICATIONS.length)]);
+        }
+        return message(set);
+    }
+
+    /**
+     * Wraps one or more sets into a message with a fresh sequence number
+     */
+    public byte[] message(ByteBuffer... sets) {
+        int length = IpfixMessageDecoder.MESSAGE_HEADER_LENGTH;
+        for (ByteBuffer set : sets) {
+            set.putShort(2, (short) set.position());
+            length += set.position();
+        }
+        ByteBuffer message = ByteBuffer.allocate(length);
+        message.putShort((short) IpfixMessageDecoder.VERSION)
+                .putShort((short) length)
+                .putInt((int) (System.currentTimeMillis() / 1000))
+                .putInt(sequence++)
+                .putInt((int) DOMAIN_ID);
+        for (ByteBuffer set : sets) {
+            message.put(set.array(), 0, set.position());
+        }
+        return message.array();
+    }
+
+    public static void field(ByteBuffer set, int elementId, int length, long enterpriseNumber) {
+        if (enterpriseNumber != 0) {
+            set.putShort((short) (elementId | 0x8000)).putShort((short) length).putInt((int) enterpriseNumber);
+        } else {
+            set.putShort((short) elementId).putShort((short) length);
+        }
+    }
+
+    public static void string(ByteBuffer set, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < 255) {
+            set.put((byte) bytes.length);
+        } else {
+            set.put((byte) 255).putShort((short) bytes.length);
+        }
+        set.put(bytes);
+    }
+
+    public static void sendUdp(String host, int port, List<byte[]> messages) throws IOException {
+        try (DatagramSocket socket = new DatagramSocket()) {
+            InetAddress address = InetAddress.getByName(host);
+            for (byte[] message : messages) {
+                socket.send(new DatagramPacket(message, message.length, address, port));
+            }
+        }
+    }
+
+    public static void sendTcp(String host, int port, List<byte[]> messages) throws IOException {
+        try (Socket socket = new Socket(host, port)) {
+            OutputStream out = socket.getOutputStream();
+            for (byte[] message : messages) {
+                out.write(message);
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Extracts UDP payloads from a classic libpcap capture of Ethernet/IPv4 or IPv6 frames
+     */
+    public static List<byte[]> readPcap(Path path) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(path));
+        int magic = buf.getInt(0);
+        if (magic == 0xD4C3B2A1 || magic == 0x4D3CB2A1) {
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (magic != 0xA1B2C3D4 && magic != 0xA1B23C4D) {
+            throw new IOException("Not a pcap file: " + path);
+        }
+        buf.position(24);
+        List<byte[]> payloads = new ArrayList<>();
+        while (buf.remaining() >= 16) {
+            buf.getInt();
+            buf.getInt();
+            int capturedLength = buf.getInt();
+            buf.getInt();
+            int frameStart = buf.position();
+            ByteBuffer frame = buf.slice(frameStart, capturedLength).order(ByteOrder.BIG_ENDIAN);
+            buf.position(frameStart + capturedLength);
+            byte[] payload = udpPayload(frame);
+            if (payload != null) {
+                payloads.add(payload);
+            }
+        }
+        return payloads;
+    }
+
+    private static byte[] udpPayload(ByteBuffer frame) {
+        int etherType = frame.getShort(12) & 0xFFFF;
+        int offset = 14;
+        int protocol;
+        if (etherType == 0x0800) {
+            protocol = frame.get(offset + 9) & 0xFF;
+            offset += (frame.get(offset) & 0x0F) * 4;
+        } else if (etherType == 0x86DD) {
+            protocol = frame.get(offset + 6) & 0xFF;
+            offset += 40;
+        } else {
+            return null;
+        }
+        if (protocol != 17 || frame.limit() < offset + 8) {
+            return null;
+        }
+        byte[] payload = new byte[frame.limit() - offset - 8];
+        frame.get(offset + 8, payload);
+        return payload;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 4739;
+        boolean tcp = args.length > 2 && args[2].equalsIgnoreCase("tcp");
+        List<byte[]> messages = new ArrayList<>();
+        long records;
+        if (args.length > 3 && args[3].endsWith(".pcap")) {
+            messages.addAll(readPcap(Path.of(args[3])));
+            records = -1;
+        } else {
+            int messageCount = args.length > 3 ? Integer.parseInt(args[3]) : 10_000;
+            int recordsPerMessage = args.length > 4 ? Integer.parseInt(args[4]) : 30;
+            IpfixTestExporter exporter = new IpfixTestExporter();
+            messages.add(exporter.templateMessage());
+            for (int i = 0; i < messageCount; i++) {
+                messages.add(exporter.dataMessage(recordsPerMessage));
+            }
+            records = (long) messageCount * recordsPerMessage;
+        }
+        long start = System.nanoTime();
+        if (tcp) {
+            sendTcp(host, port, messages);
+        } else {
+            sendUdp(host, port, messages);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Sent %d messages (%s records) in %.2f s: %.0f messages/s%s%n",
+                messages.size(), records < 0 ? "pcap" : String.valueOf(records), seconds,
+                messages.size() / seconds, records < 0 ? "" : String.format(", %.0f records/s", records / seconds));
+    }
+}
@@ -0,0 +1,81 @@
+package com.ipfix.graphql.collector;
+
+import com.ipfix.graphql.model.IpfixRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TemplateRegistryTest {
+
+    private static final Template FLOW_TEMPLATE = new Template(256, List.of(
+            new FieldSpecifier(8, 4, 0),
+            new FieldSpecifier(7, 2, 0),
+            new FieldSpecifier(1, 4, 0)), 0);
+
+    private TemplateRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new TemplateRegistry(2);
+    }
+
+    @Test
+    void testRefreshKeepsCompiledTemplate() {
+        TemplateKey key = new TemplateKey("192.0.2.1", 1, 256);
+        CompiledTemplate first = registry.register(key, FLOW_TEMPLATE, ie -> null);
+        CompiledTemplate refreshed = registry.register(key, FLOW_TEMPLATE, ie -> null);
+
+        assertSame(first, refreshed);
+        assertEquals(1, registry.getCompiledTemplates());
+        assertEquals(1, registry.getRefreshedTemplates());
+
+        Template redefined = new Template(256, List.of(new FieldSpecifier(12, 4, 0)), 0);
+        assertNotSame(first, registry.register(key, redefined, ie -> null));
+        assertEquals(2, registry.getCompiledTemplates());
+    }
+
+    @Test
+    void testLeastRecentlyUsedTemplateIsEvicted() {
+        TemplateKey a = new TemplateKey("192.0.2.1", 1, 256);
+        TemplateKey b = new TemplateKey("192.0.2.2", 1, 256);
+        TemplateKey c = new TemplateKey("192.0.2.3", 1, 256);
+        registry.register(a, FLOW_TEMPLATE, ie -> null);
+        registry.register(b, FLOW_TEMPLATE, ie -> null);
+        registry.get(a);
+        registry.register(c, FLOW_TEMPLATE, ie -> null);
+
+        assertEquals(2, registry.size());
+        assertNotNull(registry.get(a));
+        assertNull(registry.get(b));
+        assertEquals(1, registry.getEvictedTemplates());
+    }
+
+    @Test
+    void testWithdrawAllKeepsOptionsTemplates() {
+        Template options = new Template(300, List.of(new FieldSpecifier(149, 4, 0)), 1);
+        registry.register(new TemplateKey("192.0.2.1", 1, 256), FLOW_TEMPLATE, ie -> null);
+        registry.register(new TemplateKey("192.0.2.1", 1, 300), options, ie -> null);
+
+        registry.withdrawAll("192.0.2.1", 1, false);
+
+        assertEquals(1, registry.size());
+        assertTrue(registry.get(new TemplateKey("192.0.2.1", 1, 300)).isOptionsTemplate());
+    }
+
+    @Test
+    void testFixedLengthTemplateDecodesWithPrecomputedOffsets() {
+        CompiledTemplate compiled = CompiledTemplate.compile(FLOW_TEMPLATE, ie -> null);
+        assertEquals(10, compiled.getFixedRecordLength());
+
+        ByteBuffer buf = ByteBuffer.allocate(10).putInt(0xC0000201).putShort((short) 443).putInt(1500);
+        IpfixRecord record = new IpfixRecord();
+        assertEquals(10, compiled.decodeRecord(buf, 0, record));
+        assertEquals("192.0.2.1", record.getSourceIPv4Address());
+        assertEquals(443, record.getSourceTransportPort());
+        assertEquals(1500L, record.getOctetDeltaCount());
+    }
+}
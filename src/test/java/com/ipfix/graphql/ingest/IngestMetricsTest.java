@@ -0,0 +1,42 @@
+package com.ipfix.graphql.ingest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestMetricsTest {
+    
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final IngestMetrics metrics = new IngestMetrics(registry);
+    
+    @Test
+    void testRecordsWrittenChunks() {
+        long start = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5);
+        metrics.written(10, start);
+        metrics.written(0, start);
+        metrics.written(3, System.nanoTime());
+        
+        assertEquals(13, registry.get("ipfix.ingest.records").counter().count());
+        Timer write = registry.get("ipfix.ingest.write").timer();
+        assertEquals(3, write.count());
+        assertTrue(write.max(TimeUnit.MILLISECONDS) >= 5);
+        assertEquals(0, registry.get("ipfix.ingest.latency").timer().count());
+    }
+    
+    @Test
+    void testRecordsBatchLatency() {
+        metrics.stored(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(20));
+        metrics.stored(System.nanoTime());
+        
+        Timer latency = registry.get("ipfix.ingest.latency").timer();
+        assertEquals(2, latency.count());
+        assertTrue(latency.max(TimeUnit.MILLISECONDS) >= 20);
+        assertEquals(0, registry.get("ipfix.ingest.write").timer().count());
+        assertEquals(0, registry.get("ipfix.ingest.records").counter().count());
+    }
+}
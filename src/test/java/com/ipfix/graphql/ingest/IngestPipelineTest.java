@@ -0,0 +1,152 @@
+package com.ipfix.graphql.ingest;
+
+import com.ipfix.graphql.config.IpfixIngestProperties;
+import com.ipfix.graphql.config.IpfixSubscriptionProperties;
+import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.repository.IpfixRecordRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestPipelineTest {
+    
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private IngestPipeline pipeline;
+    
+    @AfterEach
+    void tearDown() {
+        pipeline.stop();
+    }
+    
+    @Test
+    void testStoresRecordsFromConcurrentProducers() throws Exception {
+        IpfixRecordRepository store = new IpfixRecordRepository();
+        pipeline = start(store, 4, 64);
+        List<Thread> producers = new ArrayList<>();
+        List<CompletableFuture<List<IpfixRecord>>> submitted = new ArrayList<>();
+        for (int p = 0; p < 6; p++) {
+            int producer = p;
+            producers.add(new Thread(() -> {
+                for (int b = 0; b < 40; b++) {
+                    List<IpfixRecord> batch = records(producer * 1000 + b * 10, 10);
+                    while (true) {
+                        try {
+                            CompletableFuture<List<IpfixRecord>> future = pipeline.submit(batch);
+                            synchronized (submitted) {
+                                submitted.add(future);
+                            }
+                            break;
+                        } catch (IngestRejectedException e) {
+                            Thread.onSpinWait();
+                        }
+                    }
+                }
+            }));
+        }
+        producers.forEach(Thread::start);
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        for (CompletableFuture<List<IpfixRecord>> future : submitted) {
+            for (IpfixRecord record : future.get(10, TimeUnit.SECONDS)) {
+                assertNotNull(record.getId());
+                assertNotNull(record.getTimestamp());
+            }
+        }
+        assertEquals(2400, store.count());
+        assertEquals(0, pipeline.getQueuedRecords());
+        assertEquals(2400, registry.get("ipfix.ingest.records").counter().count());
+        assertEquals(240, registry.get("ipfix.ingest.latency").timer().count());
+    }
+    
+    @Test
+    void testRefusesRecordsWhileShardIsFull() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IpfixRecordRepository store = new IpfixRecordRepository() {
+            @Override
+            public List<IpfixRecord> saveAll(List<IpfixRecord> batch) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.saveAll(batch);
+            }
+        };
+        pipeline = start(store, 1, 8);
+        CompletableFuture<List<IpfixRecord>> first = pipeline.submit(records(0, 4));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        CompletableFuture<List<IpfixRecord>> second = pipeline.submit(records(4, 8));
+        
+        assertThrows(IngestRejectedException.class, () -> pipeline.submit(records(12, 1)));
+        assertEquals(3, pipeline.offer(records(13, 3)));
+        assertEquals(1, pipeline.getRejectedRecords());
+        assertEquals(3, pipeline.getDroppedRecords());
+        assertFalse(first.isDone());
+        
+        release.countDown();
+        assertEquals(4, first.get(5, TimeUnit.SECONDS).size());
+        assertEquals(8, second.get(5, TimeUnit.SECONDS).size());
+        assertEquals(12, store.count());
+    }
+    
+    @Test
+    void testFailsOnlyBatchesWhoseWriteFailed() throws Exception {
+        IpfixRecordRepository store = new IpfixRecordRepository() {
+            @Override
+            public List<IpfixRecord> saveAll(List<IpfixRecord> batch) {
+                if (batch.stream().anyMatch(record -> record.getProtocolIdentifier() == 99)) {
+                    throw new IllegalStateException("store unavailable");
+                }
+                return super.saveAll(batch);
+            }
+        };
+        pipeline = start(store, 1, 64);
+        assertEquals(5, pipeline.submit(records(0, 5)).get(5, TimeUnit.SECONDS).size());
+        List<IpfixRecord> failing = records(5, 5);
+        failing.get(2).setProtocolIdentifier(99);
+        ExecutionException failed = assertThrows(ExecutionException.class,
+                () -> pipeline.submit(failing).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, failed.getCause());
+        assertEquals(3, pipeline.submit(records(10, 3)).get(5, TimeUnit.SECONDS).size());
+        assertEquals(8, store.count());
+        
+        assertThrows(IllegalArgumentException.class,
+                () -> pipeline.submit(List.of(IpfixRecord.builder().sourceIPv4Address("10.0.0.300").build())));
+    }
+    
+    private IngestPipeline start(IpfixRecordRepository store, int shards, int ringCapacity) {
+        IpfixIngestProperties properties = new IpfixIngestProperties();
+        properties.setShards(shards);
+        properties.setRingCapacity(ringCapacity);
+        properties.setBatchSize(16);
+        IngestPipeline pipeline = new IngestPipeline(properties, store,
+                new LiveFlowPublisher(new IpfixSubscriptionProperties()), new IngestMetrics(registry));
+        pipeline.start();
+        return pipeline;
+    }
+    
+    private static List<IpfixRecord> records(int from, int count) {
+        return new ArrayList<>(IntStream.range(from, from + count)
+                .mapToObj(i -> IpfixRecord.builder()
+                        .sourceIPv4Address("10.0." + (i / 250 % 250) + "." + (i % 250))
+                        .destinationIPv4Address("192.168.0.1")
+                        .sourceTransportPort(1024 + i % 7).destinationTransportPort(443)
+                        .protocolIdentifier(6)
+                        .build())
+                .toList());
+    }
+}
@@ -0,0 +1,90 @@
+package com.ipfix.graphql.ingest;
+
+import com.ipfix.graphql.config.IpfixSubscriptionProperties;
+import com.ipfix.graphql.model.FlowFilter;
+import com.ipfix.graphql.model.IpfixRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveFlowPublisherTest {
+    
+    private LiveFlowPublisher publisher;
+    
+    @BeforeEach
+    void setUp() {
+        IpfixSubscriptionProperties properties = new IpfixSubscriptionProperties();
+        properties.setBufferSize(4);
+        publisher = new LiveFlowPublisher(properties);
+    }
+    
+    @Test
+    void testSharesStreamsBetweenEqualFilters() {
+        List<String> first = new ArrayList<>();
+        List<String> second = new ArrayList<>();
+        List<String> tcp = new ArrayList<>();
+        Disposable a = publisher.subscribe(FlowMatcher.of(FlowFilter.builder().sourceCidr("10.1.0.0/16").build()))
+                .subscribe(record -> first.add(record.getId()));
+        Disposable b = publisher.subscribe(FlowMatcher.of(FlowFilter.builder().sourceCidr("10.1.2.3/16").build()))
+                .subscribe(record -> second.add(record.getId()));
+        Disposable c = publisher.subscribe(FlowMatcher.of(FlowFilter.builder().protocolIdentifier(6).build()))
+                .subscribe(record -> tcp.add(record.getId()));
+        assertEquals(2, publisher.getStreamCount());
+        
+        publisher.publish(List.of(
+                IpfixRecord.builder().id("inside").sourceIPv4Address("10.1.9.9").protocolIdentifier(17).build(),
+                IpfixRecord.builder().id("outside").sourceIPv4Address("10.2.0.1").protocolIdentifier(6).build(),
+                IpfixRecord.builder().id("v6").sourceIPv6Address("2001:db8::1").protocolIdentifier(6).build()));
+        
+        assertEquals(List.of("inside"), first);
+        assertEquals(List.of("inside"), second);
+        assertEquals(List.of("outside", "v6"), tcp);
+        
+        a.dispose();
+        assertEquals(2, publisher.getStreamCount());
+        b.dispose();
+        c.dispose();
+        assertEquals(0, publisher.getStreamCount());
+    }
+    
+    @Test
+    void testDropsOldestRecordsForSlowSubscribers() {
+        List<String> received = new ArrayList<>();
+        BaseSubscriber<IpfixRecord> slow = new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                // No demand until the test asks for records
+            }
+            
+            @Override
+            protected void hookOnNext(IpfixRecord record) {
+                received.add(record.getId());
+            }
+        };
+        publisher.subscribe(FlowMatcher.ALL).subscribe(slow);
+        
+        publisher.publish(IntStream.range(0, 10)
+                .mapToObj(i -> IpfixRecord.builder().id("r" + i).build())
+                .toList());
+        slow.request(10);
+        
+        assertEquals(List.of("r6", "r7", "r8", "r9"), received);
+        assertEquals(6, publisher.getDroppedRecords());
+        slow.dispose();
+        assertEquals(0, publisher.getStreamCount());
+    }
+    
+    @Test
+    void testRejectsInvalidCidr() {
+        assertThrows(IllegalArgumentException.class,
+                () -> FlowMatcher.of(FlowFilter.builder().destinationCidr("10.0.0.0/40").build()));
+    }
+}
@@ -0,0 +1,107 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.config.IpfixQueryCacheProperties;
+import com.ipfix.graphql.model.FlowGroupBy;
+import com.ipfix.graphql.model.FlowMetric;
+import com.ipfix.graphql.model.IpfixRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingIpfixRecordStoreTest {
+    
+    private static final Instant BASE = Instant.parse("2024-01-01T00:00:00Z");
+    
+    private IpfixRecordRepository repository;
+    private CachingIpfixRecordStore store;
+    
+    @BeforeEach
+    void setUp() {
+        repository = new IpfixRecordRepository();
+        store = new CachingIpfixRecordStore(repository, new IpfixQueryCacheProperties());
+        // One record a minute for 20 minutes, TCP and UDP alternating
+        for (int i = 0; i < 20; i++) {
+            store.save(record("r" + i, BASE.plusSeconds(60L * i), i % 2 == 0 ? 6 : 17));
+        }
+    }
+    
+    @Test
+    void testInvalidatesOnlyAffectedResults() {
+        List<IpfixRecord> tcp = store.findByProtocol(6);
+        assertEquals(10, tcp.size());
+        long queries = repository.indexedQueries();
+        assertSame(tcp, store.findByProtocol(6));
+        assertEquals(queries, repository.indexedQueries());
+        assertEquals(1, store.cacheStats().hitCount());
+        
+        store.save(record("u", BASE.plusSeconds(1200), 17));
+        assertSame(tcp, store.findByProtocol(6));
+        store.save(record("t", BASE.plusSeconds(1200), 6));
+        assertEquals(11, store.findByProtocol(6).size());
+        assertEquals(1, store.invalidatedResults());
+        
+        List<IpfixRecord> older = store.findPage(new RecordKey(BASE.plusSeconds(600), "r10"), 3);
+        store.save(record("newer", BASE.plusSeconds(1500), 6));
+        assertSame(older, store.findPage(new RecordKey(BASE.plusSeconds(600), "r10"), 3));
+        
+        store.deleteAll();
+        assertTrue(store.findByProtocol(6).isEmpty());
+        assertEquals(0, store.findPage(new RecordKey(BASE.plusSeconds(600), "r10"), 3).size());
+    }
+    
+    @Test
+    void testInvalidatesEndedWindowsOnLateRecordsAndDeletes() {
+        Instant start = BASE.plusSeconds(300);
+        Instant end = BASE.plusSeconds(599);
+        List<IpfixRecord> window = store.findByTimeRange(start, end);
+        assertEquals(5, window.size());
+        var groups = store.aggregate(FlowGroupBy.PROTOCOL, FlowMetric.BYTES, 10, start, end);
+        
+        store.save(record("later", BASE.plusSeconds(900), 6));
+        assertSame(window, store.findByTimeRange(start, end));
+        assertSame(groups, store.aggregate(FlowGroupBy.PROTOCOL, FlowMetric.BYTES, 10, start, end));
+        
+        store.save(record("late", BASE.plusSeconds(450), 6));
+        assertEquals(6, store.findByTimeRange(start, end).size());
+        assertNotSame(groups, store.aggregate(FlowGroupBy.PROTOCOL, FlowMetric.BYTES, 10, start, end));
+        
+        assertTrue(store.deleteById("r5"));
+        assertEquals(5, store.findByTimeRange(start, end).size());
+        assertTrue(store.findByTimeRange(start, end).stream().noneMatch(record -> record.getId().equals("r5")));
+    }
+    
+    @Test
+    void testExpiresEndedWindowsAfterEndedTtl() {
+        IpfixQueryCacheProperties properties = new IpfixQueryCacheProperties();
+        properties.setEndedTtl(Duration.ofNanos(1));
+        store = new CachingIpfixRecordStore(repository, properties);
+        Instant start = BASE.plusSeconds(300);
+        Instant end = BASE.plusSeconds(599);
+        
+        var groups = store.aggregate(FlowGroupBy.PROTOCOL, FlowMetric.BYTES, 10, start, end);
+        assertNotSame(groups, store.aggregate(FlowGroupBy.PROTOCOL, FlowMetric.BYTES, 10, start, end));
+        assertEquals(0, store.cacheStats().hitCount());
+    }
+    
+    @Test
+    void testKeysResultsByProjection() {
+        IpfixRecordStore addresses = store.reading(RecordProjection.of(List.of("sourceIPv4Address")));
+        List<IpfixRecord> projected = addresses.findPage(null, 5);
+        
+        assertNotSame(projected, store.findPage(null, 5));
+        assertSame(projected, store.reading(RecordProjection.of(List.of("sourceIPv4Address"))).findPage(null, 5));
+        addresses.save(record("new", BASE.plusSeconds(1200), 6));
+        assertEquals("new", store.reading(RecordProjection.of(List.of("sourceIPv4Address")))
+                .findPage(null, 5).get(0).getId());
+    }
+    
+    private static IpfixRecord record(String id, Instant timestamp, int protocol) {
+        return IpfixRecord.builder().id(id).timestamp(timestamp).protocolIdentifier(protocol)
+                .sourceIPv4Address("10.0.0.1").octetDeltaCount(100L).packetDeltaCount(1L).build();
+    }
+}
@@ -0,0 +1,246 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.model.AddressDirection;
+import com.ipfix.graphql.model.DpiInfo;
+import com.ipfix.graphql.model.FlowAggregate;
+import com.ipfix.graphql.model.FlowFilter;
+import com.ipfix.graphql.model.FlowGroupBy;
+import com.ipfix.graphql.model.FlowMetric;
+import com.ipfix.graphql.model.FlowTimeBucket;
+import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.model.TextField;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarIpfixRecordStoreTest {
+    
+    private ColumnarIpfixRecordStore store;
+    
+    @BeforeEach
+    void setUp() {
+        store = new ColumnarIpfixRecordStore();
+    }
+    
+    @Test
+    void testRoundTripsEveryColumn() {
+        Instant start = Instant.parse("2024-01-01T00:00:00.123Z");
+        IpfixRecord record = IpfixRecord.builder()
+                .octetDeltaCount(1_500_000_000_000L)
+                .packetDeltaCount(1000L)
+                .protocolIdentifier(6)
+                .tcpControlBits(0x12)
+                .sourceTransportPort(54321)
+                .destinationTransportPort(443)
+                .sourceIPv4Address("192.168.1.100")
+                .destinationIPv4Address("255.255.255.255")
+                .sourceIPv6Address("2001:db8::1")
+                .destinationIPv6Address("::ffff:10.0.0.1")
+                .flowStartMilliseconds(start)
+                .flowEndMilliseconds(Instant.parse("2024-01-01T00:00:00.123456Z"))
+                .mplsLabelStackSection3(42)
+                .applicationName("https")
+                .dpiInfo(DpiInfo.builder().httpRequestHost("example.com").build())
+                .exporterIPv6Address("fe80::1:0:0:1")
+                .build();
+        
+        IpfixRecord saved = store.save(record);
+        IpfixRecord found = store.findById(saved.getId()).orElseThrow();
+        
+        assertNotSame(saved, found);
+        assertEquals(saved.getId(), found.getId());
+        assertEquals(saved.getTimestamp(), found.getTimestamp());
+        assertEquals(1_500_000_000_000L, found.getOctetDeltaCount());
+        assertEquals(1000L, found.getPacketDeltaCount());
+        assertNull(found.getDeltaFlowCount());
+        assertEquals(6, found.getProtocolIdentifier());
+        assertEquals(0x12, found.getTcpControlBits());
+        assertEquals(54321, found.getSourceTransportPort());
+        assertEquals(443, found.getDestinationTransportPort());
+        assertEquals("192.168.1.100", found.getSourceIPv4Address());
+        assertEquals("255.255.255.255", found.getDestinationIPv4Address());
+        assertEquals("2001:db8::1", found.getSourceIPv6Address());
+        assertEquals("::ffff:a00:1", found.getDestinationIPv6Address());
+        assertEquals(start, found.getFlowStartMilliseconds());
+        assertEquals(record.getFlowEndMilliseconds(), found.getFlowEndMilliseconds());
+        assertEquals(42, found.getMplsLabelStackSection3());
+        assertNull(found.getMplsTopLabelStackSection());
+        assertEquals("https", found.getApplicationName());
+        assertEquals("example.com", found.getDpiInfo().getHttpRequestHost());
+        assertEquals("fe80::1:0:0:1", found.getExporterIPv6Address());
+        assertNull(found.getIngressInterface());
+    }
+    
+    @Test
+    void testFindsAddressesByValue() {
+        store.save(IpfixRecord.builder().sourceIPv6Address("2001:DB8:0:0:0:0:0:1").build());
+        store.save(IpfixRecord.builder().sourceIPv4Address("10.0.0.1").build());
+        
+        assertEquals(1, store.findBySourceIp("2001:db8::1").size());
+        assertEquals(1, store.findBySourceIp("10.0.0.1").size());
+        assertTrue(store.findBySourceIp("host.example").isEmpty());
+        assertThrows(IllegalArgumentException.class,
+                () -> store.save(IpfixRecord.builder().sourceIPv4Address("host.example").build()));
+        assertTrue(store.findBySourceIp("10.0.0.2").isEmpty());
+        assertTrue(store.findByDestinationIp("10.0.0.1").isEmpty());
+    }
+    
+    @Test
+    void testFindBySubnet() {
+        store.save(IpfixRecord.builder().id("host").sourceIPv4Address("10.1.2.3").destinationIPv4Address("10.1.2.4")
+                .build());
+        store.save(IpfixRecord.builder().id("aggregate").sourceIPv4Address("10.1.0.0").sourceIPv4PrefixLength(16)
+                .build());
+        store.save(IpfixRecord.builder().id("inbound").destinationIPv4Address("10.1.2.200").build());
+        store.save(IpfixRecord.builder().id("summarized").sourceIPv4Address("10.1.2.5").sourceIPv4PrefixLength(16)
+                .build());
+        store.save(IpfixRecord.builder().id("v6").sourceIPv6Address("2001:db8:ffff::5").sourceIPv6PrefixLength(64)
+                .build());
+        
+        assertEquals(List.of("aggregate", "host", "summarized"), ids(store.findBySubnet(
+                IpNetwork.parse("10.1.0.0/16"), AddressDirection.SOURCE, null, 10)).stream().sorted().toList());
+        assertEquals(List.of("host", "summarized"), ids(store.findBySubnet(
+                IpNetwork.parse("10.1.2.0/24"), AddressDirection.SOURCE, null, 10)).stream().sorted().toList());
+        assertEquals(3, store.findBySubnet(IpNetwork.parse("10.1.2.0/24"), AddressDirection.ANY, null, 10).size());
+        assertEquals(List.of("summarized"), ids(store.findWhere(FlowQuery.compile(FlowFilter.builder()
+                .sourceCidr("10.1.2.4/30").build()), null, 10)));
+        assertEquals(List.of("inbound"),
+                ids(store.findBySubnet(IpNetwork.parse("10.1.2.128/25"), AddressDirection.DESTINATION, null, 10)));
+        assertEquals(List.of("v6"),
+                ids(store.findBySubnet(IpNetwork.parse("2001:db8::/32"), AddressDirection.ANY, null, 10)));
+        assertEquals(List.of("v6"),
+                ids(store.findBySubnet(IpNetwork.parse("2001:db8:ffff::/96"), AddressDirection.ANY, null, 10)));
+        assertTrue(store.findBySubnet(IpNetwork.parse("2001:db8:fffe::/48"), AddressDirection.ANY, null, 10)
+                .isEmpty());
+    }
+    
+    @Test
+    void testKeepsNonUuidIdsAndReplacesOnSave() {
+        store.save(IpfixRecord.builder().id("record-1").protocolIdentifier(6).build());
+        store.save(IpfixRecord.builder().id("record-1").protocolIdentifier(17).build());
+        
+        assertEquals(1, store.count());
+        assertEquals(17, store.findById("record-1").orElseThrow().getProtocolIdentifier());
+        assertTrue(store.findByProtocol(6).isEmpty());
+        assertEquals(1, store.findByProtocol(17).size());
+        
+        assertTrue(store.deleteById("record-1"));
+        assertFalse(store.deleteById("record-1"));
+        assertEquals(0, store.count());
+        assertTrue(store.findById("record-1").isEmpty());
+    }
+    
+    @Test
+    void testOrdersOutOfOrderTimestamps() {
+        Instant base = Instant.parse("2024-01-01T00:00:00Z");
+        for (int i : new int[]{3, 1, 4, 0, 2}) {
+            store.save(IpfixRecord.builder().id("r" + i).timestamp(base.plusSeconds(i)).build());
+        }
+        
+        assertEquals(List.of("r4", "r3", "r2", "r1", "r0"), ids(store.findAll(10, 0)));
+        assertEquals(List.of("r0", "r1", "r2", "r3", "r4"), ids(store.findAll()));
+        assertEquals(List.of("r3", "r2", "r1"),
+                ids(store.findByTimeRange(base.plusSeconds(1), base.plusSeconds(3))));
+        assertEquals(List.of("r1", "r0"),
+                ids(store.findPage(new RecordKey(base.plusSeconds(2), "r2"), 10)));
+    }
+    
+    @Test
+    void testCompactsTombstonesAndPages() {
+        List<IpfixRecord> batch = new ArrayList<>();
+        for (int i = 0; i < 3 * ColumnChunk.SIZE; i++) {
+            batch.add(IpfixRecord.builder().protocolIdentifier(i % 2 == 0 ? 6 : 17).build());
+        }
+        store.saveAll(batch);
+        for (int i = 0; i < batch.size() - 10; i++) {
+            assertTrue(store.deleteById(batch.get(i).getId()));
+        }
+        
+        assertEquals(10, store.count());
+        List<IpfixRecord> newest = store.findPage(null, 4);
+        assertEquals(List.of(9, 8, 7, 6).stream().map(i -> batch.get(batch.size() - 10 + i).getId()).toList(),
+                ids(newest));
+        List<IpfixRecord> next = store.findPage(RecordKey.of(newest.get(3)), 100);
+        assertEquals(6, next.size());
+        assertEquals(5, store.findByProtocol(6).size());
+        assertTrue(store.findById(batch.get(0).getId()).isEmpty());
+        assertTrue(store.findById(batch.get(batch.size() - 1).getId()).isPresent());
+    }
+    
+    @Test
+    void testFindsTextAcrossCompaction() {
+        List<IpfixRecord> batch = new ArrayList<>();
+        for (int i = 0; i < 3 * ColumnChunk.SIZE; i++) {
+            batch.add(IpfixRecord.builder().dpiInfo(DpiInfo.builder()
+                    .sslServerName(i % 100 == 0 ? "cdn" + i + ".example.com" : "host" + i + ".example.org").build())
+                    .build());
+        }
+        store.saveAll(batch);
+        Set<TextField> names = Set.of(TextField.SSL_SERVER_NAME);
+        
+        assertEquals(newestFirst(batch, 0), ids(store.findByText(TextSearch.parse("*.example.com"), names, null, 1000)));
+        
+        int kept = batch.size() - 150;
+        for (int i = 0; i < kept; i++) {
+            store.deleteById(batch.get(i).getId());
+        }
+        assertEquals(newestFirst(batch, kept),
+                ids(store.findByText(TextSearch.parse("*.example.com"), names, null, 1000)));
+        assertEquals(150 - newestFirst(batch, kept).size(),
+                store.findByText(TextSearch.parse("host*"), names, null, 1000).size());
+    }
+    
+    @Test
+    void testAggregatesAcrossChunks() {
+        Instant base = Instant.parse("2024-01-01T00:00:00Z");
+        List<IpfixRecord> batch = new ArrayList<>();
+        for (int i = 0; i < 2 * ColumnChunk.SIZE + 100; i++) {
+            batch.add(IpfixRecord.builder().timestamp(base.plusMillis(i))
+                    .sourceIPv4Address(i % 3 == 0 ? "10.0.0.1" : "10.0.0.2").protocolIdentifier(6)
+                    .applicationName(i % 2 == 0 ? "https" : null).octetDeltaCount(10L).packetDeltaCount(1L).build());
+        }
+        batch.add(IpfixRecord.builder().timestamp(base).sourceIPv6Address("2001:db8::1").octetDeltaCount(7L).build());
+        store.saveAll(batch);
+        store.deleteById(batch.get(0).getId());
+        
+        int rows = 2 * ColumnChunk.SIZE + 100;
+        long first = (rows + 2) / 3 - 1;
+        List<FlowAggregate> top = store.aggregate(FlowGroupBy.SOURCE_IP, FlowMetric.FLOWS, 10, null, null);
+        assertEquals(List.of(new FlowAggregate("10.0.0.2", (rows - first - 1) * 10, rows - first - 1, rows - first - 1),
+                new FlowAggregate("10.0.0.1", first * 10, first, first),
+                new FlowAggregate("2001:db8::1", 7, 0, 1)), top);
+        assertEquals(List.of(new FlowAggregate("6", (rows - 1) * 10L, rows - 1, rows - 1)),
+                store.aggregate(FlowGroupBy.PROTOCOL, FlowMetric.BYTES, 10, null, null));
+        assertEquals(List.of(new FlowAggregate("https", 20, 2, 2)), store.aggregate(FlowGroupBy.APPLICATION_NAME,
+                FlowMetric.BYTES, 10, base.plusMillis(1), base.plusMillis(4)));
+        
+        List<FlowTimeBucket> series = store.timeSeries(base, base.plusSeconds(19), Duration.ofSeconds(10));
+        assertEquals(List.of(new FlowTimeBucket(base, 99_997, 9_999, 10_000),
+                new FlowTimeBucket(base.plusSeconds(10), 90_010, 9_001, 9_001)), series);
+    }
+    
+    /**
+     * IDs of the records from {@code from} on with a cdn host, newest first
+     */
+    private static List<String> newestFirst(List<IpfixRecord> batch, int from) {
+        List<String> ids = new ArrayList<>();
+        for (int i = batch.size() - 1; i >= from; i--) {
+            if (i % 100 == 0) {
+                ids.add(batch.get(i).getId());
+            }
+        }
+        return ids;
+    }
+    
+    private static List<String> ids(List<IpfixRecord> records) {
+        return records.stream().map(IpfixRecord::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,135 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.model.CertEnterpriseInfo;
+import com.ipfix.graphql.model.DpiInfo;
+import com.ipfix.graphql.model.ElementCondition;
+import com.ipfix.graphql.model.FlowFilter;
+import com.ipfix.graphql.model.IpfixRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlowQueryTest {
+    
+    private IpfixRecordRepository repository;
+    
+    @BeforeEach
+    void setUp() {
+        repository = new IpfixRecordRepository();
+        repository.deleteAll();
+    }
+    
+    @Test
+    void testMatchesConditionsAcrossNestedElements() {
+        IpfixRecord web = IpfixRecord.builder()
+                .sourceIPv4Address("10.1.2.3")
+                .protocolIdentifier(6)
+                .destinationTransportPort(443)
+                .octetDeltaCount(5000L)
+                .dpiInfo(DpiInfo.builder().httpRequestHost("api.example.com").httpStatusCode(200).build())
+                .build();
+        IpfixRecord dns = IpfixRecord.builder()
+                .sourceIPv4Address("10.1.2.4")
+                .protocolIdentifier(17)
+                .destinationTransportPort(53)
+                .octetDeltaCount(80L)
+                .certInfo(CertEnterpriseInfo.builder().silkAppLabel(53).build())
+                .build();
+        
+        FlowQuery query = FlowQuery.compile(FlowFilter.builder()
+                .sourceCidr("10.1.0.0/16")
+                .where(List.of(ElementCondition.builder().element("octetDeltaCount").gte("1000").build()))
+                .or(List.of(
+                        filter(ElementCondition.builder().element("dpiInfo.httpRequestHost").prefix("api.").build()),
+                        filter(ElementCondition.builder().element("certInfo.silkAppLabel").in(List.of("53")).build())))
+                .build());
+        
+        assertTrue(query.test(web));
+        assertFalse(query.test(dns));
+        assertTrue(FlowQuery.compile(filter(ElementCondition.builder()
+                .element("certInfo.silkAppLabel").in(List.of("80", "53")).build())).test(dns));
+        assertTrue(FlowQuery.compile(filter(ElementCondition.builder()
+                .element("dpiInfo.httpRequestHost").isNull(true).build())).test(dns));
+    }
+    
+    @Test
+    void testEquivalentFiltersCompileEqual() {
+        FlowQuery lessThan = FlowQuery.compile(filter(ElementCondition.builder()
+                .element("destinationTransportPort").lt("1024").build()));
+        FlowQuery atMost = FlowQuery.compile(filter(ElementCondition.builder()
+                .element("destinationTransportPort").lte("1023").build()));
+        
+        assertEquals(lessThan, atMost);
+        assertEquals(lessThan.hashCode(), atMost.hashCode());
+    }
+    
+    @Test
+    void testRejectsInvalidConditions() {
+        assertThrows(IllegalArgumentException.class, () -> FlowQuery.compile(filter(
+                ElementCondition.builder().element("noSuchElement").eq("1").build())));
+        assertThrows(IllegalArgumentException.class, () -> FlowQuery.compile(filter(
+                ElementCondition.builder().element("octetDeltaCount").eq("many").build())));
+        assertThrows(IllegalArgumentException.class, () -> FlowQuery.compile(filter(
+                ElementCondition.builder().element("applicationName").gt("a").build())));
+        assertThrows(IllegalArgumentException.class, () -> FlowQuery.compile(filter(
+                ElementCondition.builder().element("octetDeltaCount").build())));
+    }
+    
+    @Test
+    void testPlansMostSelectiveIndex() {
+        List<IpfixRecord> batch = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            batch.add(IpfixRecord.builder()
+                    .sourceIPv4Address(i % 50 == 0 ? "192.168.7." + i % 250 : "10.0." + i / 250 + "." + i % 250)
+                    .protocolIdentifier(6)
+                    .build());
+        }
+        repository.saveAll(batch);
+        
+        FlowQuery narrow = FlowQuery.compile(FlowFilter.builder()
+                .protocolIdentifier(6)
+                .sourceCidr("192.168.7.0/24")
+                .build());
+        FlowQuery past = FlowQuery.compile(FlowFilter.builder()
+                .protocolIdentifier(6)
+                .end(Instant.EPOCH)
+                .build());
+        
+        assertInstanceOf(FlowQuery.BySubnet.class, narrow.plan(repository));
+        assertInstanceOf(FlowQuery.ByTime.class, past.plan(repository));
+        assertInstanceOf(FlowQuery.Scan.class, FlowQuery.ALL.plan(repository));
+        assertEquals(10, repository.findWhere(narrow, null, 100).size());
+        assertTrue(repository.findWhere(past, null, 100).isEmpty());
+    }
+    
+    @Test
+    void testPagesPastSparseMatches() {
+        List<IpfixRecord> batch = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            batch.add(IpfixRecord.builder()
+                    .sourceIPv4Address("10.0.0.1")
+                    .destinationTransportPort(i % 100 == 0 ? 22 : 443)
+                    .build());
+        }
+        repository.saveAll(batch);
+        FlowQuery ssh = FlowQuery.compile(filter(ElementCondition.builder()
+                .element("destinationTransportPort").eq("22").build()));
+        
+        List<IpfixRecord> first = repository.findWhere(ssh, null, 20);
+        List<IpfixRecord> rest = repository.findWhere(ssh, RecordKey.of(first.get(first.size() - 1)), 20);
+        
+        assertEquals(20, first.size());
+        assertEquals(10, rest.size());
+        assertTrue(rest.stream().allMatch(record -> record.getDestinationTransportPort() == 22));
+        assertTrue(RecordKey.of(rest.get(0)).compareTo(RecordKey.of(first.get(19))) < 0);
+    }
+    
+    private static FlowFilter filter(ElementCondition condition) {
+        return FlowFilter.builder().where(List.of(condition)).build();
+    }
+}
@@ -1,12 +1,32 @@
 package com.ipfix.graphql.repository;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ipfix.graphql.model.AddressDirection;
+import com.ipfix.graphql.model.BasicListElement;
+import com.ipfix.graphql.model.CertEnterpriseInfo;
+import com.ipfix.graphql.model.DpiInfo;
+import com.ipfix.graphql.model.ElementCondition;
+import com.ipfix.graphql.model.FlowAggregate;
+import com.ipfix.graphql.model.FlowFilter;
+import com.ipfix.graphql.model.FlowGroupBy;
+import com.ipfix.graphql.model.FlowMetric;
+import com.ipfix.graphql.model.FlowTimeBucket;
 import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.model.SubTemplateListElement;
+import com.ipfix.graphql.model.TextField;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -41,6 +61,41 @@ class IpfixRecordRepositoryTest {
         assertEquals("192.168.1.100", found.get().getSourceIPv4Address());
     }
     
+    @Test
+    void testSaveAll() {
+        List<IpfixRecord> batch = List.of(
+                IpfixRecord.builder().sourceIPv4Address("192.168.1.100").build(),
+                IpfixRecord.builder().sourceIPv4Address("192.168.1.101").build(),
+                IpfixRecord.builder().id("fixed-id").sourceIPv4Address("192.168.1.102").build());
+        
+        repository.saveAll(batch);
+        
+        assertEquals(3, repository.count());
+        assertEquals("fixed-id", batch.get(2).getId());
+        assertNotEquals(batch.get(0).getId(), batch.get(1).getId());
+        assertEquals(batch.get(0).getTimestamp(), batch.get(1).getTimestamp());
+        assertTrue(repository.findById(batch.get(1).getId()).isPresent());
+    }
+    
+    @Test
+    void testAssignsTimeOrderedIds() {
+        long before = System.currentTimeMillis();
+        List<IpfixRecord> first = List.of(IpfixRecord.builder().build(), IpfixRecord.builder().build());
+        repository.saveAll(first);
+        IpfixRecord single = repository.save(IpfixRecord.builder().build());
+        List<IpfixRecord> second = List.of(IpfixRecord.builder().build());
+        repository.saveAll(second);
+        
+        List<String> ids = List.of(first.get(0).getId(), first.get(1).getId(), single.getId(), second.get(0).getId());
+        assertEquals(ids.stream().sorted().toList(), ids);
+        assertEquals(4, ids.stream().distinct().count());
+        UUID id = UUID.fromString(single.getId());
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        assertTrue((id.getMostSignificantBits() >>> 16) >= before);
+        assertEquals(id.getLeastSignificantBits(), UUID.fromString(first.get(0).getId()).getLeastSignificantBits());
+    }
+    
     @Test
     void testFindBySourceIp() {
         IpfixRecord record1 = IpfixRecord.builder()
@@ -113,6 +168,201 @@ class IpfixRecordRepositoryTest {
         assertEquals("192.168.1.100", results.get(0).getSourceIPv4Address());
     }
     
+    @Test
+    void testIndexesReturnNewestFirst() {
+        repository.save(IpfixRecord.builder()
+                .id("older")
+                .timestamp(Instant.parse("2024-01-01T00:00:00Z"))
+                .destinationIPv6Address("2001:db8::1")
+                .build());
+        repository.save(IpfixRecord.builder()
+                .id("newer")
+                .timestamp(Instant.parse("2024-02-01T00:00:00Z"))
+                .destinationIPv6Address("2001:db8::1")
+                .build());
+        
+        List<IpfixRecord> results = repository.findByDestinationIp("2001:db8::1");
+        assertEquals(List.of("newer", "older"), results.stream().map(IpfixRecord::getId).toList());
+    }
+    
+    @Test
+    void testIndexesFollowUpdatesAndDeletes() {
+        IpfixRecord record = repository.save(IpfixRecord.builder()
+                .sourceIPv4Address("192.168.1.100")
+                .protocolIdentifier(6)
+                .build());
+        
+        repository.save(IpfixRecord.builder()
+                .id(record.getId())
+                .timestamp(record.getTimestamp())
+                .sourceIPv4Address("192.168.1.200")
+                .protocolIdentifier(17)
+                .build());
+        
+        assertTrue(repository.findBySourceIp("192.168.1.100").isEmpty());
+        assertTrue(repository.findByProtocol(6).isEmpty());
+        assertEquals(1, repository.findBySourceIp("192.168.1.200").size());
+        assertEquals(1, repository.count());
+        
+        repository.deleteById(record.getId());
+        assertTrue(repository.findBySourceIp("192.168.1.200").isEmpty());
+        assertTrue(repository.findByProtocol(17).isEmpty());
+        assertTrue(repository.findByTimeRange(Instant.EPOCH, Instant.now()).isEmpty());
+    }
+    
+    @Test
+    void testConcurrentWritesOfOneIdLeaveNoOrphans() throws InterruptedException {
+        Instant base = Instant.parse("2024-01-01T00:00:00Z");
+        List<Thread> writers = List.of(
+                new Thread(() -> {
+                    for (int i = 0; i < 5000; i++) {
+                        repository.save(IpfixRecord.builder().id("same").timestamp(base.plusSeconds(i % 2))
+                                .sourceIPv4Address("10.0.0.1").protocolIdentifier(6).build());
+                    }
+                }),
+                new Thread(() -> {
+                    for (int i = 0; i < 5000; i++) {
+                        repository.saveAll(List.of(
+                                IpfixRecord.builder().id("same").timestamp(base.plusSeconds(i % 3))
+                                        .sourceIPv4Address("10.0.0.2").protocolIdentifier(17).build(),
+                                IpfixRecord.builder().id("other" + i).timestamp(base).build()));
+                    }
+                }),
+                new Thread(() -> {
+                    for (int i = 0; i < 5000; i++) {
+                        repository.deleteById("same");
+                    }
+                }));
+        writers.forEach(Thread::start);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        
+        Optional<IpfixRecord> stored = repository.findById("same");
+        List<IpfixRecord> indexed = new ArrayList<>(repository.findByProtocol(6));
+        indexed.addAll(repository.findByProtocol(17));
+        List<IpfixRecord> bySource = new ArrayList<>(repository.findBySourceIp("10.0.0.1"));
+        bySource.addAll(repository.findBySourceIp("10.0.0.2"));
+        List<IpfixRecord> inRange = repository.findByTimeRange(base, base.plusSeconds(2)).stream()
+                .filter(record -> record.getId().equals("same")).toList();
+        assertEquals(stored.stream().toList(), indexed);
+        assertEquals(stored.stream().toList(), bySource);
+        assertEquals(stored.stream().toList(), inRange);
+        assertEquals(5000 + stored.stream().count(), repository.count());
+    }
+    
+    @Test
+    void testFindAllPagesNewestFirst() {
+        Instant base = Instant.parse("2024-01-01T00:00:00Z");
+        for (int i = 0; i < 10; i++) {
+            repository.save(IpfixRecord.builder()
+                    .id("record-" + i)
+                    .timestamp(base.plusSeconds(i))
+                    .build());
+        }
+        
+        List<IpfixRecord> firstPage = repository.findAll(3, 0);
+        assertEquals(List.of("record-9", "record-8", "record-7"), firstPage.stream().map(IpfixRecord::getId).toList());
+        
+        List<IpfixRecord> lastPage = repository.findAll(3, 8);
+        assertEquals(List.of("record-1", "record-0"), lastPage.stream().map(IpfixRecord::getId).toList());
+        
+        assertTrue(repository.findAll(3, 10).isEmpty());
+    }
+    
+    @Test
+    void testFindPageAfterCursor() {
+        Instant base = Instant.parse("2024-01-01T00:00:00Z");
+        for (int i = 0; i < 5; i++) {
+            repository.save(IpfixRecord.builder()
+                    .id("record-" + i)
+                    .timestamp(base.plusSeconds(i))
+                    .protocolIdentifier(i % 2 == 0 ? 6 : 17)
+                    .build());
+        }
+        
+        List<IpfixRecord> firstPage = repository.findPage(null, 2);
+        assertEquals(List.of("record-4", "record-3"), firstPage.stream().map(IpfixRecord::getId).toList());
+        
+        RecordKey cursor = RecordKey.of(firstPage.get(1));
+        List<IpfixRecord> nextPage = repository.findPage(cursor, 2);
+        assertEquals(List.of("record-2", "record-1"), nextPage.stream().map(IpfixRecord::getId).toList());
+        
+        List<IpfixRecord> tcpPage = repository.findByProtocol(6, RecordKey.of(firstPage.get(0)), 10);
+        assertEquals(List.of("record-2", "record-0"), tcpPage.stream().map(IpfixRecord::getId).toList());
+    }
+    
+    @Test
+    void testFindBySubnet() {
+        Instant base = Instant.parse("2024-01-01T00:00:00Z");
+        repository.save(IpfixRecord.builder().id("host").timestamp(base)
+                .sourceIPv4Address("10.1.2.3").destinationIPv4Address("10.1.2.4").build());
+        repository.save(IpfixRecord.builder().id("aggregate").timestamp(base.plusSeconds(1))
+                .sourceIPv4Address("10.1.0.0").sourceIPv4PrefixLength(16).build());
+        repository.save(IpfixRecord.builder().id("inbound").timestamp(base.plusSeconds(2))
+                .sourceIPv4Address("192.0.2.1").destinationIPv4Address("10.1.2.200").build());
+        repository.save(IpfixRecord.builder().id("v6").timestamp(base.plusSeconds(3))
+                .sourceIPv6Address("2001:DB8::5").build());
+        repository.save(IpfixRecord.builder().id("summarized").timestamp(base.plusSeconds(4))
+                .sourceIPv4Address("10.1.2.5").sourceIPv4PrefixLength(16).build());
+        
+        assertEquals(List.of("summarized", "aggregate", "host"),
+                ids(repository.findBySubnet(IpNetwork.parse("10.1.0.0/16"), AddressDirection.SOURCE, null, 10)));
+        assertEquals(List.of("summarized", "host"),
+                ids(repository.findBySubnet(IpNetwork.parse("10.1.2.0/24"), AddressDirection.SOURCE, null, 10)));
+        assertEquals(List.of("summarized", "inbound", "host"),
+                ids(repository.findBySubnet(IpNetwork.parse("10.1.2.0/24"), AddressDirection.ANY, null, 10)));
+        assertEquals(List.of("summarized"),
+                ids(repository.findBySubnet(IpNetwork.parse("10.1.2.5/32"), AddressDirection.SOURCE, null, 10)));
+        assertEquals(List.of("host"), ids(repository.findBySubnet(IpNetwork.parse("10.1.2.0/24"),
+                AddressDirection.ANY, new RecordKey(base.plusSeconds(2), "inbound"), 10)));
+        assertEquals(List.of("v6"),
+                ids(repository.findBySubnet(IpNetwork.parse("2001:db8::/32"), AddressDirection.ANY, null, 10)));
+        assertEquals(List.of("v6"), ids(repository.findBySourceIp("2001:db8:0:0:0:0:0:5")));
+        assertEquals(List.of("aggregate"), ids(repository.findBySourceIp("10.1.0.0")));
+    }
+    
+    @Test
+    void testAggregatesTopFlowsAndTimeSeries() {
+        Instant base = Instant.parse("2024-01-01T00:00:00Z");
+        repository.save(IpfixRecord.builder().timestamp(base).sourceIPv4Address("10.0.0.1")
+                .destinationTransportPort(443).octetDeltaCount(100L).packetDeltaCount(2L).build());
+        repository.save(IpfixRecord.builder().timestamp(base.plusSeconds(30)).sourceIPv4Address("10.0.0.1")
+                .destinationTransportPort(53).octetDeltaCount(50L).packetDeltaCount(1L).build());
+        repository.save(IpfixRecord.builder().timestamp(base.plusSeconds(70)).sourceIPv4Address("10.0.0.2")
+                .destinationTransportPort(443).octetDeltaCount(120L).packetDeltaCount(10L).build());
+        repository.save(IpfixRecord.builder().timestamp(base.plusSeconds(200)).sourceIPv6Address("2001:DB8::1")
+                .octetDeltaCount(10L).build());
+        
+        List<FlowAggregate> byBytes = repository.aggregate(FlowGroupBy.SOURCE_IP, FlowMetric.BYTES, 10, null, null);
+        assertEquals(List.of("10.0.0.1", "10.0.0.2", "2001:db8::1"),
+                byBytes.stream().map(FlowAggregate::getKey).toList());
+        assertEquals(new FlowAggregate("10.0.0.1", 150, 3, 2), byBytes.get(0));
+        assertEquals(List.of("10.0.0.2"), repository.aggregate(FlowGroupBy.SOURCE_IP, FlowMetric.PACKETS, 1, null, null)
+                .stream().map(FlowAggregate::getKey).toList());
+        assertEquals(List.of(new FlowAggregate("443", 100, 2, 1)), repository.aggregate(
+                FlowGroupBy.DESTINATION_PORT, FlowMetric.FLOWS, 5, base, base.plusSeconds(60)).subList(0, 1));
+        
+        List<FlowTimeBucket> series = repository.timeSeries(base, base.plusSeconds(179), Duration.ofMinutes(1));
+        assertEquals(3, series.size());
+        assertEquals(new FlowTimeBucket(base, 150, 3, 2), series.get(0));
+        assertEquals(new FlowTimeBucket(base.plusSeconds(60), 120, 10, 1), series.get(1));
+        assertEquals(new FlowTimeBucket(base.plusSeconds(120), 0, 0, 0), series.get(2));
+        assertThrows(IllegalArgumentException.class,
+                () -> repository.timeSeries(base, base.plusSeconds(60), Duration.ZERO));
+    }
+    
+    @Test
+    void testRejectsInvalidAddresses() {
+        assertThrows(IllegalArgumentException.class,
+                () -> repository.save(IpfixRecord.builder().sourceIPv4Address("10.0.0.256").build()));
+        assertThrows(IllegalArgumentException.class, () -> repository.saveAll(List.of(
+                IpfixRecord.builder().sourceIPv4Address("10.0.0.1").build(),
+                IpfixRecord.builder().destinationIPv6Address("10.0.0.1").build())));
+        assertThrows(IllegalArgumentException.class, () -> IpNetwork.parse("10.0.0.0/33"));
+        assertEquals(0, repository.count());
+    }
+    
     @Test
     void testDeleteById() {
         IpfixRecord record = IpfixRecord.builder()
@@ -140,4 +390,118 @@ class IpfixRecordRepositoryTest {
         repository.deleteAll();
         assertEquals(0, repository.count());
     }
+    
+    @Test
+    void testCountsQueriesAndEstimatesHeap() {
+        assertEquals(0, repository.estimatedHeapBytes());
+        repository.save(IpfixRecord.builder().sourceIPv4Address("192.168.1.100").applicationName("https").build());
+        repository.save(IpfixRecord.builder().sourceIPv4Address("192.168.1.101").build());
+        
+        repository.findBySourceIp("192.168.1.100");
+        repository.findPage(null, 10);
+        repository.findAll(10, 1);
+        repository.aggregate(FlowGroupBy.SOURCE_IP, FlowMetric.BYTES, 10, null, null);
+        
+        assertEquals(2, repository.indexedQueries());
+        assertEquals(2, repository.scannedQueries());
+        long heap = repository.estimatedHeapBytes();
+        assertTrue(heap > 2 * 192 && heap < 2 * 4096, "estimate " + heap);
+    }
+    
+    @Test
+    void testFindByText() {
+        repository.save(IpfixRecord.builder().id("api").dpiInfo(DpiInfo.builder()
+                .httpRequestHost("API.Example.com").httpUserAgent("curl/8.4.0").build()).build());
+        repository.save(IpfixRecord.builder().id("apex").dpiInfo(DpiInfo.builder()
+                .sslServerName("example.com").build()).build());
+        repository.save(IpfixRecord.builder().id("other").dpiInfo(DpiInfo.builder()
+                .dnsQueryName("badexample.com").build()).applicationName("dns").build());
+        Set<TextField> all = EnumSet.allOf(TextField.class);
+        
+        assertEquals(List.of("apex", "api"), ids(repository.findByText(TextSearch.parse("*.example.com"), all, null, 10)));
+        assertEquals(List.of("other", "apex", "api"),
+                ids(repository.findByText(TextSearch.parse("*example.com"), all, null, 10)));
+        assertEquals(List.of("api"), ids(repository.findByText(TextSearch.parse("api.*"), all, null, 10)));
+        assertEquals(List.of("api"), ids(repository.findByText(TextSearch.parse("CURL"), all, null, 10)));
+        assertEquals(List.of("other"), ids(repository.findByText(TextSearch.parse("badexample.com"), all, null, 10)));
+        assertTrue(repository.findByText(TextSearch.parse("example.com"), Set.of(TextField.APPLICATION_NAME), null, 10)
+                .isEmpty());
+        assertEquals(List.of("api"), ids(repository.findByText(TextSearch.parse("*.example.com"), all,
+                new RecordKey(repository.findById("apex").orElseThrow().getTimestamp(), "apex"), 10)));
+        
+        repository.deleteById("api");
+        assertEquals(List.of("apex"), ids(repository.findByText(TextSearch.parse("*.example.com"), all, null, 10)));
+        assertThrows(IllegalArgumentException.class, () -> TextSearch.parse("ex*ample"));
+    }
+    
+    @Test
+    void testSharesRepeatedStrings() {
+        for (String id : List.of("a", "b")) {
+            repository.save(IpfixRecord.builder()
+                    .id(id)
+                    .dpiInfo(DpiInfo.builder().httpRequestMethod(new String("GET")).build())
+                    .certInfo(CertEnterpriseInfo.builder().osName(new String("Linux")).build())
+                    .subTemplateLists(List.of(SubTemplateListElement.builder()
+                            .semantic(new String("allOf"))
+                            .templateDefinition(Map.of(new String("sourcePort"), new String("unsigned16")))
+                            .entries(List.of(Map.of(new String("sourcePort"), 443)))
+                            .build()))
+                    .build());
+        }
+        IpfixRecord a = repository.findById("a").orElseThrow();
+        IpfixRecord b = repository.findById("b").orElseThrow();
+        SubTemplateListElement list = b.getSubTemplateLists().get(0);
+        
+        assertSame(a.getDpiInfo().getHttpRequestMethod(), b.getDpiInfo().getHttpRequestMethod());
+        assertSame(a.getCertInfo().getOsName(), b.getCertInfo().getOsName());
+        assertSame(a.getSubTemplateLists().get(0).getSemantic(), list.getSemantic());
+        assertSame(list.getTemplateDefinition().keySet().iterator().next(),
+                list.getEntries().get(0).keySet().iterator().next());
+        assertEquals(443, list.getEntries().get(0).get("sourcePort"));
+        assertEquals(List.of("b", "a"), ids(repository.findWhere(FlowQuery.compile(FlowFilter.builder()
+                .where(List.of(ElementCondition.builder().element("dpiInfo.httpRequestMethod").eq("GET").build()))
+                .build()), null, 10)));
+    }
+    
+    @Test
+    void testPacksStructuredLists() throws Exception {
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("sourceTransportPort", 443L);
+        first.put("sourceIPv4Address", "10.0.0.1");
+        first.put("httpRequestHost", "example.com");
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("sourceTransportPort", 8443L);
+        second.put("sourceIPv4Address", "10.0.0.2");
+        second.put("httpRequestHost", null);
+        IpfixRecord record = IpfixRecord.builder()
+                .id("packed")
+                .timestamp(Instant.parse("2024-01-01T00:00:00Z"))
+                .basicLists(List.of(
+                        BasicListElement.builder().dataType("unsigned16").values(List.of("80", "443")).build(),
+                        BasicListElement.builder().dataType("unsigned16").values(List.of("080")).build(),
+                        BasicListElement.builder().dataType("ipv4Address").values(List.of("192.0.2.1")).build()))
+                .subTemplateLists(List.of(SubTemplateListElement.builder()
+                        .templateId(300)
+                        .entries(List.of(first, second))
+                        .build()))
+                .build();
+        ObjectMapper mapper = SegmentWriter.newMapper();
+        String json = mapper.writeValueAsString(record);
+        
+        repository.save(record);
+        IpfixRecord stored = repository.findById("packed").orElseThrow();
+        
+        assertInstanceOf(PackedEntries.class, stored.getSubTemplateLists().get(0).getEntries());
+        assertInstanceOf(PackedValues.class, stored.getBasicLists().get(0).getValues());
+        assertEquals(List.of(first, second), stored.getSubTemplateLists().get(0).getEntries());
+        assertEquals(List.of("80", "443"), stored.getBasicLists().get(0).getValues());
+        assertEquals(List.of("080"), stored.getBasicLists().get(1).getValues());
+        assertEquals(List.of("192.0.2.1"), stored.getBasicLists().get(2).getValues());
+        assertEquals(json, mapper.writeValueAsString(stored));
+        assertTrue(stored.getSubTemplateLists().get(0).getEntries().get(1).containsKey("httpRequestHost"));
+    }
+    
+    private static List<String> ids(List<IpfixRecord> records) {
+        return records.stream().map(IpfixRecord::getId).toList();
+    }
 }
@@ -0,0 +1,121 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.config.IpfixWalProperties;
+import com.ipfix.graphql.model.IpfixRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournaledIpfixRecordStoreTest {
+    
+    private static final Instant BASE = Instant.parse("2024-01-01T00:00:00Z");
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void testReplaysLoggedChanges() {
+        JournaledIpfixRecordStore store = open(new IpfixRecordRepository());
+        store.saveAll(records(0, 10));
+        store.save(record(10));
+        store.deleteById("r3");
+        store.close();
+        
+        IpfixRecordRepository recovered = new IpfixRecordRepository();
+        open(recovered).close();
+        assertEquals(10, recovered.count());
+        assertTrue(recovered.findById("r3").isEmpty());
+        assertEquals("10.0.0.10", recovered.findById("r10").orElseThrow().getSourceIPv4Address());
+        
+        JournaledIpfixRecordStore reopened = open(new IpfixRecordRepository());
+        reopened.deleteAll();
+        reopened.save(record(20));
+        reopened.close();
+        IpfixRecordRepository cleared = new IpfixRecordRepository();
+        open(cleared).close();
+        assertEquals(List.of("r20"), cleared.findAll().stream().map(IpfixRecord::getId).toList());
+    }
+    
+    @Test
+    void testRecoversFromSnapshotAndLaterLog() throws Exception {
+        JournaledIpfixRecordStore store = open(new ColumnarIpfixRecordStore());
+        store.saveAll(records(0, 100));
+        store.snapshot();
+        store.deleteById("r0");
+        store.saveAll(records(100, 110));
+        store.close();
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.filter(file -> file.getFileName().toString().startsWith("snapshot-")).count());
+        }
+        
+        IpfixRecordRepository recovered = new IpfixRecordRepository();
+        open(recovered).close();
+        assertEquals(109, recovered.count());
+        assertTrue(recovered.findById("r0").isEmpty());
+        assertEquals(BASE.plusSeconds(50), recovered.findById("r50").orElseThrow().getTimestamp());
+        assertEquals(6, recovered.findById("r109").orElseThrow().getProtocolIdentifier());
+    }
+    
+    @Test
+    void testIgnoresTornTail() throws Exception {
+        JournaledIpfixRecordStore store = open(new IpfixRecordRepository());
+        store.saveAll(records(0, 5));
+        store.close();
+        try (var files = Files.list(directory)) {
+            Path last = files.filter(file -> file.getFileName().toString().endsWith(".log")).sorted()
+                    .reduce((first, second) -> second).orElseThrow();
+            Files.write(last, new byte[]{0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+        }
+        
+        IpfixRecordRepository recovered = new IpfixRecordRepository();
+        open(recovered).close();
+        assertEquals(5, recovered.count());
+    }
+    
+    @Test
+    void testRecoversConcurrentWritesOfOneIdAsApplied() throws InterruptedException {
+        JournaledIpfixRecordStore store = open(new IpfixRecordRepository());
+        List<Thread> writers = List.of(
+                new Thread(() -> IntStream.range(0, 2000).forEach(i -> store.save(same(i % 7, 6)))),
+                new Thread(() -> IntStream.range(0, 2000).forEach(i -> store.saveAll(List.of(same(i % 5, 17))))),
+                new Thread(() -> IntStream.range(0, 2000).forEach(i -> store.deleteById("same"))));
+        writers.forEach(Thread::start);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        var applied = store.findById("same");
+        store.close();
+        
+        IpfixRecordRepository recovered = new IpfixRecordRepository();
+        open(recovered).close();
+        assertEquals(applied, recovered.findById("same"));
+    }
+    
+    private JournaledIpfixRecordStore open(IpfixRecordStore delegate) {
+        IpfixWalProperties properties = new IpfixWalProperties();
+        properties.setDirectory(directory.toString());
+        properties.setFsync(IpfixWalProperties.FsyncPolicy.COMMIT);
+        return new JournaledIpfixRecordStore(delegate, properties);
+    }
+    
+    private static List<IpfixRecord> records(int from, int to) {
+        return IntStream.range(from, to).mapToObj(JournaledIpfixRecordStoreTest::record).toList();
+    }
+    
+    private static IpfixRecord same(int i, int protocol) {
+        return IpfixRecord.builder().id("same").timestamp(BASE.plusSeconds(i)).protocolIdentifier(protocol).build();
+    }
+    
+    private static IpfixRecord record(int i) {
+        return IpfixRecord.builder().id("r" + i).timestamp(BASE.plusSeconds(i)).sourceIPv4Address("10.0.0." + i)
+                .protocolIdentifier(6).octetDeltaCount(100L + i).build();
+    }
+}
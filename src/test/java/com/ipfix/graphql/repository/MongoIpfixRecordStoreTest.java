@@ -0,0 +1,38 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.config.IpfixBulkWriteProperties;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.AfterEach;
+
+/**
+ * Runs the MongoDB store against an in-process server speaking the MongoDB wire protocol
+ */
+class MongoIpfixRecordStoreTest extends RemoteStoreConformanceTest {
+    
+    private MongoServer server;
+    private MongoClient client;
+    private MongoIpfixRecordStore store;
+    
+    @Override
+    IpfixRecordStore createStore(IpfixBulkWriteProperties bulk) {
+        server = new MongoServer(new MemoryBackend());
+        client = MongoClients.create(server.bindAndGetConnectionString());
+        store = new MongoIpfixRecordStore(client.getDatabase("ipfix").getCollection("flows"), bulk);
+        return store;
+    }
+    
+    @Override
+    void flush(IpfixRecordStore store) {
+        ((MongoIpfixRecordStore) store).flush();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        store.close();
+        client.close();
+        server.shutdown();
+    }
+}
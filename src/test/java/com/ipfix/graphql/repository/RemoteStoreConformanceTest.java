@@ -0,0 +1,134 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.config.IpfixBulkWriteProperties;
+import com.ipfix.graphql.model.AddressDirection;
+import com.ipfix.graphql.model.CertEnterpriseInfo;
+import com.ipfix.graphql.model.FlowGroupBy;
+import com.ipfix.graphql.model.FlowMetric;
+import com.ipfix.graphql.model.IpfixRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the same data set through a remote store and the in-memory repository and expects identical answers
+ */
+abstract class RemoteStoreConformanceTest {
+    
+    static final Instant BASE = Instant.parse("2024-01-01T00:00:00Z");
+    
+    private final IpfixRecordRepository expected = new IpfixRecordRepository();
+    private IpfixRecordStore store;
+    
+    /**
+     * Fresh, empty store under test
+     */
+    abstract IpfixRecordStore createStore(IpfixBulkWriteProperties bulk);
+    
+    /**
+     * Makes everything saved so far visible to queries
+     */
+    abstract void flush(IpfixRecordStore store);
+    
+    @BeforeEach
+    void setUp() {
+        IpfixBulkWriteProperties bulk = new IpfixBulkWriteProperties();
+        bulk.setBatchSize(7);
+        bulk.setMaxInFlight(2);
+        store = createStore(bulk);
+        List<IpfixRecord> batch = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            IpfixRecord.IpfixRecordBuilder record = IpfixRecord.builder().id(String.format("r%02d", i))
+                    .timestamp(BASE.plusSeconds(i / 2))
+                    .protocolIdentifier(i % 3 == 0 ? 17 : 6).sourceTransportPort(1000 + i % 4)
+                    .destinationTransportPort(i % 2 == 0 ? 443 : 53)
+                    .octetDeltaCount(100L * i).packetDeltaCount((long) i)
+                    .applicationName(i % 5 == 0 ? "dns" : "https")
+                    .certInfo(CertEnterpriseInfo.builder().silkAppLabel(i % 2 == 0 ? 443 : 53).build());
+            if (i % 4 == 3) {
+                record.sourceIPv6Address("2001:db8:" + (i % 8 == 3 ? "1" : "ff") + "::" + Integer.toHexString(i))
+                        .sourceIPv6PrefixLength(i % 8 == 3 ? 64 : null)
+                        .destinationIPv6Address("2001:db8::1");
+            } else {
+                record.sourceIPv4Address("10.0." + (i % 3) + "." + i).sourceIPv4PrefixLength(i % 6 == 0 ? 24 : null)
+                        .destinationIPv4Address("192.168.0." + (i % 5));
+            }
+            batch.add(record.build());
+        }
+        store.saveAll(batch);
+        expected.saveAll(batch);
+        flush(store);
+    }
+    
+    @Test
+    void testLooksUpAndPages() {
+        assertEquals(expected.count(), store.count());
+        assertEquals(expected.findById("r07"), store.findById("r07"));
+        assertTrue(store.findById("missing").isEmpty());
+        assertEquals(ids(expected.findAll()), ids(store.findAll()));
+        assertEquals(ids(expected.findAll(10, 15)), ids(store.findAll(10, 15)));
+        RecordKey after = new RecordKey(BASE.plusSeconds(20), "r40");
+        assertEquals(ids(expected.findPage(after, 9)), ids(store.findPage(after, 9)));
+        assertEquals(ids(expected.findPage(null, 5)), ids(store.findPage(null, 5)));
+        assertEquals(ids(expected.findByProtocol(17, after, 4)), ids(store.findByProtocol(17, after, 4)));
+        assertEquals(ids(expected.findByTimeRange(BASE.plusSeconds(3), BASE.plusSeconds(8))),
+                ids(store.findByTimeRange(BASE.plusSeconds(3), BASE.plusSeconds(8))));
+        assertEquals(expected.oldestTimestamp(), store.oldestTimestamp());
+    }
+    
+    @Test
+    void testFiltersAddresses() {
+        assertEquals(ids(expected.findBySourceIp("10.0.0.6")), ids(store.findBySourceIp("10.0.0.6")));
+        assertEquals(ids(expected.findBySourceIp("2001:db8:1::b")), ids(store.findBySourceIp("2001:db8:1::b")));
+        assertEquals(ids(expected.findByDestinationIp("192.168.0.2")), ids(store.findByDestinationIp("192.168.0.2")));
+        assertTrue(store.findBySourceIp("not an address").isEmpty());
+        // 10.0.0.0/26 and 2001:db8:1::/96 hold addresses exported with shorter prefixes
+        for (String block : List.of("10.0.0.0/16", "10.0.1.0/24", "10.0.0.0/24", "10.0.0.0/26", "2001:db8::/32",
+                "2001:db8:1::/48", "2001:db8:1::/96", "2001:db8::1/128")) {
+            for (AddressDirection direction : AddressDirection.values()) {
+                IpNetwork subnet = IpNetwork.parse(block);
+                assertEquals(ids(expected.findBySubnet(subnet, direction, null, 100)),
+                        ids(store.findBySubnet(subnet, direction, null, 100)), block + " " + direction);
+            }
+        }
+    }
+    
+    @Test
+    void testAggregates() {
+        for (FlowGroupBy groupBy : FlowGroupBy.values()) {
+            for (FlowMetric metric : FlowMetric.values()) {
+                assertEquals(expected.aggregate(groupBy, metric, 3, null, null),
+                        store.aggregate(groupBy, metric, 3, null, null), groupBy + " " + metric);
+            }
+        }
+        Instant start = BASE.plusSeconds(5);
+        Instant end = BASE.plusSeconds(9);
+        assertEquals(expected.aggregate(FlowGroupBy.PROTOCOL, FlowMetric.BYTES, 5, start, end),
+                store.aggregate(FlowGroupBy.PROTOCOL, FlowMetric.BYTES, 5, start, end));
+        assertEquals(expected.timeSeries(BASE.plusSeconds(2), BASE.plusSeconds(20), Duration.ofSeconds(4)),
+                store.timeSeries(BASE.plusSeconds(2), BASE.plusSeconds(20), Duration.ofSeconds(4)));
+    }
+    
+    @Test
+    void testDeletesAfterPendingSaves() {
+        store.save(IpfixRecord.builder().id("late").timestamp(BASE).build());
+        assertTrue(store.deleteById("late"));
+        assertFalse(store.deleteById("late"));
+        assertTrue(store.deleteById("r00"));
+        flush(store);
+        assertEquals(59, store.count());
+        store.deleteAll();
+        flush(store);
+        assertEquals(0, store.count());
+    }
+    
+    private static List<String> ids(List<IpfixRecord> records) {
+        return records.stream().map(IpfixRecord::getId).toList();
+    }
+}
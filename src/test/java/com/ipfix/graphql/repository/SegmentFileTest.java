@@ -0,0 +1,124 @@
+package com.ipfix.graphql.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ipfix.graphql.model.AddressDirection;
+import com.ipfix.graphql.model.BasicListElement;
+import com.ipfix.graphql.model.CertEnterpriseInfo;
+import com.ipfix.graphql.model.DpiInfo;
+import com.ipfix.graphql.model.IpfixRecord;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentFileTest {
+    
+    private static final Instant BASE = Instant.parse("2024-01-01T00:00:00Z");
+    
+    private final ObjectMapper mapper = SegmentWriter.newMapper();
+    
+    @Test
+    void testRoundTripsEveryColumn() throws Exception {
+        IpfixRecord full = IpfixRecord.builder()
+                .id("full").timestamp(BASE.plusNanos(123_456_789))
+                .octetDeltaCount(1_500_000_000_000L).packetDeltaCount(1000L).deltaFlowCount(1L)
+                .protocolIdentifier(6).ipClassOfService(0).tcpControlBits(0x12)
+                .sourceTransportPort(54321).sourceIPv4Address("192.168.1.100").sourceIPv4PrefixLength(24)
+                .ingressInterface(1).destinationTransportPort(443).destinationIPv4Address("255.255.255.255")
+                .destinationIPv4PrefixLength(32).egressInterface(2).ipNextHopIPv4Address("10.0.0.254")
+                .sourceIPv6Address("2001:db8::1").destinationIPv6Address("2001:DB8::2")
+                .sourceIPv6PrefixLength(64).destinationIPv6PrefixLength(128)
+                .flowStartMilliseconds(BASE.plusMillis(5)).flowEndMilliseconds(BASE.plusNanos(7_000_001))
+                .flowStartSysUpTime(100L).flowEndSysUpTime(200L)
+                .mplsTopLabelStackSection(1).mplsLabelStackSection2(2).mplsLabelStackSection3(3)
+                .applicationId(13).applicationName("https").applicationDescription("TLS")
+                .dpiInfo(DpiInfo.builder().sslServerName("example.com").httpUserAgent("curl").build())
+                .certInfo(CertEnterpriseInfo.builder().silkAppLabel(443).osName("Linux").build())
+                .basicLists(List.of(BasicListElement.builder().id("b1").values(List.of("a", "b")).build()))
+                .observationDomainId(7).exporterIPv4Address("10.0.0.1").exporterIPv6Address("fe80::1")
+                .build();
+        IpfixRecord onlyColumns = IpfixRecord.builder()
+                .id("columns").timestamp(BASE.plusSeconds(1))
+                .dpiInfo(DpiInfo.builder().httpRequestHost("example.org").build())
+                .build();
+        IpfixRecord emptyNested = IpfixRecord.builder()
+                .id("nested").timestamp(BASE.plusSeconds(1))
+                .dpiInfo(new DpiInfo()).destinationIPv4Address("010.0.0.1")
+                .build();
+        List<IpfixRecord> records = List.of(full, onlyColumns, emptyNested);
+        
+        SegmentFile file = new SegmentFile(ByteBuffer.wrap(SegmentWriter.encode(records, mapper)));
+        SegmentFile.Columns columns = file.columns();
+        
+        assertEquals(3, file.rows());
+        assertEquals(full, columns.record(0, mapper));
+        assertEquals(onlyColumns, columns.record(1, mapper));
+        assertEquals(emptyNested, columns.record(2, mapper));
+        assertEquals(BASE.plusSeconds(1), columns.timestamp(2));
+        // An address exported with a shorter prefix than the block still lies within it
+        assertEquals(1, matching(file, SegmentCondition.subnet(IpNetwork.parse("192.168.1.96/27"),
+                AddressDirection.SOURCE)));
+        assertEquals(1, matching(file, SegmentCondition.subnet(IpNetwork.parse("2001:db8::/96"),
+                AddressDirection.SOURCE)));
+        // Sub-millisecond flow end time stays in the remainder
+        assertFalse(file.has(SegmentColumn.FLOW_END));
+    }
+    
+    @Test
+    void testEncodingIsDeterministic() throws Exception {
+        List<IpfixRecord> records = flows(500);
+        List<IpfixRecord> shuffled = new ArrayList<>(records);
+        Collections.shuffle(shuffled);
+        
+        assertArrayEquals(SegmentWriter.encode(records, mapper), SegmentWriter.encode(shuffled, mapper));
+    }
+    
+    @Test
+    void testSkipsSegmentsByZoneMapsAndBloomFilters() throws Exception {
+        SegmentFile file = new SegmentFile(ByteBuffer.wrap(SegmentWriter.encode(flows(1000), mapper)));
+        
+        assertTrue(SegmentCondition.sourceAddress(IpNetwork.host("10.0.0.7")).mightMatch(file));
+        assertFalse(SegmentCondition.sourceAddress(IpNetwork.host("10.1.0.7")).mightMatch(file));
+        assertFalse(SegmentCondition.sourceAddress(IpNetwork.host("2001:db8::7")).mightMatch(file));
+        assertFalse(SegmentCondition.protocol(17).mightMatch(file));
+        assertFalse(SegmentCondition.subnet(IpNetwork.parse("192.168.0.0/16"), AddressDirection.ANY).mightMatch(file));
+        assertTrue(file.mightContain(SegmentColumn.ID_BLOOM, SegmentWriter.textHash("f42")));
+        long falsePositives = IntStream.range(0, 1000)
+                .filter(i -> file.mightContain(SegmentColumn.ID_BLOOM, SegmentWriter.textHash("x" + i)))
+                .count();
+        assertTrue(falsePositives < 50, "false positives: " + falsePositives);
+        
+        assertEquals(4, matching(file, SegmentCondition.sourceAddress(IpNetwork.host("10.0.0.7"))));
+        assertEquals(1000, matching(file, SegmentCondition.protocol(6)));
+        assertEquals(256, matching(file,
+                SegmentCondition.subnet(IpNetwork.parse("10.0.0.0/26"), AddressDirection.SOURCE)));
+        assertEquals(0, matching(file,
+                SegmentCondition.subnet(IpNetwork.parse("10.0.0.0/26"), AddressDirection.DESTINATION)));
+    }
+    
+    private static long matching(SegmentFile file, SegmentCondition condition) {
+        IntPredicate rows = condition.rows(file.columns());
+        return IntStream.range(0, file.rows()).filter(rows).count();
+    }
+    
+    private static List<IpfixRecord> flows(int count) {
+        List<IpfixRecord> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(IpfixRecord.builder().id("f" + i).timestamp(BASE.plusMillis(i))
+                    .sourceIPv4Address("10.0.0." + (i % 250)).sourceIPv4PrefixLength(32)
+                    .destinationIPv4Address("172.16.0." + (i % 7)).protocolIdentifier(6)
+                    .sourceTransportPort(40000 + i).destinationTransportPort(443)
+                    .octetDeltaCount(1000L + i).packetDeltaCount(10L)
+                    .applicationName(i % 2 == 0 ? "https" : "dns")
+                    .build());
+        }
+        return records;
+    }
+}
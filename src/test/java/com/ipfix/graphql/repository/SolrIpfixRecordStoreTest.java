@@ -0,0 +1,56 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.config.IpfixBulkWriteProperties;
+import com.ipfix.graphql.config.IpfixSolrProperties;
+import org.apache.solr.client.solrj.embedded.EmbeddedSolrServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Runs the Solr store against an embedded core created from the shipped configset
+ */
+class SolrIpfixRecordStoreTest extends RemoteStoreConformanceTest {
+    
+    @TempDir
+    Path home;
+    
+    private EmbeddedSolrServer server;
+    private SolrIpfixRecordStore store;
+    
+    @Override
+    IpfixRecordStore createStore(IpfixBulkWriteProperties bulk) {
+        try {
+            Path conf = Files.createDirectories(home.resolve("ipfix/conf"));
+            for (String file : new String[]{"solrconfig.xml", "schema.xml"}) {
+                try (InputStream in = getClass().getResourceAsStream("/solr/configsets/ipfix/conf/" + file)) {
+                    Files.copy(in, conf.resolve(file));
+                }
+            }
+            Files.writeString(home.resolve("solr.xml"), "<solr/>\n");
+            Files.writeString(home.resolve("ipfix/core.properties"), "name=ipfix\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        server = new EmbeddedSolrServer(home, "ipfix");
+        IpfixSolrProperties properties = new IpfixSolrProperties();
+        store = new SolrIpfixRecordStore(server, properties, bulk);
+        return store;
+    }
+    
+    @Override
+    void flush(IpfixRecordStore store) {
+        ((SolrIpfixRecordStore) store).flush();
+    }
+    
+    @AfterEach
+    void tearDown() throws IOException {
+        store.close();
+        server.close();
+    }
+}
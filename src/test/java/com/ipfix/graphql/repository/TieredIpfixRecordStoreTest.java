@@ -0,0 +1,230 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.config.IpfixRetentionProperties;
+import com.ipfix.graphql.model.AddressDirection;
+import com.ipfix.graphql.model.DpiInfo;
+import com.ipfix.graphql.model.ElementCondition;
+import com.ipfix.graphql.model.FlowAggregate;
+import com.ipfix.graphql.model.FlowFilter;
+import com.ipfix.graphql.model.FlowGroupBy;
+import com.ipfix.graphql.model.FlowMetric;
+import com.ipfix.graphql.model.FlowTimeBucket;
+import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.model.TextField;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TieredIpfixRecordStoreTest {
+    
+    private static final Instant BASE = Instant.parse("2024-01-01T00:00:00Z");
+    
+    @TempDir
+    Path directory;
+    
+    private IpfixRecordRepository hot;
+    private SegmentTier segments;
+    private TieredIpfixRecordStore store;
+    private IpfixRetentionProperties properties;
+    
+    @BeforeEach
+    void setUp() {
+        hot = new IpfixRecordRepository();
+        segments = new SegmentTier(directory);
+        store = new TieredIpfixRecordStore(hot, segments);
+        properties = new IpfixRetentionProperties();
+        properties.setHotRetention(Duration.ofMinutes(10));
+        properties.setSegmentWindow(Duration.ofMinutes(1));
+        // One record every 30 seconds over 20 minutes, alternating sources
+        for (int i = 0; i < 40; i++) {
+            store.save(IpfixRecord.builder().id("r" + i).timestamp(BASE.plusSeconds(30L * i))
+                    .sourceIPv4Address(i % 2 == 0 ? "10.0.0.1" : "10.0.1.1").protocolIdentifier(6)
+                    .octetDeltaCount(100L).packetDeltaCount(1L).build());
+        }
+    }
+    
+    @Test
+    void testMovesAgedWindowsAndMergesQueries() {
+        long moved = new TierMover(hot, segments, properties).runOnce(BASE.plus(Duration.ofMinutes(20)));
+        
+        assertEquals(20, moved);
+        assertEquals(20, hot.count());
+        assertEquals(20, segments.count());
+        assertEquals(10, segments.segmentCount());
+        assertEquals(40, store.count());
+        
+        List<IpfixRecord> page = store.findPage(new RecordKey(BASE.plusSeconds(30L * 21), "r21"), 3);
+        assertEquals(List.of("r20", "r19", "r18"), page.stream().map(IpfixRecord::getId).toList());
+        assertEquals(40, store.findAll(100, 0).size());
+        assertEquals("r0", store.findAll().get(0).getId());
+        assertEquals(List.of("r3", "r1"), store.findBySourceIp("10.0.1.1", new RecordKey(BASE.plusSeconds(150), "r5"), 10)
+                .stream().map(IpfixRecord::getId).toList());
+        assertEquals(20, store.findBySubnet(IpNetwork.parse("10.0.1.0/24"), AddressDirection.SOURCE, null, 100).size());
+        assertEquals(4, store.findByTimeRange(BASE.plusSeconds(270), BASE.plusSeconds(360)).size());
+        assertEquals(BASE, store.oldestTimestamp().orElseThrow());
+        
+        assertEquals("r2", store.findById("r2").orElseThrow().getId());
+        assertTrue(store.deleteById("r2"));
+        assertFalse(store.deleteById("r2"));
+        assertTrue(store.findById("r2").isEmpty());
+        assertEquals(39, store.count());
+        
+        assertEquals(List.of(new FlowAggregate("10.0.1.1", 2000, 20, 20), new FlowAggregate("10.0.0.1", 1900, 19, 19)),
+                store.aggregate(FlowGroupBy.SOURCE_IP, FlowMetric.BYTES, 10, null, null));
+        List<FlowTimeBucket> series = store.timeSeries(BASE, BASE.plusSeconds(1199), Duration.ofMinutes(10));
+        assertEquals(List.of(new FlowTimeBucket(BASE, 1900, 19, 19),
+                new FlowTimeBucket(BASE.plus(Duration.ofMinutes(10)), 2000, 20, 20)), series);
+    }
+    
+    @Test
+    void testBoundsHotTierBySize() {
+        properties.setMaxHotRecords(5);
+        new TierMover(hot, segments, properties).runOnce(BASE);
+        
+        assertTrue(hot.count() <= 5);
+        assertEquals(40, store.count());
+        assertEquals("r39", store.findPage(null, 1).get(0).getId());
+    }
+    
+    @Test
+    void testStopsWhenHotDeletesFail() {
+        IpfixRecordRepository undeletable = new IpfixRecordRepository() {
+            @Override
+            public boolean deleteById(String id) {
+                return false;
+            }
+        };
+        undeletable.saveAll(hot.findAll());
+        
+        assertEquals(0, new TierMover(undeletable, segments, properties).runOnce(BASE.plus(Duration.ofMinutes(20))));
+        assertEquals(1, segments.segmentCount());
+        assertEquals(40, undeletable.count());
+    }
+    
+    @Test
+    void testCountsWindowBeingSealedOnce() {
+        List<FlowAggregate> totals = List.of(new FlowAggregate("6", 4000, 40, 40));
+        List<FlowTimeBucket> series = List.of(new FlowTimeBucket(BASE, 3000, 30, 30),
+                new FlowTimeBucket(BASE.plus(Duration.ofMinutes(15)), 1000, 10, 10));
+        List<IpfixRecord> window = new ArrayList<>(hot.findByTimeRange(BASE, BASE.plusSeconds(59)));
+        Collections.reverse(window);
+        
+        segments.seal(window, () -> {
+            // On disk and still in memory
+            assertEquals(40, store.count());
+            assertEquals(totals, store.aggregate(FlowGroupBy.PROTOCOL, FlowMetric.BYTES, 10, null, null));
+            assertEquals(series, store.timeSeries(BASE, BASE.plusSeconds(1199), Duration.ofMinutes(15)));
+            hot.deleteById("r0");
+            assertEquals(40, store.count());
+            assertEquals(totals, store.aggregate(FlowGroupBy.PROTOCOL, FlowMetric.BYTES, 10, BASE, null));
+            hot.deleteById("r1");
+        });
+        
+        assertEquals(38, hot.count());
+        assertEquals(40, store.count());
+        assertEquals(totals, store.aggregate(FlowGroupBy.PROTOCOL, FlowMetric.BYTES, 10, null, null));
+        assertEquals(series, store.timeSeries(BASE, BASE.plusSeconds(1199), Duration.ofMinutes(15)));
+    }
+    
+    @Test
+    void testExpiresSegmentsAndReopens() {
+        TierMover mover = new TierMover(hot, segments, properties);
+        mover.runOnce(BASE.plus(Duration.ofMinutes(20)));
+        assertTrue(store.deleteById("r0"));
+        
+        SegmentTier reopened = new SegmentTier(directory);
+        assertEquals(19, reopened.count());
+        assertTrue(reopened.findById("r0").isEmpty());
+        assertEquals("r1", reopened.findById("r1").orElseThrow().getId());
+        
+        properties.setSegmentRetention(Duration.ofMinutes(15));
+        mover.runOnce(BASE.plus(Duration.ofMinutes(20)));
+        assertEquals(10, segments.count());
+        assertEquals(30, store.count());
+        
+        store.deleteAll();
+        assertEquals(0, store.count());
+        assertEquals(0, new SegmentTier(directory).count());
+    }
+    
+    @Test
+    void testSearchesTextInBothTiers() {
+        store.deleteAll();
+        for (int i = 0; i < 40; i++) {
+            store.save(IpfixRecord.builder().id("t" + i).timestamp(BASE.plusSeconds(30L * i))
+                    .dpiInfo(DpiInfo.builder().httpRequestHost(i % 4 == 0 ? "www.example.com" : "www.example.net")
+                            .dnsQueryName(i % 5 == 0 ? "mail.example.com" : null).build())
+                    .build());
+        }
+        new TierMover(hot, segments, properties).runOnce(BASE.plus(Duration.ofMinutes(20)));
+        assertEquals(20, segments.count());
+        
+        List<IpfixRecord> hosts = store.findByText(TextSearch.parse("*.example.com"),
+                Set.of(TextField.HTTP_REQUEST_HOST), null, 100);
+        assertEquals(10, hosts.size());
+        assertEquals("t36", hosts.get(0).getId());
+        assertEquals("t0", hosts.get(9).getId());
+        List<IpfixRecord> either = store.findByText(TextSearch.parse("*.example.com"),
+                EnumSet.of(TextField.HTTP_REQUEST_HOST, TextField.DNS_QUERY_NAME), RecordKey.of(hosts.get(4)), 100);
+        assertEquals(List.of("t16", "t15", "t12", "t10", "t8", "t5", "t4", "t0"),
+                either.stream().map(IpfixRecord::getId).toList());
+    }
+    
+    @Test
+    void testReadsProjectedFieldsFromSegments() {
+        store.deleteAll();
+        for (int i = 0; i < 40; i++) {
+            store.save(IpfixRecord.builder().id("p" + i).timestamp(BASE.plusSeconds(30L * i))
+                    .sourceIPv4Address("10.0.0.1").applicationName("HTTP")
+                    .dpiInfo(DpiInfo.builder().httpRequestHost(i % 2 == 0 ? "api.example.com" : "www.example.com")
+                            .build())
+                    .build());
+        }
+        new TierMover(hot, segments, properties).runOnce(BASE.plus(Duration.ofMinutes(20)));
+        IpfixRecordStore sources = store.reading(RecordProjection.of(List.of("sourceIPv4Address")));
+        
+        assertSame(store, store.reading(RecordProjection.ALL));
+        IpfixRecord cold = sources.findPage(new RecordKey(BASE.plusSeconds(30L * 10), "p10"), 1).get(0);
+        assertEquals("p9", cold.getId());
+        assertEquals(BASE.plusSeconds(270), cold.getTimestamp());
+        assertEquals("10.0.0.1", cold.getSourceIPv4Address());
+        assertNull(cold.getApplicationName());
+        assertNull(cold.getDpiInfo());
+        assertNotNull(store.findById("p9").orElseThrow().getDpiInfo());
+        
+        FlowQuery query = FlowQuery.compile(FlowFilter.builder().where(List.of(ElementCondition.builder()
+                .element("dpiInfo.httpRequestHost").prefix("api.").build())).build());
+        assertEquals(Set.of("dpiInfo"), query.fields());
+        List<IpfixRecord> api = sources.findWhere(query, null, 100);
+        assertEquals(20, api.size());
+        assertEquals("p0", api.get(19).getId());
+    }
+    
+    @Test
+    void testConvertsJsonLinesSegments() throws Exception {
+        Files.writeString(directory.resolve("segment-1704067200000_1704067200030_2_7.jsonl"),
+                "{\"id\":\"a\",\"timestamp\":1704067200.000000000,\"protocolIdentifier\":17}\n"
+                        + "{\"id\":\"b\",\"timestamp\":1704067200.030000000,\"protocolIdentifier\":6}\n");
+        Files.writeString(directory.resolve("segment-1704067200000_1704067200030_2_7.jsonl.deleted"), "a\n");
+        
+        SegmentTier converted = new SegmentTier(directory);
+        
+        assertEquals(1, converted.count());
+        assertTrue(converted.findById("a").isEmpty());
+        assertEquals(6, converted.findById("b").orElseThrow().getProtocolIdentifier());
+        assertTrue(Files.exists(directory.resolve("segment-1704067200000_1704067200030_2_7.seg")));
+        assertFalse(Files.exists(directory.resolve("segment-1704067200000_1704067200030_2_7.jsonl")));
+    }
+}
@@ -0,0 +1,185 @@
+package com.ipfix.graphql.repository;
+
+import com.ipfix.graphql.config.IpfixWalProperties;
+import com.ipfix.graphql.model.IpfixRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void testCutsFailedWriteOffAndRejectsAppendsUntilSnapshot() throws Exception {
+        AtomicBoolean failing = new AtomicBoolean();
+        IpfixWalProperties properties = new IpfixWalProperties();
+        WriteAheadLog log = new WriteAheadLog(directory, properties) {
+            @Override
+            FileChannel create(Path file) throws IOException {
+                return new FailingChannel(super.create(file), failing);
+            }
+        };
+        log.appendSaves(List.of(record("r1")));
+        log.sync().join();
+        Path first = onlyLogFile();
+        long written = Files.size(first);
+        
+        failing.set(true);
+        log.appendSaves(List.of(record("r2")));
+        while (!log.failed()) {
+            Thread.onSpinWait();
+        }
+        assertEquals(written, Files.size(first));
+        assertThrows(IllegalStateException.class, () -> log.appendSaves(List.of(record("r3"))));
+        assertThrows(IllegalStateException.class, () -> log.appendDelete("r1"));
+        
+        failing.set(false);
+        log.sync().join();
+        long sequence = log.roll();
+        List<String> replayed = new ArrayList<>();
+        log.replay(0, changes -> changes.forEach(change -> replayed.add(change.record().getId())));
+        assertEquals(List.of("r1"), replayed);
+        log.deleteBefore(sequence);
+        assertFalse(log.failed());
+        log.appendSaves(List.of(record("r4")));
+        log.close();
+        
+        List<String> reopened = new ArrayList<>();
+        new WriteAheadLog(directory, properties).replay(0,
+                changes -> changes.forEach(change -> reopened.add(change.record().getId())));
+        assertEquals(List.of("r4"), reopened);
+    }
+    
+    private Path onlyLogFile() throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("wal-")).findFirst().orElseThrow();
+        }
+    }
+    
+    private static IpfixRecord record(String id) {
+        return IpfixRecord.builder().id(id).timestamp(Instant.parse("2024-01-01T00:00:00Z")).build();
+    }
+    
+    /**
+     * Writes half of a buffer and fails while {@code failing} is set, like a disk running full
+     */
+    private static class FailingChannel extends FileChannel {
+        
+        private final FileChannel delegate;
+        private final AtomicBoolean failing;
+        
+        FailingChannel(FileChannel delegate, AtomicBoolean failing) {
+            this.delegate = delegate;
+            this.failing = failing;
+        }
+        
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (!failing.get()) {
+                return delegate.write(src);
+            }
+            ByteBuffer half = src.slice(src.position(), src.remaining() / 2);
+            delegate.write(half);
+            throw new IOException("No space left on device");
+        }
+        
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+        
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+        
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+        
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+        
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+        
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+        
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+        
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+        
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+        
+        @Override
+        public void force(boolean metaData) throws IOException {
+            delegate.force(metaData);
+        }
+        
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+        
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+        
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+        
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+        
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+        
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.ipfix.graphql.resolver;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop GraphQL load generator mixing cheap lookups with store-wide aggregations, reporting throughput
+ * and latency percentiles per kind. Used to compare platform and virtual request threads at high concurrency.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.ipfix.graphql.resolver.GraphQlLoadDriver \
+ *     -Dexec.args="http://localhost:8080/graphql 1000 30 10"
+ * </pre>
+ * Arguments are the endpoint, concurrent clients, duration in seconds and the percentage of requests
+ * that are aggregations.
+ */
+public class GraphQlLoadDriver {
+
+    private static final String LOOKUP = "{\"query\":\"{ ipfixRecordsCount }\"}";
+    private static final String AGGREGATION =
+            "{\"query\":\"{ topFlows(groupBy: SOURCE_IP, metric: BYTES, limit: 10) { key bytes } }\"}";
+
+    public static void main(String[] args) throws Exception {
+        URI endpoint = URI.create(args.length > 0 ? args[0] : "http://localhost:8080/graphql");
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int aggregationPercent = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        Recorder lookups = new Recorder();
+        Recorder aggregations = new Recorder();
+        AtomicLong errors = new AtomicLong();
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Thread> threads = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            Thread client = new Thread(() -> {
+                while (System.nanoTime() < end) {
+                    boolean aggregate = ThreadLocalRandom.current().nextInt(100) < aggregationPercent;
+                    HttpRequest request = HttpRequest.newBuilder(endpoint)
+                            .timeout(Duration.ofSeconds(60))
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(aggregate ? AGGREGATION : LOOKUP))
+                            .build();
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+                        if (response.statusCode() != 200 || response.body().contains("\"errors\"")) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                        continue;
+                    }
+                    (aggregate ? aggregations : lookups).record(System.nanoTime() - start);
+                }
+            }, "load-" + i);
+            client.setDaemon(true);
+            threads.add(client);
+        }
+        threads.forEach(Thread::start);
+        for (Thread client : threads) {
+            client.join();
+        }
+        System.out.printf("%d clients, %d s, %d%% aggregations, %d errors%n",
+                clients, seconds, aggregationPercent, errors.get());
+        lookups.print("lookups", seconds);
+        aggregations.print("aggregations", seconds);
+    }
+
+    /**
+     * Latencies of one request kind, in microseconds
+     */
+    private static final class Recorder {
+
+        private long[] micros = new long[1 << 16];
+        private int count;
+
+        synchronized void record(long nanos) {
+            if (count == micros.length) {
+                micros = Arrays.copyOf(micros, count * 2);
+            }
+            micros[count++] = nanos / 1000;
+        }
+
+        synchronized void print(String name, int seconds) {
+            long[] sorted = Arrays.copyOf(micros, count);
+            Arrays.sort(sorted);
+            System.out.printf("  %-13s %8.0f req/s  p50 %7.1f ms  p99 %7.1f ms  max %7.1f ms%n", name,
+                    (double) count / seconds, percentile(sorted, 0.50), percentile(sorted, 0.99),
+                    count == 0 ? 0.0 : sorted[count - 1] / 1000.0);
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0.0;
+            }
+            return sorted[(int) Math.min(sorted.length - 1, sorted.length * quantile)] / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.ipfix.graphql.resolver;
+
+import com.ipfix.graphql.model.IpfixRecord;
+import com.ipfix.graphql.model.IpfixRecordConnection;
+import com.ipfix.graphql.model.IpfixRecordEdge;
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import graphql.execution.DataFetcherResult;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryMetricsInstrumentationTest {
+    
+    private static final String SCHEMA = """
+            type Query {
+                flows: [Flow]
+                wrapped: [Flow]
+                connection: Connection
+                flow: Flow
+                missing: Flow
+            }
+            type Mutation {
+                ingest: Int
+            }
+            type Flow {
+                id: String
+                peer: Flow
+            }
+            type Connection {
+                edges: [Edge]
+            }
+            type Edge {
+                cursor: String
+            }
+            """;
+    
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private GraphQL graphQL;
+    
+    @BeforeEach
+    void setUp() {
+        RuntimeWiring wiring = RuntimeWiring.newRuntimeWiring()
+                .type("Query", query -> query
+                        .dataFetcher("flows", env -> List.of(flow("a"), flow("b"), flow("c")))
+                        .dataFetcher("wrapped", env -> DataFetcherResult.newResult()
+                                .data(List.of(flow("a"), flow("b"))).build())
+                        .dataFetcher("connection", env -> IpfixRecordConnection.builder()
+                                .edges(List.of(edge("1"), edge("2"), edge("3"), edge("4"))).build())
+                        .dataFetcher("flow", env -> flow("a"))
+                        .dataFetcher("missing", env -> null))
+                .type("Mutation", mutation -> mutation.dataFetcher("ingest", env -> 5))
+                .type("Flow", flow -> flow.dataFetcher("peer", env -> flow("peer")))
+                .build();
+        graphQL = GraphQL.newGraphQL(new SchemaGenerator().makeExecutableSchema(
+                        new SchemaParser().parse(SCHEMA), wiring))
+                .instrumentation(new QueryMetricsInstrumentation(registry))
+                .build();
+    }
+    
+    @Test
+    void testTimesTopLevelQueryFieldsOnly() {
+        execute("{ flows { id peer { id } } flow { id peer { peer { id } } } }");
+        execute("{ flows { id } }");
+        execute("mutation { ingest }");
+        
+        assertEquals(2, timer("flows").count());
+        assertEquals(1, timer("flow").count());
+        assertNull(registry.find("ipfix.query").tag("query", "peer").timer());
+        assertNull(registry.find("ipfix.query").tag("query", "id").timer());
+        assertNull(registry.find("ipfix.query").tag("query", "ingest").timer());
+        assertEquals(2, registry.find("ipfix.query").timers().size());
+    }
+    
+    @Test
+    void testRecordsResultCardinality() {
+        execute("{ flows { id } wrapped { id } connection { edges { cursor } } flow { id } missing { id } }");
+        
+        assertResults("flows", 3);
+        assertResults("wrapped", 2);
+        assertResults("connection", 4);
+        assertResults("flow", 1);
+        assertResults("missing", 0);
+    }
+    
+    @Test
+    void testTimesEachPhase() {
+        execute("{ flows { id } }");
+        execute("{ flow { id } }");
+        
+        for (String phase : List.of("parse", "validate", "execute")) {
+            Timer timer = registry.get("ipfix.graphql.phase").tag("phase", phase).timer();
+            assertEquals(2, timer.count(), phase);
+            assertTrue(timer.totalTime(TimeUnit.NANOSECONDS) > 0, phase);
+        }
+    }
+    
+    @Test
+    void testCountsUnwrappedValues() {
+        assertEquals(0, QueryMetricsInstrumentation.cardinality(null));
+        assertEquals(0, QueryMetricsInstrumentation.cardinality(DataFetcherResult.newResult().build()));
+        assertEquals(2, QueryMetricsInstrumentation.cardinality(DataFetcherResult.newResult()
+                .data(IpfixRecordConnection.builder().edges(List.of(edge("1"), edge("2"))).build()).build()));
+        assertEquals(3, QueryMetricsInstrumentation.cardinality(List.of(1, 2, 3)));
+        assertEquals(1, QueryMetricsInstrumentation.cardinality(flow("a")));
+    }
+    
+    private void execute(String query) {
+        ExecutionResult result = graphQL.execute(query);
+        assertTrue(result.getErrors().isEmpty(), result.getErrors()::toString);
+    }
+    
+    private Timer timer(String query) {
+        return registry.get("ipfix.query").tag("query", query).timer();
+    }
+    
+    private void assertResults(String query, double total) {
+        DistributionSummary results = registry.get("ipfix.query.results").tag("query", query).summary();
+        assertEquals(1, results.count(), query);
+        assertEquals(total, results.totalAmount(), query);
+        assertEquals(1, timer(query).count(), query);
+    }
+    
+    private static Map<String, Object> flow(String id) {
+        return Map.of("id", id);
+    }
+    
+    private static IpfixRecordEdge edge(String cursor) {
+        return IpfixRecordEdge.builder().cursor(cursor).node(IpfixRecord.builder().id(cursor).build()).build();
+    }
+}
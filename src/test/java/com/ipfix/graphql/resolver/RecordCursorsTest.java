@@ -0,0 +1,20 @@
+package com.ipfix.graphql.resolver;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordCursorsTest {
+    
+    @Test
+    void testDefaultsCapsAndRejectsPageSizes() {
+        assertEquals(RecordCursors.DEFAULT_PAGE_SIZE, RecordCursors.pageSize(null, "limit"));
+        assertEquals(0, RecordCursors.pageSize(0, "limit"));
+        assertEquals(RecordCursors.MAX_PAGE_SIZE, RecordCursors.pageSize(5000, "limit"));
+        
+        IllegalArgumentException negative = assertThrows(IllegalArgumentException.class,
+                () -> RecordCursors.pageSize(-1, "limit"));
+        assertEquals("limit must not be negative", negative.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> RecordCursors.pageSize(-1));
+    }
+}
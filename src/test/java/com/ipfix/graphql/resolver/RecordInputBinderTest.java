@@ -0,0 +1,33 @@
+package com.ipfix.graphql.resolver;
+
+import com.ipfix.graphql.model.IpfixRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordInputBinderTest {
+    
+    @Test
+    void testBindsSubTemplateLists() {
+        IpfixRecord record = RecordInputBinder.record(Map.of("subTemplateLists", List.of(Map.of(
+                "templateId", 300,
+                "entries", List.of(Map.of("httpHost", "www.example.com")),
+                "templateDefinition", Map.of("httpHost", "string")))));
+        
+        assertEquals("www.example.com", record.getSubTemplateLists().get(0).getEntries().get(0).get("httpHost"));
+        assertEquals(Map.of("httpHost", "string"), record.getSubTemplateLists().get(0).getTemplateDefinition());
+    }
+    
+    @Test
+    void testRejectsMalformedSubTemplateLists() {
+        assertThrows(IllegalArgumentException.class, () -> RecordInputBinder.record(Map.of("subTemplateLists",
+                List.of(Map.of("templateDefinition", Map.of("httpHost", 7L))))));
+        assertThrows(IllegalArgumentException.class, () -> RecordInputBinder.record(Map.of("subTemplateLists",
+                List.of(Map.of("templateDefinition", List.of("string"))))));
+        assertThrows(IllegalArgumentException.class, () -> RecordInputBinder.record(Map.of("subTemplateMultiLists",
+                List.of(Map.of("subTemplateLists", List.of(Map.of("entries", List.of(42L))))))));
+    }
+}